@@ -298,7 +298,7 @@ public abstract class GenModelAbstract extends ExecuteAsLearnAlgAbstract impleme
 		double error = 0;
 		int count = 0;
 		for (Raster raster : rasters) {
-			ConvGenModel clonedGM = (ConvGenModel)net.ea.ann.core.Util.cloneBySerialize(gm);
+			ConvGenModel clonedGM = (ConvGenModel)net.ea.ann.core.Util.cloneByStructure(gm);
 			clonedGM.learnRasterOne(Arrays.asList(raster));
 			for (int k = 0; k < nRecovs; k++) {
 				G g = clonedGM.recoverRaster(raster, null, config.getAsBoolean(RECOVER_RANDOM_FIELD), true);
@@ -0,0 +1,102 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.classifier;
+
+import java.io.Serializable;
+
+import net.ea.ann.core.generator.ClassRanking;
+import net.ea.ann.raster.Raster;
+import net.ea.ann.raster.RasterProperty.Label;
+
+/**
+ * This class represents ranked classification of a raster, which consists of the raster labeled by the best classes
+ * and, for every group of labels, the best k labels with their squared distances and the margin of the best label.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class Classification implements Serializable, Cloneable {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Raster labeled by the best classes.
+	 */
+	protected Raster raster = null;
+
+
+	/**
+	 * Rankings of classes of groups.
+	 */
+	protected ClassRanking[] rankings = new ClassRanking[0];
+
+
+	/**
+	 * Ranked labels of groups.
+	 */
+	protected Label[][] labels = new Label[0][];
+
+
+	/**
+	 * Constructor with labeled raster, rankings, and ranked labels.
+	 * @param raster raster labeled by the best classes.
+	 * @param rankings rankings of classes of groups.
+	 * @param labels ranked labels of groups.
+	 */
+	public Classification(Raster raster, ClassRanking[] rankings, Label[][] labels) {
+		this.raster = raster;
+		this.rankings = rankings;
+		this.labels = labels;
+	}
+
+
+	/**
+	 * Getting raster labeled by the best classes.
+	 * @return raster labeled by the best classes.
+	 */
+	public Raster getRaster() {
+		return raster;
+	}
+
+
+	/**
+	 * Getting the number of groups.
+	 * @return the number of groups.
+	 */
+	public int getNumberOfGroups() {
+		return rankings.length;
+	}
+
+
+	/**
+	 * Getting ranking of classes of group.
+	 * @param groupIndex group index.
+	 * @return ranking of classes of group, which can be null.
+	 */
+	public ClassRanking getRanking(int groupIndex) {
+		return rankings[groupIndex];
+	}
+
+
+	/**
+	 * Getting ranked labels of group.
+	 * @param groupIndex group index.
+	 * @return ranked labels of group, in which a label is null if its class has no label.
+	 */
+	public Label[] getLabels(int groupIndex) {
+		return labels[groupIndex];
+	}
+
+
+}
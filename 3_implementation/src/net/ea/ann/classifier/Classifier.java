@@ -49,6 +49,36 @@ public interface Classifier extends Remote, Cloneable {
 	 * @throws RemoteException if any error raises.
 	 */
 	List<Raster> classify(Iterable<Raster> sample) throws RemoteException;
+
+
+	/**
+	 * Classifying batch of rasters concurrently. Rasters are converted to inputs in parallel and inputs are evaluated by snapshots of classifier on workers.
+	 * @param sample specified sample.
+	 * @param parallel maximum number of workers. If it is not positive, the number of available processors is used.
+	 * @return classified rasters in input order, in which a raster is null if it is not classified.
+	 * @throws RemoteException if any error raises.
+	 */
+	List<Raster> classify(Iterable<Raster> sample, int parallel) throws RemoteException;
+	
 	
+	/**
+	 * Getting statistics of the latest batch classification.
+	 * @return statistics of the latest batch classification, which is null if there is no batch classification.
+	 * @throws RemoteException if any error raises.
+	 */
+	ClassifyStats getClassifyStats() throws RemoteException;
+
+
+	/**
+	 * Classifying sample with the best k labels and their squared distances. Every raster is evaluated once and labels are ranked from output of that evaluation.
+	 * @param sample specified sample.
+	 * @param topK maximum number of ranked labels of every group. If it is not positive, all labels are ranked.
+	 * @param exitMargin exit margin. If the margin between the second best label and the best label of a group reaches it, ranking of such group stops at the best label,
+	 * in which remaining labels of the group are neither scored nor looked up once the margin is guaranteed. If it is not positive, ranking never exits early.
+	 * @return ranked classifications of sample.
+	 * @throws RemoteException if any error raises.
+	 */
+	List<Classification> rank(Iterable<Raster> sample, int topK, double exitMargin) throws RemoteException;
+
 	
 }
@@ -0,0 +1,278 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.classifier;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import net.ea.ann.core.Util;
+import net.ea.ann.raster.Raster;
+
+/**
+ * This utility class classifies batch of rasters concurrently. Rasters are split into contiguous shards, one shard per worker.
+ * Rasters are converted to inputs in parallel, then every worker evaluates its shard by its own snapshot of classifier
+ * so that workers do not share mutable states of network, and finally classified rasters are labeled in parallel.
+ * Snapshots are kept in a cache of classifier and reused by next batches until the cache is cleared, which must be done whenever learning changes classifier.
+ * Results are returned in input order.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+final class ClassifyBatch {
+
+
+	/**
+	 * Private constructor because this is utility class.
+	 */
+	private ClassifyBatch() {
+
+	}
+
+
+	/**
+	 * Classifying batch of rasters concurrently.
+	 * @param <C> type of classifier.
+	 * @param <I> type of input.
+	 * @param classifier classifier. It is used to convert and label rasters, and it evaluates inputs itself if there is only one worker.
+	 * @param cache cache of snapshots of classifier.
+	 * @param sample batch of rasters.
+	 * @param parallel maximum number of workers. If it is not positive, the number of available processors is used.
+	 * @param converter converter of raster to input, which must be reentrant.
+	 * @param evaluator evaluator of input by classifier or its snapshot, which returns classes of input.
+	 * @param labeler labeler of raster by classes, which must be reentrant.
+	 * @param stats statistics to be filled.
+	 * @return classified rasters in input order, in which a raster is null if it is not classified.
+	 */
+	@SuppressWarnings("unchecked")
+	static <C, I> List<Raster> classify(C classifier, Snapshots<C> cache, Iterable<Raster> sample, int parallel,
+			Function<Raster, I> converter, BiFunction<C, I, int[]> evaluator, BiFunction<Raster, int[], Raster> labeler, ClassifyStats stats) {
+		List<Raster> rasters = Util.newList(0);
+		if (sample != null) {
+			for (Raster raster : sample) rasters.add(raster);
+		}
+		int n = rasters.size();
+		List<Raster> results = Util.newList(n);
+		if (n == 0) return results;
+		int workers = Math.max(1, Math.min(parallel > 0 ? parallel : Runtime.getRuntime().availableProcessors(), n));
+
+		//Taking snapshots of classifier from cache and creating missing snapshots.
+		long time = System.nanoTime();
+		int version = 0;
+		List<C> snapshots = Util.newList(workers);
+		if (workers > 1) {
+			synchronized (cache) {
+				snapshots.addAll(cache.take(classifier, workers));
+				version = cache.getVersion();
+			}
+			try {
+				while (snapshots.size() < workers) {
+					C snapshot = (C)Util.cloneByStructure(classifier);
+					if (snapshot == null) break;
+					snapshots.add(snapshot);
+				}
+			} catch (Throwable e) {Util.trace(e);}
+			if (snapshots.size() < workers) {
+				cache.release(classifier, snapshots, version);
+				snapshots.clear();
+				workers = 1;
+			}
+		}
+		stats.snapshotTime = System.nanoTime() - time;
+		stats.workers = workers;
+		stats.count = n;
+		try {
+			return classify(classifier, snapshots, rasters, workers, converter, evaluator, labeler, stats);
+		}
+		finally {
+			cache.release(classifier, snapshots, version);
+		}
+	}
+
+
+	/**
+	 * Classifying batch of rasters concurrently by given snapshots.
+	 * @param <C> type of classifier.
+	 * @param <I> type of input.
+	 * @param classifier classifier.
+	 * @param snapshots snapshots of classifier, one snapshot per worker if there are many workers.
+	 * @param rasters batch of rasters.
+	 * @param workers number of workers.
+	 * @param converter converter of raster to input, which must be reentrant.
+	 * @param evaluator evaluator of input by classifier or its snapshot, which returns classes of input.
+	 * @param labeler labeler of raster by classes, which must be reentrant.
+	 * @param stats statistics to be filled.
+	 * @return classified rasters in input order, in which a raster is null if it is not classified.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <C, I> List<Raster> classify(C classifier, List<C> snapshots, List<Raster> rasters, int workers,
+			Function<Raster, I> converter, BiFunction<C, I, int[]> evaluator, BiFunction<Raster, int[], Raster> labeler, ClassifyStats stats) {
+		int n = rasters.size();
+		List<Raster> results = Util.newList(n);
+
+		//Converting rasters to inputs.
+		final int w = workers;
+		long time = System.nanoTime();
+		Object[] inputs = new Object[n];
+		parallel(w, (k) -> {
+			for (int i = k*n/w; i < (k+1)*n/w; i++) {
+				Raster raster = rasters.get(i);
+				if (raster == null) continue;
+				try {
+					inputs[i] = converter.apply(raster);
+				} catch (Throwable e) {Util.trace(e);}
+			}
+		});
+		stats.convertTime = System.nanoTime() - time;
+
+		//Evaluating inputs.
+		time = System.nanoTime();
+		int[][] classes = new int[n][];
+		if (w > 1) {
+			parallel(w, (k) -> {
+				C snapshot = snapshots.get(k);
+				for (int i = k*n/w; i < (k+1)*n/w; i++) classes[i] = evaluate(snapshot, (I)inputs[i], evaluator);
+			});
+		}
+		else {
+			synchronized (classifier) {
+				for (int i = 0; i < n; i++) classes[i] = evaluate(classifier, (I)inputs[i], evaluator);
+			}
+		}
+		stats.evaluateTime = System.nanoTime() - time;
+
+		//Labeling rasters.
+		time = System.nanoTime();
+		Raster[] labeled = new Raster[n];
+		parallel(w, (k) -> {
+			for (int i = k*n/w; i < (k+1)*n/w; i++) {
+				if (classes[i] == null) continue;
+				try {
+					labeled[i] = labeler.apply(rasters.get(i), classes[i]);
+				} catch (Throwable e) {Util.trace(e);}
+			}
+		});
+		int classified = 0;
+		for (Raster raster : labeled) {
+			results.add(raster);
+			if (raster != null) classified++;
+		}
+		stats.labelTime = System.nanoTime() - time;
+		stats.classified = classified;
+
+		return results;
+	}
+
+
+	/**
+	 * Running shards of task in parallel. If parallel running fails, shards are run again sequentially, which is safe because every shard only writes its own results.
+	 * @param workers number of workers.
+	 * @param task task of shard.
+	 */
+	private static void parallel(int workers, IntConsumer task) {
+		boolean done = false;
+		try {
+			done = Util.parallel(workers, task);
+		} catch (Throwable e) {Util.trace(e);}
+		if (!done) {
+			for (int k = 0; k < workers; k++) task.accept(k);
+		}
+	}
+
+
+	/**
+	 * Evaluating input by classifier.
+	 * @param <C> type of classifier.
+	 * @param <I> type of input.
+	 * @param classifier classifier or its snapshot.
+	 * @param input input.
+	 * @param evaluator evaluator.
+	 * @return classes of input, which is null if input is null or any error raises.
+	 */
+	private static <C, I> int[] evaluate(C classifier, I input, BiFunction<C, I, int[]> evaluator) {
+		if (input == null) return null;
+		try {
+			return evaluator.apply(classifier, input);
+		} catch (Throwable e) {Util.trace(e);}
+		return null;
+	}
+
+
+	/**
+	 * This class represents cache of snapshots of classifier. Snapshots are taken out by a batch and released back after the batch,
+	 * so that concurrent batches never share a snapshot. Clearing the cache discards cached snapshots and snapshots being used by running batches.
+	 * @param <C> type of classifier.
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 */
+	static final class Snapshots<C> {
+
+		/**
+		 * Classifier whose snapshots are cached.
+		 */
+		private C owner = null;
+
+		/**
+		 * Version of cache, which is increased whenever cache is cleared.
+		 */
+		private int version = 0;
+
+		/**
+		 * Idle snapshots.
+		 */
+		private List<C> idles = Util.newList(0);
+
+		/**
+		 * Getting version of cache.
+		 * @return version of cache.
+		 */
+		synchronized int getVersion() {
+			return version;
+		}
+
+		/**
+		 * Clearing cache, which must be called whenever classifier is changed.
+		 */
+		synchronized void clear() {
+			idles.clear();
+			version++;
+		}
+
+		/**
+		 * Taking idle snapshots of classifier.
+		 * @param classifier classifier.
+		 * @param count maximum number of snapshots.
+		 * @return idle snapshots of classifier.
+		 */
+		synchronized List<C> take(C classifier, int count) {
+			if (owner != classifier) {
+				clear();
+				owner = classifier;
+			}
+			List<C> taken = Util.newList(Math.min(count, idles.size()));
+			while (taken.size() < count && idles.size() > 0) taken.add(idles.remove(idles.size() - 1));
+			return taken;
+		}
+
+		/**
+		 * Releasing snapshots of classifier back to cache. Snapshots are discarded if cache was cleared after they were taken.
+		 * @param classifier classifier.
+		 * @param snapshots snapshots.
+		 * @param version version of cache when snapshots were taken.
+		 */
+		synchronized void release(C classifier, List<C> snapshots, int version) {
+			if (owner != classifier || this.version != version) return;
+			idles.addAll(snapshots);
+		}
+
+	}
+
+
+}
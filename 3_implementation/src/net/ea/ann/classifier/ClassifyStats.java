@@ -0,0 +1,170 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.classifier;
+
+import java.io.Serializable;
+
+/**
+ * This class represents statistics of batch classification, which are the number of rasters, the number of classified rasters,
+ * the number of workers, and elapsed times of stages. Batch classification has four stages: taking snapshots of classifier,
+ * converting rasters to inputs, evaluating inputs, and labeling rasters.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class ClassifyStats implements Serializable, Cloneable {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Number of rasters in batch.
+	 */
+	protected int count = 0;
+
+
+	/**
+	 * Number of classified rasters.
+	 */
+	protected int classified = 0;
+
+
+	/**
+	 * Number of workers.
+	 */
+	protected int workers = 0;
+
+
+	/**
+	 * Elapsed time of taking snapshots of classifier in nanoseconds.
+	 */
+	protected long snapshotTime = 0;
+
+
+	/**
+	 * Elapsed time of converting rasters to inputs in nanoseconds.
+	 */
+	protected long convertTime = 0;
+
+
+	/**
+	 * Elapsed time of evaluating inputs in nanoseconds.
+	 */
+	protected long evaluateTime = 0;
+
+
+	/**
+	 * Elapsed time of labeling rasters in nanoseconds.
+	 */
+	protected long labelTime = 0;
+
+
+	/**
+	 * Default constructor.
+	 */
+	public ClassifyStats() {
+
+	}
+
+
+	/**
+	 * Getting the number of rasters in batch.
+	 * @return the number of rasters in batch.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+
+	/**
+	 * Getting the number of classified rasters.
+	 * @return the number of classified rasters.
+	 */
+	public int getClassified() {
+		return classified;
+	}
+
+
+	/**
+	 * Getting the number of workers.
+	 * @return the number of workers.
+	 */
+	public int getWorkers() {
+		return workers;
+	}
+
+
+	/**
+	 * Getting elapsed time of taking snapshots of classifier.
+	 * @return elapsed time of taking snapshots of classifier in nanoseconds.
+	 */
+	public long getSnapshotTime() {
+		return snapshotTime;
+	}
+
+
+	/**
+	 * Getting elapsed time of converting rasters to inputs.
+	 * @return elapsed time of converting rasters to inputs in nanoseconds.
+	 */
+	public long getConvertTime() {
+		return convertTime;
+	}
+
+
+	/**
+	 * Getting elapsed time of evaluating inputs.
+	 * @return elapsed time of evaluating inputs in nanoseconds.
+	 */
+	public long getEvaluateTime() {
+		return evaluateTime;
+	}
+
+
+	/**
+	 * Getting elapsed time of labeling rasters.
+	 * @return elapsed time of labeling rasters in nanoseconds.
+	 */
+	public long getLabelTime() {
+		return labelTime;
+	}
+
+
+	/**
+	 * Getting total elapsed time of all stages.
+	 * @return total elapsed time of all stages in nanoseconds.
+	 */
+	public long getTotalTime() {
+		return snapshotTime + convertTime + evaluateTime + labelTime;
+	}
+
+
+	/**
+	 * Getting throughput.
+	 * @return throughput in rasters per second.
+	 */
+	public double getThroughput() {
+		long totalTime = getTotalTime();
+		return totalTime > 0 ? count * 1e9 / (double)totalTime : 0;
+	}
+
+
+	@Override
+	public String toString() {
+		return "rasters=" + count + ", classified=" + classified + ", workers=" + workers +
+			", snapshot=" + snapshotTime/1000000 + "ms, convert=" + convertTime/1000000 + "ms, evaluate=" + evaluateTime/1000000 +
+			"ms, label=" + labelTime/1000000 + "ms, throughput=" + Math.round(getThroughput()) + " rasters/s";
+	}
+
+
+}
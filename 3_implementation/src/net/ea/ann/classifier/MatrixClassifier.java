@@ -20,11 +20,14 @@ import net.ea.ann.conv.filter.Filter2D;
 import net.ea.ann.core.Id;
 import net.ea.ann.core.Util;
 import net.ea.ann.core.function.Function;
+import net.ea.ann.core.generator.ClassPrototypes;
+import net.ea.ann.core.generator.ClassRanking;
 import net.ea.ann.core.generator.GeneratorWeighted;
 import net.ea.ann.core.value.Matrix;
 import net.ea.ann.core.value.NeuronValue;
 import net.ea.ann.mane.MatrixLayerAbstract;
 import net.ea.ann.mane.MatrixNetworkImpl;
+import net.ea.ann.mane.MatrixStream;
 import net.ea.ann.mane.TaskTrainerLossEntropy;
 import net.ea.ann.raster.Raster;
 import net.ea.ann.raster.RasterProperty;
@@ -73,6 +76,31 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 	public static final int COMB_NUMBER_DEFAULT = GeneratorWeighted.COMB_NUMBER_DEFAULT;
 	
 	
+	/**
+	 * Field of the number of rasters converted ahead in streaming learning. If it is positive, rasters are converted lazily into matrices
+	 * by background threads in every epoch instead of being converted all before learning.
+	 */
+	public static final String STREAM_LOOKAHEAD_FIELD = "maclass_stream_lookahead";
+	
+	
+	/**
+	 * Default value for the field of the number of rasters converted ahead in streaming learning, which disables streaming learning.
+	 */
+	public static final int STREAM_LOOKAHEAD_DEFAULT = 0;
+	
+	
+	/**
+	 * Field of shuffling flag in streaming learning, which shuffles rasters by a new permutation of indices in every epoch.
+	 */
+	public static final String STREAM_SHUFFLE_FIELD = "maclass_stream_shuffle";
+	
+	
+	/**
+	 * Default value for the field of shuffling flag in streaming learning.
+	 */
+	public static final boolean STREAM_SHUFFLE_DEFAULT = false;
+	
+	
 	/**
 	 * List of outputs-classes maps. For an outputs-classes map whose each element is a subtask which is a combination given classes.
 	 * Please see <a href="https://cusaas.com/blog/neural-classification">https://cusaas.com/blog/neural-classification</a> or /newtech-research/data-mining-analyzing/classification/neural-network/DataClassificationWithNeuralNetworks-Cusaas-2023.01.12.pdf.
@@ -93,6 +121,24 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 	protected List<Map<Integer, Label>> classMaps = Util.newList(0);
 
 	
+	/**
+	 * Packed class prototypes of groups, which are built from classes-outputs maps when output is available.
+	 */
+	private transient ClassPrototypes[] prototypes = null;
+
+	
+	/**
+	 * Statistics of the latest batch classification.
+	 */
+	protected transient ClassifyStats classifyStats = null;
+
+	
+	/**
+	 * Cache of snapshots of this classifier for batch classification, which is cleared whenever this classifier is reset, initialized, or learned.
+	 */
+	private transient ClassifyBatch.Snapshots<MatrixClassifier> snapshots = null;
+
+	
 	/**
 	 * Constructor with neuron channel, activation function, convolutional activation function, and identifier reference.
 	 * @param neuronChannel neuron channel.
@@ -104,6 +150,8 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 		super(neuronChannel, activateRef, convActivateRef, idRef);
 		config.put(BYCOLUMN_FIELD, BYCOLUMN_DEFAULT);
 		config.put(COMB_NUMBER_FIELD, COMB_NUMBER_DEFAULT);
+		config.put(STREAM_LOOKAHEAD_FIELD, STREAM_LOOKAHEAD_DEFAULT);
+		config.put(STREAM_SHUFFLE_FIELD, STREAM_SHUFFLE_DEFAULT);
 	}
 
 	
@@ -143,6 +191,8 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 		outputClassMaps.clear();
 		classOutputMaps.clear();
 		classMaps.clear();
+		prototypes = null;
+		clearSnapshots();
 	}
 
 
@@ -198,6 +248,8 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 		}
 		
 		this.classMaps.clear();
+		this.prototypes = null;
+		clearSnapshots();
 		return this.classOutputMaps.size() > 0;
 	}
 	
@@ -249,6 +301,17 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 	}
 
 	
+	@Override
+	public Matrix[] learn(Iterable<Matrix[]> inouts) throws RemoteException {
+		try {
+			return super.learn(inouts);
+		}
+		finally {
+			clearSnapshots();
+		}
+	}
+
+
 	@Override
 	public NeuronValue[] learnRasterOne(Iterable<Raster> sample) throws RemoteException {
 		return learnRaster(sample);
@@ -257,8 +320,14 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 	
 	@Override
 	public NeuronValue[] learnRaster(Iterable<Raster> sample) throws RemoteException {
-		List<Matrix[]> newsample = prelearn(sample);
+		int lookahead = paramGetStreamLookahead();
+		Iterable<Matrix[]> newsample = null;
+		if (lookahead > 0)
+			newsample = new MatrixStream<Raster>(prelabel(sample), (raster) -> toInout(raster), lookahead, paramIsStreamShuffle());
+		else
+			newsample = prelearn(sample);
 		Matrix[] errors = learn(newsample);
+		if (errors == null) return null;
 		NeuronValue[] errorArray = null;
 		for (Matrix error : errors) {
 			NeuronValue[] values = Matrix.extractValues(error);
@@ -445,7 +514,26 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 	 * @return classes of output.
 	 */
 	public int extractClass(int groupIndex) {
-		return extractClass()[groupIndex];
+		ClassPrototypes[] prototypes = getPrototypes();
+		Matrix output = getOutput();
+		return prototypes != null && output != null ? prototypes[groupIndex].nearest(weightsOfOutput(output, groupIndex)) : -1;
+	}
+	
+	
+	/**
+	 * Ranking classes of output of all groups, which reuses output of the latest evaluation instead of evaluating again.
+	 * @param topK maximum number of ranked classes of every group. If it is not positive, all classes are ranked.
+	 * @param exitMargin exit margin. If the margin between the second best class and the best class of a group reaches it, only the best class of such group is returned.
+	 * @return rankings of classes of groups, which is null if output is not evaluated.
+	 */
+	public ClassRanking[] rankClass(int topK, double exitMargin) {
+		ClassPrototypes[] prototypes = getPrototypes();
+		Matrix output = getOutput();
+		if (prototypes == null || output == null) return null;
+		int groups = getNumberOfGroups();
+		ClassRanking[] rankings = new ClassRanking[groups];
+		for (int group = 0; group < groups; group++) rankings[group] = prototypes[group].rank(weightsOfOutput(output, group), topK, exitMargin);
+		return rankings;
 	}
 	
 	
@@ -458,34 +546,42 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 	private int[] extractClass(Matrix output) {
 		int groups = getNumberOfGroups();
 		int[] foundClasses = new int[groups]; 
+		ClassPrototypes[] prototypes = getPrototypes();
 		for (int group = 0; group < groups; group++) {
 			double[] weights = weightsOfOutput(output, group);
-			int nClass = getNumberOfClasses(group);
-			int foundClass = -1;
-			double minDistance = Double.MAX_VALUE;
-			for (int classIndex = 0; classIndex < nClass; classIndex++) {
-				NeuronValue[] output2 = createOutputByClass(group, classIndex);
-				double[] weights2 = weightsOfOutput(output2);
-				double distance = 0;
-				for (int i = 0; i < weights.length; i++) {
-					double d = weights[i] - weights2[i];
-					distance += d*d;
-				}
-				distance = Math.sqrt(distance);
-				
-				if (distance < minDistance) {
-					minDistance = distance;
-					foundClass = classIndex;
-				}
-			}
-			
-			foundClasses[group] = foundClass;
+			foundClasses[group] = prototypes != null ? prototypes[group].nearest(weights) : -1;
 		}
 		
 		return foundClasses;
 	}
 
 	
+	/**
+	 * Getting packed class prototypes of groups, which are built once after class information is configured and output is created.
+	 * Groups sharing the same classes-outputs map share the same prototypes.
+	 * @return packed class prototypes of groups.
+	 */
+	private ClassPrototypes[] getPrototypes() {
+		ClassPrototypes[] prototypes = this.prototypes;
+		int groups = getNumberOfGroups();
+		if (prototypes != null && prototypes.length == groups) return prototypes;
+		Matrix output = getOutput();
+		if (output == null) return null;
+		
+		NeuronValue zero = output.get(0, 0).zero();
+		prototypes = new ClassPrototypes[groups];
+		for (int group = 0; group < groups; group++) {
+			Map<Integer, int[]> classOutputMap = classOutputMaps.get(group);
+			for (int k = 0; k < group && prototypes[group] == null; k++) {
+				if (classOutputMaps.get(k) == classOutputMap) prototypes[group] = prototypes[k];
+			}
+			if (prototypes[group] == null) prototypes[group] = ClassPrototypes.create(classOutputMap, getNumberOfOutputs(group), zero);
+		}
+		this.prototypes = prototypes;
+		return prototypes;
+	}
+
+	
 	/**
 	 * Getting weights of specified output.
 	 * @param output specified output.
@@ -544,6 +640,22 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 	 * @return new sample.
 	 */
 	List<Matrix[]> prelearn(Iterable<Raster> sample) {
+		List<Raster> train = prelabel(sample);
+		List<Matrix[]> newsample = Util.newList(train.size());
+		for (Raster raster : train) {
+			Matrix[] inout = toInout(raster);
+			if (inout != null) newsample.add(inout);
+		}
+		return newsample;
+	}
+	
+	
+	/**
+	 * Setting up class maps from labels of sample without converting rasters.
+	 * @param sample sample.
+	 * @return labeled rasters for learning.
+	 */
+	private List<Raster> prelabel(Iterable<Raster> sample) {
 		this.classMaps.clear();
 
 		//Getting minimum count of labels.
@@ -620,25 +732,28 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 		}
 		if (this.classMaps.size() == 0) return Util.newList(0);
 		
-		//Initializing new sample.
-		List<Matrix[]> newsample = Util.newList(0);
-		MatrixLayerAbstract inputLayer = getInputLayer();
-		for (Raster raster : train) {
-			int[] classIndices = new int[getNumberOfGroups()];
-			Arrays.fill(classIndices, 0);
-			RasterProperty rp = raster.getProperty();
-			for (int i = 0; i < rp.getLabelCount(); i++) {
-				int labelId = rp.getLabelId(i);
-				int classIndex = classOf(i, labelId);
-				if (classIndex >= 0) classIndices[i] = classIndex;
-			}
-
-			Matrix input = inputLayer.toMatrix(raster);
-			Matrix output = createOutputByClass(classIndices);
-			if (input == null || output == null) continue;
-			newsample.add(new Matrix[] {input, output});
+		return train;
+	}
+	
+	
+	/**
+	 * Converting labeled raster into pair of input matrix and output matrix. This method is reentrant after class maps are set up.
+	 * @param raster labeled raster.
+	 * @return pair of input matrix and output matrix, which is null if conversion fails.
+	 */
+	private Matrix[] toInout(Raster raster) {
+		int[] classIndices = new int[getNumberOfGroups()];
+		Arrays.fill(classIndices, 0);
+		RasterProperty rp = raster.getProperty();
+		for (int i = 0; i < rp.getLabelCount(); i++) {
+			int labelId = rp.getLabelId(i);
+			int classIndex = classOf(i, labelId);
+			if (classIndex >= 0) classIndices[i] = classIndex;
 		}
-		return newsample;
+
+		Matrix input = getInputLayer().toMatrix(raster);
+		Matrix output = createOutputByClass(classIndices);
+		return input != null && output != null ? new Matrix[] {input, output} : null;
 	}
 	
 	
@@ -651,23 +766,113 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 				evaluate(raster);
 			} catch (Throwable e) {Util.trace(e);}
 			
-			int groupCount = getNumberOfGroups();
-			if (groupCount <= 0) continue;
-			Label[] labels = new Label[groupCount];
-			int[] classIndices = extractClass();
-			for (int group = 0; group < groupCount; group++) {
-				Label label = labelOf(group, classIndices[group]);
-				labels[group] = label != null ? label : new Label();
+			Raster result = toClassified(raster, extractClass());
+			if (result != null) results.add(result);
+		}
+		return results;
+	}
+
+	
+	@Override
+	public List<Raster> classify(Iterable<Raster> sample, int parallel) throws RemoteException {
+		MatrixLayerAbstract inputLayer = getInputLayer();
+		ClassifyStats stats = new ClassifyStats();
+		List<Raster> results = ClassifyBatch.classify(this, getSnapshots(), sample, parallel,
+			(raster) -> inputLayer.toMatrix(raster),
+			(classifier, input) -> classifier.classifyInput(input),
+			(raster, classIndices) -> toClassified(raster, classIndices),
+			stats);
+		classifyStats = stats;
+		return results;
+	}
+
+	
+	@Override
+	public ClassifyStats getClassifyStats() throws RemoteException {
+		return classifyStats;
+	}
+
+
+	/**
+	 * Getting cache of snapshots of this classifier for batch classification.
+	 * @return cache of snapshots of this classifier.
+	 */
+	private synchronized ClassifyBatch.Snapshots<MatrixClassifier> getSnapshots() {
+		if (snapshots == null) snapshots = new ClassifyBatch.Snapshots<MatrixClassifier>();
+		return snapshots;
+	}
+
+
+	/**
+	 * Clearing cache of snapshots of this classifier for batch classification.
+	 */
+	private void clearSnapshots() {
+		ClassifyBatch.Snapshots<MatrixClassifier> snapshots = this.snapshots;
+		if (snapshots != null) snapshots.clear();
+	}
+
+	
+	@Override
+	public List<Classification> rank(Iterable<Raster> sample, int topK, double exitMargin) throws RemoteException {
+		List<Classification> results = Util.newList(0);
+		for (Raster raster : sample) {
+			if (raster == null) continue;
+			try {
+				evaluate(raster);
+			} catch (Throwable e) {Util.trace(e); continue;}
+			
+			ClassRanking[] rankings = rankClass(topK, exitMargin);
+			if (rankings == null) continue;
+			int[] classIndices = new int[rankings.length];
+			Label[][] labels = new Label[rankings.length][];
+			for (int group = 0; group < rankings.length; group++) {
+				ClassRanking ranking = rankings[group];
+				classIndices[group] = ranking != null ? ranking.getBest() : -1;
+				labels[group] = new Label[ranking != null ? ranking.size() : 0];
+				for (int rank = 0; rank < labels[group].length; rank++) labels[group][rank] = labelOf(group, ranking.getRankedClass(rank));
 			}
 			
-			RasterProperty rp = raster.getProperty().shallowDuplicate();
-			rp.setLabels(labels);
-			RasterWrapperProperty rw = new RasterWrapperProperty(raster);
-			rw.setProperty(rp);
-			results.add(rw);
+			Raster result = toClassified(raster, classIndices);
+			if (result != null) results.add(new Classification(result, rankings, labels));
 		}
 		return results;
 	}
+	
+	
+	/**
+	 * Evaluating input matrix and extracting classes of output.
+	 * @param input input matrix.
+	 * @return classes of output, which is null if any error raises.
+	 */
+	private int[] classifyInput(Matrix input) {
+		try {
+			evaluate(input);
+		} catch (Throwable e) {Util.trace(e); return null;}
+		return extractClass();
+	}
+	
+	
+	/**
+	 * Wrapping raster with labels of classes.
+	 * @param raster raster.
+	 * @param classIndices classes of groups.
+	 * @return raster wrapped with labels of classes, which is null if there is no group.
+	 */
+	private Raster toClassified(Raster raster, int[] classIndices) {
+		int groupCount = getNumberOfGroups();
+		if (groupCount <= 0 || classIndices == null) return null;
+		Label[] labels = new Label[groupCount];
+		for (int group = 0; group < groupCount; group++) {
+			Label label = labelOf(group, classIndices[group]);
+			labels[group] = label != null ? label : new Label();
+		}
+		
+		RasterProperty rp = raster.getProperty().shallowDuplicate();
+		rp.setLabels(labels);
+		RasterWrapperProperty rw = new RasterWrapperProperty(raster);
+		rw.setProperty(rp);
+		return rw;
+	}
 
 	
 	/**
@@ -693,6 +898,30 @@ public class MatrixClassifier extends MatrixNetworkImpl implements Classifier {
 	}
 	
 	
+	/**
+	 * Getting the number of rasters converted ahead in streaming learning.
+	 * @return the number of rasters converted ahead in streaming learning, which disables streaming learning if it is not positive.
+	 */
+	int paramGetStreamLookahead() {
+		if (config.containsKey(STREAM_LOOKAHEAD_FIELD))
+			return config.getAsInt(STREAM_LOOKAHEAD_FIELD);
+		else
+			return STREAM_LOOKAHEAD_DEFAULT;
+	}
+	
+	
+	/**
+	 * Checking shuffling flag in streaming learning.
+	 * @return shuffling flag in streaming learning.
+	 */
+	boolean paramIsStreamShuffle() {
+		if (config.containsKey(STREAM_SHUFFLE_FIELD))
+			return config.getAsBoolean(STREAM_SHUFFLE_FIELD);
+		else
+			return STREAM_SHUFFLE_DEFAULT;
+	}
+	
+	
 	/**
 	 * Getting the number elements of a combination.
 	 * @return the number elements of a combination.
@@ -16,6 +16,7 @@ import java.util.Set;
 import net.ea.ann.conv.Content;
 import net.ea.ann.conv.filter.Filter;
 import net.ea.ann.conv.filter.FilterAssoc;
+import net.ea.ann.conv.stack.StackNetworkAssoc;
 import net.ea.ann.conv.stack.StackNetworkImpl;
 import net.ea.ann.conv.stack.StackNetworkInitializer;
 import net.ea.ann.core.Id;
@@ -26,6 +27,7 @@ import net.ea.ann.core.NetworkStandardImpl;
 import net.ea.ann.core.Record;
 import net.ea.ann.core.Util;
 import net.ea.ann.core.function.Function;
+import net.ea.ann.core.generator.ClassRanking;
 import net.ea.ann.core.generator.GeneratorStandard;
 import net.ea.ann.core.generator.GeneratorWeighted;
 import net.ea.ann.core.generator.Trainer;
@@ -156,6 +158,18 @@ public class StackClassifier extends StackNetworkImpl implements Classifier {
 	 */
 	protected Map<Integer, Label> classMap = Util.newMap(0);
 
+
+	/**
+	 * Statistics of the latest batch classification.
+	 */
+	protected transient ClassifyStats classifyStats = null;
+
+	
+	/**
+	 * Cache of snapshots of this classifier for batch classification, which is cleared whenever this classifier is reset, initialized, or learned.
+	 */
+	private transient ClassifyBatch.Snapshots<StackClassifier> snapshots = null;
+
 	
 	/**
 	 * Constructor with neuron channel, activation functions, and ID reference.
@@ -201,6 +215,7 @@ public class StackClassifier extends StackNetworkImpl implements Classifier {
 	 */
 	private void clearClassifierInfo() {
 		classMap.clear();
+		clearSnapshots();
 	}
 	
 	
@@ -245,6 +260,7 @@ public class StackClassifier extends StackNetworkImpl implements Classifier {
 	@Override
 	protected boolean initializeFullNetwork(int[] nFullHiddenOutputNeuron, boolean initReverse) {
 		if (nFullHiddenOutputNeuron == null || nFullHiddenOutputNeuron.length < 1) return false;
+		clearSnapshots();
 		
 		Content content = unifyOutputContent();
 		if (content == null) return false;
@@ -292,25 +308,35 @@ public class StackClassifier extends StackNetworkImpl implements Classifier {
 
 	@Override
 	public NeuronValue[] learnOne(Iterable<Record> sample, double learningRate, double terminatedThreshold, int maxIteration) {
-		List<Raster> rasters = RasterAssoc.toInputRasters(sample);
-		if (rasters.size() == 0) return super.learnOne(sample, learningRate, terminatedThreshold, maxIteration);
-		List<Record> newSample = prelearn(rasters);
-		if (newSample.size() == 0)
-			return super.learnOne(sample, learningRate, terminatedThreshold, maxIteration);
-		else
-			return super.learnOne(newSample, learningRate, terminatedThreshold, maxIteration);
+		try {
+			List<Raster> rasters = RasterAssoc.toInputRasters(sample);
+			if (rasters.size() == 0) return super.learnOne(sample, learningRate, terminatedThreshold, maxIteration);
+			List<Record> newSample = prelearn(rasters);
+			if (newSample.size() == 0)
+				return super.learnOne(sample, learningRate, terminatedThreshold, maxIteration);
+			else
+				return super.learnOne(newSample, learningRate, terminatedThreshold, maxIteration);
+		}
+		finally {
+			clearSnapshots();
+		}
 	}
 
 
 	@Override
 	public NeuronValue[] learn(Iterable<Record> sample, double learningRate, double terminatedThreshold, int maxIteration) {
-		List<Raster> rasters = RasterAssoc.toInputRasters(sample);
-		if (rasters.size() == 0) return super.learn(sample, learningRate, terminatedThreshold, maxIteration);
-		List<Record> newSample = prelearn(rasters);
-		if (newSample.size() == 0)
-			return super.learn(sample, learningRate, terminatedThreshold, maxIteration);
-		else
-			return super.learn(newSample, learningRate, terminatedThreshold, maxIteration);
+		try {
+			List<Raster> rasters = RasterAssoc.toInputRasters(sample);
+			if (rasters.size() == 0) return super.learn(sample, learningRate, terminatedThreshold, maxIteration);
+			List<Record> newSample = prelearn(rasters);
+			if (newSample.size() == 0)
+				return super.learn(sample, learningRate, terminatedThreshold, maxIteration);
+			else
+				return super.learn(newSample, learningRate, terminatedThreshold, maxIteration);
+		}
+		finally {
+			clearSnapshots();
+		}
 	}
 
 
@@ -429,21 +455,103 @@ public class StackClassifier extends StackNetworkImpl implements Classifier {
 				evaluateRaster(raster);
 			} catch (Throwable e) {Util.trace(e);}
 			
-			int maxClass = getFullNetwork().extractClass();
-			if (maxClass < 0) continue;
-			Label label = labelOf(maxClass);
-			if (label == null) continue;
+			Raster result = toClassified(raster, getFullNetwork().extractClass());
+			if (result != null) results.add(result);
+		}
+		return results;
+	}
+
+
+	@Override
+	public List<Raster> classify(Iterable<Raster> sample, int parallel) throws RemoteException {
+		StackNetworkAssoc assoc = new StackNetworkAssoc(this);
+		ClassifyStats stats = new ClassifyStats();
+		List<Raster> results = ClassifyBatch.classify(this, getSnapshots(), sample, parallel,
+			(raster) -> assoc.getInputData(raster),
+			(classifier, input) -> classifier.classifyInput(input),
+			(raster, classIndices) -> toClassified(raster, classIndices[0]),
+			stats);
+		classifyStats = stats;
+		return results;
+	}
+
+
+	@Override
+	public ClassifyStats getClassifyStats() throws RemoteException {
+		return classifyStats;
+	}
+
+
+	/**
+	 * Getting cache of snapshots of this classifier for batch classification.
+	 * @return cache of snapshots of this classifier.
+	 */
+	private synchronized ClassifyBatch.Snapshots<StackClassifier> getSnapshots() {
+		if (snapshots == null) snapshots = new ClassifyBatch.Snapshots<StackClassifier>();
+		return snapshots;
+	}
+
+
+	/**
+	 * Clearing cache of snapshots of this classifier for batch classification.
+	 */
+	private void clearSnapshots() {
+		ClassifyBatch.Snapshots<StackClassifier> snapshots = this.snapshots;
+		if (snapshots != null) snapshots.clear();
+	}
+
+
+	@Override
+	public List<Classification> rank(Iterable<Raster> sample, int topK, double exitMargin) throws RemoteException {
+		List<Classification> results = Util.newList(0);
+		for (Raster raster : sample) {
+			if (raster == null) continue;
+			try {
+				evaluateRaster(raster);
+			} catch (Throwable e) {Util.trace(e); continue;}
+			
+			ClassRanking ranking = getFullNetwork().rankClass(topK, exitMargin);
+			if (ranking == null) continue;
+			Label[] labels = new Label[ranking.size()];
+			for (int rank = 0; rank < labels.length; rank++) labels[rank] = labelOf(ranking.getRankedClass(rank));
 			
-			RasterProperty rp = raster.getProperty().shallowDuplicate();
-			rp.setLabel(new Label(label));
-			RasterWrapperProperty rw = new RasterWrapperProperty(raster);
-			rw.setProperty(rp);
-			results.add(rw);
+			Raster result = toClassified(raster, ranking.getBest());
+			if (result != null) results.add(new Classification(result, new ClassRanking[] {ranking}, new Label[][] {labels}));
 		}
 		return results;
 	}
 
 
+	/**
+	 * Evaluating input data and extracting class of output.
+	 * @param input input data.
+	 * @return class of output as array of one element.
+	 */
+	private int[] classifyInput(NeuronValue[] input) {
+		evaluate(input);
+		return new int[] {getFullNetwork().extractClass()};
+	}
+
+
+	/**
+	 * Wrapping raster with label of class.
+	 * @param raster raster.
+	 * @param maxClass class.
+	 * @return raster wrapped with label of class, which is null if the class has no label.
+	 */
+	private Raster toClassified(Raster raster, int maxClass) {
+		if (maxClass < 0) return null;
+		Label label = labelOf(maxClass);
+		if (label == null) return null;
+		
+		RasterProperty rp = raster.getProperty().shallowDuplicate();
+		rp.setLabel(new Label(label));
+		RasterWrapperProperty rw = new RasterWrapperProperty(raster);
+		rw.setProperty(rp);
+		return rw;
+	}
+
+
 	/**
 	 * Getting filter arrays.
 	 * @param size size of content.
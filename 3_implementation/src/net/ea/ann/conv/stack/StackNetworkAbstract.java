@@ -154,6 +154,13 @@ public abstract class StackNetworkAbstract extends NetworkAbstract implements St
 	protected Backpropagator bp = null;
 
 	
+	/**
+	 * Cached signature of this network, which is computed by {@link StackNetworkAssoc#getSignature()} and invalidated when this network is reset, initialized, or learned.
+	 */
+	protected transient byte[] signature = null;
+
+	
+	
 	/**
 	 * Constructor with neuron channel, activation functions, and ID reference.
 	 * @param neuronChannel neuron channel.
@@ -247,6 +254,7 @@ public abstract class StackNetworkAbstract extends NetworkAbstract implements St
 		reversedFullNetwork = null;
 		
 		unifiedOutputContent = null;
+		signature = null;
 	}
 
 	
@@ -263,6 +271,7 @@ public abstract class StackNetworkAbstract extends NetworkAbstract implements St
 			int[] nFullHiddenOutputNeuron,
 			boolean initReverse) {
 		stacks.clear();
+		signature = null;
 		Size newSize = new Size(size.width, size.height, size.depth, size.time);
 		if (filters == null || filters.length == 0) { //Allowing to have only one stack.
 			stacks.add(newStack(newSize));
@@ -302,6 +311,7 @@ public abstract class StackNetworkAbstract extends NetworkAbstract implements St
 		if (filterArrays == null || filterArrays.length == 0) return initialize(size, (Filter[])null, nFullHiddenOutputNeuron, initReverse);
 		
 		stacks.clear();
+		signature = null;
 		Size newSize = new Size(size.width, size.height, size.depth, size.time);
 		Stack stack = null;
 		stack = addStacks(filterArrays, newSize, stack);
@@ -964,6 +974,7 @@ public abstract class StackNetworkAbstract extends NetworkAbstract implements St
 		synchronized (this) {
 			doStarted = false;
 			doPaused = false;
+			signature = null;
 			
 			fireDoEvent(new NetworkDoEventImpl(this, Type.done, "stacknn_backpropogate",
 				"At final iteration " + iteration + "\nThe learned result is:\n" + this, iteration, maxIteration));
@@ -1072,6 +1083,7 @@ public abstract class StackNetworkAbstract extends NetworkAbstract implements St
 		synchronized (this) {
 			doStarted = false;
 			doPaused = false;
+			signature = null;
 			
 			fireDoEvent(new NetworkDoEventImpl(this, Type.done, "stacknn_backpropogate",
 				"At final iteration " + iteration + "\nThe learned result is:\n" + this, iteration, maxIteration));
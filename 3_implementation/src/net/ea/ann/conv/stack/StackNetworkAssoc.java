@@ -8,7 +8,10 @@
 package net.ea.ann.conv.stack;
 
 import java.awt.Dimension;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.security.MessageDigest;
 
 import net.ea.ann.conv.Content;
 import net.ea.ann.conv.filter.Filter;
@@ -97,6 +100,70 @@ public class StackNetworkAssoc implements Serializable, Cloneable {
 	}
 	
 	
+	/**
+	 * Getting input data of specified raster, which is the data evaluated by network when network evaluates the raster.
+	 * @param raster specified raster.
+	 * @return input data of specified raster.
+	 */
+	public NeuronValue[] getInputData(Raster raster) {
+		if (network == null || raster == null || network.stacks.size() == 0 || network.stacks.get(0).size() == 0) return null;
+		Content content = network.stacks.get(0).get(0).getContent();
+		return content != null ? raster.toNeuronValues(content, network.isNorm()) : null;
+	}
+	
+	
+	/**
+	 * Getting signature of network configuration, which is digest of sizes, filters, activation functions, biases, and weights of all element layers.
+	 * Two networks having the same signature produce the same features from the same input data if they are not learned.
+	 * Signature is computed once and cached in the network until the network is reset, initialized, or learned.
+	 * @return signature of network configuration, which is null if any error raises.
+	 */
+	public byte[] getSignature() {
+		if (network == null) return null;
+		byte[] signature = network.signature;
+		if (signature != null) return signature;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(network.getClass().getName());
+			out.writeInt(network.neuronChannel);
+			out.writeBoolean(network.isNorm());
+			for (Stack stack : network.stacks) {
+				out.writeInt(stack.size());
+				for (int i = 0; i < stack.size(); i++) {
+					ElementLayer layer = stack.get(i);
+					Content content = layer.getContent();
+					if (content == null) {
+						out.writeInt(-1);
+						continue;
+					}
+					out.writeInt(content.getWidth());
+					out.writeInt(content.getHeight());
+					out.writeInt(content.getDepth());
+					out.writeInt(content.getTime());
+					out.writeInt(content.getNeuronChannel());
+					out.writeObject(content.getFilter());
+					out.writeObject(content.getActivateRef());
+					out.writeObject(layer.getBias());
+					for (WeightedElementLayer next : layer.getNextLayers()) {
+						Stack nextStack = next.layer.getStack();
+						out.writeInt(network.stacks.indexOf(nextStack));
+						out.writeInt(nextStack != null ? nextStack.indexOf(next.layer) : -1);
+						out.writeObject(next.weight);
+						out.writeObject(next.filter);
+					}
+				}
+			}
+			out.flush();
+			signature = MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray());
+			network.signature = signature;
+			return signature;
+		} catch (Throwable e) {Util.trace(e);}
+		
+		return null;
+	}
+	
+	
 	/**
 	 * Creating stack network for extracting 2D features with neuron channel, activation function, content activation, and ID reference.
 	 * @param neuronChannel neuron channel.
@@ -0,0 +1,682 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.core;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.ea.ann.core.value.Matrix;
+import net.ea.ann.core.value.NeuronValue;
+import net.ea.ann.core.value.NeuronValue1;
+import net.ea.ann.core.value.Weight;
+import net.ea.ann.core.value.WeightValue;
+import net.ea.ann.core.value.WeightValue1;
+
+/**
+ * This class represents versioned binary checkpoint of network and generative model.
+ * Checkpoint consists of header (magic number, version, and class name), topology descriptor (numbers of neurons of layers, shapes of parameters, and number of parameters), and contiguous little-endian block of parameters.
+ * Parameters are real numbers held by weight, bias, and kernel fields of the model such as weights of connections, biases of neurons, filter kernels, and weight matrices, which are collected by walking the model in deterministic order.
+ * Other states such as activations, caches, and transient fields are neither saved nor described, so that a model can be loaded after it was learned or evaluated.
+ * Checkpoint is loaded by memory mapping into a model having the same class and topology, which is often created and initialized as usual, so that Java serialization is avoided.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class Checkpoint {
+
+
+	/**
+	 * Magic number of checkpoint file.
+	 */
+	public final static int MAGIC = 0x4B43474D;
+
+
+	/**
+	 * Current version of checkpoint format.
+	 */
+	public final static int VERSION = 2;
+
+
+	/**
+	 * Counting mode which computes topology descriptor and number of parameters.
+	 */
+	private final static int COUNT = 0;
+
+
+	/**
+	 * Saving mode which collects parameters.
+	 */
+	private final static int SAVE = 1;
+
+
+	/**
+	 * Loading mode which assigns parameters.
+	 */
+	private final static int LOAD = 2;
+
+
+	/**
+	 * Number of parameters written to output stream at a time.
+	 */
+	private final static int BLOCK_SIZE = 8192;
+
+
+	/**
+	 * Names of fields which hold parameters, following naming of weights, biases, and kernels in this library.
+	 */
+	private final static Set<String> PARAMETER_FIELDS = Set.of("bias", "filterBias", "kernel", "weight", "weight1", "weight2", "WQ", "WK", "WV", "WO");
+
+
+	/**
+	 * Cache of sorted instance fields of classes.
+	 */
+	private final static Map<Class<?>, Field[]> fieldsCache = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Walking mode.
+	 */
+	private int mode = COUNT;
+
+
+	/**
+	 * Topology descriptor which is run-length encoded as pairs of entry and repetition. Entry of layer is negative number of its neurons minus one,
+	 * and entry of parameter slot is the number of real numbers which the slot holds.
+	 */
+	private long[] descriptor = new long[16];
+
+
+	/**
+	 * Length of topology descriptor.
+	 */
+	private int descriptorLength = 0;
+
+
+	/**
+	 * Number of parameters.
+	 */
+	private long count = 0;
+
+
+	/**
+	 * Collected parameters in saving mode.
+	 */
+	private double[] values = new double[1024];
+
+
+	/**
+	 * Parameter buffer in loading mode.
+	 */
+	private DoubleBuffer input = null;
+
+
+	/**
+	 * Visiting indices of structural objects such as networks, layers, and neurons.
+	 */
+	private IdentityHashMap<Object, Integer> visited = new IdentityHashMap<>();
+
+
+	/**
+	 * Visited parameter objects, which are walked once even if they are shared.
+	 */
+	private IdentityHashMap<Object, Object> parameters = new IdentityHashMap<>();
+
+
+	/**
+	 * Queue of objects whose fields are not walked yet.
+	 */
+	private Deque<Object> queue = new ArrayDeque<>();
+
+
+	/**
+	 * Unordered containers such as sets and maps which are walked after ordered objects so that their elements can be sorted by visiting indices.
+	 */
+	private List<Object> unordered = Util.newList(0);
+
+
+	/**
+	 * Constructor with walking mode.
+	 * @param mode walking mode.
+	 */
+	private Checkpoint(int mode) {
+		this.mode = mode;
+	}
+
+
+	/**
+	 * Saving checkpoint of the specified model to output stream.
+	 * @param model specified model.
+	 * @param os output stream.
+	 * @return true if saving is successful.
+	 */
+	public static boolean save(Object model, OutputStream os) {
+		if (model == null || os == null) return false;
+		try {
+			Checkpoint checkpoint = new Checkpoint(SAVE);
+			checkpoint.walk(model);
+
+			os.write(header(model.getClass().getName(), checkpoint.getDescriptor(), checkpoint.count));
+			//Parameters are written block by block so that the model is not buffered again.
+			ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			DoubleBuffer doubles = block.asDoubleBuffer();
+			for (long start = 0; start < checkpoint.count; start += BLOCK_SIZE) {
+				int n = (int)Math.min(BLOCK_SIZE, checkpoint.count - start);
+				doubles.clear();
+				doubles.put(checkpoint.values, (int)start, n);
+				os.write(block.array(), 0, n * Double.BYTES);
+			}
+			os.flush();
+			return true;
+		}
+		catch (Throwable e) {Util.trace(e);}
+
+		return false;
+	}
+
+
+	/**
+	 * Saving checkpoint of the specified model to file.
+	 * @param model specified model.
+	 * @param path file path.
+	 * @return true if saving is successful.
+	 */
+	public static boolean save(Object model, Path path) {
+		if (model == null || path == null) return false;
+		try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(path))) {
+			return save(model, os);
+		}
+		catch (Throwable e) {Util.trace(e);}
+
+		return false;
+	}
+
+
+	/**
+	 * Loading checkpoint from file into the specified model by memory mapping. The model must have the same class and topology as the saved model.
+	 * @param model specified model.
+	 * @param path file path.
+	 * @return true if loading is successful.
+	 */
+	public static boolean load(Object model, Path path) {
+		if (model == null || path == null) return false;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return load(model, buffer);
+		}
+		catch (Throwable e) {Util.trace(e);}
+
+		return false;
+	}
+
+
+	/**
+	 * Loading checkpoint from byte buffer into the specified model. The model must have the same class and topology as the saved model.
+	 * @param model specified model.
+	 * @param buffer byte buffer.
+	 * @return true if loading is successful.
+	 */
+	public static boolean load(Object model, ByteBuffer buffer) {
+		if (model == null || buffer == null) return false;
+		buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) return false;
+		if (buffer.getInt() != VERSION) return false;
+
+		try {
+			byte[] nameBytes = new byte[buffer.getInt()];
+			buffer.get(nameBytes);
+			if (!model.getClass().getName().equals(new String(nameBytes, StandardCharsets.UTF_8))) return false;
+			long[] descriptor = new long[buffer.getInt()];
+			buffer.asLongBuffer().get(descriptor);
+			buffer.position(buffer.position() + descriptor.length * Long.BYTES);
+			long count = buffer.getLong();
+			buffer.position(align(buffer.position()));
+			if (count < 0 || buffer.remaining() < count * (long)Double.BYTES) return false;
+
+			//Topology is verified before any parameter is changed.
+			Checkpoint checker = new Checkpoint(COUNT);
+			checker.walk(model);
+			if (!Arrays.equals(checker.getDescriptor(), descriptor) || checker.count != count) return false;
+
+			Checkpoint loader = new Checkpoint(LOAD);
+			loader.input = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+			loader.walk(model);
+			return true;
+		}
+		catch (Throwable e) {Util.trace(e);}
+
+		return false;
+	}
+
+
+	/**
+	 * Getting parameters of the specified model in the same order as they are saved in checkpoint.
+	 * @param model specified model.
+	 * @param excluded objects which are not walked, for example, parent network of the model.
+	 * @return parameters of the specified model, which is null if any error raises.
+	 */
+	public static double[] getParameters(Object model, Object...excluded) {
+		if (model == null) return null;
+		try {
+			Checkpoint checkpoint = new Checkpoint(SAVE).exclude(model, excluded);
+			checkpoint.walk(model);
+			return Arrays.copyOf(checkpoint.values, (int)checkpoint.count);
+		}
+		catch (Throwable e) {Util.trace(e);}
+
+		return null;
+	}
+
+
+	/**
+	 * Setting parameters of the specified model in the same order as they are saved in checkpoint.
+	 * @param model specified model.
+	 * @param parameters specified parameters whose number must be the number of parameters of the model.
+	 * @param excluded objects which are not walked, for example, parent network of the model.
+	 * @return true if setting is successful.
+	 */
+	public static boolean setParameters(Object model, double[] parameters, Object...excluded) {
+		if (model == null || parameters == null) return false;
+		try {
+			Checkpoint checker = new Checkpoint(COUNT).exclude(model, excluded);
+			checker.walk(model);
+			if (checker.count != parameters.length) return false;
+
+			Checkpoint loader = new Checkpoint(LOAD).exclude(model, excluded);
+			loader.input = DoubleBuffer.wrap(parameters);
+			loader.walk(model);
+			return true;
+		}
+		catch (Throwable e) {Util.trace(e);}
+
+		return false;
+	}
+
+
+	/**
+	 * Excluding the specified objects from walking.
+	 * @param model walked model which is never excluded.
+	 * @param excluded excluded objects.
+	 * @return this checkpoint.
+	 */
+	private Checkpoint exclude(Object model, Object...excluded) {
+		for (Object object : excluded) {
+			if (object != null && object != model) visited.put(object, 0);
+		}
+		return this;
+	}
+
+
+	/**
+	 * Creating header of checkpoint, which is padded so that parameter block is aligned.
+	 * @param className class name of model.
+	 * @param descriptor topology descriptor.
+	 * @param count number of parameters.
+	 * @return header of checkpoint.
+	 */
+	private static byte[] header(String className, long[] descriptor, long count) {
+		byte[] nameBytes = className.getBytes(StandardCharsets.UTF_8);
+		int length = align(4 + 4 + 4 + nameBytes.length + 4 + descriptor.length * Long.BYTES + 8);
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(nameBytes.length).put(nameBytes).putInt(descriptor.length);
+		for (long entry : descriptor) buffer.putLong(entry);
+		buffer.putLong(count);
+		return buffer.array();
+	}
+
+
+	/**
+	 * Getting topology descriptor.
+	 * @return topology descriptor.
+	 */
+	private long[] getDescriptor() {
+		return Arrays.copyOf(descriptor, descriptorLength);
+	}
+
+
+	/**
+	 * Aligning position by size of real number.
+	 * @param position specified position.
+	 * @return aligned position.
+	 */
+	private static int align(int position) {
+		return (position + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+	}
+
+
+	/**
+	 * Walking model. Ordered objects are walked by breadth-first order and unordered containers are walked when no ordered object remains.
+	 * @param model specified model.
+	 * @throws Exception if any error raises.
+	 */
+	private void walk(Object model) throws Exception {
+		slot(model);
+		while (true) {
+			while (!queue.isEmpty()) expand(queue.poll());
+			if (unordered.size() == 0) break;
+
+			List<Object> containers = unordered;
+			unordered = Util.newList(0);
+			for (Object container : containers) expandUnordered(container);
+		}
+	}
+
+
+	/**
+	 * Expanding ordered structural object. Fields holding parameters are walked as parameters and other fields are walked as structure.
+	 * @param object ordered structural object.
+	 * @throws Exception if any error raises.
+	 */
+	private void expand(Object object) throws Exception {
+		if (object instanceof Object[]) {
+			for (Object element : (Object[])object) slot(element);
+		}
+		else if (object instanceof List<?>) {
+			for (Object element : (List<?>)object) slot(element);
+		}
+		else {
+			for (Field field : fieldsOf(object.getClass())) {
+				if (field.getType().isPrimitive()) continue;
+				Object value = field.get(object);
+				if (!PARAMETER_FIELDS.contains(field.getName()))
+					slot(value);
+				else {
+					long start = count;
+					Object replaced = parameter(value);
+					if (replaced != value) field.set(object, replaced);
+					if (count > start) describe(count - start);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Expanding unordered container whose elements are sorted by visiting indices.
+	 * @param container unordered container.
+	 * @throws Exception if any error raises.
+	 */
+	@SuppressWarnings("unchecked")
+	private void expandUnordered(Object container) throws Exception {
+		if (container instanceof Map<?, ?>) {
+			Map<Object, Object> map = (Map<Object, Object>)container;
+			for (Object key : sort(map.keySet())) {
+				slot(key);
+				slot(map.get(key));
+			}
+		}
+		else {
+			for (Object element : sort((Collection<Object>)container)) slot(element);
+		}
+	}
+
+
+	/**
+	 * Sorting elements of unordered container. Elements which are comparable with each other are sorted naturally, otherwise elements are sorted by visiting indices of themselves or of their references.
+	 * @param elements specified elements.
+	 * @return sorted elements.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Object[] sort(Collection<Object> elements) {
+		Object[] array = elements.toArray();
+		if (array.length < 2) return array;
+
+		Class<?> cls = array[0] != null ? array[0].getClass() : null;
+		boolean comparable = cls != null && Comparable.class.isAssignableFrom(cls);
+		for (int i = 1; comparable && i < array.length; i++) comparable = array[i] != null && array[i].getClass() == cls;
+		if (comparable) {
+			Arrays.sort(array, (a, b) -> ((Comparable)a).compareTo(b));
+			return array;
+		}
+
+		IdentityHashMap<Object, long[]> keys = new IdentityHashMap<>();
+		for (Object element : array) keys.put(element, key(element));
+		Arrays.sort(array, Comparator.comparing((Object element) -> keys.get(element), Arrays::compare));
+		return array;
+	}
+
+
+	/**
+	 * Creating sorting key of element of unordered container.
+	 * @param element specified element.
+	 * @return sorting key of element.
+	 */
+	private long[] key(Object element) {
+		if (element == null) return new long[] {-1};
+		Integer index = visited.get(element);
+		if (index != null) return new long[] {index};
+		if (element.getClass().isArray() || Cloner.isSystem(element.getClass())) return new long[] {Long.MAX_VALUE, element.getClass().getName().hashCode()};
+
+		//Element which is only reachable from unordered container is keyed by what it refers, for example, weighted neuron is keyed by its neuron.
+		Field[] fields = fieldsOf(element.getClass());
+		long[] key = new long[fields.length + 1];
+		key[0] = Long.MAX_VALUE;
+		for (int i = 0; i < fields.length; i++) {
+			try {
+				Object value = fields[i].getType().isPrimitive() ? null : fields[i].get(element);
+				Integer valueIndex = value != null ? visited.get(value) : null;
+				key[i + 1] = valueIndex != null ? valueIndex : -1;
+			} catch (Throwable e) {key[i + 1] = -1;}
+		}
+		return key;
+	}
+
+
+	/**
+	 * Processing structural slot such as field, array element, list element, or map value. Values such as activations and caches, which are not held by parameter fields, are skipped.
+	 * @param value value of slot.
+	 * @throws Exception if any error raises.
+	 */
+	private void slot(Object value) throws Exception {
+		if (value == null || Cloner.isImmutable(value)) return;
+		Class<?> cls = value.getClass();
+		if (isValue(cls) || visited.containsKey(value)) return;
+		visited.put(value, visited.size() + 1);
+
+		if (cls.isArray())
+			queue.add(value);
+		else if (Cloner.isSystem(cls)) {
+			if (value instanceof List<?>)
+				queue.add(value);
+			else if (value instanceof Set<?> || value instanceof Map<?, ?>)
+				unordered.add(value);
+		}
+		else if (!cls.isSynthetic() && !Cloner.isCustom(cls)) {
+			if (value instanceof LayerStandard) describe(-((LayerStandard)value).size() - 1);
+			queue.add(value);
+		}
+	}
+
+
+	/**
+	 * Processing parameter such as weight, bias, kernel, or weight matrix together with its real numbers.
+	 * @param value parameter.
+	 * @return replaced parameter, which is the parameter itself unless it is immutable scalar value being loaded.
+	 * @throws Exception if any error raises.
+	 */
+	@SuppressWarnings("unchecked")
+	private Object parameter(Object value) throws Exception {
+		if (value == null) return null;
+		Class<?> cls = value.getClass();
+		if (cls == NeuronValue1.class) {
+			double v = next(((NeuronValue1)value).get());
+			return mode == LOAD ? new NeuronValue1(v) : value;
+		}
+		else if (cls == WeightValue1.class) {
+			double v = next(((WeightValue1)value).get());
+			return mode == LOAD ? new WeightValue1(v) : value;
+		}
+		else if (Cloner.isImmutable(value))
+			return value;
+		else if (!isValue(cls) && !(value instanceof List<?>)) {
+			//Parameter field which refers structure such as filter is walked as structure.
+			slot(value);
+			return value;
+		}
+
+		if (parameters.put(value, value) != null) return value;
+		if (value instanceof double[])
+			block((double[])value);
+		else if (value instanceof float[]) {
+			float[] array = (float[])value;
+			for (int i = 0; i < array.length; i++) array[i] = (float)next(array[i]);
+		}
+		else if (value instanceof Object[]) {
+			Object[] array = (Object[])value;
+			for (int i = 0; i < array.length; i++) array[i] = parameter(array[i]);
+		}
+		else if (value instanceof List<?>) {
+			List<Object> list = (List<Object>)value;
+			for (int i = 0; i < list.size(); i++) {
+				Object element = list.get(i);
+				Object replaced = parameter(element);
+				if (replaced != element) list.set(i, replaced);
+			}
+		}
+		else if (!cls.isArray()) {
+			for (Field field : fieldsOf(cls)) {
+				Class<?> type = field.getType();
+				if (type == double.class) {
+					double v = next(field.getDouble(value));
+					if (mode == LOAD) field.setDouble(value, v);
+				}
+				else if (type == float.class) {
+					double v = next(field.getFloat(value));
+					if (mode == LOAD) field.setFloat(value, (float)v);
+				}
+				else if (!type.isPrimitive()) {
+					Object element = field.get(value);
+					Object replaced = parameter(element);
+					if (replaced != element) field.set(value, replaced);
+				}
+			}
+		}
+		return value;
+	}
+
+
+	/**
+	 * Processing block of real numbers.
+	 * @param block block of real numbers.
+	 */
+	private void block(double[] block) {
+		if (mode == SAVE) {
+			ensure(count + block.length);
+			System.arraycopy(block, 0, values, (int)count, block.length);
+		}
+		else if (mode == LOAD)
+			input.get(block);
+		count += block.length;
+	}
+
+
+	/**
+	 * Processing next parameter.
+	 * @param value current value of parameter.
+	 * @return loaded value in loading mode, otherwise current value.
+	 */
+	private double next(double value) {
+		if (mode == SAVE) {
+			ensure(count + 1);
+			values[(int)count] = value;
+		}
+		else if (mode == LOAD)
+			value = input.get();
+		count++;
+		return value;
+	}
+
+
+	/**
+	 * Ensuring capacity of collected parameters.
+	 * @param capacity specified capacity.
+	 */
+	private void ensure(long capacity) {
+		if (capacity > Integer.MAX_VALUE - 8) throw new IllegalStateException("Too many parameters");
+		if (capacity <= values.length) return;
+		values = Arrays.copyOf(values, (int)Math.max(capacity, Math.min(Integer.MAX_VALUE - 8, 2L * values.length)));
+	}
+
+
+	/**
+	 * Adding entry to topology descriptor, which increases repetition of the last entry if they are the same.
+	 * @param entry entry of layer or parameter slot.
+	 */
+	private void describe(long entry) {
+		if (descriptorLength > 0 && descriptor[descriptorLength - 2] == entry) {
+			descriptor[descriptorLength - 1]++;
+			return;
+		}
+		if (descriptorLength + 2 > descriptor.length) descriptor = Arrays.copyOf(descriptor, 2 * descriptor.length);
+		descriptor[descriptorLength++] = entry;
+		descriptor[descriptorLength++] = 1;
+	}
+
+
+	/**
+	 * Checking whether the specified class represents values such as neuron values, weight values, weights, and matrices, or arrays of such values or of primitives.
+	 * Values are parameters if they are held by parameter fields, otherwise they are states such as activations and caches.
+	 * @param cls specified class.
+	 * @return whether the specified class represents values.
+	 */
+	private static boolean isValue(Class<?> cls) {
+		while (cls.isArray()) cls = cls.getComponentType();
+		return cls.isPrimitive() || NeuronValue.class.isAssignableFrom(cls) || WeightValue.class.isAssignableFrom(cls) ||
+			Weight.class.isAssignableFrom(cls) || Matrix.class.isAssignableFrom(cls);
+	}
+
+
+	/**
+	 * Getting non-static, non-final, and non-transient fields of the specified class and its super classes, which are sorted by names within each class.
+	 * @param cls specified class.
+	 * @return fields of the specified class.
+	 */
+	private static Field[] fieldsOf(Class<?> cls) {
+		Field[] fields = fieldsCache.get(cls);
+		if (fields != null) return fields;
+
+		List<Field> fieldList = Util.newList(0);
+		for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass()) {
+			Field[] declaredFields = c.getDeclaredFields();
+			Arrays.sort(declaredFields, Comparator.comparing(Field::getName));
+			for (Field field : declaredFields) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) continue;
+				if (Modifier.isFinal(modifiers) && field.getType().isPrimitive()) continue;
+				field.setAccessible(true);
+				fieldList.add(field);
+			}
+		}
+		fields = fieldList.toArray(new Field[] {});
+		fieldsCache.put(cls, fields);
+		return fields;
+	}
+
+
+}
@@ -0,0 +1,616 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import net.ea.ann.core.value.NeuronValue1;
+import net.ea.ann.core.value.WeightValue1;
+
+/**
+ * This class clones object graph such as network and generative model by structure.
+ * Object graph is walked directly without serialization stream: topology is rebuilt, primitive arrays are copied in block, and transient fields are left default as serialization does.
+ * Scalar neuron values and scalar weight values are immutable because learning algorithms replace them instead of changing them, and so they are shared between original graph and cloned graph.
+ * Therefore, learning cloned graph allocates only weights which are actually modified (copy-on-write).
+ * Containers keep their comparators and ordering flags, and objects which are neither accessible nor serializable cause error instead of being shared.
+ * Objects which customize serialization are cloned by serialization, in which objects referred by them are replaced by references to the same map of cloned objects,
+ * so that objects shared with the rest of graph are still shared after cloning. Heap footprint of object graph is estimated by walking the graph the same way.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class Cloner {
+
+
+	/**
+	 * Cache of instance fields of classes.
+	 */
+	private final static Map<Class<?>, Field[]> fieldsCache = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Cache of instantiating constructors of classes.
+	 */
+	private final static Map<Class<?>, Constructor<?>> constructorsCache = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Cache of flags indicating whether classes customize serialization.
+	 */
+	private final static Map<Class<?>, Boolean> customsCache = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Cache of estimated shallow sizes of instances of classes in bytes.
+	 */
+	private final static Map<Class<?>, Long> sizesCache = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Map from original objects to cloned objects, which keeps shared references and cycles of graph.
+	 */
+	private IdentityHashMap<Object, Object> clones = new IdentityHashMap<>();
+
+
+	/**
+	 * Pending pairs of original objects and cloned objects whose fields are not copied yet.
+	 */
+	private Deque<Object[]> pending = new ArrayDeque<>();
+
+
+	/**
+	 * Pending pairs of original containers and cloned containers whose elements are not filled yet.
+	 */
+	private List<Object[]> containers = Util.newList(0);
+
+
+	/**
+	 * Objects which are being cloned by serialization.
+	 */
+	private IdentityHashMap<Object, Object> serializing = new IdentityHashMap<>();
+
+
+	/**
+	 * Default constructor.
+	 */
+	private Cloner() {
+
+	}
+
+
+	/**
+	 * Cloning object by structure.
+	 * @param object specified object.
+	 * @return cloned object.
+	 * @throws Exception if any error raises.
+	 */
+	public static Object clone(Object object) throws Exception {
+		return clone(object, new Object[0]);
+	}
+
+
+	/**
+	 * Cloning object by structure, in which the specified shared objects such as model enclosing a network are referred by the cloned object instead of being cloned.
+	 * @param object specified object.
+	 * @param shared shared objects.
+	 * @return cloned object.
+	 * @throws Exception if any error raises.
+	 */
+	public static Object clone(Object object, Object...shared) throws Exception {
+		if (object == null) return null;
+		Cloner cloner = new Cloner();
+		for (Object s : shared) {
+			if (s != null && s != object) cloner.clones.put(s, s);
+		}
+		Object cloned = cloner.copy(object);
+		cloner.run();
+		return cloned;
+	}
+
+
+	/**
+	 * Estimating heap footprint of object graph in bytes, which is the sum of estimated shallow sizes of objects reachable from the specified object.
+	 * The graph is walked like cloning: every object is counted once, transient fields are not walked, and the specified shared objects are not counted.
+	 * Object header, references, primitive fields, and array elements are counted with 64-bit layout and compressed references, aligned to 8 bytes.
+	 * Elements of system containers are walked along with estimated overhead per element, and other system objects are counted by header only.
+	 * @param object specified object.
+	 * @param shared shared objects which are not counted.
+	 * @return estimated heap footprint of object graph in bytes.
+	 */
+	public static long sizeOf(Object object, Object...shared) {
+		if (object == null) return 0;
+		IdentityHashMap<Object, Object> visited = new IdentityHashMap<>();
+		for (Object s : shared) {
+			if (s != null && s != object) visited.put(s, s);
+		}
+		Deque<Object> pending = new ArrayDeque<>();
+		visited.put(object, object);
+		pending.push(object);
+
+		long size = 0;
+		while (!pending.isEmpty()) {
+			Object current = pending.pop();
+			Class<?> cls = current.getClass();
+			List<Object> referred = Util.newList(0);
+			if (cls.isArray()) {
+				Class<?> componentType = cls.getComponentType();
+				int length = Array.getLength(current);
+				size += align(16 + (long)length * bytesOf(componentType));
+				if (!componentType.isPrimitive()) {
+					for (Object element : (Object[])current) referred.add(element);
+				}
+			}
+			else if (isSystem(cls)) {
+				if (current instanceof String)
+					size += 24 + align(16 + ((String)current).length());
+				else if (current instanceof Collection<?> || current instanceof Map<?, ?>) {
+					Collection<?> elements = current instanceof Map<?, ?> ? ((Map<?, ?>)current).entrySet() : (Collection<?>)current;
+					size += 48 + 32L * elements.size();
+					for (Object element : elements) {
+						if (element instanceof Map.Entry<?, ?>) {
+							referred.add(((Map.Entry<?, ?>)element).getKey());
+							referred.add(((Map.Entry<?, ?>)element).getValue());
+						}
+						else
+							referred.add(element);
+					}
+				}
+				else
+					size += 16;
+			}
+			else {
+				size += shallowSizeOf(cls);
+				try {
+					for (Field field : fieldsOf(cls)) {
+						if (!field.getType().isPrimitive()) referred.add(field.get(current));
+					}
+				} catch (Throwable e) {Util.trace(e);}
+			}
+
+			for (Object r : referred) {
+				if (r == null || r instanceof Class<?> || r instanceof Enum<?> || visited.containsKey(r)) continue;
+				visited.put(r, r);
+				pending.push(r);
+			}
+		}
+		return size;
+	}
+
+
+	/**
+	 * Estimating shallow size of instance of the specified non-array class, which includes all instance fields of the class and its super classes.
+	 * @param cls specified class.
+	 * @return estimated shallow size in bytes.
+	 */
+	private static long shallowSizeOf(Class<?> cls) {
+		Long size = sizesCache.get(cls);
+		if (size != null) return size;
+
+		long s = 12;
+		for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers())) s += bytesOf(field.getType());
+			}
+		}
+		size = align(s);
+		sizesCache.put(cls, size);
+		return size;
+	}
+
+
+	/**
+	 * Getting size of field or array element of the specified type in bytes.
+	 * @param type specified type.
+	 * @return size of field or array element in bytes.
+	 */
+	private static int bytesOf(Class<?> type) {
+		if (type == long.class || type == double.class) return 8;
+		else if (type == int.class || type == float.class) return 4;
+		else if (type == short.class || type == char.class) return 2;
+		else if (type == byte.class || type == boolean.class) return 1;
+		else return 4;
+	}
+
+
+	/**
+	 * Aligning size to 8 bytes.
+	 * @param size specified size.
+	 * @return aligned size.
+	 */
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+
+	/**
+	 * Copying fields of pending objects and then filling containers. Fields are copied iteratively instead of recursively so that deep graph such as long chain of neurons does not overflow stack.
+	 * @throws Exception if any error raises.
+	 */
+	private void run() throws Exception {
+		while (!pending.isEmpty()) {
+			Object[] pair = pending.pop();
+			Object original = pair[0], cloned = pair[1];
+			Class<?> cls = original.getClass();
+			if (cls.isArray()) {
+				int length = Array.getLength(original);
+				Object[] src = (Object[])original, dst = (Object[])cloned;
+				for (int i = 0; i < length; i++) dst[i] = copy(src[i]);
+			}
+			else {
+				for (Field field : fieldsOf(cls)) field.set(cloned, copy(field.get(original)));
+			}
+		}
+
+		//Containers are filled after all elements are complete because hash codes and comparisons can depend on fields of elements.
+		for (int i = containers.size() - 1; i >= 0; i--) {
+			Object[] pair = containers.get(i);
+			fill(pair[0], pair[1]);
+		}
+	}
+
+
+	/**
+	 * Copying the specified object. Fields of the cloned object are copied later.
+	 * @param object specified object.
+	 * @return cloned object which may be the specified object itself if it is immutable.
+	 * @throws Exception if any error raises.
+	 */
+	@SuppressWarnings("unchecked")
+	private Object copy(Object object) throws Exception {
+		if (object == null || isImmutable(object)) return object;
+		Object cloned = clones.get(object);
+		if (cloned != null) return cloned;
+
+		Class<?> cls = object.getClass();
+		if (cls.isArray()) {
+			Class<?> componentType = cls.getComponentType();
+			if (componentType.isPrimitive())
+				cloned = copyPrimitiveArray(object);
+			else {
+				cloned = Array.newInstance(componentType, Array.getLength(object));
+				pending.push(new Object[] {object, cloned});
+			}
+			clones.put(object, cloned);
+			return cloned;
+		}
+
+		if (isSystem(cls)) {
+			if ((object instanceof Collection<?> || object instanceof Map<?, ?>) && (cloned = newContainer(object)) != null) {
+				clones.put(object, cloned);
+				containers.add(new Object[] {object, cloned});
+				for (Object element : (object instanceof Map<?, ?> ? ((Map<Object, Object>)object).entrySet() : (Collection<Object>)object)) {
+					if (element instanceof Map.Entry<?, ?>) {
+						copy(((Map.Entry<Object, Object>)element).getKey());
+						copy(((Map.Entry<Object, Object>)element).getValue());
+					}
+					else
+						copy(element);
+				}
+				return cloned;
+			}
+			else
+				return copyBySerialize(object);
+		}
+		else if (cls.isSynthetic() || isCustom(cls))
+			return copyBySerialize(object);
+
+		cloned = constructorOf(cls).newInstance();
+		clones.put(object, cloned);
+		pending.push(new Object[] {object, cloned});
+		return cloned;
+	}
+
+
+	/**
+	 * Copying the specified object by serialization. Objects referred by the specified object are not serialized but replaced by references,
+	 * which are resolved to their cloned objects, so that shared references and cycles of graph are kept.
+	 * @param object specified object.
+	 * @return cloned object.
+	 * @throws Exception if any error raises, for instance, the specified object is not serializable, whose state cannot be cloned and must not be shared either.
+	 */
+	private Object copyBySerialize(Object object) throws Exception {
+		if (!(object instanceof Serializable)) throw new NotSerializableException(object.getClass().getName());
+		//Such object is referred again before its clone exists, which is cloned by serializing the whole graph instead.
+		if (serializing.put(object, object) != null) throw new IOException("Object referred during its own serialization: " + object.getClass().getName());
+
+		List<Object> referred = Util.newList(0);
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (ObjectOutputStream output = new ObjectOutputStream(buffer) {
+				{enableReplaceObject(true);}
+
+				@Override
+				protected Object replaceObject(Object obj) throws IOException {
+					if (obj == object || obj == null || isImmutable(obj)) return obj;
+					referred.add(obj);
+					return new Reference(referred.size() - 1);
+				}
+			}) {
+			output.writeObject(object);
+		}
+
+		Object cloned = null;
+		try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(buffer.toByteArray())) {
+				{enableResolveObject(true);}
+
+				@Override
+				protected Object resolveObject(Object obj) throws IOException {
+					if (!(obj instanceof Reference)) return obj;
+					try {
+						return copy(referred.get(((Reference)obj).index));
+					} catch (IOException e) {throw e;} catch (Exception e) {throw new IOException(e);}
+				}
+			}) {
+			cloned = input.readObject();
+		}
+
+		serializing.remove(object);
+		clones.put(object, cloned);
+		return cloned;
+	}
+
+
+	/**
+	 * This class represents reference to an object referred by object which is cloned by serialization.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	private static class Reference implements Serializable {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Index of referred object.
+		 */
+		private int index = 0;
+
+		/**
+		 * Constructor with index of referred object.
+		 * @param index index of referred object.
+		 */
+		private Reference(int index) {
+			this.index = index;
+		}
+
+	}
+
+
+	/**
+	 * Filling cloned container by cloned elements of original container.
+	 * @param original original container.
+	 * @param cloned cloned container.
+	 */
+	@SuppressWarnings("unchecked")
+	private void fill(Object original, Object cloned) {
+		if (original instanceof Map<?, ?>) {
+			Map<Object, Object> map = (Map<Object, Object>)cloned;
+			for (Map.Entry<Object, Object> entry : ((Map<Object, Object>)original).entrySet()) {
+				map.put(cloneOf(entry.getKey()), cloneOf(entry.getValue()));
+			}
+		}
+		else {
+			Collection<Object> collection = (Collection<Object>)cloned;
+			for (Object element : (Collection<Object>)original) collection.add(cloneOf(element));
+		}
+	}
+
+
+	/**
+	 * Getting cloned object of the specified object which was copied already.
+	 * @param object specified object.
+	 * @return cloned object of the specified object.
+	 */
+	private Object cloneOf(Object object) {
+		if (object == null) return null;
+		Object cloned = clones.get(object);
+		return cloned != null ? cloned : object;
+	}
+
+
+	/**
+	 * Copying primitive array in block.
+	 * @param array primitive array.
+	 * @return copied array.
+	 */
+	private static Object copyPrimitiveArray(Object array) {
+		if (array instanceof double[]) return ((double[])array).clone();
+		else if (array instanceof int[]) return ((int[])array).clone();
+		else if (array instanceof float[]) return ((float[])array).clone();
+		else if (array instanceof long[]) return ((long[])array).clone();
+		else if (array instanceof boolean[]) return ((boolean[])array).clone();
+		else if (array instanceof byte[]) return ((byte[])array).clone();
+		else if (array instanceof short[]) return ((short[])array).clone();
+		else return ((char[])array).clone();
+	}
+
+
+	/**
+	 * Checking whether the specified object is immutable so that it is shared instead of copied.
+	 * @param object specified object.
+	 * @return whether the specified object is immutable.
+	 */
+	static boolean isImmutable(Object object) {
+		Class<?> cls = object.getClass();
+		return cls == NeuronValue1.class || cls == WeightValue1.class ||
+			object instanceof String || object instanceof Class<?> || object instanceof Enum<?> ||
+			object instanceof Boolean || object instanceof Character ||
+			(object instanceof Number && cls.getName().startsWith("java."));
+	}
+
+
+	/**
+	 * Checking whether the specified class is system class whose fields cannot be accessed.
+	 * @param cls specified class.
+	 * @return whether the specified class is system class.
+	 */
+	static boolean isSystem(Class<?> cls) {
+		String name = cls.getName();
+		return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.");
+	}
+
+
+	/**
+	 * Checking whether the specified class or its super classes customize serialization.
+	 * Such class is cloned by serialization because its internal state may be not kept in fields.
+	 * @param cls specified class.
+	 * @return whether the specified class or its super classes customize serialization.
+	 */
+	static boolean isCustom(Class<?> cls) {
+		Boolean custom = customsCache.get(cls);
+		if (custom != null) return custom;
+
+		custom = false;
+		for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass()) {
+			if (hasMethod(c, "writeObject", ObjectOutputStream.class) || hasMethod(c, "readObject", ObjectInputStream.class) ||
+				hasMethod(c, "writeReplace") || hasMethod(c, "readResolve")) {
+				custom = true;
+				break;
+			}
+		}
+		customsCache.put(cls, custom);
+		return custom;
+	}
+
+
+	/**
+	 * Checking whether the specified class declares the specified method.
+	 * @param cls specified class.
+	 * @param name method name.
+	 * @param parameterTypes parameter types.
+	 * @return whether the specified class declares the specified method.
+	 */
+	private static boolean hasMethod(Class<?> cls, String name, Class<?>...parameterTypes) {
+		try {
+			Method method = cls.getDeclaredMethod(name, parameterTypes);
+			return method != null;
+		} catch (NoSuchMethodException e) {return false;}
+	}
+
+
+	/**
+	 * Creating empty container with the same class and the same ordering as the specified container.
+	 * Comparator of sorted container is copied along with the graph, and cloneable container such as linked hash map in access order is cloned shallowly and then cleared so that its ordering flags are kept.
+	 * @param container specified container.
+	 * @return empty container, which is null if such container cannot be created.
+	 * @throws Exception if any error raises.
+	 */
+	private Object newContainer(Object container) throws Exception {
+		Class<?> cls = container.getClass();
+		Comparator<?> comparator = null;
+		if (container instanceof SortedMap<?, ?>)
+			comparator = ((SortedMap<?, ?>)container).comparator();
+		else if (container instanceof SortedSet<?>)
+			comparator = ((SortedSet<?>)container).comparator();
+		else if (container instanceof PriorityQueue<?>)
+			comparator = ((PriorityQueue<?>)container).comparator();
+		else if (container instanceof PriorityBlockingQueue<?>)
+			comparator = ((PriorityBlockingQueue<?>)container).comparator();
+
+		if (comparator != null) {
+			Object copiedComparator = copy(comparator);
+			try {
+				return cls.getConstructor(Comparator.class).newInstance(copiedComparator);
+			} catch (ReflectiveOperationException e) {return null;}
+		}
+
+		if (container instanceof Cloneable) {
+			try {
+				Object cloned = cls.getMethod("clone").invoke(container);
+				if (cloned instanceof Map<?, ?>)
+					((Map<?, ?>)cloned).clear();
+				else
+					((Collection<?>)cloned).clear();
+				return cloned;
+			} catch (ReflectiveOperationException | RuntimeException e) {}
+		}
+
+		try {
+			return cls.getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {}
+		return null;
+	}
+
+
+	/**
+	 * Getting non-static and non-transient fields of the specified class and its super classes.
+	 * @param cls specified class.
+	 * @return fields of the specified class.
+	 */
+	private static Field[] fieldsOf(Class<?> cls) {
+		Field[] fields = fieldsCache.get(cls);
+		if (fields != null) return fields;
+
+		List<Field> fieldList = Util.newList(0);
+		for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) continue;
+				field.setAccessible(true);
+				fieldList.add(field);
+			}
+		}
+		fields = fieldList.toArray(new Field[] {});
+		fieldsCache.put(cls, fields);
+		return fields;
+	}
+
+
+	/**
+	 * Getting constructor which instantiates the specified class without running its constructors, like serialization does.
+	 * @param cls specified class.
+	 * @return constructor which instantiates the specified class.
+	 * @throws Exception if any error raises.
+	 */
+	private static Constructor<?> constructorOf(Class<?> cls) throws Exception {
+		Constructor<?> constructor = constructorsCache.get(cls);
+		if (constructor != null) return constructor;
+
+		try {
+			Class<?> factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+			Object factory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+			constructor = (Constructor<?>)factoryClass.getMethod("newConstructorForSerialization", Class.class, Constructor.class)
+				.invoke(factory, cls, Object.class.getDeclaredConstructor());
+		} catch (Throwable e) {constructor = null;}
+		
+		//Default constructor is used if serialization constructor is not supported.
+		if (constructor == null) constructor = cls.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		constructorsCache.put(cls, constructor);
+		return constructor;
+	}
+
+
+}
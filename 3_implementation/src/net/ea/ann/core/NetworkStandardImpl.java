@@ -15,6 +15,7 @@ import java.util.Map;
 import net.ea.ann.core.NetworkDoEvent.Type;
 import net.ea.ann.core.bp.Backpropagator;
 import net.ea.ann.core.bp.BackpropagatorAbstract;
+import net.ea.ann.core.bp.Gradient;
 import net.ea.ann.core.function.Function;
 import net.ea.ann.core.value.NeuronValue;
 import net.ea.ann.raster.Raster;
@@ -316,6 +317,23 @@ public class NetworkStandardImpl extends NetworkStandardAbstract {
 	public synchronized NeuronValue[] learn(NeuronValue[] input, NeuronValue[] realOutput, double learningRate, double terminatedThreshold, int maxIteration) {
 		return learn(getBackbone(), input, realOutput, true, learningRate, terminatedThreshold, maxIteration);
 	}
+
+	
+	/**
+	 * Evaluating the specified record and accumulating gradient of backbone without updating weights and biases, which supports mini-batch learning.
+	 * Weights and biases are updated later by method {@link Gradient#update(double)}.
+	 * @param record specified record whose output can be null.
+	 * @param gradient accumulated gradient.
+	 * @return output error of the record.
+	 */
+	public synchronized NeuronValue[] accumulateGradient(Record record, Gradient gradient) {
+		if (record == null || gradient == null) return null;
+		try {
+			evaluate(record);
+		} catch (Throwable e) {Util.trace(e); return null;}
+		
+		return bp.accumulateGradient(getBackbone(), record.output, gradient);
+	}
 	
 	
 	/**
@@ -21,6 +21,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 /**
  * This is utility class to provide static utility methods.
@@ -56,6 +59,12 @@ public class Util {
 	public final static String NONAME = "noname";
 	
 	
+	/**
+	 * Pool of parallel tasks.
+	 */
+	private static ForkJoinPool pool = null;
+	
+	
 	/**
 	 * Static code.
 	 */
@@ -165,6 +174,24 @@ public class Util {
 	}
 	
 	
+	/**
+	 * Clone object by structure, which rebuilds object graph directly without serialization stream.
+	 * Immutable scalar values are shared so that learning the cloned object only allocates values which it modifies.
+	 * If cloning by structure fails, cloning by serialization is used.
+	 * @param object specified object.
+	 * @return cloned object.
+	 */
+	public static Object cloneByStructure(Object object) {
+		if (object == null) return null;
+		try {
+			return Cloner.clone(object);
+		}
+		catch (Throwable e) {trace(e);}
+		
+		return cloneBySerialize(object);
+	}
+	
+	
 	/**
 	 * Clone object by serialization
 	 * @param object specified object.
@@ -229,6 +256,87 @@ public class Util {
 	}
 
 	
+	/**
+	 * Getting pool of parallel tasks.
+	 * @return pool of parallel tasks.
+	 */
+	public static synchronized ForkJoinPool getPool() {
+		if (pool == null) pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+		return pool;
+	}
+	
+	
+	/**
+	 * Running task over indices from 0 to specified count in parallel.
+	 * If the count is not larger than 1, the task is run sequentially in current thread.
+	 * @param count number of indices.
+	 * @param task task receiving every index.
+	 * Failure of any index is rethrown to caller so that caller never continues with partially written results.
+	 * @return true if running is successful, false if there is nothing to run.
+	 * @throws RuntimeException if the task fails at any index.
+	 */
+	public static boolean parallel(int count, IntConsumer task) throws RuntimeException {
+		if (count <= 0 || task == null) return false;
+		if (count == 1)
+			task.accept(0);
+		else
+			getPool().invoke(new ParallelAction(0, count, task));
+		return true;
+	}
+
+	
+	/**
+	 * This class represents parallel action over a range of indices.
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 */
+	private static class ParallelAction extends RecursiveAction {
+
+		/**
+		 * Serial version UID for serializable class. 
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Starting index (inclusive).
+		 */
+		private int from = 0;
+		
+		/**
+		 * Ending index (exclusive).
+		 */
+		private int to = 0;
+		
+		/**
+		 * Task receiving every index.
+		 */
+		private IntConsumer task = null;
+		
+		/**
+		 * Constructor with starting index, ending index, and task.
+		 * @param from starting index (inclusive).
+		 * @param to ending index (exclusive).
+		 * @param task task receiving every index.
+		 */
+		public ParallelAction(int from, int to, IntConsumer task) {
+			this.from = from;
+			this.to = to;
+			this.task = task;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				if (to > from) task.accept(from);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new ParallelAction(from, middle, task), new ParallelAction(middle, to, task));
+		}
+		
+	}
+	
+	
 	/**
 	 * Converting a specified array of objects (any type) into a string in which each object is converted as a word in such string.
 	 * Words in such returned string are connected by the character specified by the parameter {@code sep}. 
@@ -72,4 +72,14 @@ public interface Backpropagator extends Serializable, Cloneable {
 	Map<Integer, NeuronValue[]> updateWeightsBiases(List<LayerStandard> bone, Map<Integer, NeuronValue[]> boneInput, Map<Integer, NeuronValue[]> boneOutput, double learningRate);
 
 	
+	/**
+	 * Accumulating gradient of weights and biases without updating them, which supports mini-batch learning. The bone must be evaluated with current record in advance.
+	 * @param bone list of layers including input layer.
+	 * @param realOutput realistic output of output layer, which can be null.
+	 * @param gradient accumulated gradient.
+	 * @return errors of output errors. Return null if errors occur.
+	 */
+	NeuronValue[] accumulateGradient(List<LayerStandard> bone, NeuronValue[] realOutput, Gradient gradient);
+
+	
 }
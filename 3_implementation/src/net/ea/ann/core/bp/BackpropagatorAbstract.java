@@ -7,6 +7,7 @@
  */
 package net.ea.ann.core.bp;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -259,13 +260,109 @@ abstract class BackpropagatorAbstract0 implements Backpropagator {
 	@Override
 	public NeuronValue[] updateWeightsBiases(List<LayerStandard> bone, Iterable<NeuronValue[][]> outputBatch, NeuronValue[] lastError, double learningRate) {
 		if (bone.size() < 2) return null;
-		learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? Network.LEARN_RATE_DEFAULT : learningRate;
-		NeuronValue[] outputError = null;
+		double lr = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? Network.LEARN_RATE_DEFAULT : learningRate;
+		
+		return propagate(bone, outputBatch, lastError, new DeltaHandler() {
+			@Override
+			public NeuronValue[] errorBuffer(int layerIndex, LayerStandard layer) {
+				return NeuronValue.makeArray(layer.size(), layer);
+			}
+			
+			@Override
+			public void bias(NeuronStandard neuron, NeuronValue error) {
+				NeuronValue delta = error.multiply(lr);
+				neuron.setBias(neuron.getBias().add(delta));
+			}
+			
+			@Override
+			public void weight(Weight weight, NeuronValue error, NeuronValue prevOut) {
+				NeuronValue delta = error.multiply(prevOut).multiply(lr);
+				weight.value = weight.value.addValue(delta);
+			}
+		});
+	}
+	
+
+	@Override
+	public NeuronValue[] accumulateGradient(List<LayerStandard> bone, NeuronValue[] realOutput, Gradient gradient) {
+		if (bone.size() < 2 || gradient == null) return null;
+		List<NeuronValue[][]> outputBatch = Util.newList(1);
+		outputBatch.add(new NeuronValue[][] {realOutput});
+		
+		gradient.begin();
+		NeuronValue[] outputError = propagate(bone, outputBatch, null, new DeltaHandler() {
+			@Override
+			public NeuronValue[] errorBuffer(int layerIndex, LayerStandard layer) {
+				return gradient.errorBuffer(layerIndex, layer.size());
+			}
+			
+			@Override
+			public void bias(NeuronStandard neuron, NeuronValue error) {
+				gradient.addBias(neuron, error);
+			}
+			
+			@Override
+			public void weight(Weight weight, NeuronValue error, NeuronValue prevOut) {
+				gradient.addWeight(weight, error.multiply(prevOut));
+			}
+		});
+		gradient.end();
+		
+		//Error buffers of gradient are reused and so output error is copied.
+		return outputError != null ? Arrays.copyOf(outputError, outputError.length) : null;
+	}
+	
+
+	/**
+	 * This interface handles errors of biases and weights while errors are propagated backward, which either applies or accumulates them.
+	 * 
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	private interface DeltaHandler {
+		
+		/**
+		 * Getting error buffer of layer.
+		 * @param layerIndex index of layer in bone.
+		 * @param layer specified layer.
+		 * @return error buffer of layer whose size is the size of layer.
+		 */
+		NeuronValue[] errorBuffer(int layerIndex, LayerStandard layer);
 		
+		/**
+		 * Handling error of bias of neuron.
+		 * @param neuron specified neuron.
+		 * @param error error of neuron.
+		 */
+		void bias(NeuronStandard neuron, NeuronValue error);
+		
+		/**
+		 * Handling error of weight.
+		 * @param weight specified weight.
+		 * @param error error of target neuron of weight.
+		 * @param prevOut output of source neuron of weight.
+		 */
+		void weight(Weight weight, NeuronValue error, NeuronValue prevOut);
+		
+	}
+	
+	
+	/**
+	 * Propagating errors backward from output layer down to first hidden layer, in which errors of biases and weights are passed to specified handler.
+	 * Weights of a layer are handled before errors of the previous layer are calculated.
+	 * @param bone list of layers including input layer.
+	 * @param outputBatch output batch of output layer, which is used if the last error is null.
+	 * @param lastError output error which is optional parameter for batch learning.
+	 * @param handler handler of errors of biases and weights.
+	 * @return errors of output layer.
+	 */
+	private NeuronValue[] propagate(List<LayerStandard> bone, Iterable<NeuronValue[][]> outputBatch, NeuronValue[] lastError, DeltaHandler handler) {
+		NeuronValue[] outputError = null;
 		NeuronValue[] nextError = lastError;
 		for (int i = bone.size()-1; i >= 1; i--) { //Browsing layers reversely from output layer down to first hidden layer.
 			LayerStandard layer = bone.get(i);
-			NeuronValue[] error = NeuronValue.makeArray(layer.size(), layer);
+			NeuronValue[] error = handler.errorBuffer(i, layer);
 			
 			for (int j = 0; j < layer.size(); j++) { //Browsing neurons of current layer.
 				NeuronStandard neuron = layer.get(j);
@@ -288,14 +385,11 @@ abstract class BackpropagatorAbstract0 implements Backpropagator {
 					error[j] = derivative != null ? rsum.multiplyDerivative(derivative) : rsum;
 				}
 				
-				//Update biases of current layer.
-				if (isLearningBias()) {
-					NeuronValue delta = error[j].multiply(learningRate);
-					neuron.setBias(neuron.getBias().add(delta));
-				}
+				//Handle bias of current neuron.
+				if (isLearningBias()) handler.bias(neuron, error[j]);
 			}
 			
-			//Update weights stored in previous layers.
+			//Handle weights stored in previous layers.
 			Set<LayerStandard> prevLayers = layer.getAllPrevLayers(); //Include virtual layer.
 			if (!prevLayers.contains(bone.get(i-1))) prevLayers.add(bone.get(i-1));
 			for (LayerStandard prevLayer : prevLayers) {
@@ -310,9 +404,7 @@ abstract class BackpropagatorAbstract0 implements Backpropagator {
 					for (WeightedNeuron target : targets) {
 						int index = layer.indexOf(target.neuron);
 						if (!checkIndex(index)) continue;
-						NeuronValue delta = error[index].multiply(prevOut).multiply(learningRate);
-						Weight nw = target.weight;
-						nw.value = nw.value.addValue(delta);
+						handler.weight(target.weight, error[index], prevOut);
 					}
 				}
 			}
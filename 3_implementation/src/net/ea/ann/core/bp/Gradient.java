@@ -0,0 +1,218 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.core.bp;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ea.ann.core.NeuronStandard;
+import net.ea.ann.core.Util;
+import net.ea.ann.core.value.NeuronValue;
+import net.ea.ann.core.value.Weight;
+
+/**
+ * This class represents accumulated gradient of weights and biases over a mini-batch so that weights and biases are updated once per batch.
+ * Biases and weights are captured in the order in which backpropagation visits them at the first record, and later records follow the same order, so accumulation is mostly sequential.
+ * Buffers of gradient and errors are reused across batches.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class Gradient implements Serializable, Cloneable {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Neurons whose biases are learned.
+	 */
+	protected List<NeuronStandard> neurons = Util.newList(0);
+
+
+	/**
+	 * Accumulated gradients of biases.
+	 */
+	protected NeuronValue[] biasGradients = new NeuronValue[0];
+
+
+	/**
+	 * Learned weights.
+	 */
+	protected List<Weight> weights = Util.newList(0);
+
+
+	/**
+	 * Accumulated gradients of weights.
+	 */
+	protected NeuronValue[] weightGradients = new NeuronValue[0];
+
+
+	/**
+	 * Indices of neurons and weights, which are used when visiting order changes.
+	 */
+	protected Map<Object, Integer> indices = new IdentityHashMap<>();
+
+
+	/**
+	 * Reused error buffers of layers.
+	 */
+	protected NeuronValue[][] errors = new NeuronValue[0][];
+
+
+	/**
+	 * Cursor of neurons in current record.
+	 */
+	private int neuronCursor = 0;
+
+
+	/**
+	 * Cursor of weights in current record.
+	 */
+	private int weightCursor = 0;
+
+
+	/**
+	 * Number of accumulated records.
+	 */
+	protected int count = 0;
+
+
+	/**
+	 * Default constructor.
+	 */
+	public Gradient() {
+
+	}
+
+
+	/**
+	 * Getting number of accumulated records.
+	 * @return number of accumulated records.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+
+	/**
+	 * Beginning to accumulate a record.
+	 */
+	void begin() {
+		neuronCursor = 0;
+		weightCursor = 0;
+	}
+
+
+	/**
+	 * Ending to accumulate a record.
+	 */
+	void end() {
+		count++;
+	}
+
+
+	/**
+	 * Getting reused error buffer of layer.
+	 * @param layerIndex layer index.
+	 * @param size layer size.
+	 * @return error buffer of layer.
+	 */
+	NeuronValue[] errorBuffer(int layerIndex, int size) {
+		if (layerIndex >= errors.length) errors = Arrays.copyOf(errors, layerIndex + 1);
+		if (errors[layerIndex] == null || errors[layerIndex].length != size) errors[layerIndex] = new NeuronValue[size];
+		return errors[layerIndex];
+	}
+
+
+	/**
+	 * Adding gradient of bias of neuron.
+	 * @param neuron specified neuron.
+	 * @param gradient gradient of bias.
+	 */
+	void addBias(NeuronStandard neuron, NeuronValue gradient) {
+		int index = neuronCursor < neurons.size() && neurons.get(neuronCursor) == neuron ? neuronCursor : indexOf(neuron, neurons);
+		if (index >= biasGradients.length) biasGradients = Arrays.copyOf(biasGradients, Math.max(index + 1, 2 * biasGradients.length));
+		biasGradients[index] = biasGradients[index] != null ? biasGradients[index].add(gradient) : gradient;
+		neuronCursor = index + 1;
+	}
+
+
+	/**
+	 * Adding gradient of weight.
+	 * @param weight specified weight.
+	 * @param gradient gradient of weight.
+	 */
+	void addWeight(Weight weight, NeuronValue gradient) {
+		int index = weightCursor < weights.size() && weights.get(weightCursor) == weight ? weightCursor : indexOf(weight, weights);
+		if (index >= weightGradients.length) weightGradients = Arrays.copyOf(weightGradients, Math.max(index + 1, 2 * weightGradients.length));
+		weightGradients[index] = weightGradients[index] != null ? weightGradients[index].add(gradient) : gradient;
+		weightCursor = index + 1;
+	}
+
+
+	/**
+	 * Finding index of neuron or weight, which is appended if it is not captured yet.
+	 * @param <T> type of elements.
+	 * @param element neuron or weight.
+	 * @param elements captured elements.
+	 * @return index of neuron or weight.
+	 */
+	private <T> int indexOf(T element, List<T> elements) {
+		Integer index = indices.get(element);
+		if (index != null) return index;
+
+		elements.add(element);
+		index = elements.size() - 1;
+		indices.put(element, index);
+		return index;
+	}
+
+
+	/**
+	 * Updating weights and biases by mean of accumulated gradients and then clearing accumulated gradients.
+	 * @param learningRate learning rate.
+	 * @return true if updating is successful.
+	 */
+	public boolean update(double learningRate) {
+		if (count == 0) return false;
+		double factor = learningRate / (double)count;
+		for (int i = 0; i < neurons.size(); i++) {
+			if (biasGradients[i] == null) continue;
+			NeuronStandard neuron = neurons.get(i);
+			neuron.setBias(neuron.getBias().add(biasGradients[i].multiply(factor)));
+		}
+		for (int i = 0; i < weights.size(); i++) {
+			if (weightGradients[i] == null) continue;
+			Weight weight = weights.get(i);
+			weight.value = weight.value.addValue(weightGradients[i].multiply(factor));
+		}
+
+		clear();
+		return true;
+	}
+
+
+	/**
+	 * Clearing accumulated gradients. Captured neurons and weights are kept.
+	 */
+	public void clear() {
+		Arrays.fill(biasGradients, null);
+		Arrays.fill(weightGradients, null);
+		count = 0;
+	}
+
+
+}
@@ -0,0 +1,36 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.core.function;
+
+/**
+ * This interface represents function with scalar variable which can be evaluated on primitive real numbers without creating neuron values.
+ * 
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public interface FunctionScalar extends Function {
+
+	
+	/**
+	 * Evaluating specified real number.
+	 * @param x specified real number.
+	 * @return evaluated real number.
+	 */
+	double evaluate(double x);
+	
+	
+	/**
+	 * Calculate gradient (the first order derivative) at specified real number.
+	 * @param x specified real number.
+	 * @return gradient (the first order derivative) at specified real number.
+	 */
+	double derivative(double x);
+
+
+}
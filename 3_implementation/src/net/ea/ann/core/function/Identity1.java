@@ -17,7 +17,7 @@ import net.ea.ann.core.value.NeuronValue1;
  * @version 1.0
  *
  */
-public class Identity1 implements Identity {
+public class Identity1 implements Identity, FunctionScalar {
 
 
 	/**
@@ -40,6 +40,12 @@ public class Identity1 implements Identity {
 	}
 
 
+	@Override
+	public double evaluate(double x) {
+		return x;
+	}
+
+
 	@Override
 	public NeuronValue derivative(NeuronValue x) {
 		NeuronValue1 v = (NeuronValue1)x;
@@ -47,6 +53,12 @@ public class Identity1 implements Identity {
 	}
 
 
+	@Override
+	public double derivative(double x) {
+		return 1;
+	}
+
+
 	@Override
 	public NeuronValue evaluateInverse(NeuronValue y) {
 		return evaluate(y);
@@ -17,7 +17,7 @@ import net.ea.ann.core.value.NeuronValue1;
  * @version 1.0
  *
  */
-public class Logistic1 implements Logistic {
+public class Logistic1 implements Logistic, FunctionScalar {
 
 
 	/**
@@ -111,15 +111,26 @@ public class Logistic1 implements Logistic {
 	
 	@Override
 	public NeuronValue evaluate(NeuronValue x) {
-		double v = ((NeuronValue1)x).get();
-		return new NeuronValue1((max-min) / (1.0 + Math.exp(slope*(mid-v))) + min);
+		return new NeuronValue1(evaluate(((NeuronValue1)x).get()));
+	}
+
+
+	@Override
+	public double evaluate(double x) {
+		return (max-min) / (1.0 + Math.exp(slope*(mid-x))) + min;
 	}
 
 
 	@Override
 	public NeuronValue derivative(NeuronValue x) {
-		double v = ((NeuronValue1)evaluate(x)).get();
-		return new NeuronValue1(slope * (v-min) * (max-v) / (max-min));
+		return new NeuronValue1(derivative(((NeuronValue1)x).get()));
+	}
+
+
+	@Override
+	public double derivative(double x) {
+		double v = evaluate(x);
+		return slope * (v-min) * (max-v) / (max-min);
 	}
 
 
@@ -17,7 +17,7 @@ import net.ea.ann.core.value.NeuronValue1;
  * @version 1.0
  *
  */
-public class ReLU1 implements ReLU {
+public class ReLU1 implements ReLU, FunctionScalar {
 
 
 	/**
@@ -84,21 +84,31 @@ public class ReLU1 implements ReLU {
 	
 	@Override
 	public NeuronValue evaluate(NeuronValue x) {
-		double v = ((NeuronValue1)x).get();
+		return new NeuronValue1(evaluate(((NeuronValue1)x).get()));
+	}
+
+
+	@Override
+	public double evaluate(double x) {
 		if (isConcernMax())
-			return new NeuronValue1( Math.max(min, Math.min(max, v)) );
+			return Math.max(min, Math.min(max, x));
 		else
-			return new NeuronValue1( Math.max(min, v) );
+			return Math.max(min, x);
 	}
 
 
 	@Override
 	public NeuronValue derivative(NeuronValue x) {
-		double v = ((NeuronValue1)x).get();
-		if ((v < min) || (isConcernMax() && v > max))
-			return new NeuronValue1(0);
+		return new NeuronValue1(derivative(((NeuronValue1)x).get()));
+	}
+
+
+	@Override
+	public double derivative(double x) {
+		if ((x < min) || (isConcernMax() && x > max))
+			return 0;
 		else
-			return new NeuronValue1(1);
+			return 1;
 	}
 
 
@@ -56,16 +56,15 @@ public class Tanh1 extends Logistic1 {
 
 	
 	@Override
-	public NeuronValue evaluate(NeuronValue x) {
-		double v = ((NeuronValue1)x).get();
-		return new NeuronValue1((max-min) / (1.0 + Math.exp(2*slope*(mid-v))) + min);
+	public double evaluate(double x) {
+		return (max-min) / (1.0 + Math.exp(2*slope*(mid-x))) + min;
 	}
 
 
 	@Override
-	public NeuronValue derivative(NeuronValue x) {
-		double v = ((NeuronValue1)evaluate(x)).get();
-		return new NeuronValue1(2*slope * (v-min) * (max-v) / (max-min));
+	public double derivative(double x) {
+		double v = evaluate(x);
+		return 2*slope * (v-min) * (max-v) / (max-min);
 	}
 
 
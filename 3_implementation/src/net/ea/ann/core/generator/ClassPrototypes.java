@@ -0,0 +1,434 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.core.generator;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import net.ea.ann.core.value.NeuronValue;
+
+/**
+ * This class represents packed prototypes of classes for combinatorial classification.
+ * Prototype of a class is the weights of the output created from that class, which is non-zero only at outputs whose combinations contain the class.
+ * Prototypes are packed as sparse rows so that nearest prototype of output weights is found by one sparse matrix-vector product,
+ * because the squared distance between weights w and prototype p equals |w|^2 - 2 w.p + |p|^2 where |w|^2 is the same for all classes.
+ * Please see <a href="https://cusaas.com/blog/neural-classification">https://cusaas.com/blog/neural-classification</a> or /newtech-research/data-mining-analyzing/classification/neural-network/DataClassificationWithNeuralNetworks-Cusaas-2023.01.12.pdf.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class ClassPrototypes implements Serializable, Cloneable {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Number of outputs.
+	 */
+	protected int nOutput = 0;
+
+
+	/**
+	 * Starting positions of rows, whose size is the number of classes plus 1.
+	 */
+	protected int[] rowStarts = new int[] {0};
+
+
+	/**
+	 * Output indices of non-zero prototype weights.
+	 */
+	protected int[] outputIndices = new int[0];
+
+
+	/**
+	 * Non-zero prototype weights.
+	 */
+	protected double[] weights = new double[0];
+
+
+	/**
+	 * Squared norms of prototypes.
+	 */
+	protected double[] norms2 = new double[0];
+
+
+	/**
+	 * Starting positions of columns, whose size is the number of outputs plus 1, which are built when ranking exits early for the first time.
+	 */
+	private transient volatile int[] columnStarts = null;
+
+
+	/**
+	 * Classes of columns, which are classes having non-zero prototype weights at every output.
+	 */
+	private transient int[] columnClasses = null;
+
+
+	/**
+	 * Flag to indicate whether prototype weights are not negative so that scores of unscored classes are bounded.
+	 */
+	private transient boolean bounded = false;
+
+
+	/**
+	 * Minimum squared norm of non-empty prototypes.
+	 */
+	private transient double minNorm2 = 0;
+
+
+	/**
+	 * Minimum L1 norm of non-empty prototypes.
+	 */
+	private transient double minNorm1 = 0;
+
+
+	/**
+	 * Maximum L1 norm of non-empty prototypes.
+	 */
+	private transient double maxNorm1 = 0;
+
+
+	/**
+	 * Default constructor.
+	 */
+	protected ClassPrototypes() {
+
+	}
+
+
+	/**
+	 * Getting the number of classes.
+	 * @return the number of classes.
+	 */
+	public int getNumberOfClasses() {
+		return norms2.length;
+	}
+
+
+	/**
+	 * Getting the number of outputs.
+	 * @return the number of outputs.
+	 */
+	public int getNumberOfOutputs() {
+		return nOutput;
+	}
+
+
+	/**
+	 * Finding class whose prototype is nearest to output weights.
+	 * @param outputWeights output weights.
+	 * @return class whose prototype is nearest to output weights, which is -1 if there is no such class.
+	 */
+	public int nearest(double[] outputWeights) {
+		if (outputWeights == null || outputWeights.length < nOutput) return -1;
+		int foundClass = -1;
+		double minScore = Double.POSITIVE_INFINITY;
+		for (int classIndex = 0; classIndex < norms2.length; classIndex++) {
+			double score = score(outputWeights, classIndex);
+			if (score < minScore) {
+				minScore = score;
+				foundClass = classIndex;
+			}
+		}
+		return foundClass;
+	}
+
+
+	/**
+	 * Ranking classes by squared distances between output weights and their prototypes. Scores of classes are computed once by sparse product,
+	 * then the best k classes are selected. If the exit margin is positive, classes are scored output by output in descending order of output weights,
+	 * and scoring stops as soon as the best class leads the second best scored class and the lower bound of scores of unscored classes by the exit margin.
+	 * If the margin between the second best class and the best class reaches the exit margin, only the best class is returned.
+	 * @param outputWeights output weights.
+	 * @param topK maximum number of ranked classes. If it is not positive, all classes are ranked.
+	 * @param exitMargin exit margin. If it is not positive, ranking never exits early.
+	 * @return ranking of classes, which is null if output weights are invalid.
+	 */
+	public ClassRanking rank(double[] outputWeights, int topK, double exitMargin) {
+		if (outputWeights == null || outputWeights.length < nOutput) return null;
+		int nClass = norms2.length;
+		topK = topK > 0 ? Math.min(topK, nClass) : nClass;
+		double[] scores = new double[nClass];
+		if (exitMargin > 0) {
+			ClassRanking ranking = rankByBound(outputWeights, scores, exitMargin);
+			if (ranking != null) return ranking;
+		}
+		else {
+			for (int classIndex = 0; classIndex < nClass; classIndex++) scores[classIndex] = score(outputWeights, classIndex);
+		}
+
+		int best = -1, second = -1;
+		for (int classIndex = 0; classIndex < nClass; classIndex++) {
+			double score = scores[classIndex];
+			if (best < 0 || score < scores[best]) {
+				second = best;
+				best = classIndex;
+			}
+			else if (second < 0 || score < scores[second])
+				second = classIndex;
+		}
+		if (best < 0) return new ClassRanking(new int[0], new double[0], 0, false);
+
+		double norm2 = norm2(outputWeights);
+		double margin = second >= 0 ? scores[second] - scores[best] : Double.POSITIVE_INFINITY;
+		boolean exited = exitMargin > 0 && margin >= exitMargin;
+		if (exited || topK == 1) return new ClassRanking(new int[] {best}, new double[] {scores[best] + norm2}, margin, exited);
+
+		//Selecting the best k classes by insertion.
+		int[] classes = new int[topK];
+		int size = 0;
+		for (int classIndex = 0; classIndex < nClass; classIndex++) {
+			double score = scores[classIndex];
+			if (size == topK && score >= scores[classes[size-1]]) continue;
+			int i = size < topK ? size++ : size - 1;
+			while (i > 0 && scores[classes[i-1]] > score) {
+				classes[i] = classes[i-1];
+				i--;
+			}
+			classes[i] = classIndex;
+		}
+		double[] distances = new double[topK];
+		for (int i = 0; i < topK; i++) distances[i] = scores[classes[i]] + norm2;
+		return new ClassRanking(classes, distances, margin, false);
+	}
+
+
+	/**
+	 * Scoring classes output by output in descending order of output weights until the best class leads the others by the exit margin.
+	 * Because prototype weights are not negative, the product of output weights and prototype of an unscored class is at most the L1 norm of the prototype
+	 * times the largest output weight which is not visited yet, which gives the lower bound of scores of unscored classes.
+	 * @param outputWeights output weights.
+	 * @param scores scores of classes, which are filled with scores of all classes if ranking does not exit early.
+	 * @param exitMargin positive exit margin.
+	 * @return ranking of the best class if ranking exits early, in which margin is the lower bound of the real margin. Returning null if all classes are scored.
+	 */
+	private ClassRanking rankByBound(double[] outputWeights, double[] scores, double exitMargin) {
+		if (columnStarts == null) buildColumns();
+		int nClass = norms2.length;
+		if (!bounded) {
+			for (int classIndex = 0; classIndex < nClass; classIndex++) scores[classIndex] = score(outputWeights, classIndex);
+			return null;
+		}
+
+		boolean[] scored = new boolean[nClass];
+		int nScored = 0, best = -1, second = -1;
+		//Classes without outputs are not reached from outputs, so they are scored first.
+		for (int classIndex = 0; classIndex < nClass; classIndex++) {
+			if (rowStarts[classIndex] < rowStarts[classIndex + 1]) continue;
+			scores[classIndex] = norms2[classIndex];
+			scored[classIndex] = true;
+			nScored++;
+			if (best < 0 || isBetter(scores, classIndex, best)) {
+				second = best;
+				best = classIndex;
+			}
+			else if (second < 0 || isBetter(scores, classIndex, second))
+				second = classIndex;
+		}
+
+		int[] heap = new int[nOutput];
+		for (int i = 0; i < nOutput; i++) heap[i] = i;
+		for (int i = nOutput/2 - 1; i >= 0; i--) siftDown(heap, nOutput, i, outputWeights);
+		int size = nOutput;
+		while (size > 0 && nScored < nClass) {
+			int outputIndex = heap[0];
+			heap[0] = heap[--size];
+			siftDown(heap, size, 0, outputWeights);
+			for (int j = columnStarts[outputIndex]; j < columnStarts[outputIndex + 1]; j++) {
+				int classIndex = columnClasses[j];
+				if (scored[classIndex]) continue;
+				scores[classIndex] = score(outputWeights, classIndex);
+				scored[classIndex] = true;
+				nScored++;
+				if (best < 0 || isBetter(scores, classIndex, best)) {
+					second = best;
+					best = classIndex;
+				}
+				else if (second < 0 || isBetter(scores, classIndex, second))
+					second = classIndex;
+			}
+			if (best < 0 || nScored == nClass || size == 0) continue;
+
+			double weight = outputWeights[heap[0]];
+			double bound = minNorm2 - 2*(weight >= 0 ? maxNorm1 : minNorm1)*weight;
+			double margin = Math.min(second >= 0 ? scores[second] : Double.POSITIVE_INFINITY, bound) - scores[best];
+			if (margin >= exitMargin) return new ClassRanking(new int[] {best}, new double[] {scores[best] + norm2(outputWeights)}, margin, true);
+		}
+		return null;
+	}
+
+
+	/**
+	 * Checking whether the first class is better than the second class, in which the class of smaller index is better if their scores are equal.
+	 * @param scores scores of classes.
+	 * @param classIndex1 first class.
+	 * @param classIndex2 second class.
+	 * @return whether the first class is better than the second class.
+	 */
+	private static boolean isBetter(double[] scores, int classIndex1, int classIndex2) {
+		return scores[classIndex1] < scores[classIndex2] || (scores[classIndex1] == scores[classIndex2] && classIndex1 < classIndex2);
+	}
+
+
+	/**
+	 * Moving down element of binary max-heap of output indices ordered by output weights.
+	 * @param heap heap of output indices.
+	 * @param size size of heap.
+	 * @param i index of moved element.
+	 * @param outputWeights output weights.
+	 */
+	private static void siftDown(int[] heap, int size, int i, double[] outputWeights) {
+		int outputIndex = heap[i];
+		while (2*i + 1 < size) {
+			int child = 2*i + 1;
+			if (child + 1 < size && outputWeights[heap[child + 1]] > outputWeights[heap[child]]) child++;
+			if (outputWeights[heap[child]] <= outputWeights[outputIndex]) break;
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = outputIndex;
+	}
+
+
+	/**
+	 * Building columns of prototypes, which are classes having non-zero prototype weights at every output, along with bounds of norms of non-empty prototypes.
+	 */
+	private synchronized void buildColumns() {
+		if (columnStarts != null) return;
+		int nClass = norms2.length;
+		int[] starts = new int[nOutput + 1];
+		for (int j = 0; j < outputIndices.length && j < rowStarts[nClass]; j++) starts[outputIndices[j] + 1]++;
+		for (int i = 0; i < nOutput; i++) starts[i + 1] += starts[i];
+		int[] classes = new int[starts[nOutput]];
+		int[] positions = starts.clone();
+
+		boolean bounded = true;
+		double minNorm2 = Double.POSITIVE_INFINITY, minNorm1 = Double.POSITIVE_INFINITY, maxNorm1 = 0;
+		for (int classIndex = 0; classIndex < nClass; classIndex++) {
+			if (rowStarts[classIndex] == rowStarts[classIndex + 1]) continue;
+			double norm1 = 0;
+			for (int j = rowStarts[classIndex]; j < rowStarts[classIndex + 1]; j++) {
+				classes[positions[outputIndices[j]]++] = classIndex;
+				if (weights[j] < 0) bounded = false;
+				norm1 += Math.abs(weights[j]);
+			}
+			minNorm2 = Math.min(minNorm2, norms2[classIndex]);
+			minNorm1 = Math.min(minNorm1, norm1);
+			maxNorm1 = Math.max(maxNorm1, norm1);
+		}
+
+		this.columnClasses = classes;
+		this.bounded = bounded;
+		this.minNorm2 = minNorm2;
+		this.minNorm1 = minNorm1;
+		this.maxNorm1 = maxNorm1;
+		this.columnStarts = starts;
+	}
+
+
+	/**
+	 * Calculating squared norm of output weights.
+	 * @param outputWeights output weights.
+	 * @return squared norm of output weights.
+	 */
+	private double norm2(double[] outputWeights) {
+		double norm2 = 0;
+		for (int i = 0; i < nOutput; i++) norm2 += outputWeights[i]*outputWeights[i];
+		return norm2;
+	}
+
+
+	/**
+	 * Calculating score of class, which is squared distance between output weights and prototype of class minus squared norm of output weights.
+	 * @param outputWeights output weights.
+	 * @param classIndex class index.
+	 * @return score of class.
+	 */
+	protected double score(double[] outputWeights, int classIndex) {
+		double product = 0;
+		for (int j = rowStarts[classIndex]; j < rowStarts[classIndex + 1]; j++) product += weights[j] * outputWeights[outputIndices[j]];
+		return norms2[classIndex] - 2*product;
+	}
+
+
+	/**
+	 * Creating prototypes from classes-outputs map. Prototype weight of class at an output containing the class is the mean of unit value divided by
+	 * the number of outputs containing the class, which is the same as the weights of output created from the class.
+	 * @param classOutputMap classes-outputs map whose each element is a class pointer to the subtask which is a combination given classes.
+	 * @param nOutput number of outputs.
+	 * @param zero zero neuron value.
+	 * @return prototypes created from classes-outputs map.
+	 */
+	public static ClassPrototypes create(Map<Integer, int[]> classOutputMap, int nOutput, NeuronValue zero) {
+		return create(classOutputMap.size(), (classIndex) -> classOutputMap.get(classIndex), nOutput, zero);
+	}
+
+
+	/**
+	 * Creating prototypes from combinations, in which outputs containing a class are computed on the fly.
+	 * @param combinations combinations of classes.
+	 * @param nOutput number of outputs.
+	 * @param zero zero neuron value.
+	 * @return prototypes created from combinations.
+	 */
+	public static ClassPrototypes create(Combinations combinations, int nOutput, NeuronValue zero) {
+		return create(combinations.getClassCount(), (classIndex) -> combinations.outputsOf(classIndex), nOutput, zero);
+	}
+
+
+	/**
+	 * Creating prototypes from outputs of classes.
+	 * @param nClass number of classes.
+	 * @param outputsOf function returning outputs containing a class.
+	 * @param nOutput number of outputs.
+	 * @param zero zero neuron value.
+	 * @return prototypes created from outputs of classes.
+	 */
+	private static ClassPrototypes create(int nClass, IntFunction<int[]> outputsOf, int nOutput, NeuronValue zero) {
+		ClassPrototypes prototypes = new ClassPrototypes();
+		prototypes.nOutput = nOutput;
+		NeuronValue unit = zero.unit();
+
+		int[][] rows = new int[nClass][];
+		int size = 0;
+		for (int classIndex = 0; classIndex < nClass; classIndex++) {
+			rows[classIndex] = outputsOf.apply(classIndex);
+			size += rows[classIndex] != null ? rows[classIndex].length : 0;
+		}
+		prototypes.rowStarts = new int[nClass + 1];
+		prototypes.outputIndices = new int[size];
+		prototypes.weights = new double[size];
+		prototypes.norms2 = new double[nClass];
+
+		int j = 0;
+		for (int classIndex = 0; classIndex < nClass; classIndex++) {
+			prototypes.rowStarts[classIndex] = j;
+			int[] outputIndices = rows[classIndex];
+			if (outputIndices == null || outputIndices.length == 0) continue;
+
+			double weight = unit.divide(outputIndices.length).mean();
+			for (int outputIndex : outputIndices) {
+				if (outputIndex < 0 || outputIndex >= nOutput) continue;
+				prototypes.outputIndices[j] = outputIndex;
+				prototypes.weights[j] = weight;
+				prototypes.norms2[classIndex] += weight*weight;
+				j++;
+			}
+		}
+		prototypes.rowStarts[nClass] = j;
+		return prototypes;
+	}
+
+
+}
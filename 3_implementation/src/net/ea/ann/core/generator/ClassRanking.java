@@ -0,0 +1,125 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.core.generator;
+
+import java.io.Serializable;
+
+/**
+ * This class represents ranking of classes for output weights, in which classes are sorted by ascending squared distance between output weights and their prototypes.
+ * Margin is the difference between squared distance of the second best class and squared distance of the best class, which measures confidence of the best class.
+ * If ranking exits early because margin reaches a threshold, only the best class is kept and margin is a lower bound of the real margin because some classes may be not scored.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class ClassRanking implements Serializable, Cloneable {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Ranked classes.
+	 */
+	protected int[] classes = new int[0];
+
+
+	/**
+	 * Squared distances of ranked classes.
+	 */
+	protected double[] distances = new double[0];
+
+
+	/**
+	 * Margin between the second best class and the best class.
+	 */
+	protected double margin = 0;
+
+
+	/**
+	 * Flag to indicate whether ranking exits early.
+	 */
+	protected boolean exited = false;
+
+
+	/**
+	 * Constructor with ranked classes, squared distances, margin, and early exit flag.
+	 * @param classes ranked classes.
+	 * @param distances squared distances of ranked classes.
+	 * @param margin margin between the second best class and the best class.
+	 * @param exited flag to indicate whether ranking exits early.
+	 */
+	public ClassRanking(int[] classes, double[] distances, double margin, boolean exited) {
+		this.classes = classes;
+		this.distances = distances;
+		this.margin = margin;
+		this.exited = exited;
+	}
+
+
+	/**
+	 * Getting the number of ranked classes.
+	 * @return the number of ranked classes.
+	 */
+	public int size() {
+		return classes.length;
+	}
+
+
+	/**
+	 * Getting ranked class.
+	 * @param rank rank.
+	 * @return ranked class.
+	 */
+	public int getRankedClass(int rank) {
+		return classes[rank];
+	}
+
+
+	/**
+	 * Getting squared distance of ranked class.
+	 * @param rank rank.
+	 * @return squared distance of ranked class.
+	 */
+	public double getDistance(int rank) {
+		return distances[rank];
+	}
+
+
+	/**
+	 * Getting the best class.
+	 * @return the best class, which is -1 if there is no class.
+	 */
+	public int getBest() {
+		return classes.length > 0 ? classes[0] : -1;
+	}
+
+
+	/**
+	 * Getting margin between the second best class and the best class.
+	 * @return margin between the second best class and the best class, which is positive infinity if there is only one class.
+	 */
+	public double getMargin() {
+		return margin;
+	}
+
+
+	/**
+	 * Checking whether ranking exits early.
+	 * @return whether ranking exits early.
+	 */
+	public boolean isExited() {
+		return exited;
+	}
+
+
+}
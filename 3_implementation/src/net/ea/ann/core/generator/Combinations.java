@@ -0,0 +1,205 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.core.generator;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class represents combinations of r classes among n classes, which are addressed arithmetically by combinatorial number system instead of being enumerated and stored.
+ * Combinations are ranked in lexicographic order, which is the order of {@link CombinationGenerator}, so that an output index of combinatorial classification
+ * is the rank of its combination. The only stored data is the table of binomial coefficients whose size is (n+1)*(r+1).
+ * Please see <a href="https://en.wikipedia.org/wiki/Combinatorial_number_system">https://en.wikipedia.org/wiki/Combinatorial_number_system</a>.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class Combinations implements Serializable, Cloneable {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Number of classes.
+	 */
+	protected int n = 0;
+
+
+	/**
+	 * Number of classes of a combination.
+	 */
+	protected int r = 0;
+
+
+	/**
+	 * Binomial coefficients where binomials[m][k] is the number of combinations of k among m, which is saturated at {@link Long#MAX_VALUE}.
+	 */
+	protected long[][] binomials = null;
+
+
+	/**
+	 * Constructor with number of classes and number of classes of a combination.
+	 * @param n number of classes.
+	 * @param r number of classes of a combination.
+	 */
+	public Combinations(int n, int r) {
+		if (n < 1 || r < 1 || r > n) throw new IllegalArgumentException("Invalid number of classes or number of classes of a combination");
+		this.n = n;
+		this.r = r;
+		this.binomials = new long[n + 1][r + 1];
+		for (int m = 0; m <= n; m++) {
+			binomials[m][0] = 1;
+			for (int k = 1; k <= Math.min(m, r); k++) {
+				long sum = binomials[m-1][k-1] + (k <= m-1 ? binomials[m-1][k] : 0);
+				binomials[m][k] = sum < 0 ? Long.MAX_VALUE : sum;
+			}
+		}
+	}
+
+
+	/**
+	 * Getting the number of classes.
+	 * @return the number of classes.
+	 */
+	public int getClassCount() {
+		return n;
+	}
+
+
+	/**
+	 * Getting the number of classes of a combination.
+	 * @return the number of classes of a combination.
+	 */
+	public int getCombNumber() {
+		return r;
+	}
+
+
+	/**
+	 * Getting the number of combinations.
+	 * @return the number of combinations, which is saturated at {@link Long#MAX_VALUE}.
+	 */
+	public long count() {
+		return binomial(n, r);
+	}
+
+
+	/**
+	 * Getting the number of combinations as integer.
+	 * @return the number of combinations, which is -1 if it exceeds {@link Integer#MAX_VALUE}.
+	 */
+	public int size() {
+		long count = count();
+		return count > Integer.MAX_VALUE ? -1 : (int)count;
+	}
+
+
+	/**
+	 * Getting binomial coefficient.
+	 * @param m number of elements.
+	 * @param k number of chosen elements.
+	 * @return binomial coefficient, which is 0 if k is out of range.
+	 */
+	private long binomial(int m, int k) {
+		if (m < 0 || k < 0 || k > m) return 0;
+		return binomials[m][k];
+	}
+
+
+	/**
+	 * Getting rank of combination.
+	 * @param classIndices sorted classes of combination.
+	 * @return rank of combination in lexicographic order.
+	 */
+	public int rank(int[] classIndices) {
+		long sum = 0;
+		for (int i = 0; i < r; i++) sum += binomial(n - 1 - classIndices[i], r - i);
+		return (int)(count() - 1 - sum);
+	}
+
+
+	/**
+	 * Getting combination of rank.
+	 * @param rank rank of combination in lexicographic order.
+	 * @return sorted classes of combination.
+	 */
+	public int[] unrank(int rank) {
+		long m = count() - 1 - rank;
+		int[] classIndices = new int[r];
+		int upper = n;
+		for (int i = 0; i < r; i++) {
+			int k = r - i, d = upper - 1;
+			while (d >= k && binomial(d, k) > m) d--;
+			if (d < k - 1) d = k - 1;
+			m -= binomial(d, k);
+			classIndices[i] = n - 1 - d;
+			upper = d;
+		}
+		return classIndices;
+	}
+
+
+	/**
+	 * Checking whether combination of rank contains class.
+	 * @param rank rank of combination.
+	 * @param classIndex class index.
+	 * @return whether combination of rank contains class.
+	 */
+	public boolean contains(int rank, int classIndex) {
+		return Arrays.binarySearch(unrank(rank), classIndex) >= 0;
+	}
+
+
+	/**
+	 * Getting ranks of combinations containing class, which are computed on the fly.
+	 * @param classIndex class index.
+	 * @return sorted ranks of combinations containing class.
+	 */
+	public int[] outputsOf(int classIndex) {
+		if (classIndex < 0 || classIndex >= n) return new int[0];
+		long total = binomial(n - 1, r - 1);
+		if (total > Integer.MAX_VALUE) return new int[0];
+		int[] ranks = new int[(int)total];
+
+		//Enumerating r-1 other classes in lexicographic order by positions in the list of classes except the given class.
+		int k = r - 1;
+		int[] positions = new int[k];
+		for (int i = 0; i < k; i++) positions[i] = i;
+		int[] classIndices = new int[r];
+		for (int count = 0; count < ranks.length; count++) {
+			int j = 0;
+			boolean inserted = false;
+			for (int i = 0; i < k; i++) {
+				int other = positions[i] < classIndex ? positions[i] : positions[i] + 1;
+				if (!inserted && classIndex < other) {
+					classIndices[j++] = classIndex;
+					inserted = true;
+				}
+				classIndices[j++] = other;
+			}
+			if (!inserted) classIndices[j] = classIndex;
+			ranks[count] = rank(classIndices);
+
+			//Next positions.
+			int i = k - 1;
+			while (i >= 0 && positions[i] == n - 1 - k + i) i--;
+			if (i < 0) break;
+			positions[i]++;
+			for (int t = i + 1; t < k; t++) positions[t] = positions[t-1] + 1;
+		}
+		Arrays.sort(ranks);
+		return ranks;
+	}
+
+
+}
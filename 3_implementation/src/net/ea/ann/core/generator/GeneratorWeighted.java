@@ -12,7 +12,6 @@ import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import net.ea.ann.core.Id;
 import net.ea.ann.core.LayerStandard;
@@ -20,6 +19,7 @@ import net.ea.ann.core.NetworkStandard;
 import net.ea.ann.core.NeuronStandard;
 import net.ea.ann.core.Record;
 import net.ea.ann.core.Util;
+import net.ea.ann.core.bp.BackpropagatorAbstract;
 import net.ea.ann.core.function.Function;
 import net.ea.ann.core.function.Probability;
 import net.ea.ann.core.function.Softmax;
@@ -135,6 +135,19 @@ class GeneratorWeighted0<T extends Trainer> extends GeneratorStandard<T> {
 	public static final int COMB_NUMBER_DEFAULT = 2;
 	
 	
+	/**
+	 * Field of sparse output flag. If it is true, combinations are addressed arithmetically without outputs-classes map and classes-outputs map,
+	 * and only outputs whose combinations contain the class of a training record receive gradient updates.
+	 */
+	public static final String SPARSE_OUTPUT_FIELD = "gw_sparse_output";
+	
+	
+	/**
+	 * Default value for the field of sparse output flag.
+	 */
+	public static final boolean SPARSE_OUTPUT_DEFAULT = false;
+	
+	
 	/**
 	 * Outputs-classes map whose each element is a subtask which is a combination given classes.
 	 * Please see <a href="https://cusaas.com/blog/neural-classification">https://cusaas.com/blog/neural-classification</a> or /newtech-research/data-mining-analyzing/classification/neural-network/DataClassificationWithNeuralNetworks-Cusaas-2023.01.12.pdf.
@@ -149,6 +162,19 @@ class GeneratorWeighted0<T extends Trainer> extends GeneratorStandard<T> {
 	protected Map<Integer, int[]> classOutputMap = Util.newMap(0);
 
 	
+	/**
+	 * Combinations of classes addressed by combinatorial number system, in which an output index is the rank of its combination.
+	 * It is null for generators configured before combinations were introduced, which rely on outputs-classes map and classes-outputs map instead.
+	 */
+	protected Combinations combinations = null;
+
+	
+	/**
+	 * Packed class prototypes, which are built from classes-outputs map when output layer is available.
+	 */
+	private transient ClassPrototypes prototypes = null;
+	
+	
 	/**
 	 * Constructor with neuron channel, activation function, and identifier reference.
 	 * @param neuronChannel neuron channel.
@@ -158,6 +184,7 @@ class GeneratorWeighted0<T extends Trainer> extends GeneratorStandard<T> {
 	public GeneratorWeighted0(int neuronChannel, Function activateRef, Id idRef) {
 		super(neuronChannel, activateRef, idRef);
 		config.put(COMB_NUMBER_FIELD, COMB_NUMBER_DEFAULT);
+		config.put(SPARSE_OUTPUT_FIELD, SPARSE_OUTPUT_DEFAULT);
 	}
 
 	
@@ -190,15 +217,15 @@ class GeneratorWeighted0<T extends Trainer> extends GeneratorStandard<T> {
 
 		if (!configClassInfo(nOutputNeuron)) return false;
 
-		if (nOutputNeuron != outputClassMap.size() && nHiddenNeuron != null && nHiddenNeuron.length > 0) {
-			int[] nHidden = NetworkStandard.constructHiddenNeuronNumbers(nHiddenNeuron[nHiddenNeuron.length-1], outputClassMap.size());
+		if (nOutputNeuron != getNumberOfOutputs() && nHiddenNeuron != null && nHiddenNeuron.length > 0) {
+			int[] nHidden = NetworkStandard.constructHiddenNeuronNumbers(nHiddenNeuron[nHiddenNeuron.length-1], getNumberOfOutputs());
 			if (nHidden != null && nHidden.length > 0) {
 				int n = nHiddenNeuron.length;
 				nHiddenNeuron = Arrays.copyOf(nHiddenNeuron, n + nHidden.length);
 				for (int i = 0; i < nHidden.length; i++) nHiddenNeuron[n+i] = nHidden[i];
 			}
 		}
-		nOutputNeuron = outputClassMap.size();
+		nOutputNeuron = getNumberOfOutputs();
 		
 		if (!super.initialize(nInputNeuron, nOutputNeuron, nHiddenNeuron, nMemoryNeuron)) return false;
 		Function weightedFunction = createWeightedFunction();
@@ -217,8 +244,8 @@ class GeneratorWeighted0<T extends Trainer> extends GeneratorStandard<T> {
 		if (nInputNeuron < 1) return false;
 		if (!configClassInfo(nClass)) return false;
 		
-		int[] nHiddenNeuron = NetworkStandard.constructHiddenNeuronNumbers(nInputNeuron, outputClassMap.size());
-		if (!super.initialize(nInputNeuron, outputClassMap.size(), nHiddenNeuron, 0)) return false;
+		int[] nHiddenNeuron = NetworkStandard.constructHiddenNeuronNumbers(nInputNeuron, getNumberOfOutputs());
+		if (!super.initialize(nInputNeuron, getNumberOfOutputs(), nHiddenNeuron, 0)) return false;
 		Function weightedFunction = createWeightedFunction();
 		if (weightedFunction != null) changeOutputLayerActivateRef(weightedFunction);
 		return true;
@@ -238,38 +265,40 @@ class GeneratorWeighted0<T extends Trainer> extends GeneratorStandard<T> {
 		
 		outputClassMap.clear(); //outputs-classes map whose each element is a subtask which is a combination given classes.
 		classOutputMap.clear(); //classes-outputs map whose each element is a class pointer to the subtask which is a combination given classes.
-
-		CombinationGenerator cg = new CombinationGenerator(nClass, comb);
-		int index = 0;
-		while (cg.hasMore()) {
-			int[] classIndices = cg.getNext();
-			classIndices = Arrays.copyOf(classIndices, classIndices.length);
-			Arrays.sort(classIndices);
-			outputClassMap.put(index, classIndices);
-			index++;
-		}
-		if (outputClassMap.size() == 0) return false;
-		
-		for (int classIndex = 0; classIndex < nClass; classIndex++) {
-			Set<Integer> outputIndices = outputClassMap.keySet();
-			List<Integer> foundOutputIndexList = Util.newList(0);
-			for (int outputIndex : outputIndices) {
-				int[] classIndices = outputClassMap.get(outputIndex);
-				if (Arrays.binarySearch(classIndices, classIndex) >= 0) {
-					foundOutputIndexList.add(outputIndex);
-				}
-			}
-			if (foundOutputIndexList.size() == 0) continue;
-			
-			int[] foundOutputIndices = new int[foundOutputIndexList.size()];
-			for (int i = 0; i < foundOutputIndices.length; i++) foundOutputIndices[i] = foundOutputIndexList.get(i);
-			Arrays.sort(foundOutputIndices);
-			classOutputMap.put(classIndex, foundOutputIndices);
+		prototypes = null;
+		combinations = new Combinations(nClass, comb);
+		int nOutput = combinations.size();
+		if (nOutput <= 0) {
+			combinations = null;
+			return false;
 		}
+		if (paramIsSparseOutput()) return true; //Combinations are addressed arithmetically without maps.
+
+		for (int outputIndex = 0; outputIndex < nOutput; outputIndex++) outputClassMap.put(outputIndex, combinations.unrank(outputIndex));
+		for (int classIndex = 0; classIndex < nClass; classIndex++) classOutputMap.put(classIndex, combinations.outputsOf(classIndex));
 		return classOutputMap.size() > 0;
 	}
 	
 	
+	/**
+	 * Getting the number of outputs which is the number of combinations.
+	 * @return the number of outputs.
+	 */
+	protected int getNumberOfOutputs() {
+		return combinations != null ? combinations.size() : outputClassMap.size();
+	}
+	
+	
+	/**
+	 * Getting outputs whose combinations contain given class.
+	 * @param classIndex class index.
+	 * @return sorted outputs whose combinations contain given class, which can be null.
+	 */
+	protected int[] getOutputsOfClass(int classIndex) {
+		return combinations != null ? combinations.outputsOf(classIndex) : classOutputMap.get(classIndex);
+	}
+	
+	
 	/**
 	 * Creating weighted function.
 	 * @return weighted function.
@@ -308,7 +337,7 @@ class GeneratorWeighted0<T extends Trainer> extends GeneratorStandard<T> {
 	 * @return number of classes.
 	 */
 	public int getNumberOfClasses() {
-		return classOutputMap.size();
+		return combinations != null ? combinations.getClassCount() : classOutputMap.size();
 	}
 	
 	
@@ -323,22 +352,19 @@ class GeneratorWeighted0<T extends Trainer> extends GeneratorStandard<T> {
 		NeuronValue zero = outputLayer.newNeuronValue().zero();
 		NeuronValue unit = zero.unit();
 		NeuronValue[] output = new NeuronValue[getOutputLayer().size()];
+		Arrays.fill(output, zero);
+		int[] outputIndices = getOutputsOfClass(classIndex);
+		if (outputIndices == null) return output;
+		
 		int unitCount = 0;
-		for (int outputIndex = 0; outputIndex < output.length; outputIndex++) {
-			int[] classIndices = outputClassMap.get(outputIndex);
-			if (Arrays.binarySearch(classIndices, classIndex) >= 0) {
-				output[outputIndex] = unit;
-				unitCount++;
-			}
-			else
-				output[outputIndex] = zero;
+		for (int outputIndex : outputIndices) {
+			if (outputIndex < output.length) unitCount++;
 		}
 		
 		//Normalization.
-		if (unitCount > 0) {
-			for (int outputIndex = 0; outputIndex < output.length; outputIndex++) {
-				output[outputIndex] = output[outputIndex].divide(unitCount);
-			}
+		NeuronValue weight = unitCount > 0 ? unit.divide(unitCount) : unit;
+		for (int outputIndex : outputIndices) {
+			if (outputIndex < output.length) output[outputIndex] = weight;
 		}
 		
 		return output;
@@ -383,24 +409,39 @@ class GeneratorWeighted0<T extends Trainer> extends GeneratorStandard<T> {
 		if (nClass <= 0) return -1;
 		
 		double[] weights = weightsOfOutput(output);
-		int foundClass = -1;
-		double minDistance = Double.MAX_VALUE;
-		for (int classIndex = 0; classIndex < nClass; classIndex++) {
-			NeuronValue[] output2 = createOutputByClass(classIndex);
-			double[] weights2 = weightsOfOutput(output2);
-			double distance = 0;
-			for (int i = 0; i < weights.length; i++) {
-				double d = weights[i] - weights2[i];
-				distance += d*d;
-			}
-			distance = Math.sqrt(distance);
-			
-			if (distance < minDistance) {
-				minDistance = distance;
-				foundClass = classIndex;
-			}
-		}
-		return foundClass;
+		ClassPrototypes prototypes = getPrototypes();
+		return prototypes != null ? prototypes.nearest(weights) : -1;
+	}
+	
+	
+	/**
+	 * Ranking classes of output layer, which reuses output of the latest evaluation instead of evaluating again.
+	 * @param topK maximum number of ranked classes. If it is not positive, all classes are ranked.
+	 * @param exitMargin exit margin. If the margin between the second best class and the best class reaches it, only the best class is returned.
+	 * @return ranking of classes of output layer, which is null if output layer is not evaluated.
+	 */
+	public ClassRanking rankClass(int topK, double exitMargin) {
+		NeuronValue[] output = getOutputLayer().getOutput();
+		if (output == null || output.length == 0 || getNumberOfClasses() <= 0) return null;
+		ClassPrototypes prototypes = getPrototypes();
+		return prototypes != null ? prototypes.rank(weightsOfOutput(output), topK, exitMargin) : null;
+	}
+	
+	
+	/**
+	 * Getting packed class prototypes, which are built once after class information is configured and output layer is created.
+	 * @return packed class prototypes.
+	 */
+	protected ClassPrototypes getPrototypes() {
+		ClassPrototypes prototypes = this.prototypes;
+		LayerStandard outputLayer = getOutputLayer();
+		if (outputLayer == null) return null;
+		if (prototypes != null && prototypes.getNumberOfOutputs() == outputLayer.size()) return prototypes;
+		
+		NeuronValue zero = outputLayer.newNeuronValue().zero();
+		prototypes = combinations != null ? ClassPrototypes.create(combinations, outputLayer.size(), zero) : ClassPrototypes.create(classOutputMap, outputLayer.size(), zero);
+		this.prototypes = prototypes;
+		return prototypes;
 	}
 
 	
@@ -468,6 +509,117 @@ class GeneratorWeighted0<T extends Trainer> extends GeneratorStandard<T> {
 	}
 	
 	
+	/**
+	 * Checking sparse output flag.
+	 * @return sparse output flag.
+	 */
+	public boolean paramIsSparseOutput() {
+		if (config.containsKey(SPARSE_OUTPUT_FIELD))
+			return config.getAsBoolean(SPARSE_OUTPUT_FIELD);
+		else
+			return SPARSE_OUTPUT_DEFAULT;
+	}
+	
+	
+	/**
+	 * Setting sparse output flag. This flag should be set before initialization.
+	 * @param sparseOutput sparse output flag.
+	 * @return this generator.
+	 */
+	public GeneratorWeighted0<T> paramSetSparseOutput(boolean sparseOutput) {
+		config.put(SPARSE_OUTPUT_FIELD, sparseOutput);
+		return this;
+	}
+	
+	
+	@Override
+	protected Backpropagator createBackpropagator() {
+		Backpropagator bp = new WeightedBackpropagator();
+		bp.setNetwork(this);
+		return bp;
+	}
+
+
+	/**
+	 * This class represents backpropagation algorithm of weighted generator, which computes sums of real outputs once per output batch
+	 * because output error of every output neuron with weighted function depends on the sum of all real outputs.
+	 * 
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class WeightedBackpropagator extends Backpropagator {
+		
+		/**
+		 * Serial version UID for serializable class. 
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Output batch whose sums of real outputs are computed.
+		 */
+		private transient Iterable<NeuronValue[][]> sumBatch = null;
+		
+		/**
+		 * Sums of real outputs of elements of output batch.
+		 */
+		private transient NeuronValue[] sums = null;
+		
+		/**
+		 * Default constructor.
+		 */
+		public WeightedBackpropagator() {
+			super();
+		}
+
+		@Override
+		protected NeuronValue calcOutputError(LayerStandard outputLayer, int outputNeuronIndex, Iterable<NeuronValue[][]> outputBatch) {
+			NeuronStandard outputNeuron = outputLayer.get(outputNeuronIndex);
+			if (outputBatch == null || !(network instanceof GeneratorWeighted0<?>) || !((GeneratorWeighted0<?>)network).requireWeightedFunction(outputNeuron, outputLayer))
+				return super.calcOutputError(outputLayer, outputNeuronIndex, outputBatch);
+			
+			//Output neurons are browsed from the first one for every output batch, so sums are computed again at the first output neuron.
+			if (outputNeuronIndex == 0 || sumBatch != outputBatch) {
+				List<NeuronValue> sumList = Util.newList(0);
+				for (NeuronValue[][] outputs : outputBatch) {
+					NeuronValue[] realOutputs = (outputs != null && outputs.length > 0) ? outputs[0] : null;
+					if (realOutputs != null) realOutputs = NeuronValue.adjustArray(realOutputs, outputLayer.size(), outputLayer);
+					sumList.add(realOutputs != null ? sumOf(realOutputs) : null);
+				}
+				sums = sumList.toArray(new NeuronValue[] {});
+				sumBatch = outputBatch;
+			}
+			
+			int n = 0, k = 0;
+			NeuronValue errorMean = outputNeuron.getOutput().zero();
+			for (NeuronValue[][] outputs : outputBatch) {
+				NeuronValue sum = k < sums.length ? sums[k] : null;
+				k++;
+				NeuronValue[] realOutputs = (outputs != null && outputs.length > 0) ? outputs[0] : null;
+				if (realOutputs != null) realOutputs = NeuronValue.adjustArray(realOutputs, outputLayer.size(), outputLayer);
+				
+				NeuronValue realOutput = realOutputs != null ? realOutputs[outputNeuronIndex] : null; //There are some cases that have no output (null output).
+				NeuronValue error = null;
+				NeuronValue[] neuronOutputs = outputs != null && outputs.length > 1 ? outputs[1] : null;
+				if (neuronOutputs == null)
+					error = calcOutputError(outputNeuron, realOutput, outputLayer, outputNeuronIndex, realOutputs, sum);
+				else {
+					neuronOutputs = NeuronValue.adjustArray(neuronOutputs, outputLayer.size(), outputLayer);
+					error = BackpropagatorAbstract.calcOutputErrorDefault(outputNeuron, realOutput, (neuronOutputs != null ? neuronOutputs[outputNeuronIndex] : null));
+				}
+				if (error == null) continue;
+				
+				errorMean = errorMean.add(error);
+				n++;
+			}
+			
+			if (n != 0 && n != 1) errorMean = errorMean.divide((double)n);
+			return errorMean;
+		}
+		
+	}
+	
+	
 	@Override
 	protected NeuronValue calcOutputError2(NeuronStandard outputNeuron, NeuronValue realOutput, LayerStandard outputLayer, int outputNeuronIndex, NeuronValue[] realOutputs, Object...params) {
 		if (outputNeuronIndex < 0 || realOutputs == null || realOutputs.length == 0)
@@ -475,31 +627,28 @@ class GeneratorWeighted0<T extends Trainer> extends GeneratorStandard<T> {
 		if (!requireWeightedFunction(outputNeuron, outputLayer))
 			return super.calcOutputError2(outputNeuron, realOutput, outputLayer, outputNeuronIndex, realOutputs, params);
 		
-		if (realOutput == null) return null;
-		NeuronValue errorSum = realOutput.zero();
-		for (int i = 0; i < realOutputs.length; i++) {
-			NeuronValue output = outputNeuron != null ? outputNeuron.getOutput() : null;
-			NeuronValue error = calcOutputErrorWeighted(output, realOutputs[i], i==outputNeuronIndex);
-			errorSum = errorSum.add(error);
-		}
-		return errorSum;
+		NeuronValue output = outputNeuron != null ? outputNeuron.getOutput() : null;
+		if (realOutput == null || output == null) return null;
+		if (paramIsSparseOutput() && realOutput.norm() == 0) return realOutput.zero(); //Outputs not touched by the class of training record are not updated.
+		
+		//Summing realOutputs[i]*(unit - output) if i is output neuron index and realOutputs[i]*(-output) otherwise over i gives the closed form below.
+		//Sum of real outputs is the first optional parameter if backpropagator of this generator computed it once for all output neurons.
+		NeuronValue sum = params != null && params.length > 0 && params[0] instanceof NeuronValue ? (NeuronValue)params[0] : sumOf(realOutputs);
+		return realOutputs[outputNeuronIndex].multiply(realOutput.unit()).subtract(sum.multiply(output));
 	}
 
 
 	/**
-	 * Calculating error by weighted function function.
-	 * @param output neuron output.
-	 * @param realOutput real output.
-	 * @param match matching flag.
-	 * @return error.
+	 * Getting sum of real outputs.
+	 * @param realOutputs real outputs.
+	 * @return sum of real outputs.
 	 */
-	private NeuronValue calcOutputErrorWeighted(NeuronValue output, NeuronValue realOutput, boolean match) {
-		if (output == null || realOutput == null) return null;
-		NeuronValue unit = realOutput.unit();
-		if (match)
-			return realOutput.multiply(unit.subtract(output));
-		else
-			return realOutput.multiply(output.negative());
+	private static NeuronValue sumOf(NeuronValue[] realOutputs) {
+		NeuronValue sum = null;
+		for (NeuronValue realOutput : realOutputs) {
+			if (realOutput != null) sum = sum == null ? realOutput : sum.add(realOutput);
+		}
+		return sum;
 	}
 
 	
@@ -7,7 +7,6 @@
  */
 package net.ea.ann.core.value.indexed;
 
-import net.ea.ann.core.Util;
 import net.ea.ann.core.function.Function;
 import net.ea.ann.core.function.FunctionInvertible;
 import net.ea.ann.core.value.NeuronValue;
@@ -54,6 +53,16 @@ public class IndexedNeuronValue1 implements IndexedNeuronValue {
 	}
 
 	
+	/**
+	 * Copy constructor. Scalar values are immutable and so they are shared with the specified indexed value.
+	 * @param value specified indexed value.
+	 */
+	private IndexedNeuronValue1(IndexedNeuronValue1 value) {
+		this.values = value.values.clone();
+		this.index = value.index;
+	}
+
+	
 	/**
 	 * Constructor with size.
 	 * @param size specified size.
@@ -337,11 +346,8 @@ public class IndexedNeuronValue1 implements IndexedNeuronValue {
 	 */
 	private IndexedNeuronValue renew(NeuronValue value) {
 		if (value == null || !(value instanceof NeuronValue1)) return null;
-		IndexedNeuronValue1 newValue = null;
-		try {newValue = (IndexedNeuronValue1)Util.cloneBySerialize(this);}
-		catch (Throwable e) {Util.trace(e);}
-		
-		if (newValue != null) newValue.values[getIndex()] = (NeuronValue1)value;
+		IndexedNeuronValue1 newValue = new IndexedNeuronValue1(this);
+		newValue.values[getIndex()] = (NeuronValue1)value;
 		return newValue;
 	}
 
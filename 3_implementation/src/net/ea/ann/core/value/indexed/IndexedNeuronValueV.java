@@ -7,7 +7,6 @@
  */
 package net.ea.ann.core.value.indexed;
 
-import net.ea.ann.core.Util;
 import net.ea.ann.core.function.Function;
 import net.ea.ann.core.function.FunctionInvertible;
 import net.ea.ann.core.value.NeuronValue;
@@ -56,6 +55,19 @@ public class IndexedNeuronValueV implements IndexedNeuronValue {
 	}
 
 	
+	/**
+	 * Copy constructor. Vector values are duplicated except the indexed one which is replaced later.
+	 * @param value specified indexed value.
+	 */
+	private IndexedNeuronValueV(IndexedNeuronValueV value) {
+		this.index = value.index;
+		this.values = new NeuronValueV[value.values.length];
+		for (int i = 0; i < values.length; i++) {
+			this.values[i] = i == index || value.values[i] == null ? value.values[i] : (NeuronValueV)value.values[i].duplicate();
+		}
+	}
+
+	
 	/**
 	 * Constructor with size and dimension.
 	 * @param size specified size.
@@ -340,11 +352,8 @@ public class IndexedNeuronValueV implements IndexedNeuronValue {
 	 */
 	private IndexedNeuronValue renew(NeuronValue value) {
 		if (value == null || !(value instanceof NeuronValueV)) return null;
-		IndexedNeuronValueV newValue = null;
-		try {newValue = (IndexedNeuronValueV)Util.cloneBySerialize(this);}
-		catch (Throwable e) {Util.trace(e);}
-		
-		if (newValue != null) newValue.values[getIndex()] = (NeuronValueV)value;
+		IndexedNeuronValueV newValue = new IndexedNeuronValueV(this);
+		newValue.values[getIndex()] = (NeuronValueV)value;
 		return newValue;
 	}
 	
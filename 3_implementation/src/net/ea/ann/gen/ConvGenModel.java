@@ -107,6 +107,20 @@ public interface ConvGenModel extends GenModel {
 	G generateRaster(NeuronValue...dataZ) throws RemoteException;
 
 	
+	/**
+	 * Generate a batch of rasters.
+	 * @param count number of generated rasters.
+	 * @return array of generated rasters.
+	 * @throws RemoteException if any error raises.
+	 */
+	default G[] generateRaster(int count) throws RemoteException {
+		count = count < 0 ? 0 : count;
+		G[] gs = new G[count];
+		for (int i = 0; i < count; i++) gs[i] = generateRaster();
+		return gs;
+	}
+
+	
 	/**
 	 * Generate best raster.
 	 * @return best generated raster.
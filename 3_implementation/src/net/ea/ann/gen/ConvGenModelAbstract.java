@@ -64,6 +64,18 @@ public abstract class ConvGenModelAbstract extends GenModelAbstract implements C
 	public final static boolean CONV_CLASSIFIER_DEFAULT = false;
 
 	
+	/**
+	 * Field of feature cache. If it is true, features of rasters are taken from default shared feature cache when convolutional network is not learned.
+	 */
+	public final static String FEATURE_CACHE_FIELD = "convgm_feature_cache";
+	
+	
+	/**
+	 * Default value for field of feature cache.
+	 */
+	public final static boolean FEATURE_CACHE_DEFAULT = false;
+
+	
 	/**
 	 * Raster channel which is often larger than or equal to neuron channel.
 	 */
@@ -546,6 +558,36 @@ public abstract class ConvGenModelAbstract extends GenModelAbstract implements C
 	}
 	
 	
+	@Override
+	public G[] generateRaster(int count) throws RemoteException {
+		return generateRaster(this, count, conv, deconv, this, this);
+	}
+	
+	
+	/**
+	 * Generating a batch of rasters. Structures are generated in batch by the model and then they are converted to rasters in the lock of the model.
+	 * @param model generative model.
+	 * @param count number of rasters.
+	 * @param conv convolutional network.
+	 * @param deconv deconvolutional network.
+	 * @param featureToX converter of X data to feature.
+	 * @param rasterUtil raster utility.
+	 * @return array of generated structures along with rasters.
+	 * @throws RemoteException if any error raises.
+	 */
+	public static G[] generateRaster(GenModel model, int count, StackNetworkAbstract conv, StackNetworkAbstract deconv, FeatureToX featureToX, RasterUtility rasterUtil) throws RemoteException {
+		G[] gs = model.generate(count);
+		synchronized (model) {
+			for (G g : gs) {
+				try {
+					if (g != null && g.xgen != null) g.xgenUndefined = convertXDataToRaster(g.xgen, conv, deconv, featureToX, rasterUtil);
+				} catch (Throwable e) {Util.trace(e);}
+			}
+		}
+		return gs;
+	}
+	
+	
 	@Override
 	public synchronized G generateRasterBest() throws RemoteException {
 		try {
@@ -187,13 +187,14 @@ public class ConvGenModelAssoc implements Serializable, Cloneable {
 			return result;
 		}
 		
-		for (int i = 0; i < nGens; i++) {
-			try {
-				G g = nGens <= 1 ? convGM.generateRasterBest() : convGM.generateRaster();
+		if (nGens <= 0) return result;
+		try {
+			G[] gs = nGens <= 1 ? new G[] {convGM.generateRasterBest()} : convGM.generateRaster(nGens);
+			for (G g : gs) {
 				Raster raster = g != null ? g.getXGenRaster() : null;
 				if (raster != null) result.add(raster);
-			} catch (Exception e) {Util.trace(e);}
-		}
+			}
+		} catch (Exception e) {Util.trace(e);}
 		return result;
 	}
 	
@@ -336,7 +337,7 @@ public class ConvGenModelAssoc implements Serializable, Cloneable {
 		for (Raster recoverRaster : rasters) {
 			index++;
 			try {
-				ConvGenModel clonedGM = (ConvGenModel)net.ea.ann.core.Util.cloneBySerialize(convGM);
+				ConvGenModel clonedGM = (ConvGenModel)Util.cloneByStructure(convGM);
 				if (learnOne)
 					clonedGM.learnRasterOne(Arrays.asList(recoverRaster));
 				else
@@ -1729,7 +1730,7 @@ public class ConvGenModelAssoc implements Serializable, Cloneable {
 				double bm = 0;
 				int count = 0;
 				for (Raster raster : testRasters) {
-					GM clonedGM = (GM)Util.cloneBySerialize(gm);
+					GM clonedGM = (GM)Util.cloneByStructure(gm);
 					clonedGM.gm.learnRaster(Arrays.asList(raster));
 					
 					for (int k = 0; k < nRecover; k++) {
@@ -0,0 +1,485 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.gen;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import net.ea.ann.core.Cloner;
+import net.ea.ann.core.NetworkAbstract;
+import net.ea.ann.core.Util;
+import net.ea.ann.gen.GenModel.G;
+import net.ea.ann.raster.Raster;
+import net.ea.ann.raster.RasterAssoc;
+import net.ea.ann.raster.Size;
+import net.ea.ann.raster.SizeZoom;
+
+/**
+ * This class represents sweep of hyper-parameters for benchmarking convolutional generative models.
+ * Every configuration (model, learning rate, iteration, zoom ratio) is an independent job which initializes a replica of model from base rasters
+ * and then measures mean recovery error over test rasters. Jobs run on a bounded pool of threads, and jobs are additionally bounded by a memory budget from building models to the end of testing,
+ * where every job accounts for estimated heap footprint of its model and the replica of the model. Every finished job is appended to a CSV checkpoint so that a crashed sweep resumes by skipping finished jobs,
+ * and a JSON summary is written when the sweep ends.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class ConvGenSweep {
+
+
+	/**
+	 * Name of CSV checkpoint file.
+	 */
+	public final static String RESULT_CSV = "sweep.csv";
+
+
+	/**
+	 * Name of JSON summary file.
+	 */
+	public final static String RESULT_JSON = "sweep.json";
+
+
+	/**
+	 * Header of CSV checkpoint file.
+	 */
+	private final static String CSV_HEADER = "name,learning_rate,iteration,zoom,error,count,time_ms,memory_bytes";
+
+
+	/**
+	 * This class represents a job of sweep, which is a configuration and its result.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	public static class Job {
+
+		/**
+		 * Name of model.
+		 */
+		public String name = null;
+
+		/**
+		 * Prototype of model, which is not changed by job.
+		 */
+		protected ConvGenModel gm = null;
+
+		/**
+		 * Learning rate.
+		 */
+		public double learningRate = NetworkAbstract.LEARN_RATE_DEFAULT;
+
+		/**
+		 * Maximum iteration.
+		 */
+		public int iteration = 1;
+
+		/**
+		 * Zoom out ratio.
+		 */
+		public int zoom = 1;
+
+		/**
+		 * Mean recovery error.
+		 */
+		public double error = Double.NaN;
+
+		/**
+		 * Number of recoveries.
+		 */
+		public int count = 0;
+
+		/**
+		 * Wall time in milliseconds.
+		 */
+		public long time = 0;
+
+		/**
+		 * Estimated memory of model in bytes, which is heap footprint of the model and its replica per test raster.
+		 */
+		public long memory = 0;
+
+		/**
+		 * Flag to indicate whether job is finished.
+		 */
+		public boolean done = false;
+
+		/**
+		 * Constructor with configuration.
+		 * @param name name of model.
+		 * @param gm prototype of model.
+		 * @param learningRate learning rate.
+		 * @param iteration maximum iteration.
+		 * @param zoom zoom out ratio.
+		 */
+		public Job(String name, ConvGenModel gm, double learningRate, int iteration, int zoom) {
+			this.name = name.replace(',', '_');
+			this.gm = gm;
+			this.learningRate = learningRate;
+			this.iteration = iteration < 1 ? 1 : iteration;
+			this.zoom = zoom < 1 ? 1 : zoom;
+		}
+
+		/**
+		 * Getting key of configuration, which is the first columns of CSV checkpoint.
+		 * @return key of configuration.
+		 */
+		public String key() {
+			return name + "," + learningRate + "," + iteration + "," + zoom;
+		}
+
+		/**
+		 * Getting label of configuration, which is used to name generated rasters.
+		 * @return label of configuration.
+		 */
+		public String label() {
+			return name + "-" + Util.format(learningRate) + "-" + iteration + "-" + zoom;
+		}
+
+		/**
+		 * Converting result into CSV line.
+		 * @return CSV line.
+		 */
+		protected String toCSV() {
+			return key() + "," + error + "," + count + "," + time + "," + memory;
+		}
+
+		/**
+		 * Converting result into JSON object.
+		 * @return JSON object.
+		 */
+		protected String toJSON() {
+			return "{\"name\": \"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + "\", \"learning_rate\": " + learningRate + ", \"iteration\": " + iteration +
+				", \"zoom\": " + zoom + ", \"error\": " + (Double.isFinite(error) ? String.valueOf(error) : "null") + ", \"count\": " + count +
+				", \"time_ms\": " + time + ", \"memory_bytes\": " + memory + "}";
+		}
+
+	}
+
+
+	/**
+	 * Base rasters to initialize models.
+	 */
+	protected List<Raster> baseRasters = null;
+
+
+	/**
+	 * Test rasters to measure recovery error.
+	 */
+	protected List<Raster> testRasters = null;
+
+
+	/**
+	 * Z dimension.
+	 */
+	protected int zDim = 10;
+
+
+	/**
+	 * Minimum size.
+	 */
+	protected Size minSize = null;
+
+
+	/**
+	 * Flag to indicate whether depth is zoomed out too, which is true for 3D rasters.
+	 */
+	protected boolean zoomDepth = false;
+
+
+	/**
+	 * Number of recoveries per test raster.
+	 */
+	protected int nRecover = 1;
+
+
+	/**
+	 * Flag to indicate whether recovery is random.
+	 */
+	protected boolean randomRecover = false;
+
+
+	/**
+	 * Directory to save generated rasters, which can be null.
+	 */
+	protected Path genDir = null;
+
+
+	/**
+	 * Jobs.
+	 */
+	protected List<Job> jobs = Util.newList(0);
+
+
+	/**
+	 * Estimated memory of models in bytes, keyed by name of model and zoom ratio, which do not depend on learning rate and iteration.
+	 */
+	private Map<String, Long> footprints = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Constructor with base rasters, test rasters, Z dimension, and minimum size.
+	 * @param baseRasters base rasters to initialize models.
+	 * @param testRasters test rasters to measure recovery error.
+	 * @param zDim Z dimension.
+	 * @param minSize minimum size.
+	 */
+	public ConvGenSweep(List<Raster> baseRasters, List<Raster> testRasters, int zDim, Size minSize) {
+		this.baseRasters = baseRasters;
+		this.testRasters = testRasters;
+		this.zDim = zDim;
+		this.minSize = minSize;
+		this.zoomDepth = minSize != null && minSize.depth > 1;
+	}
+
+
+	/**
+	 * Setting recovery.
+	 * @param nRecover number of recoveries per test raster.
+	 * @param randomRecover flag to indicate whether recovery is random.
+	 * @return this sweep.
+	 */
+	public ConvGenSweep setRecover(int nRecover, boolean randomRecover) {
+		this.nRecover = nRecover < 1 ? 1 : nRecover;
+		this.randomRecover = randomRecover;
+		return this;
+	}
+
+
+	/**
+	 * Setting directory to save generated rasters.
+	 * @param genDir directory to save generated rasters, which can be null.
+	 * @return this sweep.
+	 */
+	public ConvGenSweep setGenDir(Path genDir) {
+		this.genDir = genDir;
+		return this;
+	}
+
+
+	/**
+	 * Adding grid of configurations of a model.
+	 * @param name name of model.
+	 * @param gm prototype of model.
+	 * @param learningRates learning rates.
+	 * @param iterations maximum iterations.
+	 * @param zooms zoom out ratios.
+	 * @return this sweep.
+	 */
+	public ConvGenSweep addGrid(String name, ConvGenModel gm, double[] learningRates, int[] iterations, int[] zooms) {
+		for (double learningRate : learningRates) {
+			for (int iteration : iterations) {
+				for (int zoom : zooms) jobs.add(new Job(name, gm, learningRate, iteration, zoom));
+			}
+		}
+		return this;
+	}
+
+
+	/**
+	 * Getting jobs.
+	 * @return jobs.
+	 */
+	public List<Job> getJobs() {
+		return jobs;
+	}
+
+
+	/**
+	 * Running sweep.
+	 * @param resultDir directory of CSV checkpoint and JSON summary, which can be null.
+	 * @param parallel maximum number of concurrent jobs.
+	 * @param memoryBudget memory budget in bytes for concurrent jobs from building models to the end of testing, which is unbounded if it is not positive.
+	 * @return jobs with results.
+	 */
+	public List<Job> run(Path resultDir, int parallel, long memoryBudget) {
+		Path csv = resultDir != null ? resultDir.resolve(RESULT_CSV) : null;
+		restore(csv);
+
+		List<Job> pending = Util.newList(0);
+		for (Job job : jobs) {
+			if (!job.done) pending.add(job);
+		}
+		if (csv != null && !Files.exists(csv)) append(csv, CSV_HEADER);
+
+		int budget = memoryBudget > 0 ? (int)Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / 1024)) : Integer.MAX_VALUE;
+		Semaphore memory = memoryBudget > 0 ? new Semaphore(budget, true) : null;
+		ExecutorService executor = Executors.newFixedThreadPool(parallel < 1 ? 1 : parallel);
+		try {
+			List<Future<?>> futures = Util.newList(pending.size());
+			for (Job job : pending) {
+				futures.add(executor.submit(() -> {
+					run(job, memory, budget);
+					if (job.done && csv != null) append(csv, job.toCSV());
+				}));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (Throwable e) {Util.trace(e);}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		if (resultDir != null) saveJSON(resultDir.resolve(RESULT_JSON));
+		return jobs;
+	}
+
+
+	/**
+	 * Running a job. Permits of memory budget are acquired before the model is built and trained. If footprint of the same model at the same zoom ratio is not estimated yet,
+	 * the whole budget is acquired while the model is built and surplus permits are released as soon as real footprint of the built model is estimated.
+	 * @param job specified job.
+	 * @param memory semaphore of memory budget in kilobytes, which is null if memory budget is unbounded.
+	 * @param budget memory budget in kilobytes.
+	 */
+	private void run(Job job, Semaphore memory, int budget) {
+		long startTime = System.currentTimeMillis();
+		String footprintKey = job.name + "," + job.zoom;
+		Long footprint = footprints.get(footprintKey);
+		int permits = memory == null ? 0 : (footprint != null ? permitsOf(footprint, budget) : budget);
+		try {
+			if (permits > 0) memory.acquire(permits);
+		} catch (InterruptedException e) {Util.trace(e); return;}
+
+		double error = 0;
+		int count = 0;
+		try {
+			ConvGenModel gm = null;
+			try {
+				gm = (ConvGenModel)Util.cloneByStructure(job.gm);
+				gm.getConfig().put(NetworkAbstract.LEARN_RATE_FIELD, job.learningRate);
+				gm.getConfig().put(NetworkAbstract.LEARN_MAX_ITERATION_FIELD, job.iteration);
+			} catch (Throwable e) {Util.trace(e); return;}
+
+			ConvGenModelAssoc assoc = new ConvGenModelAssoc(gm, false);
+			List<Raster> genRasters = assoc.initGenRasters(baseRasters, 1, zDim, SizeZoom.zoom(job.zoom, job.zoom, zoomDepth ? job.zoom : 1, 1), minSize);
+			if (genDir != null) RasterAssoc.saveDirector(genRasters, genDir, job.label());
+
+			//Model and its replica per test raster are alive together in testing phase.
+			job.memory = 2L * Cloner.sizeOf(gm);
+			footprints.put(footprintKey, job.memory);
+			if (memory != null) {
+				int realPermits = permitsOf(job.memory, budget);
+				if (realPermits < permits)
+					memory.release(permits - realPermits);
+				else if (realPermits > permits) {
+					//Permits are released before acquiring again because waiting for extra permits while holding permits may deadlock with other jobs.
+					memory.release(permits);
+					permits = 0;
+					memory.acquire(realPermits);
+				}
+				permits = realPermits;
+			}
+
+			for (Raster raster : testRasters) {
+				try {
+					ConvGenModel clonedGM = (ConvGenModel)Util.cloneByStructure(gm);
+					clonedGM.learnRaster(Arrays.asList(raster));
+					for (int k = 0; k < nRecover; k++) {
+						G g = clonedGM.recoverRaster(raster, null, randomRecover, true);
+						if ((g == null) || (g.xgenUndefined == null) || !(g.xgenUndefined instanceof Raster)) continue;
+						error += g.error;
+						count++;
+					}
+				} catch (Throwable e) {Util.trace(e);}
+			}
+		}
+		catch (InterruptedException e) {Util.trace(e); return;}
+		finally {
+			if (permits > 0) memory.release(permits);
+		}
+
+		job.error = count > 0 ? error / (double)count : Double.NaN;
+		job.count = count;
+		job.time = System.currentTimeMillis() - startTime;
+		job.done = true;
+	}
+
+
+	/**
+	 * Converting estimated memory into permits of memory budget.
+	 * @param memory estimated memory in bytes.
+	 * @param budget memory budget in kilobytes.
+	 * @return permits of memory budget, which are in kilobytes and not greater than the budget.
+	 */
+	private static int permitsOf(long memory, int budget) {
+		return (int)Math.max(1, Math.min(budget, memory / 1024));
+	}
+
+
+	/**
+	 * Restoring results of finished jobs from CSV checkpoint.
+	 * @param csv CSV checkpoint.
+	 */
+	private void restore(Path csv) {
+		if (csv == null || !Files.exists(csv)) return;
+		Map<String, Job> keys = Util.newMap(jobs.size());
+		for (Job job : jobs) keys.put(job.key(), job);
+		try {
+			for (String line : Files.readAllLines(csv, StandardCharsets.UTF_8)) {
+				String[] fields = line.split(",");
+				if (fields.length < 8) continue;
+				Job job = keys.get(fields[0] + "," + fields[1] + "," + fields[2] + "," + fields[3]);
+				if (job == null) continue;
+				try {
+					job.error = Double.parseDouble(fields[4]);
+					job.count = Integer.parseInt(fields[5]);
+					job.time = Long.parseLong(fields[6]);
+					job.memory = Long.parseLong(fields[7]);
+					job.done = true;
+				} catch (Throwable e) {}
+			}
+		} catch (Throwable e) {Util.trace(e);}
+	}
+
+
+	/**
+	 * Appending line into CSV checkpoint.
+	 * @param csv CSV checkpoint.
+	 * @param line line.
+	 */
+	private static synchronized void append(Path csv, String line) {
+		try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			writer.write(line + "\n");
+			writer.flush();
+		} catch (Throwable e) {Util.trace(e);}
+	}
+
+
+	/**
+	 * Saving JSON summary of all jobs.
+	 * @param json JSON file.
+	 */
+	private void saveJSON(Path json) {
+		StringBuilder buffer = new StringBuilder("[\n");
+		for (int i = 0; i < jobs.size(); i++) {
+			buffer.append("  " + jobs.get(i).toJSON() + (i < jobs.size() - 1 ? ",\n" : "\n"));
+		}
+		buffer.append("]\n");
+		try {
+			Files.write(json, buffer.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (Throwable e) {Util.trace(e);}
+	}
+
+
+}
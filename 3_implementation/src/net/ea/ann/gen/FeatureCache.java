@@ -0,0 +1,426 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.gen;
+
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.ea.ann.conv.Content;
+import net.ea.ann.conv.RecordExt;
+import net.ea.ann.conv.stack.StackNetworkAbstract;
+import net.ea.ann.conv.stack.StackNetworkAssoc;
+import net.ea.ann.core.Record;
+import net.ea.ann.core.Util;
+import net.ea.ann.core.value.NeuronValue;
+import net.ea.ann.core.value.NeuronValue1;
+import net.ea.ann.core.value.NeuronValueV;
+import net.ea.ann.raster.Raster;
+
+/**
+ * This class represents content-addressed cache of features extracted by convolutional networks.
+ * A feature is addressed by digest of the signature of convolutional network (sizes, filters, activation functions, biases, weights) and the input data of raster,
+ * so that models which are re-initialized with the same filters and zoom ratio over the same rasters reuse features instead of evaluating convolutional network again.
+ * Features are stored off-heap in direct buffers and least recently used features are evicted when cache exceeds its capacity.
+ * Only scalar and vector neuron values are cached and features of convolutional networks which are learned are never cached.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class FeatureCache {
+
+
+	/**
+	 * Default capacity of cache in bytes.
+	 */
+	public final static long CAPACITY_DEFAULT = 64L * 1024L * 1024L;
+
+
+	/**
+	 * Default shared cache.
+	 */
+	private static FeatureCache defaultCache = null;
+
+
+	/**
+	 * This class represents key of cached feature, which is a digest.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Key {
+
+		/**
+		 * Digest.
+		 */
+		protected byte[] digest = null;
+
+		/**
+		 * Hash code.
+		 */
+		protected int hash = 0;
+
+		/**
+		 * Constructor with digest.
+		 * @param digest digest.
+		 */
+		public Key(byte[] digest) {
+			this.digest = digest;
+			this.hash = Arrays.hashCode(digest);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && Arrays.equals(digest, ((Key)obj).digest);
+		}
+
+	}
+
+
+	/**
+	 * This class represents cached feature stored in direct buffer.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Entry {
+
+		/**
+		 * Direct buffer of feature values.
+		 */
+		protected ByteBuffer buffer = null;
+
+		/**
+		 * Number of neuron values.
+		 */
+		protected int length = 0;
+
+		/**
+		 * Dimension of vector neuron values, which is zero for scalar neuron values.
+		 */
+		protected int dim = 0;
+
+		/**
+		 * Getting feature.
+		 * @return feature.
+		 */
+		protected NeuronValue[] toFeature() {
+			NeuronValue[] feature = new NeuronValue[length];
+			int index = 0;
+			for (int i = 0; i < length; i++) {
+				if (dim == 0) {
+					feature[i] = new NeuronValue1(buffer.getDouble(8*index));
+					index++;
+				}
+				else {
+					double[] v = new double[dim];
+					for (int k = 0; k < dim; k++, index++) v[k] = buffer.getDouble(8*index);
+					feature[i] = new NeuronValueV(v);
+				}
+			}
+			return feature;
+		}
+
+		/**
+		 * Getting size of this entry in bytes.
+		 * @return size of this entry in bytes.
+		 */
+		protected long size() {
+			return buffer.capacity();
+		}
+
+		/**
+		 * Creating entry from feature.
+		 * @param feature feature.
+		 * @return entry created from feature, which is null if feature is not made of scalar neuron values or vector neuron values of the same dimension.
+		 */
+		protected static Entry create(NeuronValue[] feature) {
+			double[] values = flatten(feature);
+			if (values == null) return null;
+			Entry entry = new Entry();
+			entry.length = feature.length;
+			entry.dim = feature[0] instanceof NeuronValue1 ? 0 : feature[0].dim();
+			entry.buffer = ByteBuffer.allocateDirect(8*values.length);
+			for (int i = 0; i < values.length; i++) entry.buffer.putDouble(8*i, values[i]);
+			return entry;
+		}
+
+	}
+
+
+	/**
+	 * Entries in access order.
+	 */
+	protected LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+
+	/**
+	 * Capacity in bytes.
+	 */
+	protected long capacity = CAPACITY_DEFAULT;
+
+
+	/**
+	 * Current size in bytes.
+	 */
+	protected long size = 0;
+
+
+	/**
+	 * Number of hits.
+	 */
+	protected long hits = 0;
+
+
+	/**
+	 * Number of misses.
+	 */
+	protected long misses = 0;
+
+
+	/**
+	 * Constructor with capacity.
+	 * @param capacity capacity in bytes.
+	 */
+	public FeatureCache(long capacity) {
+		this.capacity = capacity < 0 ? 0 : capacity;
+	}
+
+
+	/**
+	 * Default constructor.
+	 */
+	public FeatureCache() {
+		this(CAPACITY_DEFAULT);
+	}
+
+
+	/**
+	 * Getting default shared cache.
+	 * @return default shared cache.
+	 */
+	public static synchronized FeatureCache getDefault() {
+		if (defaultCache == null) defaultCache = new FeatureCache();
+		return defaultCache;
+	}
+
+
+	/**
+	 * Getting capacity.
+	 * @return capacity in bytes.
+	 */
+	public synchronized long getCapacity() {
+		return capacity;
+	}
+
+
+	/**
+	 * Setting capacity. Least recently used features are evicted if cache exceeds new capacity.
+	 * @param capacity capacity in bytes.
+	 */
+	public synchronized void setCapacity(long capacity) {
+		this.capacity = capacity < 0 ? 0 : capacity;
+		evict();
+	}
+
+
+	/**
+	 * Getting current size.
+	 * @return current size in bytes.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+
+	/**
+	 * Getting number of hits.
+	 * @return number of hits.
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+
+	/**
+	 * Getting number of misses.
+	 * @return number of misses.
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+
+	/**
+	 * Clearing cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		size = 0;
+		hits = 0;
+		misses = 0;
+	}
+
+
+	/**
+	 * Getting cached feature.
+	 * @param key key.
+	 * @return cached feature, which is null if there is no cached feature.
+	 */
+	protected synchronized NeuronValue[] get(Key key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.toFeature();
+	}
+
+
+	/**
+	 * Putting feature into cache.
+	 * @param key key.
+	 * @param feature feature.
+	 */
+	protected void put(Key key, NeuronValue[] feature) {
+		Entry entry = Entry.create(feature);
+		if (entry == null) return;
+		synchronized (this) {
+			if (entry.size() > capacity) return;
+			Entry old = entries.put(key, entry);
+			if (old != null) size -= old.size();
+			size += entry.size();
+			evict();
+		}
+	}
+
+
+	/**
+	 * Evicting least recently used features until cache does not exceed its capacity.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+		while (size > capacity && iterator.hasNext()) {
+			size -= iterator.next().getValue().size();
+			iterator.remove();
+		}
+	}
+
+
+	/**
+	 * Extracting feature of raster by convolutional network, which is taken from cache if it was extracted before by a network having the same signature.
+	 * @param conv convolutional network.
+	 * @param raster raster.
+	 * @return feature of raster.
+	 * @throws RemoteException if any error raises.
+	 */
+	public NeuronValue[] extract(StackNetworkAbstract conv, Raster raster) throws RemoteException {
+		if (conv == null || raster == null) return null;
+		StackNetworkAssoc assoc = new StackNetworkAssoc(conv);
+		NeuronValue[] inputData = assoc.getInputData(raster);
+		if (inputData == null) return null;
+		Key key = key(assoc.getSignature(), inputData);
+		NeuronValue[] feature = key != null ? get(key) : null;
+		if (feature != null) return feature;
+
+		conv.evaluate(inputData);
+		Content content = conv.getFeatureFitChannel();
+		feature = content != null ? content.getData() : null;
+		if (key != null && feature != null && feature.length > 0) put(key, feature);
+		return feature;
+	}
+
+
+	/**
+	 * Making key from signature of convolutional network and input data.
+	 * @param signature signature of convolutional network.
+	 * @param inputData input data.
+	 * @return key, which is null if input data cannot be addressed.
+	 */
+	private static Key key(byte[] signature, NeuronValue[] inputData) {
+		if (signature == null) return null;
+		double[] values = flatten(inputData);
+		if (values == null) return null;
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(signature);
+			ByteBuffer buffer = ByteBuffer.allocate(8*values.length + 8);
+			buffer.putInt(inputData.length).putInt(values.length / inputData.length);
+			for (double value : values) buffer.putDouble(value);
+			return new Key(digest.digest(buffer.array()));
+		} catch (Throwable e) {Util.trace(e);}
+
+		return null;
+	}
+
+
+	/**
+	 * Flattening array of neuron values.
+	 * @param array array of neuron values.
+	 * @return flattened values, which is null if array is not made of scalar neuron values or vector neuron values of the same dimension.
+	 */
+	private static double[] flatten(NeuronValue[] array) {
+		if (array == null || array.length == 0 || array[0] == null) return null;
+		if (array[0] instanceof NeuronValue1) {
+			double[] values = new double[array.length];
+			for (int i = 0; i < array.length; i++) {
+				if (!(array[i] instanceof NeuronValue1)) return null;
+				values[i] = ((NeuronValue1)array[i]).get();
+			}
+			return values;
+		}
+		else if (array[0] instanceof NeuronValueV) {
+			int dim = array[0].dim();
+			double[] values = new double[array.length*dim];
+			for (int i = 0; i < array.length; i++) {
+				if (!(array[i] instanceof NeuronValueV) || array[i].dim() != dim) return null;
+				NeuronValueV v = (NeuronValueV)array[i];
+				for (int k = 0; k < dim; k++) values[i*dim + k] = v.get(k);
+			}
+			return values;
+		}
+		else
+			return null;
+	}
+
+
+	/**
+	 * Extracting feature of record by convolutional network.
+	 * If cached flag is true, feature of raster input is taken from default shared cache unless convolutional network is learned.
+	 * @param conv convolutional network.
+	 * @param record record.
+	 * @param cached cached flag.
+	 * @return feature of record.
+	 * @throws RemoteException if any error raises.
+	 */
+	public static NeuronValue[] extract(StackNetworkAbstract conv, Record record, boolean cached) throws RemoteException {
+		if (conv == null || record == null) return null;
+		boolean rasterOnly = record.input == null && !(record instanceof RecordExt && ((RecordExt)record).contentInput != null) && record.getRasterInput() != null;
+		if (cached && rasterOnly && !ConvGenModelAbstract.hasLearning(conv))
+			return getDefault().extract(conv, record.getRasterInput());
+
+		conv.evaluate(record);
+		Content content = conv.getFeatureFitChannel();
+		return content != null ? content.getData() : null;
+	}
+
+
+}
@@ -161,6 +161,20 @@ public interface GenModel extends Network {
 	G generateBest() throws RemoteException;
 
 	
+	/**
+	 * Generate a batch of values (X values).
+	 * @param count number of generated structures.
+	 * @return array of generated structures.
+	 * @throws RemoteException if any error raises.
+	 */
+	default G[] generate(int count) throws RemoteException {
+		count = count < 0 ? 0 : count;
+		G[] gs = new G[count];
+		for (int i = 0; i < count; i++) gs[i] = generate();
+		return gs;
+	}
+
+	
 	/**
 	 * Recovering values (X values) from original data X.
 	 * @param dataX original data X.
@@ -10,11 +10,16 @@ package net.ea.ann.gen;
 import java.rmi.RemoteException;
 import java.util.Arrays;
 
+import net.ea.ann.core.Checkpoint;
+import net.ea.ann.core.Cloner;
 import net.ea.ann.core.Id;
 import net.ea.ann.core.NetworkAbstract;
+import net.ea.ann.core.NetworkStandardImpl;
 import net.ea.ann.core.NormSupporter;
 import net.ea.ann.core.Record;
+import net.ea.ann.core.Util;
 import net.ea.ann.core.function.Function;
+import net.ea.ann.core.generator.GeneratorStandard;
 import net.ea.ann.core.value.NeuronValue;
 import net.ea.ann.raster.Cube;
 import net.ea.ann.raster.Image;
@@ -37,6 +42,18 @@ public abstract class GenModelAbstract extends NetworkAbstract implements GenMod
 	private static final long serialVersionUID = 1L;
 
 	
+	/**
+	 * Name of field of minimum number of generated structures to be decoded in parallel.
+	 */
+	public final static String GEN_PARALLEL_MIN_FIELD = "gen_parallel_min";
+	
+	
+	/**
+	 * Default value of field of minimum number of generated structures to be decoded in parallel.
+	 */
+	public final static int GEN_PARALLEL_MIN_DEFAULT = 64;
+	
+	
 	/**
 	 * Neuron channel.
 	 */
@@ -62,6 +79,7 @@ public abstract class GenModelAbstract extends NetworkAbstract implements GenMod
 		this.config.put(Image.ALPHA_FIELD, Image.ALPHA_DEFAULT);
 		this.config.put(Raster2D.LEARN_FIELD, Raster2D.LEARN_DEFAULT);
 		this.config.put(HIDDEN_LAYER_MIN_FILED, HIDDEN_LAYER_MIN_DEFAULT);
+		this.config.put(GEN_PARALLEL_MIN_FIELD, GEN_PARALLEL_MIN_DEFAULT);
 		
 		this.neuronChannel = neuronChannel = (neuronChannel < 1 ? 1 : neuronChannel);
 		this.activateRef = activateRef == null ? (activateRef = Raster.toActivationRef(this.neuronChannel, isNorm())) : activateRef;
@@ -142,6 +160,89 @@ public abstract class GenModelAbstract extends NetworkAbstract implements GenMod
 	protected abstract NeuronValue[] learn(Iterable<Record> sample, double learningRate, double terminatedThreshold, int maxIteration);
 
 	
+	/**
+	 * Cached replicas of decoder for batched generation.
+	 */
+	private transient NetworkStandardImpl[] replicas = null;
+	
+	
+	/**
+	 * Decoder from which cached replicas are cloned.
+	 */
+	private transient NetworkStandardImpl replicated = null;
+	
+	
+	/**
+	 * Replicating decoder for batched generation. Replicas are cloned by structure once and cached, in which this model is referred by replicas instead of being cloned.
+	 * Weights of the decoder are copied into replicas whenever they are replicated so that replicas follow learning. Replicas are taken from cache and so they should be returned by {@link #release(NetworkStandardImpl[])}.
+	 * If the batch is smaller than the minimum parallel count, only the decoder itself is returned and then the batch should be decoded in the lock of this model.
+	 * @param decoder specified decoder.
+	 * @param count number of generated structures.
+	 * @return replicas of decoder.
+	 */
+	protected NetworkStandardImpl[] replicate(NetworkStandardImpl decoder, int count) {
+		int parallelMin = config.getAsInt(GEN_PARALLEL_MIN_FIELD);
+		int nReplicas = Math.min(count, Util.getPool().getParallelism());
+		if (parallelMin <= 0 || count < parallelMin || nReplicas <= 1) return new NetworkStandardImpl[] {decoder};
+		
+		NetworkStandardImpl[] replicas = replicated == decoder ? this.replicas : null;
+		this.replicas = null;
+		if (replicas == null || replicas.length != nReplicas) {
+			replicas = new NetworkStandardImpl[nReplicas];
+			for (int i = 0; i < nReplicas; i++) {
+				try {
+					replicas[i] = (NetworkStandardImpl)Cloner.clone(decoder, this);
+				} catch (Throwable e) {Util.trace(e);}
+				if (replicas[i] == null) return new NetworkStandardImpl[] {decoder};
+				if (replicas[i] instanceof GeneratorStandard<?>) ((GeneratorStandard<?>)replicas[i]).setParent(null);
+			}
+			replicated = decoder;
+			return replicas;
+		}
+		
+		double[] parameters = Checkpoint.getParameters(decoder, this);
+		for (NetworkStandardImpl replica : replicas) {
+			if (!Checkpoint.setParameters(replica, parameters, this)) return new NetworkStandardImpl[] {decoder};
+		}
+		return replicas;
+	}
+	
+	
+	/**
+	 * Returning replicas of decoder to cache after batched generation.
+	 * @param replicas replicas of decoder.
+	 */
+	protected synchronized void release(NetworkStandardImpl[] replicas) {
+		if (replicas != null && replicas.length > 1 && this.replicas == null) this.replicas = replicas;
+	}
+	
+	
+	/**
+	 * Decoding a batch of Z data. The batch is split into contiguous chunks and every chunk is decoded by its own replica of decoder in parallel.
+	 * @param dataZs batch of Z data.
+	 * @param decoders replicas of decoder.
+	 * @return array of generated structures.
+	 */
+	protected static G[] generateByZ(NeuronValue[][] dataZs, NetworkStandardImpl[] decoders) {
+		G[] gs = new G[dataZs.length];
+		int nChunks = decoders.length;
+		Util.parallel(nChunks, k -> {
+			int from = (int)((long)k * dataZs.length / nChunks), to = (int)((long)(k + 1) * dataZs.length / nChunks);
+			for (int i = from; i < to; i++) {
+				if (dataZs[i] == null) continue;
+				try {
+					NeuronValue[] genX = decoders[k].evaluate(new Record(dataZs[i]));
+					G g = new G();
+					g.z = dataZs[i];
+					g.xgen = genX;
+					gs[i] = g;
+				} catch (Throwable e) {Util.trace(e);}
+			}
+		});
+		return gs;
+	}
+	
+	
 	@Override
 	public synchronized G recover(NeuronValue[] dataX, Cube region, boolean random, boolean calcError) throws RemoteException {
 		if (dataX == null || dataX.length == 0) return null;
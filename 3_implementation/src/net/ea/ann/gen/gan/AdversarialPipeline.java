@@ -0,0 +1,217 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.gen.gan;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+import net.ea.ann.core.Checkpoint;
+import net.ea.ann.core.Cloner;
+import net.ea.ann.core.Network;
+import net.ea.ann.core.NetworkStandardImpl;
+import net.ea.ann.core.Record;
+import net.ea.ann.core.Util;
+import net.ea.ann.core.generator.GeneratorStandard;
+import net.ea.ann.core.value.NeuronValue;
+
+/**
+ * This class represents pipeline of fake samples in adversarial learning. Fake samples of the next discriminating step are generated in another thread
+ * by a replica of the generator while the adversarial network learns the current fake samples and while the generator learns.
+ * The replica may lag behind the generator, but fake samples are never taken if they were generated more than a bounded number of generator updates ago,
+ * which is called staleness bound. Staleness bound zero means that fake samples are always generated by the current generator.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class AdversarialPipeline {
+
+
+	/**
+	 * Generator which is learned.
+	 */
+	protected NetworkStandardImpl generator = null;
+
+
+	/**
+	 * Replica of generator which generates fake samples in another thread. The replica is cloned once and then weights of the generator are copied into it.
+	 */
+	protected NetworkStandardImpl replica = null;
+
+
+	/**
+	 * Supplier of random Z data.
+	 */
+	protected Supplier<NeuronValue[]> zSupplier = null;
+
+
+	/**
+	 * Staleness bound which is maximum number of generator updates between generating and taking fake samples.
+	 */
+	protected int staleness = 0;
+
+
+	/**
+	 * Number of generator updates.
+	 */
+	protected int version = 0;
+
+
+	/**
+	 * Number of generator updates when weights of the replica were copied from the generator, which is negative if the replica is not synchronized.
+	 */
+	protected int replicaVersion = -1;
+
+
+	/**
+	 * Pending task of fake samples.
+	 */
+	private ForkJoinTask<List<NeuronValue[]>> pending = null;
+
+
+	/**
+	 * Number of generator updates of the replica generating pending fake samples.
+	 */
+	private int pendingVersion = -1;
+
+
+	/**
+	 * Constructor with generator, supplier of random Z data, and staleness bound.
+	 * @param generator generator which is learned.
+	 * @param zSupplier supplier of random Z data, which is always called in current thread.
+	 * @param staleness staleness bound.
+	 */
+	public AdversarialPipeline(NetworkStandardImpl generator, Supplier<NeuronValue[]> zSupplier, int staleness) {
+		this.generator = generator;
+		this.zSupplier = zSupplier;
+		this.staleness = staleness < 0 ? 0 : staleness;
+	}
+
+
+	/**
+	 * Taking fake samples. Prefetched fake samples are taken if they are not stale; otherwise, fake samples are generated by the generator in current thread.
+	 * @param count number of fake samples.
+	 * @return fake samples.
+	 */
+	public List<NeuronValue[]> take(int count) {
+		List<NeuronValue[]> fakes = null;
+		int fakesVersion = pendingVersion;
+		if (pending != null) {
+			try {
+				fakes = pending.join();
+			} catch (Throwable e) {Util.trace(e);}
+			pending = null;
+			pendingVersion = -1;
+		}
+		if (fakes != null && fakes.size() == count && version - fakesVersion <= staleness) return fakes;
+
+		List<NeuronValue[]> dataZs = Util.newList(count);
+		for (int i = 0; i < count; i++) dataZs.add(zSupplier.get());
+		return generate(generator, dataZs);
+	}
+
+
+	/**
+	 * Prefetching fake samples in another thread. Fake samples are not prefetched if they would be stale when taken,
+	 * for example, fake samples cannot be prefetched across a generator update if staleness bound is zero.
+	 * @param count number of fake samples.
+	 * @param updates number of generator updates which will occur before the fake samples are taken.
+	 * @return true if prefetching is started.
+	 */
+	public boolean prefetch(int count, int updates) {
+		if (pending != null || count <= 0 || updates > staleness) return false;
+		if (replicaVersion < 0 || version - replicaVersion + updates > staleness) {
+			if (!synchronize()) return false;
+		}
+
+		List<NeuronValue[]> dataZs = Util.newList(count);
+		for (int i = 0; i < count; i++) dataZs.add(zSupplier.get());
+		NetworkStandardImpl replica = this.replica;
+		pending = Util.getPool().submit(() -> generate(replica, dataZs));
+		pendingVersion = replicaVersion;
+		return true;
+	}
+
+
+	/**
+	 * Synchronizing the replica with the generator. The replica is cloned only once, in which the parent of the generator is referred instead of being cloned and the replica has no parent.
+	 * After that, weights of the generator are copied into the replica, in which the parent is not walked either.
+	 * @return true if synchronizing is successful.
+	 */
+	private boolean synchronize() {
+		Network parent = generator instanceof GeneratorStandard<?> ? ((GeneratorStandard<?>)generator).getParent() : null;
+		try {
+			if (replica == null) {
+				NetworkStandardImpl replica = (NetworkStandardImpl)Cloner.clone(generator, parent);
+				if (replica instanceof GeneratorStandard<?>) ((GeneratorStandard<?>)replica).setParent(null);
+				this.replica = replica;
+			}
+			else if (!Checkpoint.setParameters(replica, Checkpoint.getParameters(generator, parent), parent))
+				replica = null;
+		} catch (Throwable e) {Util.trace(e); replica = null;}
+
+		replicaVersion = replica != null ? version : -1;
+		return replica != null;
+	}
+
+
+	/**
+	 * Notifying that the generator was updated. The generator must not be learned while pipeline is taking fake samples.
+	 */
+	public void update() {
+		version++;
+	}
+
+
+	/**
+	 * Closing this pipeline by waiting pending fake samples. The replica is kept so that this pipeline can be used again,
+	 * but weights of the generator are copied into the replica before it is used again because the generator may be changed outside this pipeline.
+	 */
+	public void close() {
+		if (pending != null) {
+			try {
+				pending.join();
+			} catch (Throwable e) {Util.trace(e);}
+		}
+		pending = null;
+		pendingVersion = -1;
+		replicaVersion = -1;
+	}
+
+
+	/**
+	 * Generating fake samples from Z data.
+	 * @param generator generator.
+	 * @param dataZs Z data.
+	 * @return fake samples.
+	 */
+	public static List<NeuronValue[]> generate(NetworkStandardImpl generator, List<NeuronValue[]> dataZs) {
+		List<NeuronValue[]> fakes = Util.newList(dataZs.size());
+		for (NeuronValue[] dataZ : dataZs) {
+			try {
+				NeuronValue[] generatedX = generator.evaluate(new Record(dataZ));
+				if (generatedX != null) fakes.add(generatedX);
+			} catch (Throwable e) {Util.trace(e);}
+		}
+		return fakes;
+	}
+
+
+	/**
+	 * Generating fake samples from Z data in another thread while current thread does other work on other networks.
+	 * @param generator generator which is not used by current thread until the returned task is joined.
+	 * @param dataZs Z data.
+	 * @return task of fake samples.
+	 */
+	public static ForkJoinTask<List<NeuronValue[]>> generateAsync(NetworkStandardImpl generator, List<NeuronValue[]> dataZs) {
+		return Util.getPool().submit(() -> generate(generator, dataZs));
+	}
+
+
+}
@@ -27,6 +27,7 @@ import net.ea.ann.core.Util;
 import net.ea.ann.core.value.NeuronValue;
 import net.ea.ann.core.value.NeuronValueCreator;
 import net.ea.ann.gen.ConvGenModelAbstract;
+import net.ea.ann.gen.FeatureCache;
 import net.ea.ann.gen.ConvGenSetting;
 import net.ea.ann.gen.FeatureGetter;
 import net.ea.ann.gen.FeatureToX;
@@ -118,6 +119,7 @@ public class ConvGANImpl extends GANImpl implements ConvGAN, FeatureToX, Feature
 		this.time = size.time;
 		
 		this.config.put(ConvGenModelAbstract.CONV_CLASSIFIER_FIELD, ConvGenModelAbstract.CONV_CLASSIFIER_DEFAULT);
+		this.config.put(ConvGenModelAbstract.FEATURE_CACHE_FIELD, ConvGenModelAbstract.FEATURE_CACHE_DEFAULT);
 	}
 
 	
@@ -478,8 +480,7 @@ public class ConvGANImpl extends GANImpl implements ConvGAN, FeatureToX, Feature
 						try {
 							//Learning convolutional network.
 							if (ConvGenModelAbstract.hasLearning(conv)) conv.learnOne(Arrays.asList(record), lr, terminatedThreshold, 1);
-							conv.evaluate(record);
-							input = conv.getFeatureFitChannel().getData();
+							input = FeatureCache.extract(conv, record, config.getAsBoolean(ConvGenModelAbstract.FEATURE_CACHE_FIELD));
 						} catch (Throwable e) {Util.trace(e);}
 						if (input == null) continue;
 						input = convertFeatureToX(input);
@@ -569,6 +570,7 @@ public class ConvGANImpl extends GANImpl implements ConvGAN, FeatureToX, Feature
 		learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? LEARN_RATE_DEFAULT : learningRate;
 		int disSteps = config.getAsInt(DISCRIMINATE_STEPS_FIELD);
 		disSteps = disSteps < 1 ? 1 : disSteps;
+		AdversarialPipeline pipeline = getPipeline();
 		
 		NeuronValue[] error = null;
 		int iteration = 0;
@@ -591,8 +593,7 @@ public class ConvGANImpl extends GANImpl implements ConvGAN, FeatureToX, Feature
 				if (record.input == null) {
 					if (conv != null) {
 						try {
-							conv.evaluate(record);
-							input = conv.getFeatureFitChannel().getData();
+							input = FeatureCache.extract(conv, record, config.getAsBoolean(ConvGenModelAbstract.FEATURE_CACHE_FIELD));
 						} catch (Throwable e) {Util.trace(e);}
 						if (input == null) continue;
 						input = convertFeatureToX(input);
@@ -615,14 +616,26 @@ public class ConvGANImpl extends GANImpl implements ConvGAN, FeatureToX, Feature
 			for (int k = 0; k < disSteps && decodeAdv != null; k++) {
 				List<Record> decodeAdvSample = Util.newList(encodeSample.size());
 				int n = 0;
-				for (Record encodeRecord : encodeSample) {
-					if (decodeAdv.evaluateSetPrevOutputAccum(new Record(encodeRecord.input))) n++;
-					
-					//Getting generated X.
-					try {
-						NeuronValue[] generatedX = decoder.evaluate(new Record(randomizeDataZ(learnRnd)));
-						decodeAdvSample.add(new Record(generatedX, null));
-					} catch (Throwable e) {Util.trace(e);}
+				if (pipeline != null) {
+					//Fake samples are generated in another thread while real samples are evaluated.
+					pipeline.prefetch(encodeSample.size(), 0);
+					for (Record encodeRecord : encodeSample) {
+						if (decodeAdv.evaluateSetPrevOutputAccum(new Record(encodeRecord.input))) n++;
+					}
+					for (NeuronValue[] generatedX : pipeline.take(encodeSample.size())) decodeAdvSample.add(new Record(generatedX, null));
+					//Fake samples of next step are generated in another thread while the adversarial network and the generator learn.
+					pipeline.prefetch(encodeSample.size(), k < disSteps - 1 ? 0 : 1);
+				}
+				else {
+					for (Record encodeRecord : encodeSample) {
+						if (decodeAdv.evaluateSetPrevOutputAccum(new Record(encodeRecord.input))) n++;
+						
+						//Getting generated X.
+						try {
+							NeuronValue[] generatedX = decoder.evaluate(new Record(randomizeDataZ(learnRnd)));
+							decodeAdvSample.add(new Record(generatedX, null));
+						} catch (Throwable e) {Util.trace(e);}
+					}
 				}
 				NeuronValue[] prevOutput = decodeAdv.getPrevOutput();
 				if (prevOutput != null && n > 0) {
@@ -638,6 +651,7 @@ public class ConvGANImpl extends GANImpl implements ConvGAN, FeatureToX, Feature
 			List<Record> decodeSample = Util.newList(encodeSample.size());
 			for (Record encodeRecord : encodeSample) decodeSample.add(new Record(randomizeDataZ(learnRnd), encodeRecord.input));
 			error = decoder.learn(decodeSample, lr, terminatedThreshold, 1);
+			if (pipeline != null) pipeline.update();
 
 			//It is unnecessary to learn the deconvolutional encoding network because the deconvolutional encoding network has neither full network nor reversed full network. 
 
@@ -663,6 +677,7 @@ public class ConvGANImpl extends GANImpl implements ConvGAN, FeatureToX, Feature
 			}
 
 		}
+		if (pipeline != null) pipeline.close();
 		
 		synchronized (this) {
 			doStarted = false;
@@ -727,6 +742,12 @@ public class ConvGANImpl extends GANImpl implements ConvGAN, FeatureToX, Feature
 	}
 	
 	
+	@Override
+	public G[] generateRaster(int count) throws RemoteException {
+		return ConvGenModelAbstract.generateRaster(this, count, conv, deconv, this, this);
+	}
+	
+	
 	@Override
 	public synchronized G generateRasterBest() throws RemoteException {
 		try {
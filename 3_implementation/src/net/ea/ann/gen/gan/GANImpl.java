@@ -52,6 +52,19 @@ public class GANImpl extends GANAbstract {
 	public final static int DISCRIMINATE_STEPS_DEFAULT = 1;
 
 	
+	/**
+	 * Field of staleness bound of pipelined learning. If this bound is non-negative, fake samples are generated in another thread while the adversarial network and the generator learn,
+	 * and fake samples are never taken if they were generated more than this number of generator updates ago.
+	 */
+	public final static String PIPELINE_STALENESS_FIELD = "gan_pipeline_staleness";
+	
+	
+	/**
+	 * Default value of staleness bound of pipelined learning. Negative value means that pipelined learning is not applied.
+	 */
+	public final static int PIPELINE_STALENESS_DEFAULT = -1;
+
+	
 	/**
 	 * Internal decoder.
 	 */
@@ -70,6 +83,12 @@ public class GANImpl extends GANAbstract {
 	protected Random learnRnd = new Random();
 
 	
+	/**
+	 * Pipeline of fake samples, which is kept across learning so that its replica of decoder is cloned only once.
+	 */
+	private transient AdversarialPipeline pipeline = null;
+
+	
 	/**
 	 * Constructor with neuron channel, activation function, and identifier reference.
 	 * @param neuronChannel neuron channel.
@@ -80,6 +99,7 @@ public class GANImpl extends GANAbstract {
 		super(neuronChannel, activateRef, idRef);
 		
 		this.config.put(DISCRIMINATE_STEPS_FIELD, DISCRIMINATE_STEPS_DEFAULT);
+		this.config.put(PIPELINE_STALENESS_FIELD, PIPELINE_STALENESS_DEFAULT);
 		
 		GeneratorStandard.fillConfig(this.config);
 	}
@@ -165,6 +185,20 @@ public class GANImpl extends GANAbstract {
 	public void reset() throws RemoteException {
 		decoder = null;
 		decodeAdv = null;
+		pipeline = null;
+	}
+	
+	
+	/**
+	 * Getting pipeline of fake samples for pipelined learning. The pipeline is kept as long as the decoder and staleness bound are not changed.
+	 * @return pipeline of fake samples, which is null if pipelined learning is not applied.
+	 */
+	protected AdversarialPipeline getPipeline() {
+		int staleness = config.getAsInt(PIPELINE_STALENESS_FIELD);
+		if (staleness < 0 || decoder == null || decodeAdv == null) return (pipeline = null);
+		if (pipeline == null || pipeline.generator != decoder || pipeline.staleness != staleness)
+			pipeline = new AdversarialPipeline(decoder, () -> randomizeDataZ(learnRnd), staleness);
+		return pipeline;
 	}
 	
 	
@@ -295,6 +329,7 @@ public class GANImpl extends GANAbstract {
 		learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? LEARN_RATE_DEFAULT : learningRate;
 		int disSteps = config.getAsInt(DISCRIMINATE_STEPS_FIELD);
 		disSteps = disSteps < 1 ? 1 : disSteps;
+		AdversarialPipeline pipeline = getPipeline();
 		
 		NeuronValue[] error = null;
 		int iteration = 0;
@@ -307,14 +342,28 @@ public class GANImpl extends GANAbstract {
 			for (int k = 0; k < disSteps && decodeAdv != null; k++) {
 				List<Record> decodeAdvSample = Util.newList(0);
 				int n = 0;
-				for (Record record : sample) {
-					if (decodeAdv.evaluateSetPrevOutputAccum(new Record(record.input))) n++;
-					
-					//Getting generated X.
-					try {
-						NeuronValue[] generatedX = decoder.evaluate(new Record(randomizeDataZ(learnRnd)));
-						decodeAdvSample.add(new Record(generatedX));
-					} catch (Throwable e) {Util.trace(e);}
+				if (pipeline != null) {
+					int count = 0;
+					for (Record record : sample) {if (record != null) count++;}
+					//Fake samples are generated in another thread while real samples are evaluated.
+					pipeline.prefetch(count, 0);
+					for (Record record : sample) {
+						if (record != null && decodeAdv.evaluateSetPrevOutputAccum(new Record(record.input))) n++;
+					}
+					for (NeuronValue[] generatedX : pipeline.take(count)) decodeAdvSample.add(new Record(generatedX));
+					//Fake samples of next step are generated in another thread while the adversarial network and the generator learn.
+					pipeline.prefetch(count, k < disSteps - 1 ? 0 : 1);
+				}
+				else {
+					for (Record record : sample) {
+						if (decodeAdv.evaluateSetPrevOutputAccum(new Record(record.input))) n++;
+						
+						//Getting generated X.
+						try {
+							NeuronValue[] generatedX = decoder.evaluate(new Record(randomizeDataZ(learnRnd)));
+							decodeAdvSample.add(new Record(generatedX));
+						} catch (Throwable e) {Util.trace(e);}
+					}
 				}
 				
 				NeuronValue[] prevOutput = decodeAdv.getPrevOutput();
@@ -331,6 +380,7 @@ public class GANImpl extends GANAbstract {
 			List<Record> decodeSample = Util.newList(0);
 			for (Record record : sample) decodeSample.add(new Record(randomizeDataZ(learnRnd), record.input));
 			error = decoder.learn(decodeSample, lr, terminatedThreshold, 1);
+			if (pipeline != null) pipeline.update();
 			
 			iteration ++;
 			
@@ -354,6 +404,7 @@ public class GANImpl extends GANAbstract {
 			}
 
 		} //End while
+		if (pipeline != null) pipeline.close();
 		
 		synchronized (this) {
 			doStarted = false;
@@ -381,6 +432,26 @@ public class GANImpl extends GANAbstract {
 	}
 
 	
+	@Override
+	public G[] generate(int count) throws RemoteException {
+		NeuronValue[][] dataZs = null;
+		NetworkStandardImpl[] decoders = null;
+		synchronized (this) {
+			if (decoder == null || count <= 0) return new G[0];
+			dataZs = new NeuronValue[count][];
+			for (int i = 0; i < count; i++) dataZs[i] = randomizeDataZ(learnRnd);
+			
+			decoders = replicate(decoder, count);
+			if (decoders[0] == decoder) return generateByZ(dataZs, decoders);
+		}
+		
+		//Replicas are decoded out of the lock of this model and then returned to cache.
+		try {
+			return generateByZ(dataZs, decoders);
+		} finally {release(decoders);}
+	}
+
+
 	@Override
 	public synchronized G generateBest() throws RemoteException {
 		if (decoder == null) return null;
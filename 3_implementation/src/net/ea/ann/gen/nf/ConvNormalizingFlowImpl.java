@@ -13,17 +13,24 @@ import java.util.Map;
 import net.ea.ann.core.Id;
 import net.ea.ann.core.LayerStandard;
 import net.ea.ann.core.Network;
+import net.ea.ann.core.NetworkDoEvent.Type;
+import net.ea.ann.core.NetworkDoEventImpl;
 import net.ea.ann.core.NetworkStandardAssoc;
 import net.ea.ann.core.NetworkStandardImpl;
 import net.ea.ann.core.NeuronStandard;
 import net.ea.ann.core.NeuronStandardAssoc;
+import net.ea.ann.core.Record;
+import net.ea.ann.core.Util;
 import net.ea.ann.core.WeightedNeuron;
 import net.ea.ann.core.bp.BackpropagatorAbstract;
+import net.ea.ann.core.function.Function;
 import net.ea.ann.core.function.FunctionInvertible;
 import net.ea.ann.core.generator.GeneratorStandard;
 import net.ea.ann.core.generator.Trainer;
 import net.ea.ann.core.value.Mean;
 import net.ea.ann.core.value.NeuronValue;
+import net.ea.ann.core.value.Weight;
+import net.ea.ann.core.value.WeightValue;
 import net.ea.ann.gen.gan.ConvGANImpl;
 import net.ea.ann.raster.Size;
 
@@ -67,6 +74,116 @@ public class ConvNormalizingFlowImpl extends ConvGANImpl implements ConvNormaliz
 	public final static boolean BIDIRECTION_LEARING_DEFAULT = false;
 
 	
+	/**
+	 * Name of field of reusing forward evaluation in bidirectional learning. If it is true, both directions of learning share one evaluation of the network per iteration.
+	 */
+	public final static String REUSE_FORWARD_FIELD = "nf_reuse_forward";
+			
+	
+	/**
+	 * Default value of field of reusing forward evaluation in bidirectional learning.
+	 */
+	public final static boolean REUSE_FORWARD_DEFAULT = false;
+
+	
+	/**
+	 * Inverse of layers used by log-likelihood evaluation. Element i is inverse of layer i+1 of decoder backbone.
+	 */
+	private transient InverseLayer[] inverseLayers = null;
+	
+	
+	/**
+	 * This class represents inverse of a layer of flow, including inverse weight matrix and log-determinant of weight matrix.
+	 * It keeps the weight values and biases from which it was computed so that it is recomputed only when learning replaced them.
+	 * 
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class InverseLayer {
+		
+		/**
+		 * Weights of layer where weights[j][i] connects neuron i of previous layer to neuron j of this layer.
+		 */
+		protected Weight[][] weights = null;
+		
+		/**
+		 * Weight values from which this inverse was computed.
+		 */
+		protected WeightValue[][] weightValues = null;
+		
+		/**
+		 * Biases from which this inverse was computed.
+		 */
+		protected NeuronValue[] biases = null;
+		
+		/**
+		 * Inverse of weight matrix.
+		 */
+		protected NeuronValue[][] weightInverse = null;
+		
+		/**
+		 * Logarithm of absolute determinant of weight matrix.
+		 */
+		protected NeuronValue logDet = null;
+		
+		/**
+		 * Checking whether this inverse is still valid for the specified layer.
+		 * @param layer specified layer.
+		 * @return whether this inverse is still valid.
+		 */
+		protected boolean isValid(LayerStandard layer) {
+			if (layer.size() != biases.length) return false;
+			for (int j = 0; j < weights.length; j++) {
+				if (layer.get(j).getBias() != biases[j]) return false;
+				for (int i = 0; i < weights[j].length; i++) {
+					if (weights[j][i].value != weightValues[j][i]) return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Computing inverse of the specified layer.
+		 * @param layer specified layer.
+		 * @param prevLayer previous layer.
+		 * @return inverse of the specified layer, or null if weight matrix is not square, not full, or not invertible.
+		 */
+		protected static InverseLayer create(LayerStandard layer, LayerStandard prevLayer) {
+			int n = layer.size();
+			if (n == 0 || prevLayer.size() != n) return null;
+			InverseLayer inverse = new InverseLayer();
+			inverse.weights = new Weight[n][n];
+			inverse.weightValues = new WeightValue[n][n];
+			inverse.biases = new NeuronValue[n];
+			NeuronValue[][] matrix = new NeuronValue[n][n];
+			for (int j = 0; j < n; j++) {
+				NeuronStandard neuron = layer.get(j);
+				inverse.biases[j] = neuron.getBias();
+				for (WeightedNeuron prevNeuron : neuron.getPrevNeurons(prevLayer)) {
+					int i = prevLayer.indexOf(prevNeuron.neuron);
+					if (i < 0) continue;
+					inverse.weights[j][i] = prevNeuron.weight;
+					inverse.weightValues[j][i] = prevNeuron.weight.value;
+					matrix[j][i] = prevNeuron.weight.value.toValue();
+				}
+				for (int i = 0; i < n; i++) {
+					if (matrix[j][i] == null) return null;
+				}
+			}
+			
+			NeuronValue det = matrix[0][0].matrixDet(matrix);
+			if (det == null || !det.canInvert()) return null;
+			inverse.weightInverse = matrix[0][0].matrixInverse(matrix);
+			if (inverse.weightInverse == null) return null;
+			inverse.logDet = det.multiply(det).log().multiply(0.5);
+			return inverse;
+		}
+		
+	}
+	
+
+	
 	/**
 	 * This class represents backpropagation algorithm for normalizing flow network.
 	 * 
@@ -210,6 +327,7 @@ public class ConvNormalizingFlowImpl extends ConvGANImpl implements ConvNormaliz
 		super(neuronChannel, rasterChannel, size, idRef);
 		this.config.put(INVERSE_LEARING_FIELD, INVERSE_LEARING_DEFAULT);
 		this.config.put(BIDIRECTION_LEARING_FIELD, BIDIRECTION_LEARING_DEFAULT);
+		this.config.put(REUSE_FORWARD_FIELD, REUSE_FORWARD_DEFAULT);
 	}
 
 	
@@ -287,24 +405,150 @@ public class ConvNormalizingFlowImpl extends ConvGANImpl implements ConvNormaliz
 					error = super.learn(input, realOutput, learningRate, terminatedThreshold, maxIteration);
 				}
 				else {
-					if (config.getAsBoolean(BIDIRECTION_LEARING_FIELD)) {
-						nfbp.setInverseLearningMode(false);
+					if (config.getAsBoolean(BIDIRECTION_LEARING_FIELD) && config.getAsBoolean(REUSE_FORWARD_FIELD))
+						error = learnBidirectionally(input, realOutput, learningRate, terminatedThreshold, maxIteration);
+					else {
+						if (config.getAsBoolean(BIDIRECTION_LEARING_FIELD)) {
+							nfbp.setInverseLearningMode(false);
+							error = super.learn(input, realOutput, learningRate, terminatedThreshold, maxIteration);
+						}
+						nfbp.setInverseLearningMode(true);
 						error = super.learn(input, realOutput, learningRate, terminatedThreshold, maxIteration);
 					}
-					nfbp.setInverseLearningMode(true);
-					error = super.learn(input, realOutput, learningRate, terminatedThreshold, maxIteration);
 				}
 				
 				nfbp.setInverseLearningMode(inverseLearning);
 				return error;
 			}
 
+			/**
+			 * Learning forward and inversely on the same evaluation of layers in every iteration, which avoids evaluating the network twice.
+			 * @param input input values.
+			 * @param realOutput realistic output. It can be null;
+			 * @param learningRate learning rate.
+			 * @param terminatedThreshold terminated threshold.
+			 * @param maxIteration maximum iteration.
+			 * @return learned error of inverse learning.
+			 */
+			private NeuronValue[] learnBidirectionally(NeuronValue[] input, NeuronValue[] realOutput, double learningRate, double terminatedThreshold, int maxIteration) {
+				List<LayerStandard> bone = getBackbone();
+				if (bone == null || bone.size() < 2) return null;
+				NFBackpropagator nfbp = (NFBackpropagator)bp;
+				
+				maxIteration = maxIteration >= 0 ? maxIteration :  LEARN_MAX_ITERATION_DEFAULT;
+				terminatedThreshold = Double.isNaN(terminatedThreshold) || terminatedThreshold < 0 ? LEARN_TERMINATED_THRESHOLD_DEFAULT : terminatedThreshold;
+				learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? LEARN_RATE_DEFAULT : learningRate;
+				
+				NeuronValue[] error = null;
+				int iteration = 0;
+				doStarted = true;
+				while (doStarted && (maxIteration <= 0 || iteration < maxIteration)) {
+					double lr = calcLearningRate(learningRate, iteration);
+					
+					//Evaluating layers once for both directions.
+					try {
+						evaluate(new Record(input));
+					} catch (Throwable e) {Util.trace(e); break;}
+					
+					//Forward learning changes weights and biases but not outputs of neurons which inverse learning uses.
+					nfbp.setInverseLearningMode(false);
+					bp.updateWeightsBiases(bone, realOutput, lr);
+					learnRibMem((Record)null, lr);
+					nfbp.setInverseLearningMode(true);
+					error = bp.updateWeightsBiases(bone, realOutput, lr);
+					learnRibMem((Record)null, lr);
+					
+					iteration ++;
+					
+					fireDoEvent(new NetworkDoEventImpl(this, Type.doing, "nf_backpropogate",
+						"At final iteration " + iteration + "\nThe learned result is:\n" + this, iteration, maxIteration));
+					
+					if (error == null || error.length == 0 || (iteration >= maxIteration && maxIteration == 1))
+						doStarted = false;
+					else if (terminatedThreshold > 0 && config.isBooleanValue(LEARN_TERMINATE_ERROR_FIELD)) {
+						double errorMean = NeuronValue.normMean(error);
+						if (errorMean < terminatedThreshold) doStarted = false;
+					}
+					
+					synchronized (this) {
+						while (doPaused) {
+							notifyAll();
+							try {
+								wait();
+							} catch (Exception e) {Util.trace(e);}
+						}
+					}
+					
+				}
+				
+				synchronized (this) {
+					doStarted = false;
+					doPaused = false;
+					
+					fireDoEvent(new NetworkDoEventImpl(this, Type.done, "nf_backpropogate",
+						"At final iteration " + iteration + "\nThe learned result is:\n" + this, iteration, maxIteration));
+					
+					notifyAll();
+				}
+				
+				return error;
+			}
+
 		};
 		generator.setParent(this);
 		return generator;
 	}
 
 
+	/**
+	 * Evaluating exact log-likelihood of data X in one sweep from output layer down to input layer by change of variables.
+	 * Every layer computes y = f(W*x + b) and so its inverse is x = W^-1*(f^-1(y) - b), whose log-determinant of Jacobian is
+	 * sum of log|(f^-1)'(y)| minus log|det(W)|. Z at input layer follows standard normal distribution.
+	 * Inverse weight matrices and their log-determinants are cached and only recomputed when learning replaced weights or biases.
+	 * @param dataX data X.
+	 * @return exact log-likelihood of data X. Return null if layers have different sizes, activation functions are not invertible, or data X is out of range of the flow.
+	 */
+	public synchronized NeuronValue logLikelihood(NeuronValue...dataX) {
+		if (decoder == null || dataX == null) return null;
+		List<LayerStandard> bone = decoder.getBackbone();
+		if (bone.size() < 2 || dataX.length != bone.get(bone.size()-1).size()) return null;
+		if (inverseLayers == null || inverseLayers.length != bone.size()-1) inverseLayers = new InverseLayer[bone.size()-1];
+		
+		NeuronValue[] x = dataX;
+		NeuronValue logDet = dataX[0].zero();
+		for (int l = bone.size()-1; l >= 1; l--) {
+			LayerStandard layer = bone.get(l);
+			InverseLayer inverse = inverseLayers[l-1];
+			if (inverse == null || !inverse.isValid(layer)) inverse = inverseLayers[l-1] = InverseLayer.create(layer, bone.get(l-1));
+			if (inverse == null) return null;
+			
+			NeuronValue[] u = new NeuronValue[x.length];
+			for (int j = 0; j < x.length; j++) {
+				Function f = layer.get(j).getActivateRef();
+				if (f == null)
+					u[j] = x[j];
+				else if (f instanceof FunctionInvertible) {
+					FunctionInvertible fi = (FunctionInvertible)f;
+					u[j] = fi.evaluateInverse(x[j]);
+					NeuronValue d = fi.derivativeInverse(x[j]);
+					if (u[j] == null || d == null) return null;
+					logDet = logDet.add(d.multiply(d).log().multiply(0.5));
+				}
+				else
+					return null;
+				u[j] = u[j].subtract(inverse.biases[j]);
+			}
+			x = NeuronValue.multiply(inverse.weightInverse, u);
+			logDet = logDet.subtract(inverse.logDet);
+		}
+		
+		NeuronValue logLikelihood = logDet;
+		double logNorm = 0.5 * Math.log(2.0 * Math.PI);
+		for (NeuronValue z : x) logLikelihood = logLikelihood.subtract(z.multiply(z).multiply(0.5).add(z.zero().valueOf(logNorm)));
+		return logLikelihood;
+	}
+	
+	
 	/**
 	 * Checking whether inverse learning.
 	 * @return whether inverse learning.
@@ -12,6 +12,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
+import net.ea.ann.core.Checkpoint;
+import net.ea.ann.core.Cloner;
 import net.ea.ann.core.Id;
 import net.ea.ann.core.LayerStandard;
 import net.ea.ann.core.NetworkDoEvent.Type;
@@ -21,6 +23,7 @@ import net.ea.ann.core.Util;
 import net.ea.ann.core.function.Function;
 import net.ea.ann.core.value.NeuronValue;
 import net.ea.ann.gen.ConvGenModelAbstract;
+import net.ea.ann.gen.FeatureCache;
 import net.ea.ann.raster.Cube;
 import net.ea.ann.raster.Raster;
 import net.ea.ann.raster.Size;
@@ -57,6 +60,19 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 	protected final static boolean RANDOM_ZDATA_DEFAULT = false;
 
 	
+	/**
+	 * Field of number of images learned concurrently in one-by-one learning. Images are split into this number of shards which are learned by replicas of recurrent neural network,
+	 * and then weights of the recurrent neural network are set to the mean of weights of replicas. States on the same diagonal of an image are still learned in parallel by wavefronts of recurrent neural network.
+	 */
+	public final static String PARALLEL_IMAGES_FIELD = "pixrnn_parallel_images";
+	
+	
+	/**
+	 * Default value for field of number of images learned concurrently. Value 1 means that images are learned one by one.
+	 */
+	public final static int PARALLEL_IMAGES_DEFAULT = 1;
+
+	
 	/**
 	 * Recurrent neural network.
 	 */
@@ -75,6 +91,24 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 	protected List<NeuronValue[]> rnnInputMeans = Util.newList(0);
 
 	
+	/**
+	 * Throughput of the latest learning in pixels per second.
+	 */
+	protected transient double learnThroughput = 0;
+
+	
+	/**
+	 * Replicas of recurrent neural network for concurrent learning.
+	 */
+	private transient RecurrentNetworkImpl[] replicas = null;
+	
+	
+	/**
+	 * Recurrent neural network from which replicas are cloned.
+	 */
+	private transient RecurrentNetworkImpl replicated = null;
+
+	
 	/**
 	 * Constructor with neuron channel, raster channel, size, and identifier reference.
 	 * @param neuronChannel neuron channel.
@@ -85,6 +119,8 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 	protected PixelRNNAbstract(int neuronChannel, int rasterChannel, Size size, Id idRef) {
 		super(neuronChannel, rasterChannel, size, idRef);
 		this.config.put(RANDOM_ZDATA_FIELD, RANDOM_ZDATA_DEFAULT);
+		this.config.put(PARALLEL_IMAGES_FIELD, PARALLEL_IMAGES_DEFAULT);
+		this.config.put(FEATURE_CACHE_FIELD, FEATURE_CACHE_DEFAULT);
 		RecurrentNetworkAbstract.fillConfig(this.config);
 	}
 
@@ -133,6 +169,8 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 	public void reset() throws RemoteException {
 		super.reset();
 		rnn = null;
+		replicas = null;
+		replicated = null;
 	}
 
 	
@@ -200,6 +238,8 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 		maxIteration = maxIteration >= 0 ? maxIteration :  LEARN_MAX_ITERATION_DEFAULT;
 		terminatedThreshold = Double.isNaN(terminatedThreshold) || terminatedThreshold < 0 ? LEARN_TERMINATED_THRESHOLD_DEFAULT : terminatedThreshold;
 		learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? LEARN_RATE_DEFAULT : learningRate;
+		int parallel = config.getAsInt(PARALLEL_IMAGES_FIELD);
+		long pixels = 0, startTime = System.nanoTime();
 		
 		NeuronValue[] error = null;
 		int iteration = 0;
@@ -208,37 +248,29 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 			sample = resample(sample, iteration); //Re-sampling.
 			double lr = calcLearningRate(learningRate, iteration);
 
+			List<List<Record>> rnnSample = Util.newList(0);
 			for (Record record : sample) {
 				if (record == null) continue;
 				
-				NeuronValue[] input = null;
-				if (record.input == null) {
-					if (conv != null) {
-						try {
-							//Learning convolutional network.
-							if (ConvGenModelAbstract.hasLearning(conv)) conv.learnOne(Arrays.asList(record), lr, terminatedThreshold, 1);
-							conv.evaluate(record);
-							input = conv.getFeatureFitChannel().getData();
-						} catch (Throwable e) {Util.trace(e);}
-						if (input == null) continue;
-						input = convertFeatureToX(input);
-					}
-					else if (record.getRasterInput() != null) {
-						input = record.getRasterInput().toNeuronValues(rasterChannel, new Size(width, height, depth, time), isNorm());
-						if (input == null) continue;
-						input = convertFeatureToX(input);
-					}
+				//Learning convolutional network.
+				if (record.input == null && conv != null) {
+					try {
+						if (ConvGenModelAbstract.hasLearning(conv)) conv.learnOne(Arrays.asList(record), lr, terminatedThreshold, 1);
+					} catch (Throwable e) {Util.trace(e);}
 				}
-				else
-					input = record.input;
+				NeuronValue[] input = extractX(record);
+				if (input == null) continue;
 				
 				List<Record> rnnRecord = convertXToRNNInputRecord(input);
-				if (rnnRecord.size() > 0 ) {
-					List<List<Record>> rnnSample = Arrays.asList(rnnRecord);
-					error = rnn.learnOne(rnnSample, lr, terminatedThreshold, 1);
-					updateRNNInputMeans(rnnSample);
-				}
+				if (rnnRecord.size() == 0) continue;
+				pixels += rnnRecord.size();
+				if (parallel > 1)
+					rnnSample.add(rnnRecord);
+				else
+					error = rnn.learnOne(Arrays.asList(rnnRecord), lr, terminatedThreshold, 1);
+				updateRNNInputMeans(Arrays.asList(rnnRecord));
 			}
+			if (rnnSample.size() > 0) error = learnImagesParallel(rnnSample, lr, terminatedThreshold, parallel);
 			
 			iteration ++;
 			
@@ -263,6 +295,9 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 
 		}
 		
+		long elapsedTime = System.nanoTime() - startTime;
+		learnThroughput = elapsedTime > 0 ? pixels * 1e9 / (double)elapsedTime : 0;
+		
 		synchronized (this) {
 			doStarted = false;
 			doPaused = false;
@@ -290,6 +325,7 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 		maxIteration = maxIteration >= 0 ? maxIteration :  LEARN_MAX_ITERATION_DEFAULT;
 		terminatedThreshold = Double.isNaN(terminatedThreshold) || terminatedThreshold < 0 ? LEARN_TERMINATED_THRESHOLD_DEFAULT : terminatedThreshold;
 		learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? LEARN_RATE_DEFAULT : learningRate;
+		long pixels = 0, startTime = System.nanoTime();
 		
 		NeuronValue[] error = null;
 		int iteration = 0;
@@ -307,28 +343,14 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 			List<List<Record>> rnnSample = Util.newList(0);
 			for (Record record : sample) {
 				if (record == null) continue;
-				
-				NeuronValue[] input = null;
-				if (record.input == null) {
-					if (conv != null) {
-						try {
-							conv.evaluate(record);
-							input = conv.getFeatureFitChannel().getData();
-						} catch (Throwable e) {Util.trace(e);}
-						if (input == null) continue;
-						input = convertFeatureToX(input);
-					}
-					else if (record.getRasterInput() != null) {
-						input = record.getRasterInput().toNeuronValues(rasterChannel, new Size(width, height, depth, time), isNorm());
-						if (input == null) continue;
-						input = convertFeatureToX(input);
-					}
-				}
-				else
-					input = record.input;
+				NeuronValue[] input = extractX(record);
+				if (input == null) continue;
 				
 				List<Record> rnnRecord = convertXToRNNInputRecord(input);
-				if (rnnRecord.size() > 0 ) rnnSample.add(rnnRecord);
+				if (rnnRecord.size() > 0 ) {
+					rnnSample.add(rnnRecord);
+					pixels += rnnRecord.size();
+				}
 			}
 			
 			if (rnnSample.size() > 0 ) {
@@ -359,6 +381,9 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 
 		}
 		
+		long elapsedTime = System.nanoTime() - startTime;
+		learnThroughput = elapsedTime > 0 ? pixels * 1e9 / (double)elapsedTime : 0;
+		
 		synchronized (this) {
 			doStarted = false;
 			doPaused = false;
@@ -373,6 +398,90 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 	}
 
 
+	/**
+	 * Learning images concurrently. Images are split into shards which are learned one by one by replicas of recurrent neural network,
+	 * and then weights of the recurrent neural network are set to the mean of weights of replicas. Replicas are kept across iterations and weights of the recurrent neural network are copied into them before learning.
+	 * If any shard fails or weights of replicas cannot be averaged, images are learned serially by the recurrent neural network.
+	 * @param rnnSample sample of recurrent neural network data of images.
+	 * @param learningRate learning rate.
+	 * @param terminatedThreshold terminated threshold.
+	 * @param parallel maximum number of shards.
+	 * @return learned error.
+	 */
+	private NeuronValue[] learnImagesParallel(List<List<Record>> rnnSample, double learningRate, double terminatedThreshold, int parallel) {
+		int n = Math.max(1, Math.min(parallel, rnnSample.size()));
+		RecurrentNetworkImpl[] replicas = n > 1 ? replicate(n) : null;
+		if (replicas == null) return rnn.learnOne(rnnSample, learningRate, terminatedThreshold, 1);
+		
+		NeuronValue[][] errors = new NeuronValue[n][];
+		try {
+			Util.parallel(n, (s) -> {
+				List<List<Record>> shard = Util.newList(0);
+				for (int i = s; i < rnnSample.size(); i += n) shard.add(rnnSample.get(i));
+				errors[s] = replicas[s].learnOne(shard, learningRate, terminatedThreshold, 1);
+			});
+		} catch (Throwable e) {Util.trace(e); return rnn.learnOne(rnnSample, learningRate, terminatedThreshold, 1);}
+		for (NeuronValue[] error : errors) {
+			if (error == null) return rnn.learnOne(rnnSample, learningRate, terminatedThreshold, 1);
+		}
+		
+		double[] mean = null;
+		for (RecurrentNetworkImpl replica : replicas) {
+			double[] weights = Checkpoint.getParameters(replica);
+			if (weights == null || (mean != null && mean.length != weights.length)) {
+				mean = null;
+				break;
+			}
+			if (mean == null)
+				mean = weights;
+			else {
+				for (int j = 0; j < mean.length; j++) mean[j] += weights[j];
+			}
+		}
+		if (mean == null) return rnn.learnOne(rnnSample, learningRate, terminatedThreshold, 1);
+		for (int j = 0; j < mean.length; j++) mean[j] /= (double)n;
+		if (!Checkpoint.setParameters(rnn, mean)) return rnn.learnOne(rnnSample, learningRate, terminatedThreshold, 1);
+		
+		return errors[n-1];
+	}
+	
+	
+	/**
+	 * Getting replicas of recurrent neural network for concurrent learning. Replicas are cloned by structure once and then weights of the recurrent neural network are copied into them.
+	 * @param count number of replicas.
+	 * @return replicas of recurrent neural network, which is null if they cannot be created or synchronized.
+	 */
+	private RecurrentNetworkImpl[] replicate(int count) {
+		RecurrentNetworkImpl[] replicas = replicated == rnn && this.replicas != null && this.replicas.length == count ? this.replicas : null;
+		this.replicas = null;
+		try {
+			if (replicas == null) {
+				replicas = new RecurrentNetworkImpl[count];
+				for (int i = 0; i < count; i++) replicas[i] = (RecurrentNetworkImpl)Cloner.clone(rnn, this);
+			}
+			else {
+				double[] weights = Checkpoint.getParameters(rnn);
+				for (RecurrentNetworkImpl replica : replicas) {
+					if (!Checkpoint.setParameters(replica, weights)) return null;
+				}
+			}
+		} catch (Throwable e) {Util.trace(e); return null;}
+		
+		this.replicas = replicas;
+		this.replicated = rnn;
+		return replicas;
+	}
+	
+	
+	/**
+	 * Getting throughput of the latest learning.
+	 * @return throughput of the latest learning in pixels per second.
+	 */
+	public double getLearnThroughput() {
+		return learnThroughput;
+	}
+	
+	
 	@Override
 	public G generate() throws RemoteException {
 		if (rnn == null || rnn.length() < 1) return null;
@@ -451,6 +560,27 @@ public abstract class PixelRNNAbstract extends ConvGenModelAbstract implements P
 	}
 	
 	
+	/**
+	 * Extracting X data from record.
+	 * @param record specified record.
+	 * @return X data extracted from record.
+	 */
+	private NeuronValue[] extractX(Record record) {
+		if (record.input != null) return record.input;
+		
+		NeuronValue[] input = null;
+		if (conv != null) {
+			try {
+				input = FeatureCache.extract(conv, record, config.getAsBoolean(FEATURE_CACHE_FIELD));
+			} catch (Throwable e) {Util.trace(e);}
+		}
+		else if (record.getRasterInput() != null)
+			input = record.getRasterInput().toNeuronValues(rasterChannel, new Size(width, height, depth, time), isNorm());
+		
+		return input != null ? convertFeatureToX(input) : null;
+	}
+	
+	
 	/**
 	 * Converting X data to recurrent neural network data.
 	 * @param dataX X data.
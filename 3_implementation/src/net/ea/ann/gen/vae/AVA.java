@@ -10,6 +10,7 @@ package net.ea.ann.gen.vae;
 import java.rmi.RemoteException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
 
 import net.ea.ann.conv.filter.Filter;
 import net.ea.ann.conv.stack.StackNetworkInitializer;
@@ -25,7 +26,9 @@ import net.ea.ann.core.generator.GeneratorStandard;
 import net.ea.ann.core.generator.Trainer;
 import net.ea.ann.core.value.NeuronValue;
 import net.ea.ann.gen.ConvGenModelAbstract;
+import net.ea.ann.gen.FeatureCache;
 import net.ea.ann.gen.gan.AdversarialNetwork;
+import net.ea.ann.gen.gan.AdversarialPipeline;
 import net.ea.ann.raster.Size;
 
 /**
@@ -44,6 +47,18 @@ public class AVA extends ConvVAEImpl {
 	private static final long serialVersionUID = 1L;
 
 
+	/**
+	 * Name of flag to indicate whether fake samples are generated in another thread while real samples are evaluated by adversarial network.
+	 */
+	public final static String ADVERSARIAL_PARALLEL_FIELD = "ava_adversarial_parallel";
+	
+	
+	/**
+	 * Default value of the flag to indicate whether fake samples are generated in another thread while real samples are evaluated by adversarial network.
+	 */
+	public final static boolean ADVERSARIAL_PARALLEL_DEFAULT = false;
+
+	
 	/**
 	 * Internal adversarial network.
 	 */
@@ -59,6 +74,7 @@ public class AVA extends ConvVAEImpl {
 	 */
 	public AVA(int neuronChannel, int rasterChannel, Size size, Id idRef) {
 		super(neuronChannel, rasterChannel, size, idRef);
+		this.config.put(ADVERSARIAL_PARALLEL_FIELD, ADVERSARIAL_PARALLEL_DEFAULT);
 	}
 
 	
@@ -136,28 +152,8 @@ public class AVA extends ConvVAEImpl {
 		if (xDim <= 0 || zDim <= 0) return false;
 		
 		this.encoder = createEncoder();
-		if(!this.encoder.initialize(xDim, isVarXDiagonal() ? 2*zDim : zDim*(zDim+1), nHiddenNeuronEncode)) return false;
-		
-		LayerStandard encodeLayer = this.encoder.getOutputLayer();
-		this.muX = new NeuronStandard[zDim];
-		for (int i = 0; i < zDim; i++) {
-			this.muX[i] = encodeLayer.get(i);
-		}
-		
-		this.varX = new NeuronStandard[zDim][];
-		NeuronValue zero = encodeLayer.newNeuronValue().zero();
-		NeuronStandard zeroNeuron = encodeLayer.newNeuron();
-		zeroNeuron.setInput(zero);
-		zeroNeuron.setOutput(zero);
-		for (int i = 0; i < zDim; i++) {
-			this.varX[i] = new NeuronStandard[zDim];
-			for (int j = 0; j < zDim; j++) {
-				if (isVarXDiagonal())
-					this.varX[i][j] = i == j ? encodeLayer.get(zDim + i) : zeroNeuron;
-				else
-					this.varX[i][j] = encodeLayer.get(zDim + i*zDim + j);
-			}
-		}
+		if(!this.encoder.initialize(xDim, getEncodedDim(zDim), nHiddenNeuronEncode)) return false;
+		setEncodedNeurons(this.encoder.getOutputLayer(), zDim);
 
 		this.decoder = createDecoder();
 		if(!this.decoder.initialize(zDim, xDim, nHiddenNeuronDecode)) return false;
@@ -257,8 +253,7 @@ public class AVA extends ConvVAEImpl {
 						try {
 							//Learning convolutional network.
 							if (ConvGenModelAbstract.hasLearning(conv)) conv.learnOne(Arrays.asList(record), lr, terminatedThreshold, 1);
-							conv.evaluate(record);
-							input = conv.getFeatureFitChannel().getData();
+							input = FeatureCache.extract(conv, record, config.getAsBoolean(ConvGenModelAbstract.FEATURE_CACHE_FIELD));
 						} catch (Throwable e) {Util.trace(e);}
 						if (input == null) continue;
 						input = convertFeatureToX(input);
@@ -379,8 +374,7 @@ public class AVA extends ConvVAEImpl {
 				if (record.input == null) {
 					if (conv != null) {
 						try {
-							conv.evaluate(record);
-							input = conv.getFeatureFitChannel().getData();
+							input = FeatureCache.extract(conv, record, config.getAsBoolean(ConvGenModelAbstract.FEATURE_CACHE_FIELD));
 						} catch (Throwable e) {Util.trace(e);}
 						if (input == null) continue;
 						input = convertFeatureToX(input);
@@ -410,13 +404,25 @@ public class AVA extends ConvVAEImpl {
 			if (decodeAdv != null) {
 				List<Record> decodeAdvSample = Util.newList(decodeSample.size());
 				int n = 0;
-				for (Record decodeAdvRecord : decodeSample) {
-					if(decodeAdv.evaluateSetPrevOutputAccum(new Record(decodeAdvRecord.output))) n++;
+				if (config.getAsBoolean(ADVERSARIAL_PARALLEL_FIELD)) {
+					//Fake samples are generated by the decoder in another thread while real samples are evaluated by the adversarial network.
+					List<NeuronValue[]> dataZs = Util.newList(decodeSample.size());
+					for (Record decodeAdvRecord : decodeSample) dataZs.add(decodeAdvRecord.input);
+					ForkJoinTask<List<NeuronValue[]>> fakes = AdversarialPipeline.generateAsync(decoder, dataZs);
+					for (Record decodeAdvRecord : decodeSample) {
+						if (decodeAdv.evaluateSetPrevOutputAccum(new Record(decodeAdvRecord.output))) n++;
+					}
+					for (NeuronValue[] generatedX : fakes.join()) decodeAdvSample.add(new Record(generatedX, null));
+				}
+				else {
+					for (Record decodeAdvRecord : decodeSample) {
+						if(decodeAdv.evaluateSetPrevOutputAccum(new Record(decodeAdvRecord.output))) n++;
 					
-					try {
-						NeuronValue[] generatedX = decoder.evaluate(new Record(decodeAdvRecord.input));
-						decodeAdvSample.add(new Record(generatedX, null));
-					} catch (Throwable e) {Util.trace(e);}
+						try {
+							NeuronValue[] generatedX = decoder.evaluate(new Record(decodeAdvRecord.input));
+							decodeAdvSample.add(new Record(generatedX, null));
+						} catch (Throwable e) {Util.trace(e);}
+					}
 				}
 				NeuronValue[] prevOutput = decodeAdv.getPrevOutput();
 				if (prevOutput != null && n > 0) {
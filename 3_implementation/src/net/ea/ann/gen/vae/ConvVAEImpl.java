@@ -27,6 +27,7 @@ import net.ea.ann.core.Util;
 import net.ea.ann.core.value.NeuronValue;
 import net.ea.ann.core.value.NeuronValueCreator;
 import net.ea.ann.gen.ConvGenModelAbstract;
+import net.ea.ann.gen.FeatureCache;
 import net.ea.ann.gen.ConvGenSetting;
 import net.ea.ann.gen.FeatureGetter;
 import net.ea.ann.gen.FeatureToX;
@@ -118,6 +119,7 @@ public class ConvVAEImpl extends VAEImpl implements ConvVAE, FeatureToX, Feature
 		this.time = size.time;
 		
 		this.config.put(ConvGenModelAbstract.CONV_CLASSIFIER_FIELD, ConvGenModelAbstract.CONV_CLASSIFIER_DEFAULT);
+		this.config.put(ConvGenModelAbstract.FEATURE_CACHE_FIELD, ConvGenModelAbstract.FEATURE_CACHE_DEFAULT);
 	}
 
 	
@@ -509,8 +511,7 @@ public class ConvVAEImpl extends VAEImpl implements ConvVAE, FeatureToX, Feature
 						try {
 							//Learning convolutional network.
 							if (ConvGenModelAbstract.hasLearning(conv)) conv.learnOne(Arrays.asList(record), lr, terminatedThreshold, 1);
-							conv.evaluate(record);
-							input = conv.getFeatureFitChannel().getData();
+							input = FeatureCache.extract(conv, record, config.getAsBoolean(ConvGenModelAbstract.FEATURE_CACHE_FIELD));
 						} catch (Throwable e) {Util.trace(e);}
 						if (input == null) continue;
 						input = convertFeatureToX(input);
@@ -611,8 +612,7 @@ public class ConvVAEImpl extends VAEImpl implements ConvVAE, FeatureToX, Feature
 				if (record.input == null) {
 					if (conv != null) {
 						try {
-							conv.evaluate(record);
-							input = conv.getFeatureFitChannel().getData();
+							input = FeatureCache.extract(conv, record, config.getAsBoolean(ConvGenModelAbstract.FEATURE_CACHE_FIELD));
 						} catch (Throwable e) {Util.trace(e);}
 						if (input == null) continue;
 						input = convertFeatureToX(input);
@@ -730,6 +730,12 @@ public class ConvVAEImpl extends VAEImpl implements ConvVAE, FeatureToX, Feature
 	}
 	
 	
+	@Override
+	public G[] generateRaster(int count) throws RemoteException {
+		return ConvGenModelAbstract.generateRaster(this, count, conv, deconv, this, this);
+	}
+	
+	
 	@Override
 	public synchronized G generateRasterBest() throws RemoteException {
 		try {
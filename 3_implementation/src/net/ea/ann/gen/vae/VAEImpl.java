@@ -8,7 +8,9 @@
 package net.ea.ann.gen.vae;
 
 import java.rmi.RemoteException;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import net.ea.ann.core.Id;
@@ -20,6 +22,7 @@ import net.ea.ann.core.NetworkStandardImpl;
 import net.ea.ann.core.NeuronStandard;
 import net.ea.ann.core.Record;
 import net.ea.ann.core.Util;
+import net.ea.ann.core.bp.Gradient;
 import net.ea.ann.core.function.Function;
 import net.ea.ann.core.generator.GeneratorStandard;
 import net.ea.ann.core.generator.Trainer;
@@ -83,6 +86,18 @@ public class VAEImpl extends VAEAbstract {
 	public static final boolean STORE_VAR_SQRT_DEFAULT = true;
 
 	
+	/**
+	 * Name of batch size field. If batch size is positive, encoder and decoder are learned jointly by mini-batches.
+	 */
+	public static final String BATCH_SIZE_FIELD = "vae_batch_size";
+	
+	
+	/**
+	 * Default value of batch size field. Zero means that encoder and decoder are learned separately over entire sample as usual.
+	 */
+	public static final int BATCH_SIZE_DEFAULT = 0;
+
+	
 	/**
 	 * Name of the field that indicates whether variance of X is computed as a set of single diagonal variances.
 	 */
@@ -98,6 +113,19 @@ public class VAEImpl extends VAEAbstract {
 	public static final boolean VARX_DIAGONAL_DEFAULT = true;
 
 	
+	/**
+	 * Name of the field of rank of variance of X. If this rank k is positive, variance of X is parameterized as diagonal plus low rank, varX = D + UU^T
+	 * where D is diagonal matrix and U is zDim x k factor matrix, so that its inverse, squared root, and determinant are calculated by Woodbury identity.
+	 */
+	public static final String VARX_RANK_FIELD = "vae_var_rank";
+
+	
+	/**
+	 * Default value of the field of rank of variance of X. Zero means that variance of X is diagonal or full covariance matrix as usual.
+	 */
+	public static final int VARX_RANK_DEFAULT = 0;
+
+	
 	/**
 	 * Internal encoder.
 	 */
@@ -134,6 +162,31 @@ public class VAEImpl extends VAEAbstract {
 	private NeuronValue[][] varXSqrtTemp = null;
 
 	
+	/**
+	 * Low rank factor U of variance of original data X encoded in diagonal plus low rank parameterization varX = D + UU^T, whose diagonal D is kept in {@link #varX}.
+	 * This factor is null if variance of X is not parameterized as diagonal plus low rank.
+	 */
+	protected NeuronStandard[][] varU = null;
+	
+	
+	/**
+	 * Diagonal of inverse of variance of X in diagonal plus low rank parameterization. This variable is derived from {@link #varX} and {@link #varU}.
+	 */
+	private transient NeuronValue[] varXInverseDiag = null;
+	
+	
+	/**
+	 * Product of inverse of variance of X and low rank factor U in diagonal plus low rank parameterization. This variable is derived from {@link #varX} and {@link #varU}.
+	 */
+	private transient NeuronValue[][] varXInverseU = null;
+	
+	
+	/**
+	 * Indices of encoded neurons in encoding layer in diagonal plus low rank parameterization.
+	 */
+	private transient Map<NeuronStandard, Integer> encodedIndices = null;
+
+	
 //	/**
 //	 * Flag to indicate whether variance of X is computed as a set of single diagonal variances.
 //	 * If this property is true, variance of X is computed as a vector of single diagonal variances,
@@ -149,6 +202,24 @@ public class VAEImpl extends VAEAbstract {
 	protected Random learnRnd = new Random();
 	
 	
+	/**
+	 * Accumulated gradient of encoder in mini-batch learning.
+	 */
+	private transient Gradient encodeGradient = null;
+	
+	
+	/**
+	 * Accumulated gradient of decoder in mini-batch learning.
+	 */
+	private transient Gradient decodeGradient = null;
+	
+	
+	/**
+	 * Throughput of the latest mini-batch learning in records per second.
+	 */
+	protected transient double learnThroughput = 0;
+	
+	
 	/**
 	 * Constructor with neuron channel, activation function, and identifier reference.
 	 * @param neuronChannel neuron channel.
@@ -161,6 +232,8 @@ public class VAEImpl extends VAEAbstract {
 		this.config.put(FIXED_VAR_FIELD, FIXED_VAR_DEFAULT);
 		this.config.put(ADJUST_VAR_FIELD, ADJUST_VAR_DEFAULT);
 		this.config.put(VARX_DIAGONAL_FIELD, VARX_DIAGONAL_DEFAULT);
+		this.config.put(VARX_RANK_FIELD, VARX_RANK_DEFAULT);
+		this.config.put(BATCH_SIZE_FIELD, BATCH_SIZE_DEFAULT);
 		
 		GeneratorStandard.fillConfig(this.config);
 	}
@@ -222,23 +295,30 @@ public class VAEImpl extends VAEAbstract {
 	
 	
 	/**
-	 * Initialize with X dimension and Z dimension as well as hidden neurons.
-	 * @param xDim X dimension.
-	 * @param zDim Z dimension where z is random data to generate data X.
-	 * @param nHiddenNeuronEncode number of encoded hidden neurons.
-	 * @param nHiddenNeuronDecode number of decoded hidden neurons.
-	 * @return true if initialization is successful.
+	 * Getting number of encoded neurons which are mean and variance of X.
+	 * @param zDim Z dimension.
+	 * @return number of encoded neurons.
 	 */
-	public boolean initialize(int xDim, int zDim, int[] nHiddenNeuronEncode, int[] nHiddenNeuronDecode) {
-		if (xDim <= 0 || zDim <= 0) return false;
-		
-		this.encoder = createEncoder();
-		if(!this.encoder.initialize(xDim, isVarXDiagonal() ? 2*zDim : zDim*(zDim+1), nHiddenNeuronEncode)) return false;
-		
-		LayerStandard encodeLayer = this.encoder.getOutputLayer();
+	protected int getEncodedDim(int zDim) {
+		int rank = getVarXRank();
+		if (rank > 0)
+			return zDim*(2 + rank);
+		else
+			return isVarXDiagonal() ? 2*zDim : zDim*(zDim+1);
+	}
+	
+	
+	/**
+	 * Setting mean and variance of X from encoded neurons. Encoded neurons are laid out as means, then variances, and then low rank factor in diagonal plus low rank parameterization.
+	 * @param encodeLayer encoding layer.
+	 * @param zDim Z dimension.
+	 */
+	protected void setEncodedNeurons(LayerStandard encodeLayer, int zDim) {
 		this.muX = new NeuronStandard[zDim];
 		for (int i = 0; i < zDim; i++) this.muX[i] = encodeLayer.get(i);
 		
+		int rank = getVarXRank();
+		boolean diagonal = rank > 0 || isVarXDiagonal();
 		this.varX = new NeuronStandard[zDim][];
 		NeuronValue zero = encodeLayer.newNeuronValue().zero();
 		NeuronStandard zeroNeuron = encodeLayer.newNeuron();
@@ -247,12 +327,39 @@ public class VAEImpl extends VAEAbstract {
 		for (int i = 0; i < zDim; i++) {
 			this.varX[i] = new NeuronStandard[zDim];
 			for (int j = 0; j < zDim; j++) {
-				if (isVarXDiagonal())
+				if (diagonal)
 					this.varX[i][j] = i == j ? encodeLayer.get(zDim + i) : zeroNeuron;
 				else
 					this.varX[i][j] = encodeLayer.get(zDim + i*zDim + j);
 			}
 		}
+		
+		this.varU = null;
+		this.varXInverseDiag = null;
+		this.varXInverseU = null;
+		this.encodedIndices = null;
+		if (rank <= 0) return;
+		this.varU = new NeuronStandard[zDim][rank];
+		for (int i = 0; i < zDim; i++) {
+			for (int a = 0; a < rank; a++) this.varU[i][a] = encodeLayer.get(2*zDim + i*rank + a);
+		}
+	}
+
+	
+	/**
+	 * Initialize with X dimension and Z dimension as well as hidden neurons.
+	 * @param xDim X dimension.
+	 * @param zDim Z dimension where z is random data to generate data X.
+	 * @param nHiddenNeuronEncode number of encoded hidden neurons.
+	 * @param nHiddenNeuronDecode number of decoded hidden neurons.
+	 * @return true if initialization is successful.
+	 */
+	public boolean initialize(int xDim, int zDim, int[] nHiddenNeuronEncode, int[] nHiddenNeuronDecode) {
+		if (xDim <= 0 || zDim <= 0) return false;
+		
+		this.encoder = createEncoder();
+		if(!this.encoder.initialize(xDim, getEncodedDim(zDim), nHiddenNeuronEncode)) return false;
+		setEncodedNeurons(this.encoder.getOutputLayer(), zDim);
 
 		this.decoder = createDecoder();
 		if(!this.decoder.initialize(zDim, xDim, nHiddenNeuronDecode)) return false;
@@ -293,6 +400,12 @@ public class VAEImpl extends VAEAbstract {
 		varX = null;
 		varXInverse = null;
 		varXSqrtTemp = null;
+		varU = null;
+		varXInverseDiag = null;
+		varXInverseU = null;
+		encodedIndices = null;
+		encodeGradient = null;
+		decodeGradient = null;
 	}
 	
 	
@@ -383,6 +496,7 @@ public class VAEImpl extends VAEAbstract {
 		terminatedThreshold = Double.isNaN(terminatedThreshold) || terminatedThreshold < 0 ? LEARN_TERMINATED_THRESHOLD_DEFAULT : terminatedThreshold;
 		learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? LEARN_RATE_DEFAULT : learningRate;
 		
+		int batchSize = config.getAsInt(BATCH_SIZE_FIELD);
 		NeuronValue[] error = null;
 		int iteration = 0;
 		doStarted = true;
@@ -390,16 +504,20 @@ public class VAEImpl extends VAEAbstract {
 			sample = resample(sample, iteration); //Re-sampling.
 			double lr = calcLearningRate(learningRate, iteration);
 
-			//Learning encoder.
-			encoder.learn(sample, lr, terminatedThreshold, 1);
-			
-			List<Record> decodeSample = Util.newList(0);
-			for (Record record : sample) {
-				if (record == null) continue;
-				decodeSample.add(new Record(randomizeDataZ(learnRnd), record.input));
+			if (batchSize > 0)
+				error = learnBatches(sample, lr, batchSize);
+			else {
+				//Learning encoder.
+				encoder.learn(sample, lr, terminatedThreshold, 1);
+				
+				List<Record> decodeSample = Util.newList(0);
+				for (Record record : sample) {
+					if (record == null) continue;
+					decodeSample.add(new Record(randomizeDataZ(learnRnd), record.input));
+				}
+				//Learning decoder.
+				error = decoder.learn(decodeSample, lr, terminatedThreshold, 1);
 			}
-			//Learning decoder.
-			error = decoder.learn(decodeSample, lr, terminatedThreshold, 1);
 			
 			iteration ++;
 			
@@ -441,6 +559,59 @@ public class VAEImpl extends VAEAbstract {
 	}
 
 	
+	/**
+	 * Learning encoder and decoder jointly by mini-batches over one pass of sample.
+	 * For every record, encoder is evaluated, Z is sampled from the encoded mean and variance of the record (reparameterization),
+	 * decoder is evaluated by Z, and gradients of both networks are accumulated. Weights and biases of both networks are updated once per batch.
+	 * @param sample learning sample.
+	 * @param learningRate learning rate.
+	 * @param batchSize batch size.
+	 * @return error of the last record.
+	 */
+	private NeuronValue[] learnBatches(Iterable<Record> sample, double learningRate, int batchSize) {
+		if (encodeGradient == null) encodeGradient = new Gradient();
+		if (decodeGradient == null) decodeGradient = new Gradient();
+		Record encodeRecord = new Record();
+		Record decodeRecord = new Record();
+		
+		NeuronValue[] error = null;
+		long beginTime = System.nanoTime();
+		int count = 0;
+		for (Record record : sample) {
+			if (record == null || record.input == null) continue;
+			
+			encodeRecord.input = record.input;
+			encoder.accumulateGradient(encodeRecord, encodeGradient);
+			
+			decodeRecord.input = randomizeDataZ(learnRnd);
+			decodeRecord.output = record.input;
+			NeuronValue[] decodeError = decoder.accumulateGradient(decodeRecord, decodeGradient);
+			if (decodeError != null) error = decodeError;
+			count++;
+			
+			if (count % batchSize == 0) {
+				encodeGradient.update(learningRate);
+				decodeGradient.update(learningRate);
+			}
+		}
+		encodeGradient.update(learningRate);
+		decodeGradient.update(learningRate);
+		
+		double seconds = (System.nanoTime() - beginTime) / 1e9;
+		learnThroughput = seconds > 0 ? count / seconds : 0;
+		return error;
+	}
+	
+	
+	/**
+	 * Getting throughput of the latest mini-batch learning.
+	 * @return throughput of the latest mini-batch learning in records per second.
+	 */
+	public double getLearnThroughput() {
+		return learnThroughput;
+	}
+	
+	
 	@Override
 	public synchronized G generate() throws RemoteException {
 		NeuronValue[] dataZ = randomizeDataZ(learnRnd);
@@ -453,6 +624,26 @@ public class VAEImpl extends VAEAbstract {
 	}
 
 
+	@Override
+	public G[] generate(int count) throws RemoteException {
+		NeuronValue[][] dataZs = null;
+		NetworkStandardImpl[] decoders = null;
+		synchronized (this) {
+			if (!isValid() || count <= 0) return new G[0];
+			dataZs = new NeuronValue[count][];
+			for (int i = 0; i < count; i++) dataZs[i] = randomizeDataZ(learnRnd);
+			
+			decoders = replicate(decoder, count);
+			if (decoders[0] == decoder) return generateByZ(dataZs, decoders);
+		}
+		
+		//Replicas are decoded out of the lock of this model and then returned to cache.
+		try {
+			return generateByZ(dataZs, decoders);
+		} finally {release(decoders);}
+	}
+
+
 	@Override
 	public synchronized G generateBest() throws RemoteException {
 		if (muX == null || muX.length == 0) return null;
@@ -507,9 +698,9 @@ public class VAEImpl extends VAEAbstract {
 	protected NeuronValue[] randomizeDataZ(Random rnd) {
 		if (muX == null || muX.length == 0) return null;
 		
-		NeuronValue[] rNumbers = new NeuronValue[muX.length];
+		NeuronValue[] rNumbers = new NeuronValue[muX.length + (varU != null && varU.length > 0 ? varU[0].length : 0)];
 		NeuronValue zero = muX[0].getOutput().zero();
-		for (int i = 0; i < muX.length; i++) {
+		for (int i = 0; i < rNumbers.length; i++) {
 			rNumbers[i] = zero.valueOf(Util.randomGaussian(rnd));
 		}
 		
@@ -523,6 +714,7 @@ public class VAEImpl extends VAEAbstract {
 	 * @return Z data made from some numbers.
 	 */
 	private NeuronValue[] makeDataZ(NeuronValue[] rNumbers) {
+		if (varU != null) return makeDataZLowRank(rNumbers);
 		NeuronValue[][] varXSqrt = getUpdateVarXValueSqrt();
 		NeuronValue[] muXValue = getMuXValue();
 		if (varXSqrt == null) return muXValue; //Considering rNumbers is zero vector.
@@ -534,6 +726,26 @@ public class VAEImpl extends VAEAbstract {
 	}
 
 	
+	/**
+	 * Making Z data from some numbers in diagonal plus low rank parameterization varX = D + UU^T, in which Z = muX + sqrt(D)*r1 + U*r2
+	 * where r1 and r2 are the first zDim numbers and the last k numbers. Such Z has covariance matrix varX without calculating squared root of varX.
+	 * @param rNumbers some numbers. Missing numbers are considered as zero.
+	 * @return Z data made from some numbers.
+	 */
+	private NeuronValue[] makeDataZLowRank(NeuronValue[] rNumbers) {
+		NeuronValue[] dataZ = getMuXValue();
+		int zDim = dataZ.length;
+		for (int i = 0; i < zDim; i++) {
+			if (i < rNumbers.length) dataZ[i] = dataZ[i].add(getVarXDiagValue(i).sqrt().multiply(rNumbers[i]));
+			for (int a = 0; a < varU[i].length; a++) {
+				if (zDim + a < rNumbers.length) dataZ[i] = dataZ[i].add(varU[i][a].getOutput().multiply(rNumbers[zDim + a]));
+			}
+		}
+		
+		return dataZ;
+	}
+
+	
 	/**
 	 * Calculate error of an encoded neuron.
 	 * This code is the most important code to implement and combine Variational Autoencoders (VAE) with backpropagation algorithm.
@@ -568,6 +780,7 @@ public class VAEImpl extends VAEAbstract {
 	 */
 	protected NeuronValue calcEncodedError(NeuronStandard neuron) {
 		NeuronValue derivative = GeneratorStandard.Neuron.derivative(neuron);
+		if (varU != null) return calcEncodedErrorLowRank(neuron, derivative);
 
 		boolean isMu = false;
 		for (NeuronStandard nr : muX) {
@@ -616,6 +829,51 @@ public class VAEImpl extends VAEAbstract {
 	}
 
 	
+	/**
+	 * Calculate error of an encoded neuron in diagonal plus low rank parameterization varX = D + UU^T.
+	 * The descending directions of KL-divergence with regard to D and U are:<br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;d(KL)/dD = 1/2(diag(varX^(-1)) - 1)<br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;d(KL)/dU = varX^(-1)*U - U<br>
+	 * Where diag(varX^(-1)) and varX^(-1)*U are calculated by Woodbury identity in O(zDim*k^2) instead of inverting varX in O(zDim^3).
+	 * @param neuron specific encoded neuron.
+	 * @param derivative derivative of the encoded neuron.
+	 * @return error or loss of the encode neuron.
+	 */
+	private NeuronValue calcEncodedErrorLowRank(NeuronStandard neuron, NeuronValue derivative) {
+		int zDim = muX.length, rank = varU.length > 0 ? varU[0].length : 0;
+		if (encodedIndices == null) {
+			Map<NeuronStandard, Integer> indices = new IdentityHashMap<>();
+			for (int i = 0; i < zDim; i++) {
+				indices.put(muX[i], i);
+				indices.put(varX[i][i], zDim + i);
+				for (int a = 0; a < rank; a++) indices.put(varU[i][a], 2*zDim + i*rank + a);
+			}
+			encodedIndices = indices;
+		}
+		Integer index = encodedIndices.get(neuron);
+		if (index == null) return null;
+		
+		if (index < zDim) {
+			//Calculate derivative of mean. The derivative(muX^muX) = 2mu, which causes that the error is -mu.
+			return neuron.getOutput().negative().multiplyDerivative(derivative);
+		}
+		
+		if (neuron == varX[0][0] || varXInverseDiag == null) updateVarXInverse();
+		if (varXInverseDiag == null || varXInverseU == null) return null;
+		
+		NeuronValue encodedError = null;
+		if (index < 2*zDim) {
+			NeuronValue inverse = varXInverseDiag[index - zDim];
+			encodedError = inverse.subtract(inverse.unit()).multiply(0.5);
+		}
+		else {
+			int i = (index - 2*zDim) / rank, a = (index - 2*zDim) % rank;
+			encodedError = varXInverseU[i][a].subtract(varU[i][a].getOutput());
+		}
+		return encodedError.multiplyDerivative(derivative);
+	}
+
+	
 	/**
 	 * Getting X mean.
 	 * @return X mean.
@@ -654,6 +912,78 @@ public class VAEImpl extends VAEAbstract {
 	}
 	
 	
+	/**
+	 * Getting diagonal element of X variance, which is prevented from being non-positive.
+	 * @param i index of diagonal element.
+	 * @return diagonal element of X variance.
+	 */
+	private NeuronValue getVarXDiagValue(int i) {
+		NeuronValue value = varX[i][i].getOutput();
+		NeuronValue max = value.max(value.valueOf(MIN_VALUE));
+		if (!value.equals(max)) varX[i][i].setOutput(max);
+		return max;
+	}
+	
+	
+	/**
+	 * Updating inverse of X variance in diagonal plus low rank parameterization varX = D + UU^T by Woodbury identity:<br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;varX^(-1) = D^(-1) - W*M^(-1)*W^T where W = D^(-1)*U and M = I + U^T*W<br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;varX^(-1)*U = W*M^(-1)<br>
+	 * Only k x k matrix M is inverted and so the cost is O(zDim*k^2).
+	 * @return true if updating is successful.
+	 */
+	private boolean updateVarXLowRank() {
+		varXInverseDiag = null;
+		varXInverseU = null;
+		int zDim = varX.length, rank = varU.length > 0 ? varU[0].length : 0;
+		if (zDim == 0 || rank == 0) return false;
+		
+		NeuronValue zero = varX[0][0].getOutput().zero(), unit = zero.unit();
+		NeuronValue[] dInverse = new NeuronValue[zDim];
+		NeuronValue[][] u = new NeuronValue[zDim][rank], w = new NeuronValue[zDim][rank];
+		for (int i = 0; i < zDim; i++) {
+			NeuronValue d = getVarXDiagValue(i);
+			dInverse[i] = d.inverse();
+			for (int a = 0; a < rank; a++) {
+				u[i][a] = varU[i][a].getOutput();
+				w[i][a] = u[i][a].multiply(dInverse[i]);
+			}
+		}
+		
+		NeuronValue[][] m = new NeuronValue[rank][rank];
+		for (int a = 0; a < rank; a++) {
+			for (int b = 0; b < rank; b++) {
+				NeuronValue sum = a == b ? unit : zero;
+				for (int i = 0; i < zDim; i++) sum = sum.add(u[i][a].multiply(w[i][b]));
+				m[a][b] = sum;
+			}
+		}
+		
+		NeuronValue[][] mInverse = null;
+		try {
+			mInverse = m[0][0].matrixInverse(m);
+		} catch (Throwable e) {mInverse = null;}
+		if (mInverse == null) return false;
+		
+		NeuronValue[] inverseDiag = new NeuronValue[zDim];
+		NeuronValue[][] inverseU = new NeuronValue[zDim][rank];
+		for (int i = 0; i < zDim; i++) {
+			NeuronValue diag = dInverse[i];
+			for (int b = 0; b < rank; b++) {
+				NeuronValue sum = zero;
+				for (int a = 0; a < rank; a++) sum = sum.add(w[i][a].multiply(mInverse[a][b]));
+				inverseU[i][b] = sum;
+				diag = diag.subtract(sum.multiply(w[i][b]));
+			}
+			inverseDiag[i] = diag;
+		}
+		
+		varXInverseDiag = inverseDiag;
+		varXInverseU = inverseU;
+		return true;
+	}
+	
+	
 	/**
 	 * Getting squared root of X variance.
 	 * @return squared root of X variance.
@@ -688,6 +1018,7 @@ public class VAEImpl extends VAEAbstract {
 						varX[i][j].setOutput(out.zero());
 				}
 			}
+			if (varU != null) return resetVarU();
 			varXInverse = getVarXValue();
 			return varXInverse;
 		}
@@ -714,7 +1045,9 @@ public class VAEImpl extends VAEAbstract {
 			}
 		}
 
-		if (identity)
+		if (varU != null)
+			return resetVarU();
+		else if (identity)
 			varXInverse = getVarXValue();
 		else {
 			try {
@@ -727,6 +1060,19 @@ public class VAEImpl extends VAEAbstract {
 	}
 	
 	
+	/**
+	 * Resetting low rank factor of X variance to be zero after diagonal of X variance was reset.
+	 * @return inverse of X covariance matrix, which is null because only Woodbury terms are kept in diagonal plus low rank parameterization.
+	 */
+	private NeuronValue[][] resetVarU() {
+		for (NeuronStandard[] row : varU) {
+			for (NeuronStandard neuron : row) neuron.setOutput(neuron.getOutput().zero());
+		}
+		updateVarXLowRank();
+		return varXInverse;
+	}
+	
+	
 	/**
 	 * Updating X covariance matrix.
 	 * @return inverse of X covariance matrix.
@@ -735,6 +1081,10 @@ public class VAEImpl extends VAEAbstract {
 		varXSqrtTemp = null; //This code line is important.
 		
 		if (isFixedVar()) return resetVarX(true);
+		if (varU != null) {
+			if (!updateVarXLowRank()) resetVarX(false);
+			return varXInverse;
+		}
 		
 		try {
 			NeuronValue[][] varXValue = getVarXValue();
@@ -755,6 +1105,11 @@ public class VAEImpl extends VAEAbstract {
 		
 		if (!isAdjustVar()) return varXInverse;
 		if (isFixedVar()) return resetVarX(true);
+		if (varU != null) {
+			//Diagonal is kept positive by updating Woodbury terms and factor U has no constraint.
+			if (!updateVarXLowRank()) resetVarX(true);
+			return varXInverse;
+		}
 
 		int zDim = varX.length;
 		boolean update = false;
@@ -819,6 +1174,16 @@ public class VAEImpl extends VAEAbstract {
 	boolean isVarXDiagonal() {
 		return config.getAsBoolean(VARX_DIAGONAL_FIELD);
 	}
+
+	
+	/**
+	 * Getting rank of low rank factor of X variance in diagonal plus low rank parameterization.
+	 * @return rank of low rank factor of X variance. Zero means that such parameterization is not used.
+	 */
+	int getVarXRank() {
+		int rank = config.getAsInt(VARX_RANK_FIELD);
+		return rank < 0 ? 0 : rank;
+	}
 	
 	
 	/**
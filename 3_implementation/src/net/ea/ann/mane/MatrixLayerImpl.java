@@ -8,6 +8,7 @@
 package net.ea.ann.mane;
 
 import java.awt.Dimension;
+import java.util.List;
 
 import net.ea.ann.conv.ConvLayer2DAbstract;
 import net.ea.ann.conv.ConvLayerSingle2D;
@@ -16,6 +17,7 @@ import net.ea.ann.conv.filter.Filter2D;
 import net.ea.ann.conv.filter.ProductFilter2D;
 import net.ea.ann.core.Id;
 import net.ea.ann.core.Network;
+import net.ea.ann.core.Util;
 import net.ea.ann.core.function.Function;
 import net.ea.ann.core.value.Matrix;
 import net.ea.ann.core.value.NeuronValue;
@@ -92,6 +94,12 @@ public class MatrixLayerImpl extends MatrixLayerAbstract {
 	protected NeuronValue filterBias = null;
 	
 	
+	/**
+	 * Gradients accumulated by back-warding instead of being applied immediately. It is null if gradients are applied immediately.
+	 */
+	protected transient Gradients gradients = null;
+	
+	
 	/**
 	 * Constructor with neuron channel, activation function, convolutional activation function, and identifier reference.
 	 * @param neuronChannel neuron channel.
@@ -143,6 +151,7 @@ public class MatrixLayerImpl extends MatrixLayerAbstract {
 		this.weight1 = this.weight2 = this.bias = null;
 		this.filter = null;
 		this.filterBias = null;
+		this.gradients = null;
 		this.setPrevLayer(null);
 		this.setNextLayer(null);
 	}
@@ -605,37 +614,18 @@ public class MatrixLayerImpl extends MatrixLayerAbstract {
 		} //End browsing errors.
 		
 		
-		//Update weight bias, first weight, and second weight.
-		if (this.getBias() != null && learning) {
-			Matrix biasMean = Matrix.mean(errors);
-			Matrix bias = this.getBias().add(biasMean.multiply0(learningRate));
-			this.setBias(bias);
-		}
-		if (this.getWeight1() != null && learning) {
-			Matrix w1Mean = Matrix.mean(dW1s);
-			Matrix w1 = this.getWeight1().add(w1Mean.multiply0(learningRate));
-			this.setWeight1(w1);
-		}
-		if (this.getWeight2() != null && learning) {
-			Matrix w2Mean = Matrix.mean(dW2s);
-			Matrix w2 = this.getWeight2().add(w2Mean.multiply0(learningRate));
-			this.setWeight2(w2);
-		}
-		
-		//Update filter and filter bias.
-		if (this.getFilter() != null && this.isLearnFilter() && learning) {
-			NeuronValue filterErrorsMean = NeuronValue.valueMean(dFilterErrors);
-			NeuronValue filterBias = this.getFilterBias().add(filterErrorsMean.multiply(learningRate));
-			this.setFilterBias(filterBias); //Update filter bias.
-			
-			if (this.getFilter() instanceof ProductFilter2D) {
-				ProductFilter2D filter = (ProductFilter2D)this.getFilter();
-				NeuronValue[][] filterKernelsMean = ProductFilter2D.kernelMean(dFilterKernels);
-				filterKernelsMean = NeuronValue.multiply(filterKernelsMean, learningRate);
-				filter = filter.shallowClone();
-				filter.accumKernel(filterKernelsMean);
-				this.setFilter(filter); //Update filter.
-			}
+		//Update weight bias, first weight, second weight, filter, and filter bias.
+		if (learning) {
+			Matrix biasMean = this.getBias() != null ? Matrix.mean(errors) : null;
+			Matrix w1Mean = this.getWeight1() != null ? Matrix.mean(dW1s) : null;
+			Matrix w2Mean = this.getWeight2() != null ? Matrix.mean(dW2s) : null;
+			boolean learnFilter = this.getFilter() != null && this.isLearnFilter();
+			NeuronValue filterErrorsMean = learnFilter ? NeuronValue.valueMean(dFilterErrors) : null;
+			NeuronValue[][] filterKernelsMean = learnFilter && this.getFilter() instanceof ProductFilter2D ? ProductFilter2D.kernelMean(dFilterKernels) : null;
+			if (gradients != null)
+				gradients.add(biasMean, w1Mean, w2Mean, filterErrorsMean, filterKernelsMean);
+			else
+				update(biasMean, w1Mean, w2Mean, filterErrorsMean, filterKernelsMean, learningRate);
 		}
 		
 		//Please pay attention to this code line to assign current errors to output errors.
@@ -666,5 +656,132 @@ public class MatrixLayerImpl extends MatrixLayerAbstract {
 		 return backward(outputErrors, null, true, learningRate);
 	}
 
+
+	/**
+	 * Updating bias, first weight, second weight, filter bias, and filter kernel by their errors.
+	 * @param biasMean bias error, which can be null.
+	 * @param w1Mean first weight error, which can be null.
+	 * @param w2Mean second weight error, which can be null.
+	 * @param filterErrorsMean filter bias error, which can be null.
+	 * @param filterKernelsMean filter kernel error, which can be null.
+	 * @param learningRate learning rate.
+	 */
+	private void update(Matrix biasMean, Matrix w1Mean, Matrix w2Mean, NeuronValue filterErrorsMean, NeuronValue[][] filterKernelsMean, double learningRate) {
+		if (this.getBias() != null && biasMean != null) {
+			Matrix bias = this.getBias().add(biasMean.multiply0(learningRate));
+			this.setBias(bias);
+		}
+		if (this.getWeight1() != null && w1Mean != null) {
+			Matrix w1 = this.getWeight1().add(w1Mean.multiply0(learningRate));
+			this.setWeight1(w1);
+		}
+		if (this.getWeight2() != null && w2Mean != null) {
+			Matrix w2 = this.getWeight2().add(w2Mean.multiply0(learningRate));
+			this.setWeight2(w2);
+		}
+		
+		//Update filter and filter bias.
+		if (this.getFilter() != null && filterErrorsMean != null) {
+			NeuronValue filterBias = this.getFilterBias().add(filterErrorsMean.multiply(learningRate));
+			this.setFilterBias(filterBias); //Update filter bias.
+			
+			if (this.getFilter() instanceof ProductFilter2D && filterKernelsMean != null) {
+				ProductFilter2D filter = (ProductFilter2D)this.getFilter();
+				filterKernelsMean = NeuronValue.multiply(filterKernelsMean, learningRate);
+				filter = filter.shallowClone();
+				filter.accumKernel(filterKernelsMean);
+				this.setFilter(filter); //Update filter.
+			}
+		}
+	}
+	
+	
+	/**
+	 * Starting to accumulate gradients so that back-warding does not update this layer until gradients are applied.
+	 * Gradients accumulated before are discarded.
+	 */
+	public void accumulateGradients() {
+		gradients = new Gradients();
+	}
+	
+	
+	/**
+	 * Applying accumulated gradients as their mean with specified learning rate and then stopping accumulation.
+	 * @param learningRate learning rate.
+	 * @return the number of back-warding whose gradients are applied.
+	 */
+	public int applyGradients(double learningRate) {
+		Gradients gradients = this.gradients;
+		this.gradients = null;
+		if (gradients == null || gradients.count == 0) return 0;
+		learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? Network.LEARN_RATE_DEFAULT : learningRate;
+		
+		Matrix biasMean = gradients.biases.size() > 0 ? Matrix.mean(gradients.biases.toArray(new Matrix[] {})) : null;
+		Matrix w1Mean = gradients.weight1s.size() > 0 ? Matrix.mean(gradients.weight1s.toArray(new Matrix[] {})) : null;
+		Matrix w2Mean = gradients.weight2s.size() > 0 ? Matrix.mean(gradients.weight2s.toArray(new Matrix[] {})) : null;
+		NeuronValue filterErrorsMean = gradients.filterBiases.size() > 0 ? NeuronValue.valueMean(gradients.filterBiases.toArray(new NeuronValue[] {})) : null;
+		NeuronValue[][] filterKernelsMean = gradients.filterKernels.size() > 0 ? ProductFilter2D.kernelMean(gradients.filterKernels.toArray(new NeuronValue[][][] {})) : null;
+		update(biasMean, w1Mean, w2Mean, filterErrorsMean, filterKernelsMean, learningRate);
+		return gradients.count;
+	}
+	
+	
+	/**
+	 * This class stores gradients accumulated by back-warding.
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Gradients {
+		
+		/**
+		 * Bias errors.
+		 */
+		protected List<Matrix> biases = Util.newList(0);
+		
+		/**
+		 * First weight errors.
+		 */
+		protected List<Matrix> weight1s = Util.newList(0);
+		
+		/**
+		 * Second weight errors.
+		 */
+		protected List<Matrix> weight2s = Util.newList(0);
+		
+		/**
+		 * Filter bias errors.
+		 */
+		protected List<NeuronValue> filterBiases = Util.newList(0);
+		
+		/**
+		 * Filter kernel errors.
+		 */
+		protected List<NeuronValue[][]> filterKernels = Util.newList(0);
+		
+		/**
+		 * The number of back-warding.
+		 */
+		protected int count = 0;
+		
+		/**
+		 * Adding errors of one back-warding.
+		 * @param bias bias error, which can be null.
+		 * @param weight1 first weight error, which can be null.
+		 * @param weight2 second weight error, which can be null.
+		 * @param filterBias filter bias error, which can be null.
+		 * @param filterKernel filter kernel error, which can be null.
+		 */
+		protected void add(Matrix bias, Matrix weight1, Matrix weight2, NeuronValue filterBias, NeuronValue[][] filterKernel) {
+			if (bias != null) biases.add(bias);
+			if (weight1 != null) weight1s.add(weight1);
+			if (weight2 != null) weight2s.add(weight2);
+			if (filterBias != null) filterBiases.add(filterBias);
+			if (filterKernel != null) filterKernels.add(filterKernel);
+			count++;
+		}
+		
+	}
+
 	
 }
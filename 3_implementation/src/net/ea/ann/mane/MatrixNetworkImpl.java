@@ -20,6 +20,7 @@ import net.ea.ann.core.NetworkDoEventImpl;
 import net.ea.ann.core.Util;
 import net.ea.ann.core.function.Function;
 import net.ea.ann.core.value.Matrix;
+import net.ea.ann.core.value.NeuronValue;
 
 /**
  * This class implements matrix neural network in default.
@@ -454,6 +455,8 @@ public class MatrixNetworkImpl extends MatrixNetworkAbstract implements MatrixLa
 	/**
 	 * Learning matrix neural network.
 	 * @param inouts sample as collection of input and output whose each element is an 2-component array of input (the first) and output (the second).
+	 * If sample is {@link MatrixStream}, errors of every epoch are reduced to their mean for back-propagation, and learning errors have only one element
+	 * which is the mean of element norms of errors so that signed errors do not cancel each other in the returned errors and the terminated condition.
 	 * @param learningRate learning rate.
 	 * @param terminatedThreshold terminated threshold.
 	 * @param maxIteration maximum iteration.
@@ -472,19 +475,39 @@ public class MatrixNetworkImpl extends MatrixNetworkAbstract implements MatrixLa
 		int iteration = 0;
 		doStarted = true;
 		while (doStarted && (maxIteration <= 0 || iteration < maxIteration)) {
-			inouts = resample(inouts, iteration); //Re-sampling.
+			boolean stream = inouts instanceof MatrixStream<?>;
+			double streamErrorMean = Double.NaN;
+			if (!stream) inouts = resample(inouts, iteration); //Re-sampling. Streaming sample shuffles itself.
 			double lr = calcLearningRate(learningRate, iteration);
 
 			if (trainers.size() == 0) {
 				List<Matrix> outputErrorList = Util.newList(0);
+				Matrix errorSum = null, errorNormSum = null;
+				double errorNormMeanSum = 0;
+				int errorCount = 0;
 				for (Matrix[] inout : inouts) {
 					Matrix input = inout[0], realOutput = inout[1];
 					Matrix output = evaluate(input, new Object[] {});
 					Matrix error = calcOutputError(output, realOutput, getOutputLayer());
-					outputErrorList.add(error);
+					if (!stream)
+						outputErrorList.add(error);
+					else if (error != null) {
+						//Errors of streaming sample are reduced incrementally, which gives the same update because back-propagation is linear in errors.
+						errorSum = errorSum == null ? error : errorSum.add(error);
+						Matrix errorNorm = norm(error);
+						errorNormSum = errorNormSum == null ? errorNorm : errorNormSum.add(errorNorm);
+						errorNormMeanSum += Matrix.normMean(error);
+						errorCount++;
+					}
 				}
+				if (errorSum != null) outputErrorList.add(errorSum.divide0(errorCount));
 				outputErrors = outputErrorList.toArray(new Matrix[] {});
 				outputErrors = backward(outputErrors, this, true, lr);
+				if (errorNormSum != null && outputErrors != null) {
+					//Signed mean of streaming errors is only used for back-propagation because signed errors cancel each other.
+					outputErrors = new Matrix[] {errorNormSum.divide0(errorCount)};
+					streamErrorMean = errorNormMeanSum / (double)errorCount;
+				}
 			}
 			else {
 				for (TaskTrainer trainer : trainers) {
@@ -500,7 +523,7 @@ public class MatrixNetworkImpl extends MatrixNetworkAbstract implements MatrixLa
 			if (outputErrors == null || outputErrors.length == 0 || (iteration >= maxIteration && maxIteration == 1))
 				doStarted = false;
 			else if (terminatedThreshold > 0 && config.isBooleanValue(LEARN_TERMINATE_ERROR_FIELD)) {
-				double errorMean = Matrix.normMean(outputErrors);
+				double errorMean = Double.isNaN(streamErrorMean) ? Matrix.normMean(outputErrors) : streamErrorMean;
 				if (errorMean < terminatedThreshold) doStarted = false;
 			}
 			
@@ -529,6 +552,23 @@ public class MatrixNetworkImpl extends MatrixNetworkAbstract implements MatrixLa
 	}
 
 	
+	/**
+	 * Calculating matrix of element norms.
+	 * @param matrix specified matrix.
+	 * @return matrix of element norms.
+	 */
+	private static Matrix norm(Matrix matrix) {
+		Matrix norm = matrix.create(matrix.rows(), matrix.columns());
+		for (int row = 0; row < matrix.rows(); row++) {
+			for (int column = 0; column < matrix.columns(); column++) {
+				NeuronValue value = matrix.get(row, column);
+				norm.set(row, column, value.valueOf(value.norm()));
+			}
+		}
+		return norm;
+	}
+
+	
 	@Override
 	public Matrix[] backward(Matrix[] outputErrors, MatrixLayer focus, boolean learning, double learningRate) {
 		if (!validate() || outputErrors == null) return null;
@@ -556,6 +596,29 @@ public class MatrixNetworkImpl extends MatrixNetworkAbstract implements MatrixLa
 	public Matrix[] backward(Matrix[] outputErrors, double learningRate) {
 		return backward(outputErrors, null, true, learningRate);
 	}
+
+	
+	/**
+	 * Starting to accumulate gradients of all layers so that back-warding does not update this network until gradients are applied.
+	 */
+	public void accumulateGradients() {
+		if (layers == null) return;
+		for (MatrixLayerAbstract layer : layers) {
+			if (layer instanceof MatrixLayerImpl) ((MatrixLayerImpl)layer).accumulateGradients();
+		}
+	}
+	
+	
+	/**
+	 * Applying accumulated gradients of all layers once and then stopping accumulation.
+	 * @param learningRate learning rate.
+	 */
+	public void applyGradients(double learningRate) {
+		if (layers == null) return;
+		for (MatrixLayerAbstract layer : layers) {
+			if (layer instanceof MatrixLayerImpl) ((MatrixLayerImpl)layer).applyGradients(learningRate);
+		}
+	}
 	
 	
 //	@Override
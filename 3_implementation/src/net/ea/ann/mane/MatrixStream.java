@@ -0,0 +1,205 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.mane;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import net.ea.ann.core.Util;
+import net.ea.ann.core.value.Matrix;
+
+/**
+ * This class represents streaming sample of matrix neural network, in which items such as rasters are converted lazily into pairs of input and output.
+ * Every pass over the stream, which is an epoch of learning, converts items again by background threads of {@link Util#getPool()} with bounded look-ahead,
+ * so that only a few converted pairs are kept in memory at the same time. If shuffling is enabled, every pass visits items in a new random permutation of indices
+ * without materializing converted pairs. Matrix neural network reduces errors of streaming sample incrementally instead of collecting them.
+ *
+ * @param <T> type of items.
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class MatrixStream<T> implements Iterable<Matrix[]> {
+
+
+	/**
+	 * Default number of items converted ahead.
+	 */
+	public final static int LOOKAHEAD_DEFAULT = 16;
+
+
+	/**
+	 * Items.
+	 */
+	protected Iterable<T> items = null;
+
+
+	/**
+	 * Converter of item into pair of input and output, which must be reentrant. Items converted into null are skipped.
+	 */
+	protected Function<T, Matrix[]> converter = null;
+
+
+	/**
+	 * Maximum number of items converted ahead.
+	 */
+	protected int lookahead = LOOKAHEAD_DEFAULT;
+
+
+	/**
+	 * Flag to indicate whether items are shuffled in every pass.
+	 */
+	protected boolean shuffle = false;
+
+
+	/**
+	 * Random generator for shuffling.
+	 */
+	protected Random rnd = new Random();
+
+
+	/**
+	 * Constructor with items, converter, look-ahead, and shuffling flag.
+	 * @param items items. If shuffling is enabled and items are not a list, references to items are copied into a list once.
+	 * @param converter converter of item into pair of input and output, which must be reentrant.
+	 * @param lookahead maximum number of items converted ahead. If it is not positive, the default value is used.
+	 * @param shuffle flag to indicate whether items are shuffled in every pass.
+	 */
+	public MatrixStream(Iterable<T> items, Function<T, Matrix[]> converter, int lookahead, boolean shuffle) {
+		if (shuffle && items != null && !(items instanceof List<?>)) {
+			List<T> list = Util.newList(0);
+			for (T item : items) list.add(item);
+			items = list;
+		}
+		this.items = items != null ? items : Util.newList(0);
+		this.converter = converter;
+		this.lookahead = lookahead > 0 ? lookahead : LOOKAHEAD_DEFAULT;
+		this.shuffle = shuffle;
+	}
+
+
+	@Override
+	public Iterator<Matrix[]> iterator() {
+		return new StreamIterator(shuffle ? permute((List<T>)items) : items.iterator());
+	}
+
+
+	/**
+	 * Creating iterator over items in a random permutation of indices.
+	 * @param list list of items.
+	 * @return iterator over items in a random permutation of indices.
+	 */
+	private Iterator<T> permute(List<T> list) {
+		int n = list.size();
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) order[i] = i;
+		synchronized (rnd) {
+			for (int i = n - 1; i > 0; i--) {
+				int j = rnd.nextInt(i + 1);
+				int temp = order[i];
+				order[i] = order[j];
+				order[j] = temp;
+			}
+		}
+
+		return new Iterator<T>() {
+			int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < n;
+			}
+
+			@Override
+			public T next() {
+				if (index >= n) throw new NoSuchElementException();
+				return list.get(order[index++]);
+			}
+		};
+	}
+
+
+	/**
+	 * This class represents iterator of one pass over stream, which keeps a bounded queue of pending conversions in item order.
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 */
+	private class StreamIterator implements Iterator<Matrix[]> {
+
+		/**
+		 * Iterator of items.
+		 */
+		private Iterator<T> itemIt = null;
+
+		/**
+		 * Pending conversions.
+		 */
+		private Deque<Future<Matrix[]>> pending = new ArrayDeque<>();
+
+		/**
+		 * Next converted pair.
+		 */
+		private Matrix[] next = null;
+
+		/**
+		 * Constructor with iterator of items.
+		 * @param itemIt iterator of items.
+		 */
+		public StreamIterator(Iterator<T> itemIt) {
+			this.itemIt = itemIt;
+			fill();
+			advance();
+		}
+
+		/**
+		 * Submitting conversions until the queue is full or items are exhausted.
+		 */
+		private void fill() {
+			while (pending.size() < lookahead && itemIt.hasNext()) {
+				T item = itemIt.next();
+				pending.add(Util.getPool().submit(() -> converter.apply(item)));
+			}
+		}
+
+		/**
+		 * Taking the next converted pair which is not null.
+		 */
+		private void advance() {
+			next = null;
+			while (next == null && !pending.isEmpty()) {
+				Future<Matrix[]> future = pending.poll();
+				fill();
+				try {
+					next = future.get();
+				} catch (Throwable e) {Util.trace(e);}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public Matrix[] next() {
+			if (next == null) throw new NoSuchElementException();
+			Matrix[] result = next;
+			advance();
+			return result;
+		}
+
+	}
+
+
+}
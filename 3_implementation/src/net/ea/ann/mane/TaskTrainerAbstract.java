@@ -41,6 +41,9 @@ public abstract class TaskTrainerAbstract implements TaskTrainer, OutputConverte
 	@Override
 	public Matrix[] train(MatrixLayer layer, Iterable<Matrix[]> inouts, boolean propagate, double learningRate) {
 		List<Matrix> biases = Util.newList(0);
+		boolean stream = inouts instanceof MatrixStream<?>;
+		Matrix biasSum = null;
+		int biasCount = 0;
 		for (Matrix[] inout : inouts) {
 			Matrix input = inout[0], realOutput = inout[1];
 			if (input != null) Matrix.copy(input, layer.getInput());
@@ -48,20 +51,25 @@ public abstract class TaskTrainerAbstract implements TaskTrainer, OutputConverte
 			Matrix bias = gradient(output, realOutput);
 			if (bias == null) continue;
 			
-			if (!(layer instanceof MatrixNetworkAbstract)) {
-				biases.add(bias);
-				continue;
+			if (layer instanceof MatrixNetworkAbstract) {
+				MatrixNetworkAbstract mane = (MatrixNetworkAbstract)layer;
+				Matrix oinput = mane.getOutputLayer().getInput();
+				Function activateRef = mane.getOutputLayer().getActivateRef();
+				if (oinput != null && activateRef != null) {
+					Matrix derivative = oinput.derivativeWise(activateRef);
+					bias = derivative.multiplyWise(bias);
+				}
 			}
 			
-			MatrixNetworkAbstract mane = (MatrixNetworkAbstract)layer;
-			Matrix oinput = mane.getOutputLayer().getInput();
-			Function activateRef = mane.getOutputLayer().getActivateRef();
-			if (oinput != null && activateRef != null) {
-				Matrix derivative = oinput.derivativeWise(activateRef);
-				bias = derivative.multiplyWise(bias);
+			if (!stream)
+				biases.add(bias);
+			else {
+				//Biases of streaming sample are reduced incrementally.
+				biasSum = biasSum == null ? bias : biasSum.add(bias);
+				biasCount++;
 			}
-			biases.add(bias);
 		}
+		if (biasSum != null) biases.add(biasSum.divide0(biasCount));
 		Matrix[] biasArray = biases.toArray(new Matrix[] {});
 		
 		return layer.backward(biasArray, propagate?layer:null, true, learningRate);
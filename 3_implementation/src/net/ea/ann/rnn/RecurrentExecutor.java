@@ -0,0 +1,839 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.rnn;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import net.ea.ann.core.LayerStandard;
+import net.ea.ann.core.NeuronStandard;
+import net.ea.ann.core.WeightedNeuron;
+import net.ea.ann.core.function.Function;
+import net.ea.ann.core.function.FunctionDelay;
+import net.ea.ann.core.function.FunctionScalar;
+import net.ea.ann.core.generator.GeneratorStandard;
+import net.ea.ann.core.value.NeuronValue;
+import net.ea.ann.core.value.NeuronValue1;
+import net.ea.ann.core.value.NeuronValueV;
+import net.ea.ann.core.value.vector.NeuronValueVector;
+import net.ea.ann.raster.Size;
+import net.ea.ann.rnn.RecurrentNetworkImpl.Layout;
+import net.ea.ann.rnn.lstm.Cell;
+
+/**
+ * This class represents compact executor of recurrent neural network unrolled along a sequence.
+ * Weights and biases are packed into arrays of real numbers, and activations of time steps are stored in arena whose size is specified by sequence length.
+ * Therefore, evaluating a long sequence does not create states, neurons, records, or neuron values.
+ * Neuron values are only created when activation function does not support real numbers, please see {@link FunctionScalar}.
+ * <br>
+ * Recurrent connections follow {@link RecurrentNetworkImpl}, in which the output layer of a state connects to the first hidden layer of its earlier neighbors.
+ * So the hidden layer at time step t receives outputs of time steps t+1, ..., t+lags, which are outputs of the previous evaluation because states are evaluated in order.
+ * The arena keeps activations between evaluations for this reason, and it can be loaded from and stored to states of a network so that the executor
+ * produces the same outputs as evaluating the network neuron by neuron.
+ * <br>
+ * Executor is packed either per state, in which every time step has weights of its own state, or from the first state only, in which all time steps share weights of the first state.
+ * Both out-in layout and parallel layout are supported, and cells of long short-term memory are supported too.
+ * Arrays are indexed as follows: weight at (parameter set p, layer l, neuron j, previous neuron i, gate g, channel c) is weights[p][l][((j*sizes[l-1] + i)*gates + g)*channel + c];
+ * output at (time step t, neuron j, channel c) is outputs[(t*neurons + j)*channel + c].
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class RecurrentExecutor implements Serializable, Cloneable {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Neuron channel.
+	 */
+	protected int channel = 1;
+
+
+	/**
+	 * Number of gates. It is 1 for normal neurons and it is {@link Cell#GATE_NUMBERS} for cells of long short-term memory.
+	 */
+	protected int gates = 1;
+
+
+	/**
+	 * Flag to indicate whether neurons are cells of long short-term memory.
+	 */
+	protected boolean lstm = false;
+
+
+	/**
+	 * Layout of recurrent connections.
+	 */
+	protected Layout layout = Layout.outin;
+
+
+	/**
+	 * Number of Markov steps, which is the number of previous time steps connecting to current time step.
+	 */
+	protected int lags = 1;
+
+
+	/**
+	 * Sizes of layers in backbone, including input layer and output layer.
+	 */
+	protected int[] sizes = null;
+
+
+	/**
+	 * Offsets of layers in neurons of a time step.
+	 */
+	protected int[] offsets = null;
+
+
+	/**
+	 * Number of neurons of a time step.
+	 */
+	protected int neurons = 0;
+
+
+	/**
+	 * Packed weights of parameter sets and layers. Weights of input layer are null.
+	 */
+	protected double[][][] weights = null;
+
+
+	/**
+	 * Packed biases of parameter sets and layers. Biases of input layer are null.
+	 */
+	protected double[][][] biases = null;
+
+
+	/**
+	 * Indices of layers which are sources of recurrent connections. Index -1 means that the layer has no recurrent connections.
+	 */
+	protected int[] recurrentSources = null;
+
+
+	/**
+	 * Packed recurrent weights indexed by parameter set, Markov step (lag minus one), and layer. Recurrent weights of layer l is indexed like weights with regard to source layer recurrentSources[l].
+	 */
+	protected double[][][][] recurrentWeights = null;
+
+
+	/**
+	 * Activation functions of layers.
+	 */
+	protected Function[] activateRefs = null;
+
+
+	/**
+	 * Auxiliary activation function which is applied to output of cells of long short-term memory.
+	 */
+	protected Function auxActivateRef = null;
+
+
+	/**
+	 * Arena of neuron inputs. In long short-term memory, they are inputs of gates.
+	 */
+	protected transient double[] inputs = null;
+
+
+	/**
+	 * Arena of neuron outputs.
+	 */
+	protected transient double[] outputs = null;
+
+
+	/**
+	 * Arena of cell states of long short-term memory.
+	 */
+	protected transient double[] cells = null;
+
+
+	/**
+	 * Buffer of activated gates of a cell.
+	 */
+	protected transient double[] gateBuffer = null;
+
+
+	/**
+	 * Buffer of packed inputs of a sequence.
+	 */
+	protected transient double[] inputBuffer = null;
+
+
+	/**
+	 * Number of time steps of arena.
+	 */
+	protected transient int slots = 0;
+
+
+	/**
+	 * Length of the sequence being evaluated.
+	 */
+	protected transient int length = 0;
+
+
+	/**
+	 * Default constructor.
+	 */
+	public RecurrentExecutor() {
+		super();
+	}
+
+
+	/**
+	 * Resetting executor.
+	 */
+	public void reset() {
+		sizes = null;
+		offsets = null;
+		neurons = 0;
+		weights = null;
+		biases = null;
+		recurrentSources = null;
+		recurrentWeights = null;
+		activateRefs = null;
+		auxActivateRef = null;
+		inputs = null;
+		outputs = null;
+		cells = null;
+		gateBuffer = null;
+		inputBuffer = null;
+		slots = 0;
+		length = 0;
+	}
+
+
+	/**
+	 * Initializing executor by packing weights of every state of specified recurrent neural network with out-in layout.
+	 * @param network specified recurrent neural network.
+	 * @return true if initialization is successful.
+	 */
+	public boolean initialize(RecurrentNetworkAbstract network) {
+		return initialize(network, Layout.outin, false);
+	}
+
+
+	/**
+	 * Initializing executor by packing weights of every state of specified recurrent neural network.
+	 * @param network specified recurrent neural network.
+	 * @param layout layout of recurrent connections.
+	 * @return true if initialization is successful.
+	 */
+	public boolean initialize(RecurrentNetworkAbstract network, Layout layout) {
+		return initialize(network, layout, false);
+	}
+
+
+	/**
+	 * Initializing executor by packing weights of specified recurrent neural network.
+	 * Recurrent weights of a Markov step of a state are taken from connections from the state at such step later to the state;
+	 * if there is no such connection, recurrent weights are zero.
+	 * Because the executor unrolls a sequence, the network must have only one dimension whose size is larger than 1.
+	 * @param network specified recurrent neural network.
+	 * @param layout layout of recurrent connections.
+	 * @param shared if true, only the first state is packed and all time steps share its weights, which is suitable to sequences longer than the network.
+	 * Otherwise, every state is packed and so the executor produces the same outputs as the network.
+	 * @return true if initialization is successful.
+	 */
+	public boolean initialize(RecurrentNetworkAbstract network, Layout layout, boolean shared) {
+		reset();
+		if (network == null || network.length() == 0) return false;
+		Size size = network.size;
+		int length = network.length();
+		if (Math.max(Math.max(size.width, size.height), Math.max(size.depth, size.time)) != length) return false;
+
+		List<LayerStandard> backbone = network.get(0).getBackbone();
+		int L = backbone.size();
+		if (L < 2) return false;
+		NeuronStandard firstNeuron = backbone.get(L-1).size() > 0 ? backbone.get(L-1).get(0) : null;
+		if (firstNeuron == null) return false;
+
+		this.layout = layout = layout != null ? layout : Layout.outin;
+		this.channel = network.neuronChannel;
+		this.lstm = firstNeuron instanceof Cell;
+		this.gates = lstm ? Cell.GATE_NUMBERS : 1;
+		this.lags = Math.max(1, network.getMarkovSteps());
+		this.auxActivateRef = lstm && firstNeuron instanceof GeneratorStandard.Neuron ? ((GeneratorStandard.Neuron)firstNeuron).getAuxActivateRef() : null;
+		int width = gates*channel;
+
+		int[] sizes = new int[L], offsets = new int[L];
+		int neurons = 0;
+		for (int l = 0; l < L; l++) {
+			sizes[l] = backbone.get(l).size();
+			offsets[l] = neurons;
+			neurons += sizes[l];
+		}
+		this.sizes = sizes;
+		this.offsets = offsets;
+		this.neurons = neurons;
+
+		activateRefs = new Function[L];
+		for (int l = 1; l < L; l++) {
+			Function activateRef = backbone.get(l).getActivateRef();
+			if (activateRef instanceof FunctionDelay) {
+				reset();
+				return false;
+			}
+			activateRefs[l] = activateRef;
+		}
+		recurrentSources = new int[L];
+		Arrays.fill(recurrentSources, -1);
+		if (layout == Layout.parallel) {
+			for (int l = 1; l < L; l++) recurrentSources[l] = l;
+		}
+		else
+			recurrentSources[1] = L-1;
+
+		int sets = shared ? 1 : length;
+		weights = new double[sets][L][];
+		biases = new double[sets][L][];
+		recurrentWeights = new double[sets][lags][L][];
+		for (int p = 0; p < sets; p++) {
+			List<LayerStandard> stateBackbone = network.get(p).getBackbone();
+			if (stateBackbone.size() != L) {
+				reset();
+				return false;
+			}
+
+			//Packing weights and biases of layers.
+			for (int l = 1; l < L; l++) {
+				LayerStandard layer = stateBackbone.get(l), prevLayer = stateBackbone.get(l-1);
+				if (layer.size() != sizes[l]) {
+					reset();
+					return false;
+				}
+				weights[p][l] = new double[sizes[l]*sizes[l-1]*width];
+				biases[p][l] = new double[sizes[l]*width];
+				for (int j = 0; j < sizes[l]; j++) {
+					NeuronStandard neuron = layer.get(j);
+					pack(neuron.getBias(), biases[p][l], j*width);
+					for (WeightedNeuron wn : neuron.getPrevNeurons(prevLayer)) {
+						int i = prevLayer.indexOf(wn.neuron);
+						if (i >= 0) pack(wn.weight.value.toValue(), weights[p][l], (j*sizes[l-1] + i)*width);
+					}
+				}
+			}
+
+			//Packing recurrent weights from later states.
+			for (int lag = 1; lag <= lags; lag++) {
+				State later = p + lag < length ? network.get(p + lag) : null;
+				for (int l = 1; l < L; l++) {
+					int source = recurrentSources[l];
+					if (source < 0) continue;
+					double[] w = recurrentWeights[p][lag-1][l] = new double[sizes[l]*sizes[source]*width];
+					if (later == null) continue;
+					LayerStandard layer = stateBackbone.get(l), sourceLayer = later.getBackbone().get(source);
+					for (int i = 0; i < sourceLayer.size(); i++) {
+						NeuronStandard sourceNeuron = sourceLayer.get(i);
+						packRecurrent(sourceNeuron.getOutsideNextNeurons(), layer, i, sizes[source], w);
+						packRecurrent(Arrays.asList(sourceNeuron.getRiboutNeurons()), layer, i, sizes[source], w);
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Packing recurrent weights from source neuron to neurons of specified layer.
+	 * @param wns neurons connected from source neuron.
+	 * @param layer specified layer.
+	 * @param i index of source neuron.
+	 * @param sourceSize size of source layer.
+	 * @param w packed recurrent weights.
+	 */
+	private void packRecurrent(Iterable<WeightedNeuron> wns, LayerStandard layer, int i, int sourceSize, double[] w) {
+		if (wns == null) return;
+		for (WeightedNeuron wn : wns) {
+			int j = layer.indexOf(wn.neuron);
+			if (j >= 0) pack(wn.weight.value.toValue(), w, (j*sourceSize + i)*gates*channel);
+		}
+	}
+
+
+	/**
+	 * Checking whether this executor is valid.
+	 * @return whether this executor is valid.
+	 */
+	public boolean validate() {
+		return sizes != null && sizes.length >= 2 && weights != null && biases != null;
+	}
+
+
+	/**
+	 * Getting neuron channel.
+	 * @return neuron channel.
+	 */
+	public int getChannel() {
+		return channel;
+	}
+
+
+	/**
+	 * Getting size of input layer.
+	 * @return size of input layer.
+	 */
+	public int getInputSize() {
+		return sizes != null ? sizes[0] : 0;
+	}
+
+
+	/**
+	 * Getting size of output layer.
+	 * @return size of output layer.
+	 */
+	public int getOutputSize() {
+		return sizes != null ? sizes[sizes.length-1] : 0;
+	}
+
+
+	/**
+	 * Getting the number of parameter sets, which is 1 if weights are shared by all time steps.
+	 * @return the number of parameter sets.
+	 */
+	public int getParameterSets() {
+		return weights != null ? weights.length : 0;
+	}
+
+
+	/**
+	 * Getting parameter set of specified time step. Time steps beyond the last parameter set use the last parameter set.
+	 * @param t specified time step.
+	 * @return parameter set of specified time step.
+	 */
+	protected int set(int t) {
+		return Math.min(t, getParameterSets() - 1);
+	}
+
+
+	/**
+	 * Allocating arena for specified sequence length. Arena is only re-allocated when it is shorter than required, in which case activations of the previous evaluation are kept.
+	 * @param length sequence length.
+	 * @param history if true, buffers for learning are allocated too.
+	 */
+	protected void allocate(int length, boolean history) {
+		this.length = length;
+		slots = Math.max(slots, Math.max(1, length));
+		int n = slots*neurons*channel;
+		outputs = grow(outputs, n);
+		inputs = grow(inputs, n*gates);
+		if (lstm) cells = grow(cells, n);
+		if (gateBuffer == null || gateBuffer.length < gates*channel) gateBuffer = new double[gates*channel];
+	}
+
+
+	/**
+	 * Growing array and keeping its content.
+	 * @param array specified array. It can be null.
+	 * @param size required size.
+	 * @return array whose size is not less than required size.
+	 */
+	protected static double[] grow(double[] array, int size) {
+		if (array == null) return new double[size];
+		return array.length < size ? Arrays.copyOf(array, size) : array;
+	}
+
+
+	/**
+	 * Getting slot of arena at specified time step.
+	 * @param t specified time step.
+	 * @return slot of arena at specified time step.
+	 */
+	protected int slot(int t) {
+		return t;
+	}
+
+
+	/**
+	 * Checking whether the recurrent source at specified time step and Markov step exists, which is the time step t+lag of the current sequence.
+	 * @param t specified time step.
+	 * @param lag Markov step.
+	 * @return whether the recurrent source exists.
+	 */
+	protected boolean hasRecurrent(int t, int lag) {
+		return t + lag < length;
+	}
+
+
+	/**
+	 * Loading activations of the previous evaluation from states of specified network into arena, so that recurrent inputs are the same as those of evaluating the network neuron by neuron.
+	 * @param network specified network.
+	 * @return true if loading is successful.
+	 */
+	public boolean load(RecurrentNetworkAbstract network) {
+		if (!validate() || network == null) return false;
+		int length = network.length();
+		allocate(length, false);
+		for (int t = 0; t < length; t++) {
+			List<LayerStandard> backbone = network.get(t).getBackbone();
+			for (int l = 1; l < Math.min(sizes.length, backbone.size()); l++) {
+				LayerStandard layer = backbone.get(l);
+				for (int j = 0; j < Math.min(sizes[l], layer.size()); j++) {
+					NeuronStandard neuron = layer.get(j);
+					int o = (slot(t)*neurons + offsets[l] + j)*channel;
+					Arrays.fill(outputs, o, o + channel, 0);
+					pack(new NeuronValue[] {neuron.getOutput()}, 1, outputs, o, channel);
+					if (!lstm) continue;
+					Arrays.fill(cells, o, o + channel, 0);
+					if (neuron instanceof Cell) pack(new NeuronValue[] {((Cell)neuron).getCellState()}, 1, cells, o, channel);
+				}
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Storing activations of the latest evaluation to states of specified network. Outputs of neurons and cell states are set, so that
+	 * next evaluation either by the network or by this executor starts from the same activations. Inputs are stored to input layers except cells.
+	 * @param network specified network.
+	 * @return true if storing is successful.
+	 */
+	public boolean store(RecurrentNetworkAbstract network) {
+		return store(network, 0);
+	}
+
+
+	/**
+	 * Storing activations of output layers of the latest evaluation to states of specified network. Activations of other layers are only kept in arena.
+	 * @param network specified network.
+	 * @return true if storing is successful.
+	 */
+	public boolean storeOutputs(RecurrentNetworkAbstract network) {
+		return store(network, sizes != null ? sizes.length-1 : 0);
+	}
+
+
+	/**
+	 * Storing activations of the latest evaluation from specified layer to states of specified network.
+	 * @param network specified network.
+	 * @param firstLayer index of the first stored layer.
+	 * @return true if storing is successful.
+	 */
+	private boolean store(RecurrentNetworkAbstract network, int firstLayer) {
+		if (!validate() || network == null) return false;
+		int length = Math.min(network.length(), this.length);
+		for (int t = 0; t < length; t++) {
+			List<LayerStandard> backbone = network.get(t).getBackbone();
+			for (int l = firstLayer; l < Math.min(sizes.length, backbone.size()); l++) {
+				LayerStandard layer = backbone.get(l);
+				for (int j = 0; j < Math.min(sizes[l], layer.size()); j++) {
+					NeuronStandard neuron = layer.get(j);
+					int o = (slot(t)*neurons + offsets[l] + j)*channel;
+					NeuronValue output = unpack(outputs, o, channel);
+					if (neuron instanceof Cell) {
+						if (l > 0) ((Cell)neuron).setCellState(unpack(cells, o, channel), output);
+					}
+					else {
+						neuron.setInput(l > 0 ? unpack(inputs, o*gates, channel) : output);
+						neuron.setOutput(output);
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Evaluating sequence. Activations of all time steps are kept in arena for the next evaluation.
+	 * @param input packed input whose element at (time step t, input neuron i, channel c) is input[(t*inputSize + i)*channel + c]. Missing inputs are zero.
+	 * @param length sequence length.
+	 * @param output packed output whose element at (time step t, output neuron j, channel c) is output[(t*outputSize + j)*channel + c]. It is allocated if it is null or short.
+	 * @return packed output.
+	 */
+	public double[] evaluate(double[] input, int length, double[] output) {
+		if (!forward(input, length)) return null;
+		int outputSize = getOutputSize();
+		if (output == null || output.length < length*outputSize*channel) output = new double[length*outputSize*channel];
+		for (int t = 0; t < length; t++)
+			System.arraycopy(outputs, (slot(t)*neurons + offsets[offsets.length-1])*channel, output, t*outputSize*channel, outputSize*channel);
+		return output;
+	}
+
+
+	/**
+	 * Evaluating sequence and keeping activations of all time steps. Time steps are evaluated in order and so recurrent inputs of a time step,
+	 * which come from later time steps, are activations of the previous evaluation.
+	 * @param input packed input whose element at (time step t, input neuron i, channel c) is input[(t*inputSize + i)*channel + c]. Missing inputs are zero.
+	 * @param length sequence length.
+	 * @return true if evaluation is successful.
+	 */
+	protected boolean forward(double[] input, int length) {
+		if (!validate() || length <= 0) return false;
+		allocate(length, true);
+		for (int t = 0; t < length; t++) evaluateStep(input, t);
+		return true;
+	}
+
+
+	/**
+	 * Evaluating list of inputs like {@link RecurrentNetwork#evaluate(List)}. Remaining time steps are evaluated without input.
+	 * @param inputs list of inputs.
+	 * @param length sequence length. If it is not positive, the length is the size of input list.
+	 * @return outputs of output layer at every time step.
+	 */
+	public NeuronValue[][] evaluate(List<NeuronValue[]> inputs, int length) {
+		int n = inputs != null ? inputs.size() : 0;
+		length = length > 0 ? length : n;
+		if (!forward(inputs, length)) return null;
+
+		int outputSize = getOutputSize();
+		NeuronValue[][] results = new NeuronValue[length][outputSize];
+		for (int t = 0; t < length; t++) {
+			int base = (slot(t)*neurons + offsets[offsets.length-1])*channel;
+			for (int j = 0; j < outputSize; j++) results[t][j] = unpack(outputs, base + j*channel, channel);
+		}
+		return results;
+	}
+
+
+	/**
+	 * Evaluating list of inputs and keeping activations of all time steps in arena. Inputs are packed into a buffer which is reused by next evaluations.
+	 * @param inputs list of inputs. Remaining time steps are evaluated without input.
+	 * @param length sequence length.
+	 * @return true if evaluation is successful.
+	 */
+	public boolean forward(List<NeuronValue[]> inputs, int length) {
+		if (!validate() || length <= 0) return false;
+		int n = inputs != null ? inputs.size() : 0;
+		int inputSize = getInputSize();
+		int size = length*inputSize*channel;
+		if (inputBuffer == null || inputBuffer.length < size) inputBuffer = new double[size];
+		Arrays.fill(inputBuffer, 0, size, 0);
+		for (int t = 0; t < Math.min(n, length); t++) pack(inputs.get(t), inputSize, inputBuffer, t*inputSize*channel, channel);
+		return forward(inputBuffer, length);
+	}
+
+
+	/**
+	 * Evaluating time step.
+	 * @param input packed input.
+	 * @param t time step.
+	 */
+	protected void evaluateStep(double[] input, int t) {
+		int s = slot(t), p = set(t);
+		int width = gates*channel;
+		evaluateInput(input, t);
+		for (int l = 1; l < sizes.length; l++) {
+			int prevSize = sizes[l-1];
+			int source = recurrentSources[l];
+			double[] w = weights[p][l], b = biases[p][l];
+			for (int j = 0; j < sizes[l]; j++) {
+				int in = (s*neurons + offsets[l] + j)*width;
+				System.arraycopy(b, j*width, inputs, in, width);
+				for (int i = 0; i < prevSize; i++)
+					accumulate(w, (j*prevSize + i)*width, outputs, (s*neurons + offsets[l-1] + i)*channel, in);
+				if (source < 0) continue;
+
+				for (int lag = 1; lag <= lags && hasRecurrent(t, lag); lag++) {
+					int ns = slot(t+lag), sourceSize = sizes[source];
+					double[] rw = recurrentWeights[p][lag-1][l];
+					for (int i = 0; i < sourceSize; i++)
+						accumulate(rw, (j*sourceSize + i)*width, outputs, (ns*neurons + offsets[source] + i)*channel, in);
+				}
+			}
+
+			if (lstm)
+				evaluateCells(t, l);
+			else {
+				int out = (s*neurons + offsets[l])*channel;
+				System.arraycopy(inputs, out, outputs, out, sizes[l]*channel);
+				activate(activateRefs[l], outputs, out, sizes[l], channel);
+			}
+		}
+	}
+
+
+	/**
+	 * Setting input of input layer at specified time step. Cell states of input layer are zero.
+	 * @param input packed input.
+	 * @param t time step.
+	 */
+	protected void evaluateInput(double[] input, int t) {
+		int inputSize = sizes[0];
+		int base = slot(t)*neurons*channel;
+		for (int k = 0; k < inputSize*channel; k++) {
+			int index = t*inputSize*channel + k;
+			outputs[base + k] = input != null && index < input.length ? input[index] : 0;
+		}
+		if (lstm) Arrays.fill(cells, base, base + inputSize*channel, 0);
+	}
+
+
+	/**
+	 * Accumulating weighted output into neuron input over gates and channels.
+	 * @param w packed weights.
+	 * @param wOffset offset of weights.
+	 * @param output arena of outputs.
+	 * @param outOffset offset of output.
+	 * @param inOffset offset of input.
+	 */
+	private void accumulate(double[] w, int wOffset, double[] output, int outOffset, int inOffset) {
+		for (int g = 0; g < gates; g++) {
+			int gw = wOffset + g*channel, gin = inOffset + g*channel;
+			for (int c = 0; c < channel; c++) inputs[gin + c] += w[gw + c] * output[outOffset + c];
+		}
+	}
+
+
+	/**
+	 * Evaluating cells of long short-term memory at specified layer, which follows {@link Cell#evaluate()}.
+	 * @param t time step.
+	 * @param l layer index.
+	 */
+	protected void evaluateCells(int t, int l) {
+		int s = slot(t);
+		int width = gates*channel;
+		int prevSize = sizes[l-1], source = recurrentSources[l];
+		Function activateRef = activateRefs[l];
+		double[] gate = gateBuffer;
+		for (int j = 0; j < sizes[l]; j++) {
+			int in = (s*neurons + offsets[l] + j)*width;
+			int out = (s*neurons + offsets[l] + j)*channel;
+			for (int c = 0; c < channel; c++) {
+				//Sum of cell states of source cells.
+				double sum = 0;
+				for (int i = 0; i < prevSize; i++) sum += cells[(s*neurons + offsets[l-1] + i)*channel + c];
+				if (source >= 0) {
+					for (int lag = 1; lag <= lags && hasRecurrent(t, lag); lag++) {
+						int ns = slot(t+lag);
+						for (int i = 0; i < sizes[source]; i++) sum += cells[(ns*neurons + offsets[source] + i)*channel + c];
+					}
+				}
+				cells[out + c] = sum;
+			}
+
+			System.arraycopy(inputs, in, gate, 0, width);
+			activate(activateRef, gate, 0, gates, channel);
+			for (int c = 0; c < channel; c++) {
+				double inputGate = gate[Cell.INPUT_GATE*channel + c], forgetGate = gate[Cell.FORGET_GATE*channel + c];
+				double cellGate = gate[Cell.CELL_GATE*channel + c];
+				cells[out + c] = forgetGate*cells[out + c] + inputGate*cellGate;
+				outputs[out + c] = cells[out + c];
+			}
+			activate(activateRef, outputs, out, 1, channel);
+			for (int c = 0; c < channel; c++) outputs[out + c] *= gate[Cell.OUTPUT_GATE*channel + c];
+			if (auxActivateRef != null) activate(auxActivateRef, outputs, out, 1, channel);
+		}
+	}
+
+
+	/**
+	 * Applying activation function to packed values in place.
+	 * @param f activation function. If it is null, values are not changed.
+	 * @param values packed values.
+	 * @param offset offset of values.
+	 * @param count number of neuron values.
+	 * @param channel channel of every neuron value.
+	 */
+	protected static void activate(Function f, double[] values, int offset, int count, int channel) {
+		if (f == null) return;
+		if (f instanceof FunctionScalar && channel == 1) {
+			FunctionScalar fs = (FunctionScalar)f;
+			for (int k = offset; k < offset + count*channel; k++) values[k] = fs.evaluate(values[k]);
+			return;
+		}
+		for (int k = 0; k < count; k++) {
+			int index = offset + k*channel;
+			NeuronValue value = unpack(values, index, channel).evaluate(f);
+			pack(value, values, index);
+		}
+	}
+
+
+	/**
+	 * Replacing packed values by derivatives of activation function at such values in place.
+	 * @param f activation function. If it is null, derivatives are 1.
+	 * @param values packed values.
+	 * @param offset offset of values.
+	 * @param count number of neuron values.
+	 * @param channel channel of every neuron value.
+	 */
+	protected static void derivative(Function f, double[] values, int offset, int count, int channel) {
+		if (f == null) {
+			Arrays.fill(values, offset, offset + count*channel, 1);
+			return;
+		}
+		if (f instanceof FunctionScalar && channel == 1) {
+			FunctionScalar fs = (FunctionScalar)f;
+			for (int k = offset; k < offset + count*channel; k++) values[k] = fs.derivative(values[k]);
+			return;
+		}
+		for (int k = 0; k < count; k++) {
+			int index = offset + k*channel;
+			NeuronValue value = unpack(values, index, channel).derivative(f);
+			pack(value, values, index);
+		}
+	}
+
+
+	/**
+	 * Packing array of neuron values into array of real numbers. Vector values of cells are packed by their first elements.
+	 * @param values array of neuron values. It can be null.
+	 * @param count maximum number of packed values.
+	 * @param array array of real numbers.
+	 * @param offset offset of array.
+	 * @param channel neuron channel.
+	 */
+	public static void pack(NeuronValue[] values, int count, double[] array, int offset, int channel) {
+		if (values == null) return;
+		for (int i = 0; i < Math.min(values.length, count); i++) {
+			NeuronValue value = values[i];
+			if (value instanceof NeuronValueVector) value = ((NeuronValueVector)value).get(0);
+			if (value != null) pack(value, array, offset + i*channel);
+		}
+	}
+
+
+	/**
+	 * Packing neuron value into array of real numbers.
+	 * @param value neuron value.
+	 * @param array array of real numbers.
+	 * @param offset offset of array.
+	 * @return next offset.
+	 */
+	protected static int pack(NeuronValue value, double[] array, int offset) {
+		if (value == null)
+			return offset;
+		else if (value instanceof NeuronValueVector) {
+			NeuronValueVector vector = (NeuronValueVector)value;
+			for (int i = 0; i < vector.length(); i++) offset = pack(vector.get(i), array, offset);
+		}
+		else if (value instanceof NeuronValueV) {
+			NeuronValueV vector = (NeuronValueV)value;
+			for (int i = 0; i < vector.length(); i++) array[offset++] = vector.get(i);
+		}
+		else if (value instanceof NeuronValue1)
+			array[offset++] = ((NeuronValue1)value).get();
+		return offset;
+	}
+
+
+	/**
+	 * Unpacking neuron value from array of real numbers.
+	 * @param array array of real numbers.
+	 * @param offset offset of array.
+	 * @param channel neuron channel.
+	 * @return neuron value.
+	 */
+	public static NeuronValue unpack(double[] array, int offset, int channel) {
+		if (channel == 1)
+			return new NeuronValue1(array[offset]);
+		else
+			return new NeuronValueV(Arrays.copyOfRange(array, offset, offset + channel));
+	}
+
+
+}
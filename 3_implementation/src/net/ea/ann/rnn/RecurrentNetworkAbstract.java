@@ -11,6 +11,7 @@ import java.rmi.RemoteException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntConsumer;
 
 import net.ea.ann.core.Id;
 import net.ea.ann.core.LayerStandard;
@@ -31,6 +32,7 @@ import net.ea.ann.raster.Cube;
 import net.ea.ann.raster.Point;
 import net.ea.ann.raster.Raster;
 import net.ea.ann.raster.Size;
+import net.ea.ann.rnn.RecurrentNetworkImpl.Layout;
 
 /**
  * This class is abstract implementation of recurrent neural network.
@@ -60,6 +62,31 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 	public final static int MARKOV_STEPS_DEFAULT = 1;
 	
 	
+	/**
+	 * Name of wavefront parallel field.
+	 */
+	public final static String WAVEFRONT_PARALLEL_FIELD = "rn_wavefront_parallel";
+
+	
+	/**
+	 * Default value of wavefront parallel field.
+	 */
+	public final static boolean WAVEFRONT_PARALLEL_DEFAULT = true;
+	
+	
+	/**
+	 * Name of executor field.
+	 */
+	public final static String EXECUTOR_FIELD = "rn_executor";
+
+	
+	/**
+	 * Default value of executor field. If it is true, sequences are evaluated by compact executor instead of evaluating states neuron by neuron,
+	 * in which all time steps share weights of the first state.
+	 */
+	public final static boolean EXECUTOR_DEFAULT = false;
+	
+	
 	/**
 	 * Neuron channel.
 	 */
@@ -96,6 +123,18 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 	protected Trainer stateTrainer = null;
 
 	
+	/**
+	 * Wavefronts of states. Each wavefront is an array of indices of states which do not depend on each other and depend only on states of previous wavefronts.
+	 */
+	protected transient int[][] wavefronts = null;
+	
+	
+	/**
+	 * Compact executor which is created from this network.
+	 */
+	protected transient RecurrentExecutor executor = null;
+	
+	
 	/**
 	 * Constructor with neuron channel, activation functions, and identifier reference.
 	 * @param neuronChannel neuron channel.
@@ -160,6 +199,8 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 	 */
 	public RecurrentNetworkAbstract reset() {
 		states.clear();
+		wavefronts = null;
+		executor = null;
 		return this;
 	}
 	
@@ -342,6 +383,21 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 	}
 	
 	
+	/**
+	 * Converting index to location.
+	 * @param index index.
+	 * @return location.
+	 */
+	private Point convertIndexToLoc(int index) {
+		int wh = size.width*size.height;
+		int whd = wh*size.depth;
+		int t = index / whd, remain = index % whd;
+		int z = remain / wh;
+		remain = remain % wh;
+		return new Point(remain % size.width, remain / size.width, z, t);
+	}
+	
+	
 	/**
 	 * Getting state at specified location.
 	 * @param loc specified location.
@@ -375,7 +431,7 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 	 * Getting Markov steps.
 	 * @return Markov steps.
 	 */
-	private int getMarkovSteps() {
+	protected int getMarkovSteps() {
 		int k = config.getAsInt(MARKOV_STEPS_FIELD);
 		return k < MARKOV_STEPS_DEFAULT ? MARKOV_STEPS_DEFAULT : k;
 	}
@@ -397,7 +453,7 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 		else if (dim == 2) {
 			for (int y = loc.y; y >= loc.y-k; y--) {
 				for (int x = loc.x+k; x >= loc.x-k; x--) {
-					neighbors.add(new Point(x));
+					neighbors.add(new Point(x, y));
 				}
 			}
 		}
@@ -436,13 +492,196 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 	}
 
 	
+	/**
+	 * Checking whether states are evaluated and learned in parallel wavefront by wavefront.
+	 * @return whether states are evaluated and learned in parallel wavefront by wavefront.
+	 */
+	private boolean isWavefrontParallel() {
+		if (config.containsKey(WAVEFRONT_PARALLEL_FIELD))
+			return config.getAsBoolean(WAVEFRONT_PARALLEL_FIELD);
+		else
+			return WAVEFRONT_PARALLEL_DEFAULT;
+	}
+	
+	
+	/**
+	 * Getting wavefronts of states, which are derived from dependency graph given by the method {@link #getNeighbors(Point)}.
+	 * The wavefront of a state is one plus the maximum wavefront of its neighbors and so states on the same wavefront are independent.
+	 * Because neighbors of a state always have smaller indices, evaluating wavefronts in order produces the same result as evaluating states in index order.
+	 * @return wavefronts of states. Returning null if states do not match size of this network.
+	 */
+	protected int[][] getWavefronts() {
+		int n = states.size();
+		if (wavefronts != null) {
+			int count = 0;
+			for (int[] wavefront : wavefronts) count += wavefront.length;
+			if (count == n) return wavefronts;
+		}
+		wavefronts = null;
+		if (n == 0 || n != size.width*size.height*size.depth*size.time) return null;
+		
+		int[] levels = new int[n];
+		int maxLevel = 0;
+		for (int i = 0; i < n; i++) {
+			int level = 0;
+			Point[] neighbors = getNeighbors(convertIndexToLoc(i));
+			for (Point neighbor : neighbors) {
+				int index = convertLocToIndex(neighbor);
+				if (index < i) level = Math.max(level, levels[index] + 1);
+			}
+			levels[i] = level;
+			maxLevel = Math.max(maxLevel, level);
+		}
+		
+		int[] counts = new int[maxLevel + 1];
+		for (int level : levels) counts[level]++;
+		int[][] wavefronts = new int[maxLevel + 1][];
+		for (int level = 0; level <= maxLevel; level++) wavefronts[level] = new int[counts[level]];
+		Arrays.fill(counts, 0);
+		for (int i = 0; i < n; i++) wavefronts[levels[i]][counts[levels[i]]++] = i;
+		
+		this.wavefronts = wavefronts;
+		return wavefronts;
+	}
+	
+	
+	/**
+	 * Running task over states from starting state. If wavefront parallel is enabled, states on the same wavefront are run in parallel and wavefronts are run in order.
+	 * Otherwise, states are run in index order.
+	 * @param startState starting state.
+	 * @param endState ending state (exclusive).
+	 * @param task task receiving index of every state.
+	 */
+	protected void runStates(int startState, int endState, IntConsumer task) {
+		endState = Math.min(endState, states.size());
+		if (startState < 0 || startState >= endState) return;
+		int[][] wavefronts = isWavefrontParallel() ? getWavefronts() : null;
+		if (wavefronts == null) {
+			for (int i = startState; i < endState; i++) task.accept(i);
+			return;
+		}
+		
+		int[] indices = new int[endState - startState];
+		for (int[] wavefront : wavefronts) {
+			int count = 0;
+			for (int index : wavefront) {
+				if (index >= startState && index < endState) indices[count++] = index;
+			}
+			if (count == 1)
+				task.accept(indices[0]);
+			else if (count > 1)
+				Util.parallel(count, (j) -> task.accept(indices[j]));
+		}
+	}
+	
+	
+	/**
+	 * Evaluating state at specified index.
+	 * @param index state index.
+	 * @param input input of state.
+	 */
+	private void evaluateState(int index, NeuronValue[] input) {
+		try {
+			states.get(index).evaluate(new Record(input != null ? input : new NeuronValue[] {}));
+		} catch (Throwable e) {Util.trace(e);}
+	}
+	
+	
+	/**
+	 * Checking whether sequences are evaluated by compact executor.
+	 * @return whether sequences are evaluated by compact executor.
+	 */
+	private boolean isExecutor() {
+		if (config.containsKey(EXECUTOR_FIELD))
+			return config.getAsBoolean(EXECUTOR_FIELD);
+		else
+			return EXECUTOR_DEFAULT;
+	}
+
+
+	/**
+	 * Getting compact executor. All time steps of the executor share one weight set, which is packed from the first state,
+	 * and activations of states are loaded into its arena only when the executor is created.
+	 * @return compact executor. Returning null if executor is disabled or this network cannot be unrolled as a sequence.
+	 */
+	protected RecurrentExecutor getExecutor() {
+		if (!isExecutor()) return null;
+		if (executor != null) return executor;
+		RecurrentExecutor executor = new RecurrentExecutor();
+		return executor.initialize(this, Layout.outin, true) && executor.load(this) ? (this.executor = executor) : null;
+	}
+
+
+	/**
+	 * Releasing compact executor so that states are evaluated or learned neuron by neuron. Activations kept in arena of the executor are stored to states
+	 * before the executor is released, and so next executor starts from such activations.
+	 */
+	protected void releaseExecutor() {
+		RecurrentExecutor executor = this.executor;
+		this.executor = null;
+		if (executor != null) executor.store(this);
+	}
+
+
+	/**
+	 * Evaluating by compact executor. Activations are kept in arena of the executor across evaluations and only outputs of output layers are stored to states,
+	 * so that outputs of states are the same as those of the executor.
+	 * @param inputs list of inputs.
+	 * @return true if evaluation by compact executor is successful.
+	 */
+	private boolean evaluateByExecutor(List<NeuronValue[]> inputs) {
+		RecurrentExecutor executor = getExecutor();
+		if (executor == null || !executor.forward(inputs, states.size())) return false;
+		return executor.storeOutputs(this);
+	}
+	
+	
+	/**
+	 * Checking compact executor against evaluating states neuron by neuron. Both evaluations start from the current activations of states,
+	 * and the current activations are evaluated neuron by neuron at the end.
+	 * @param inputs list of inputs.
+	 * @return maximum absolute difference between outputs of the executor and outputs of output layers of states. Returning NaN if the executor cannot be created.
+	 */
+	public double checkExecutor(List<NeuronValue[]> inputs) {
+		return check(new RecurrentExecutor(), inputs);
+	}
+	
+	
+	/**
+	 * Checking specified executor against evaluating states neuron by neuron. The executor is initialized from every state of this network
+	 * so that it has the same weights as states.
+	 * @param executor specified executor.
+	 * @param inputs list of inputs.
+	 * @return maximum absolute difference between outputs of the executor and outputs of output layers of states. Returning NaN if the executor cannot be initialized.
+	 */
+	protected double check(RecurrentExecutor executor, List<NeuronValue[]> inputs) {
+		if (!executor.initialize(this, Layout.outin, false) || !executor.load(this)) return Double.NaN;
+		NeuronValue[][] outputs = executor.evaluate(inputs, states.size());
+		if (outputs == null) return Double.NaN;
+		
+		int n = inputs != null ? Math.min(states.size(), inputs.size()) : 0;
+		runStates(0, states.size(), (i) -> evaluateState(i, i < n ? inputs.get(i) : null));
+		double[] expected = new double[executor.getChannel()], actual = new double[executor.getChannel()];
+		double diff = 0;
+		for (int t = 0; t < outputs.length; t++) {
+			LayerStandard outputLayer = states.get(t).getOutputLayer();
+			for (int j = 0; j < outputs[t].length; j++) {
+				Arrays.fill(expected, 0);
+				Arrays.fill(actual, 0);
+				RecurrentExecutor.pack(new NeuronValue[] {outputLayer.get(j).getOutput()}, 1, expected, 0, expected.length);
+				RecurrentExecutor.pack(new NeuronValue[] {outputs[t][j]}, 1, actual, 0, actual.length);
+				for (int c = 0; c < expected.length; c++) diff = Math.max(diff, Math.abs(expected[c] - actual[c]));
+			}
+		}
+		return diff;
+	}
+	
+	
 	@Override
 	public void evaluate(NeuronValue...input) throws RemoteException {
 		if (states.size() == 0) return;
-		states.get(0).evaluate(new Record(input != null ? input : new NeuronValue[] {}));
-		for (int i = 1; i < states.size(); i++) {
-			states.get(i).evaluate(new Record(new NeuronValue[] {}));
-		}
+		if (isExecutor() && evaluateByExecutor(Arrays.asList(new NeuronValue[][] {input}))) return;
+		runStates(0, states.size(), (i) -> evaluateState(i, i == 0 ? input : null));
 	}
 	
 	
@@ -454,15 +693,11 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 		}
 		if (states.size() == 0) return;
 		
-		int n = Math.min(states.size(), inputs.size());
-		for (int i = 0; i < n; i++) {
-			states.get(i).evaluate(new Record(inputs.get(i)));
-		}
+		if (isExecutor() && evaluateByExecutor(inputs)) return;
 		
-		//Evaluating remaining states. 
-		for (int i = n; i < states.size(); i++) {
-			states.get(i).evaluate(new Record(new NeuronValue[] {}));
-		}
+		//Remaining states are evaluated without input.
+		int n = Math.min(states.size(), inputs.size());
+		runStates(0, states.size(), (i) -> evaluateState(i, i < n ? inputs.get(i) : null));
 	}
 	
 	
@@ -492,11 +727,8 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 	 */
 	public void evaluate(int startState) {
 		if (startState < 0 || startState >= states.size()) return;
-		for (int i = startState; i < states.size(); i++) {
-			try {
-				states.get(i).evaluate(new Record(new NeuronValue[] {}));
-			} catch (Throwable e) {Util.trace(e);}
-		}
+		releaseExecutor();
+		runStates(startState, states.size(), (i) -> evaluateState(i, null));
 	}
 	
 	
@@ -530,6 +762,7 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 		try {
 			if (isDoStarted()) return null;
 		} catch (Throwable e) {Util.trace(e);}
+		releaseExecutor();
 		
 		maxIteration = maxIteration >= 0 ? maxIteration :  LEARN_MAX_ITERATION_DEFAULT;
 		terminatedThreshold = Double.isNaN(terminatedThreshold) || terminatedThreshold < 0 ? LEARN_TERMINATED_THRESHOLD_DEFAULT : terminatedThreshold;
@@ -544,10 +777,11 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 
 			for (List<Record> records : sample) {
 				if (records == null) continue;
-				for (int i = 0; i < states.size() && i < records.size(); i++) {
-					State state = states.get(i);
-					error = state.learnOne(Arrays.asList(records.get(i)), lr, terminatedThreshold, 1);
-				}
+				int n = Math.min(states.size(), records.size());
+				NeuronValue[][] errors = new NeuronValue[n][];
+				final double threshold = terminatedThreshold;
+				runStates(0, n, (i) -> errors[i] = states.get(i).learnOne(Arrays.asList(records.get(i)), lr, threshold, 1));
+				if (n > 0) error = errors[n-1];
 			}
 			
 			iteration ++;
@@ -599,6 +833,7 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 		try {
 			if (isDoStarted()) return null;
 		} catch (Throwable e) {Util.trace(e);}
+		releaseExecutor();
 		
 		maxIteration = maxIteration >= 0 ? maxIteration :  LEARN_MAX_ITERATION_DEFAULT;
 		terminatedThreshold = Double.isNaN(terminatedThreshold) || terminatedThreshold < 0 ? LEARN_TERMINATED_THRESHOLD_DEFAULT : terminatedThreshold;
@@ -611,15 +846,26 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 			double lr = calcLearningRate(learningRate, iteration);
 			sample = resample(sample, iteration);
 
-			for (int i = 0; i < states.size(); i++) {
+			Iterable<List<Record>> iterationSample = sample;
+			NeuronValue[][] errors = new NeuronValue[states.size()][];
+			boolean[] learned = new boolean[states.size()];
+			final double threshold = terminatedThreshold;
+			runStates(0, states.size(), (i) -> {
 				List<Record> samplei = Util.newList(0);
-				for (List<Record> records : sample) {
+				for (List<Record> records : iterationSample) {
 					if (records != null && i < records.size()) samplei.add(records.get(i));
 				}
-				if (samplei.size() == 0) continue;
+				if (samplei.size() == 0) return;
 				
 				State state = states.get(i);
-				error = state.learn(samplei, lr, terminatedThreshold, 1);
+				errors[i] = state.learn(samplei, lr, threshold, 1);
+				learned[i] = true;
+			});
+			for (int i = states.size()-1; i >= 0; i--) {
+				if (learned[i]) {
+					error = errors[i];
+					break;
+				}
 			}
 			
 			iteration ++;
@@ -677,6 +923,8 @@ public abstract class RecurrentNetworkAbstract extends NetworkAbstract implement
 	 */
 	public static void fillConfig(NetworkConfig config) {
 		config.put(MARKOV_STEPS_FIELD, MARKOV_STEPS_DEFAULT);
+		config.put(WAVEFRONT_PARALLEL_FIELD, WAVEFRONT_PARALLEL_DEFAULT);
+		config.put(EXECUTOR_FIELD, EXECUTOR_DEFAULT);
 	}
 
 
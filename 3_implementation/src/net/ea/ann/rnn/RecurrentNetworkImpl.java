@@ -127,8 +127,10 @@ public class RecurrentNetworkImpl extends RecurrentNetworkAbstract {
 	 * @return true if initialization is successful.
 	 */
 	public boolean initialize(int nInputNeuron, int nOutputNeuron, int[] nHiddenNeuron, Size size) {
-		size = size != null ? size : Size.unit();
+		this.size = size = size != null ? size : Size.unit();
 		states.clear();
+		wavefronts = null;
+		executor = null;
 		for (int t = 0; t < size.time; t++) {
 			for (int z = 0; z < size.depth; z++) {
 				for (int y = 0; y < size.height; y++) {
@@ -269,6 +269,19 @@ public class Cell extends Neuron {
 	}
 
 	
+	/**
+	 * Setting stored memory and displayed memory, which is used when cell state is evaluated outside the cell.
+	 * @param c stored memory.
+	 * @param h displayed memory.
+	 */
+	public void setCellState(NeuronValue c, NeuronValue h) {
+		this.c = c != null ? c : getZeroElement();
+		this.h = h != null ? h : getZeroElement();
+		updateOutputByCellStateOutput();
+		setInput(getOutput());
+	}
+
+
 	/**
 	 * Resetting cell state.
 	 */
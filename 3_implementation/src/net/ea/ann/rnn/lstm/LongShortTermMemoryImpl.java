@@ -7,6 +7,10 @@
  */
 package net.ea.ann.rnn.lstm;
 
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
+
 import net.ea.ann.core.Id;
 import net.ea.ann.core.LayerStandard;
 import net.ea.ann.core.NeuronStandard;
@@ -21,7 +25,9 @@ import net.ea.ann.core.value.Weight;
 import net.ea.ann.core.value.WeightValue;
 import net.ea.ann.core.value.vector.NeuronValueVectorImpl;
 import net.ea.ann.raster.Raster;
+import net.ea.ann.raster.Size;
 import net.ea.ann.rnn.RecurrentNetwork;
+import net.ea.ann.rnn.RecurrentNetworkAbstract;
 import net.ea.ann.rnn.RecurrentNetworkImpl;
 import net.ea.ann.rnn.State;
 
@@ -41,6 +47,25 @@ public class LongShortTermMemoryImpl extends RecurrentNetworkImpl implements Lon
 	private static final long serialVersionUID = 1L;
 
 	
+	/**
+	 * Name of fused kernel field.
+	 */
+	public final static String FUSED_KERNEL_FIELD = "lstm_fused_kernel";
+
+	
+	/**
+	 * Default value of fused kernel field. If it is true, sequences are evaluated by fused kernel which keeps weights of every state.
+	 * Learning is always done neuron by neuron.
+	 */
+	public final static boolean FUSED_KERNEL_DEFAULT = false;
+
+	
+	/**
+	 * Fused kernel which is created from this network.
+	 */
+	protected transient LongShortTermMemoryKernel kernel = null;
+
+	
 	/**
 	 * Constructor with neuron channel, activation function, and identifier reference.
 	 * @param neuronChannel neuron channel.
@@ -50,6 +75,7 @@ public class LongShortTermMemoryImpl extends RecurrentNetworkImpl implements Lon
 	 */
 	public LongShortTermMemoryImpl(int neuronChannel, Function activateRef, Function auxActivateRef, Id idRef) {
 		super(neuronChannel, activateRef, auxActivateRef, idRef);
+		this.config.put(FUSED_KERNEL_FIELD, FUSED_KERNEL_DEFAULT);
 	}
 
 	
@@ -84,6 +110,89 @@ public class LongShortTermMemoryImpl extends RecurrentNetworkImpl implements Lon
 	}
 
 	
+	@Override
+	public RecurrentNetworkAbstract reset() {
+		kernel = null;
+		return super.reset();
+	}
+
+
+	@Override
+	public boolean initialize(int nInputNeuron, int nOutputNeuron, int[] nHiddenNeuron, Size size) {
+		kernel = null;
+		return super.initialize(nInputNeuron, nOutputNeuron, nHiddenNeuron, size);
+	}
+
+
+	/**
+	 * Checking whether sequences are evaluated and learned by fused kernel.
+	 * @return whether sequences are evaluated and learned by fused kernel.
+	 */
+	private boolean isFusedKernel() {
+		if (config.containsKey(FUSED_KERNEL_FIELD))
+			return config.getAsBoolean(FUSED_KERNEL_FIELD);
+		else
+			return FUSED_KERNEL_DEFAULT;
+	}
+
+
+	/**
+	 * Getting fused kernel. The kernel is created from weights of every state and recurrent connections into every state,
+	 * and activations of states are loaded into its arena only when the kernel is created.
+	 * @return fused kernel. Returning null if fused kernel is disabled or this network cannot be unrolled as a sequence.
+	 */
+	protected LongShortTermMemoryKernel getKernel() {
+		if (!isFusedKernel()) return null;
+		if (kernel != null) return kernel;
+		LongShortTermMemoryKernel kernel = new LongShortTermMemoryKernel();
+		return kernel.initialize(this) && kernel.load(this) ? (this.kernel = kernel) : null;
+	}
+
+
+	@Override
+	protected void releaseExecutor() {
+		super.releaseExecutor();
+		LongShortTermMemoryKernel kernel = this.kernel;
+		this.kernel = null;
+		if (kernel != null) kernel.store(this);
+	}
+
+
+	/**
+	 * Evaluating by fused kernel. Activations are kept in arena of the kernel across evaluations and only outputs of output layers are stored to states.
+	 * @param inputs list of inputs.
+	 * @return true if evaluation by fused kernel is successful.
+	 */
+	private boolean evaluateByKernel(List<NeuronValue[]> inputs) {
+		LongShortTermMemoryKernel kernel = getKernel();
+		if (kernel == null || !kernel.forward(inputs, states.size())) return false;
+		return kernel.storeOutputs(this);
+	}
+
+
+	/**
+	 * Checking fused kernel against evaluating states neuron by neuron. Both evaluations start from the current activations of states,
+	 * and the current activations are evaluated neuron by neuron at the end.
+	 * @param inputs list of inputs.
+	 * @return maximum absolute difference between outputs of the kernel and outputs of output layers of states. Returning NaN if the kernel cannot be created.
+	 */
+	public double checkKernel(List<NeuronValue[]> inputs) {
+		return check(new LongShortTermMemoryKernel(), inputs);
+	}
+
+
+	@Override
+	public void evaluate(NeuronValue...input) throws RemoteException {
+		if (!evaluateByKernel(Arrays.asList(new NeuronValue[][] {input}))) super.evaluate(input);
+	}
+
+
+	@Override
+	public void evaluate(List<NeuronValue[]> inputs) throws RemoteException {
+		if (!evaluateByKernel(inputs)) super.evaluate(inputs);
+	}
+
+
 	@Override
 	protected NeuronValue newNeuronValue(State state, LayerStandard layer) {
 		return new NeuronValueVectorImpl(Cell.GATE_NUMBERS, NeuronValueCreator.newNeuronValue(neuronChannel)).zero();
@@ -0,0 +1,610 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.rnn.lstm;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.ea.ann.core.LayerStandard;
+import net.ea.ann.core.NeuronStandard;
+import net.ea.ann.core.WeightedNeuron;
+import net.ea.ann.core.function.Function;
+import net.ea.ann.core.value.NeuronValue;
+import net.ea.ann.core.value.vector.NeuronValueVectorImpl;
+import net.ea.ann.rnn.RecurrentExecutor;
+import net.ea.ann.rnn.RecurrentNetworkAbstract;
+import net.ea.ann.rnn.RecurrentNetworkImpl.Layout;
+
+/**
+ * This class represents fused kernel of long short-term memory. For every layer and every channel, inputs of the four gates of all cells are computed by one product of
+ * packed matrix [gates*size x columns] and column vector which concatenates outputs of previous layer and outputs of recurrent source layer at later time steps.
+ * Gates are activated in place and cell states follow {@link Cell#evaluate()}. Backward pass is fused in the same way.
+ * <br>
+ * Like {@link RecurrentExecutor}, recurrent inputs are activations of the previous evaluation, which are constants of the current evaluation.
+ * So the fused backward pass does not propagate errors through time, and its gradients are not those of learning the network neuron by neuron.
+ * For this reason {@link LongShortTermMemoryImpl} only evaluates by the kernel, and learning by the kernel must be called explicitly.
+ * Packed matrices are kept per parameter set, and so a kernel initialized from every state produces the same outputs as evaluating the network neuron by neuron.
+ * <br>
+ * Row of packed matrix at (gate g, cell j) is g*size + j and so rows of the same gate are contiguous.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class LongShortTermMemoryKernel extends RecurrentExecutor {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Packed weight matrices indexed by parameter set, layer, and channel.
+	 */
+	protected double[][][][] packedWeights = null;
+
+
+	/**
+	 * Packed biases indexed by parameter set, layer, and channel.
+	 */
+	protected double[][][][] packedBiases = null;
+
+
+	/**
+	 * Numbers of columns of packed weight matrices of layers.
+	 */
+	protected int[] columns = null;
+
+
+	/**
+	 * Arena of activated gates, which is indexed like arena of gate inputs.
+	 */
+	protected transient double[] activations = null;
+
+
+	/**
+	 * Arena of sums of cell states of source cells.
+	 */
+	protected transient double[] cellSums = null;
+
+
+	/**
+	 * Outputs of the previous evaluation, which are recurrent inputs of the current evaluation.
+	 */
+	protected transient double[] previousOutputs = null;
+
+
+	/**
+	 * Cell states of the previous evaluation, which are recurrent source cell states of the current evaluation.
+	 */
+	protected transient double[] previousCells = null;
+
+
+	/**
+	 * Buffer of column vector.
+	 */
+	protected transient double[] column = null;
+
+
+	/**
+	 * Buffer of errors of column vector.
+	 */
+	protected transient double[] columnErrors = null;
+
+
+	/**
+	 * Arena of errors of cell outputs.
+	 */
+	protected transient double[] outputErrors = null;
+
+
+	/**
+	 * Arena of errors of cell states.
+	 */
+	protected transient double[] cellErrors = null;
+
+
+	/**
+	 * Buffer of gate errors of a layer.
+	 */
+	protected transient double[] gateErrors = null;
+
+
+	/**
+	 * Buffer of gate derivatives of a layer.
+	 */
+	protected transient double[] gateDerivatives = null;
+
+
+	/**
+	 * Buffer of activated cell states of a layer.
+	 */
+	protected transient double[] cellActivations = null;
+
+
+	/**
+	 * Buffer of derivatives of cell states of a layer.
+	 */
+	protected transient double[] cellDerivatives = null;
+
+
+	/**
+	 * Buffer of derivatives of auxiliary activation function of a layer.
+	 */
+	protected transient double[] auxDerivatives = null;
+
+
+	/**
+	 * Gradients of packed weights indexed like packed weights.
+	 */
+	protected transient double[][][][] weightGradients = null;
+
+
+	/**
+	 * Gradients of packed biases indexed like packed biases.
+	 */
+	protected transient double[][][][] biasGradients = null;
+
+
+	/**
+	 * Default constructor.
+	 */
+	public LongShortTermMemoryKernel() {
+		super();
+	}
+
+
+	@Override
+	public void reset() {
+		super.reset();
+		packedWeights = null;
+		packedBiases = null;
+		columns = null;
+		activations = null;
+		cellSums = null;
+		previousOutputs = null;
+		previousCells = null;
+		column = null;
+		columnErrors = null;
+		outputErrors = null;
+		cellErrors = null;
+		gateErrors = null;
+		gateDerivatives = null;
+		cellActivations = null;
+		cellDerivatives = null;
+		auxDerivatives = null;
+		weightGradients = null;
+		biasGradients = null;
+	}
+
+
+	@Override
+	public boolean initialize(RecurrentNetworkAbstract network, Layout layout, boolean shared) {
+		if (!super.initialize(network, layout, shared)) return false;
+		if (!lstm) {
+			reset();
+			return false;
+		}
+
+		int L = sizes.length, sets = getParameterSets();
+		packedWeights = new double[sets][L][][];
+		packedBiases = new double[sets][L][][];
+		columns = new int[L];
+		for (int l = 1; l < L; l++) {
+			int source = recurrentSources[l];
+			columns[l] = sizes[l-1] + (source >= 0 ? lags*sizes[source] : 0);
+		}
+		for (int p = 0; p < sets; p++) {
+			for (int l = 1; l < L; l++) {
+				int n = sizes[l], prevSize = sizes[l-1], source = recurrentSources[l];
+				int sourceSize = source >= 0 ? sizes[source] : 0;
+				int cols = columns[l];
+				packedWeights[p][l] = new double[channel][gates*n*cols];
+				packedBiases[p][l] = new double[channel][gates*n];
+				for (int c = 0; c < channel; c++) {
+					double[] W = packedWeights[p][l][c], b = packedBiases[p][l][c];
+					for (int g = 0; g < gates; g++) {
+						for (int j = 0; j < n; j++) {
+							int r = g*n + j;
+							b[r] = biases[p][l][(j*gates + g)*channel + c];
+							for (int i = 0; i < prevSize; i++)
+								W[r*cols + i] = weights[p][l][((j*prevSize + i)*gates + g)*channel + c];
+							for (int lag = 1; source >= 0 && lag <= lags; lag++) {
+								for (int i = 0; i < sourceSize; i++)
+									W[r*cols + prevSize + (lag-1)*sourceSize + i] = recurrentWeights[p][lag-1][l][((j*sourceSize + i)*gates + g)*channel + c];
+							}
+						}
+					}
+				}
+
+				//Packed matrices are the unique set of weights from now.
+				weights[p][l] = null;
+				biases[p][l] = null;
+			}
+		}
+		recurrentWeights = null;
+
+		return true;
+	}
+
+
+	@Override
+	public boolean validate() {
+		return super.validate() && packedWeights != null && packedBiases != null;
+	}
+
+
+	@Override
+	protected void allocate(int length, boolean history) {
+		super.allocate(length, history);
+		int n = slots*neurons*channel;
+		if (activations == null || activations.length < n*gates) activations = new double[n*gates];
+		if (cellSums == null || cellSums.length < n) cellSums = new double[n];
+		if (previousOutputs == null || previousOutputs.length < n) {
+			previousOutputs = new double[n];
+			previousCells = new double[n];
+		}
+
+		int maxSize = 0, maxColumns = 0;
+		for (int l = 1; l < sizes.length; l++) {
+			maxSize = Math.max(maxSize, sizes[l]);
+			maxColumns = Math.max(maxColumns, columns[l]);
+		}
+		if (column == null || column.length < maxColumns) column = new double[maxColumns];
+		if (!history) return;
+
+		if (outputErrors == null || outputErrors.length < n) outputErrors = new double[n];
+		if (cellErrors == null || cellErrors.length < n) cellErrors = new double[n];
+		if (columnErrors == null || columnErrors.length < maxColumns) columnErrors = new double[maxColumns];
+		if (gateErrors == null || gateErrors.length < maxSize*gates*channel) {
+			gateErrors = new double[maxSize*gates*channel];
+			gateDerivatives = new double[maxSize*gates*channel];
+		}
+		if (cellActivations == null || cellActivations.length < maxSize*channel) {
+			cellActivations = new double[maxSize*channel];
+			cellDerivatives = new double[maxSize*channel];
+			auxDerivatives = new double[maxSize*channel];
+		}
+		if (weightGradients == null) {
+			int sets = packedWeights.length;
+			weightGradients = new double[sets][sizes.length][][];
+			biasGradients = new double[sets][sizes.length][][];
+			for (int p = 0; p < sets; p++) {
+				for (int l = 1; l < sizes.length; l++) {
+					weightGradients[p][l] = new double[channel][packedWeights[p][l][0].length];
+					biasGradients[p][l] = new double[channel][packedBiases[p][l][0].length];
+				}
+			}
+		}
+	}
+
+
+	@Override
+	protected boolean forward(double[] input, int length) {
+		if (!validate() || length <= 0) return false;
+		allocate(length, true);
+
+		//Activations of the previous evaluation are kept because they are overwritten during this evaluation but backward pass needs them.
+		int n = length*neurons*channel;
+		System.arraycopy(outputs, 0, previousOutputs, 0, n);
+		System.arraycopy(cells, 0, previousCells, 0, n);
+		for (int t = 0; t < length; t++) evaluateStep(input, t);
+		return true;
+	}
+
+
+	/**
+	 * Gathering column vector of specified layer and channel at specified time step.
+	 * @param t time step.
+	 * @param l layer index.
+	 * @param c channel index.
+	 */
+	private void gather(int t, int l, int c) {
+		int s = slot(t), prevSize = sizes[l-1], source = recurrentSources[l];
+		for (int i = 0; i < prevSize; i++) column[i] = outputs[(s*neurons + offsets[l-1] + i)*channel + c];
+		if (source < 0) return;
+		int sourceSize = sizes[source];
+		for (int lag = 1; lag <= lags; lag++) {
+			int base = prevSize + (lag-1)*sourceSize;
+			if (!hasRecurrent(t, lag)) {
+				Arrays.fill(column, base, base + sourceSize, 0);
+				continue;
+			}
+			int ns = slot(t+lag);
+			for (int i = 0; i < sourceSize; i++) column[base + i] = previousOutputs[(ns*neurons + offsets[source] + i)*channel + c];
+		}
+	}
+
+
+	/**
+	 * Calculating sum of cell states of source cells of specified layer and channel at specified time step.
+	 * Every cell of a layer has the same source cells.
+	 * @param t time step.
+	 * @param l layer index.
+	 * @param c channel index.
+	 * @return sum of cell states of source cells.
+	 */
+	private double sumSourceCells(int t, int l, int c) {
+		int s = slot(t), source = recurrentSources[l];
+		double sum = 0;
+		for (int i = 0; i < sizes[l-1]; i++) sum += cells[(s*neurons + offsets[l-1] + i)*channel + c];
+		if (source < 0) return sum;
+		for (int lag = 1; lag <= lags && hasRecurrent(t, lag); lag++) {
+			int ns = slot(t+lag);
+			for (int i = 0; i < sizes[source]; i++) sum += previousCells[(ns*neurons + offsets[source] + i)*channel + c];
+		}
+		return sum;
+	}
+
+
+	@Override
+	protected void evaluateStep(double[] input, int t) {
+		int s = slot(t), p = set(t);
+		int width = gates*channel;
+		evaluateInput(input, t);
+
+		for (int l = 1; l < sizes.length; l++) {
+			int n = sizes[l], cols = columns[l];
+			int gateBase = (s*neurons + offsets[l])*width, outBase = (s*neurons + offsets[l])*channel;
+
+			//Fused product of packed matrix and column vector.
+			for (int c = 0; c < channel; c++) {
+				gather(t, l, c);
+				double[] W = packedWeights[p][l][c], b = packedBiases[p][l][c];
+				for (int g = 0; g < gates; g++) {
+					for (int j = 0; j < n; j++) {
+						int r = g*n + j, row = r*cols;
+						double sum = b[r];
+						for (int k = 0; k < cols; k++) sum += W[row + k] * column[k];
+						inputs[gateBase + j*width + g*channel + c] = sum;
+					}
+				}
+			}
+			System.arraycopy(inputs, gateBase, activations, gateBase, n*width);
+			activate(activateRefs[l], activations, gateBase, n*gates, channel);
+
+			//Cell states and outputs.
+			for (int c = 0; c < channel; c++) {
+				double sum = sumSourceCells(t, l, c);
+				for (int j = 0; j < n; j++) {
+					int gb = gateBase + j*width + c, o = outBase + j*channel + c;
+					cellSums[o] = sum;
+					cells[o] = activations[gb + Cell.FORGET_GATE*channel]*sum + activations[gb + Cell.INPUT_GATE*channel]*activations[gb + Cell.CELL_GATE*channel];
+				}
+			}
+			System.arraycopy(cells, outBase, outputs, outBase, n*channel);
+			activate(activateRefs[l], outputs, outBase, n, channel);
+			for (int j = 0; j < n; j++) {
+				for (int c = 0; c < channel; c++) outputs[outBase + j*channel + c] *= activations[gateBase + j*width + Cell.OUTPUT_GATE*channel + c];
+			}
+			if (auxActivateRef != null) activate(auxActivateRef, outputs, outBase, n, channel);
+		}
+	}
+
+
+	/**
+	 * Learning a sequence. Errors of all time steps are propagated backward and weights are updated once after the entire sequence.
+	 * @param input packed input whose element at (time step t, input neuron i, channel c) is input[(t*inputSize + i)*channel + c]. Missing inputs are zero.
+	 * @param target packed target output whose element at (time step t, output neuron j, channel c) is target[(t*outputSize + j)*channel + c].
+	 * Missing or NaN targets produce no errors.
+	 * @param length sequence length.
+	 * @param learningRate learning rate.
+	 * @param errors packed output errors (target minus output) indexed like target. It is allocated if it is null or short.
+	 * @return packed output errors.
+	 */
+	public double[] learn(double[] input, double[] target, int length, double learningRate, double[] errors) {
+		if (!forward(input, length)) return null;
+		int outputSize = getOutputSize();
+		if (errors == null || errors.length < length*outputSize*channel) errors = new double[length*outputSize*channel];
+		backward(target, length, errors);
+		update(learningRate);
+		return errors;
+	}
+
+
+	/**
+	 * Propagating errors backward at every time step and accumulating gradients. This method must be called after evaluation with history.
+	 * @param target packed target output.
+	 * @param length sequence length.
+	 * @param errors packed output errors.
+	 */
+	protected void backward(double[] target, int length, double[] errors) {
+		int L = sizes.length, outputSize = sizes[L-1];
+		Arrays.fill(outputErrors, 0, slots*neurons*channel, 0);
+		Arrays.fill(cellErrors, 0, slots*neurons*channel, 0);
+		for (int p = 0; p < weightGradients.length; p++) {
+			for (int l = 1; l < L; l++) {
+				for (int c = 0; c < channel; c++) {
+					Arrays.fill(weightGradients[p][l][c], 0);
+					Arrays.fill(biasGradients[p][l][c], 0);
+				}
+			}
+		}
+
+		for (int t = length-1; t >= 0; t--) {
+			int outBase = (slot(t)*neurons + offsets[L-1])*channel;
+			for (int k = 0; k < outputSize*channel; k++) {
+				int index = t*outputSize*channel + k;
+				double real = target != null && index < target.length ? target[index] : Double.NaN;
+				double error = Double.isNaN(real) ? 0 : real - outputs[outBase + k];
+				errors[index] = error;
+				outputErrors[outBase + k] += error;
+			}
+			for (int l = L-1; l >= 1; l--) backward(t, l);
+		}
+	}
+
+
+	/**
+	 * Propagating errors backward through specified layer at specified time step. Recurrent inputs are constants and so they receive no errors.
+	 * @param t time step.
+	 * @param l layer index.
+	 */
+	private void backward(int t, int l) {
+		int s = slot(t), p = set(t), n = sizes[l], cols = columns[l], width = gates*channel;
+		int prevSize = sizes[l-1];
+		int gateBase = (s*neurons + offsets[l])*width, outBase = (s*neurons + offsets[l])*channel;
+		Function activateRef = activateRefs[l];
+
+		System.arraycopy(inputs, gateBase, gateDerivatives, 0, n*width);
+		derivative(activateRef, gateDerivatives, 0, n*gates, channel);
+		System.arraycopy(cells, outBase, cellActivations, 0, n*channel);
+		activate(activateRef, cellActivations, 0, n, channel);
+		System.arraycopy(cells, outBase, cellDerivatives, 0, n*channel);
+		derivative(activateRef, cellDerivatives, 0, n, channel);
+		if (auxActivateRef != null) {
+			for (int j = 0; j < n; j++) {
+				for (int c = 0; c < channel; c++)
+					auxDerivatives[j*channel + c] = activations[gateBase + j*width + Cell.OUTPUT_GATE*channel + c] * cellActivations[j*channel + c];
+			}
+			derivative(auxActivateRef, auxDerivatives, 0, n, channel);
+		}
+
+		for (int c = 0; c < channel; c++) {
+			//Errors of gates and source cells.
+			double sourceError = 0;
+			for (int j = 0; j < n; j++) {
+				int gb = gateBase + j*width + c, eb = j*width + c, o = outBase + j*channel + c, k = j*channel + c;
+				double outputError = outputErrors[o] * (auxActivateRef != null ? auxDerivatives[k] : 1);
+				double outputGate = activations[gb + Cell.OUTPUT_GATE*channel];
+				double cellError = cellErrors[o] + outputError*outputGate*cellDerivatives[k];
+				gateErrors[eb + Cell.OUTPUT_GATE*channel] = outputError*cellActivations[k]*gateDerivatives[eb + Cell.OUTPUT_GATE*channel];
+				gateErrors[eb + Cell.FORGET_GATE*channel] = cellError*cellSums[o]*gateDerivatives[eb + Cell.FORGET_GATE*channel];
+				gateErrors[eb + Cell.INPUT_GATE*channel] = cellError*activations[gb + Cell.CELL_GATE*channel]*gateDerivatives[eb + Cell.INPUT_GATE*channel];
+				gateErrors[eb + Cell.CELL_GATE*channel] = cellError*activations[gb + Cell.INPUT_GATE*channel]*gateDerivatives[eb + Cell.CELL_GATE*channel];
+				sourceError += cellError*activations[gb + Cell.FORGET_GATE*channel];
+			}
+			if (sourceError != 0) {
+				for (int i = 0; i < prevSize; i++) cellErrors[(s*neurons + offsets[l-1] + i)*channel + c] += sourceError;
+			}
+
+			//Fused product of transposed packed matrix and gate errors, and accumulation of gradients.
+			gather(t, l, c);
+			Arrays.fill(columnErrors, 0, cols, 0);
+			double[] W = packedWeights[p][l][c], gradW = weightGradients[p][l][c], gradB = biasGradients[p][l][c];
+			for (int g = 0; g < gates; g++) {
+				for (int j = 0; j < n; j++) {
+					double error = gateErrors[j*width + g*channel + c];
+					if (error == 0) continue;
+					int r = g*n + j, row = r*cols;
+					gradB[r] += error;
+					for (int k = 0; k < cols; k++) {
+						gradW[row + k] += error * column[k];
+						columnErrors[k] += W[row + k] * error;
+					}
+				}
+			}
+			if (l > 1) {
+				for (int i = 0; i < prevSize; i++) outputErrors[(s*neurons + offsets[l-1] + i)*channel + c] += columnErrors[i];
+			}
+		}
+	}
+
+
+	/**
+	 * Updating packed weights and biases by accumulated gradients.
+	 * @param learningRate learning rate.
+	 */
+	protected void update(double learningRate) {
+		for (int p = 0; p < packedWeights.length; p++) {
+			for (int l = 1; l < sizes.length; l++) {
+				for (int c = 0; c < channel; c++) {
+					double[] W = packedWeights[p][l][c], gradW = weightGradients[p][l][c];
+					for (int k = 0; k < W.length; k++) W[k] += learningRate*gradW[k];
+					double[] b = packedBiases[p][l][c], gradB = biasGradients[p][l][c];
+					for (int k = 0; k < b.length; k++) b[k] += learningRate*gradB[k];
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Copying packed weights and biases to all states of specified recurrent neural network, which is often the network from which this kernel is initialized.
+	 * Every state receives weights of its own parameter set, including recurrent weights of connections from later states. If this kernel is initialized
+	 * with shared weights, there is only one parameter set and so all states share the same weights after copying.
+	 * @param network specified recurrent neural network.
+	 * @return true if copying is successful.
+	 */
+	public boolean copyTo(RecurrentNetworkAbstract network) {
+		if (!validate() || network == null) return false;
+		int length = network.length();
+		for (int k = 0; k < length; k++) {
+			int p = set(k);
+			List<LayerStandard> backbone = network.get(k).getBackbone();
+			if (backbone.size() != sizes.length) return false;
+			for (int l = 1; l < sizes.length; l++) {
+				LayerStandard layer = backbone.get(l), prevLayer = backbone.get(l-1);
+				int n = sizes[l], prevSize = sizes[l-1], source = recurrentSources[l];
+				for (int j = 0; j < Math.min(n, layer.size()); j++) {
+					NeuronStandard neuron = layer.get(j);
+					neuron.setBias(gateValue(p, l, j, -1));
+					for (WeightedNeuron wn : neuron.getPrevNeurons(prevLayer)) {
+						int i = prevLayer.indexOf(wn.neuron);
+						if (i >= 0 && i < prevSize) wn.weight.value = gateValue(p, l, j, i).toWeightValue();
+					}
+				}
+				if (source < 0) continue;
+
+				int sourceSize = sizes[source];
+				for (int lag = 1; lag <= lags && k + lag < length; lag++) {
+					LayerStandard sourceLayer = network.get(k + lag).getBackbone().get(source);
+					for (int i = 0; i < Math.min(sourceSize, sourceLayer.size()); i++) {
+						NeuronStandard sourceNeuron = sourceLayer.get(i);
+						int col = prevSize + (lag-1)*sourceSize + i;
+						copyTo(sourceNeuron.getOutsideNextNeurons(), layer, p, l, col);
+						copyTo(Arrays.asList(sourceNeuron.getRiboutNeurons()), layer, p, l, col);
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Copying recurrent weights to connections from source neuron to neurons of specified layer.
+	 * @param wns neurons connected from source neuron.
+	 * @param layer specified layer.
+	 * @param p parameter set.
+	 * @param l layer index.
+	 * @param col column of packed matrix.
+	 */
+	private void copyTo(Iterable<WeightedNeuron> wns, LayerStandard layer, int p, int l, int col) {
+		if (wns == null) return;
+		for (WeightedNeuron wn : wns) {
+			int j = layer.indexOf(wn.neuron);
+			if (j >= 0 && j < sizes[l]) wn.weight.value = gateValue(p, l, j, col).toWeightValue();
+		}
+	}
+
+
+	/**
+	 * Creating gate vector from packed weights or packed biases.
+	 * @param p parameter set.
+	 * @param l layer index.
+	 * @param j cell index.
+	 * @param col column of packed matrix. If it is negative, gate vector is created from packed biases.
+	 * @return gate vector.
+	 */
+	private NeuronValue gateValue(int p, int l, int j, int col) {
+		int n = sizes[l], cols = columns[l];
+		double[] buffer = new double[channel];
+		NeuronValue[] gateValues = new NeuronValue[gates];
+		for (int g = 0; g < gates; g++) {
+			for (int c = 0; c < channel; c++)
+				buffer[c] = col < 0 ? packedBiases[p][l][c][g*n + j] : packedWeights[p][l][c][(g*n + j)*cols + col];
+			gateValues[g] = unpack(buffer, 0, channel);
+		}
+		return new NeuronValueVectorImpl(gateValues);
+	}
+
+
+}
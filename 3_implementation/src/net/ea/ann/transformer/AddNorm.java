@@ -9,10 +9,14 @@ package net.ea.ann.transformer;
 
 import net.ea.ann.core.Id;
 import net.ea.ann.core.function.Function;
+import net.ea.ann.core.value.Matrix;
+import net.ea.ann.core.value.NeuronValue;
+import net.ea.ann.core.value.NeuronValueCreator;
 import net.ea.ann.mane.MatrixNetworkImpl;
 
 /**
  * This class implements add & norm component.
+ * Adding means that input is added with output of sub-layer (residual connection) and norm means that the sum is normalized by row (layer normalization).
  * 
  * @author Loc Nguyen
  * @version 1.0
@@ -27,6 +31,24 @@ public class AddNorm extends MatrixNetworkImpl {
 	private static final long serialVersionUID = 1L;
 
 	
+	/**
+	 * Small value added to variance to avoid dividing by zero.
+	 */
+	protected final static double EPSILON = 1e-8;
+	
+	
+	/**
+	 * Normalized output buffer.
+	 */
+	protected Matrix normOutput = null;
+	
+	
+	/**
+	 * Standard deviations of rows of the sum.
+	 */
+	protected NeuronValue[] stds = null;
+	
+	
 	/**
 	 * Constructor with neuron channel, activation function, convolutional activation function, and identifier reference.
 	 * @param neuronChannel neuron channel.
@@ -69,4 +91,93 @@ public class AddNorm extends MatrixNetworkImpl {
 	}
 	
 
+	/**
+	 * Initializing add & norm component with numbers of rows and columns.
+	 * @param rows number of rows.
+	 * @param columns number of columns.
+	 * @return true if initialization is successful.
+	 */
+	public boolean initialize(int rows, int columns) {
+		if (rows <= 0 || columns <= 0) return false;
+		normOutput = Matrix.create(rows, columns, NeuronValueCreator.newNeuronValue(neuronChannel));
+		stds = new NeuronValue[rows];
+		return true;
+	}
+	
+	
+	/**
+	 * Getting normalized output.
+	 * @return normalized output.
+	 */
+	public Matrix getNormOutput() {
+		return normOutput;
+	}
+	
+	
+	/**
+	 * Evaluating add & norm component by adding input with output of sub-layer and normalizing the sum by row into the normalized output buffer.
+	 * @param input input.
+	 * @param sublayerOutput output of sub-layer.
+	 * @return normalized output.
+	 */
+	public Matrix evaluate(Matrix input, Matrix sublayerOutput) {
+		if (normOutput == null || input == null || sublayerOutput == null) return null;
+		int rows = normOutput.rows(), columns = normOutput.columns();
+		NeuronValue zero = normOutput.get(0, 0).zero();
+		NeuronValue epsilon = zero.valueOf(EPSILON);
+		for (int i = 0; i < rows; i++) {
+			NeuronValue mean = zero;
+			for (int j = 0; j < columns; j++) {
+				NeuronValue sum = input.get(i, j).add(sublayerOutput.get(i, j));
+				normOutput.set(i, j, sum);
+				mean = mean.add(sum);
+			}
+			mean = mean.divide((double)columns);
+			
+			NeuronValue var = zero;
+			for (int j = 0; j < columns; j++) {
+				NeuronValue d = normOutput.get(i, j).subtract(mean);
+				normOutput.set(i, j, d);
+				var = var.add(d.multiply(d));
+			}
+			stds[i] = var.divide((double)columns).add(epsilon).sqrt();
+			
+			for (int j = 0; j < columns; j++) normOutput.set(i, j, normOutput.get(i, j).divide(stds[i]));
+		}
+		
+		return normOutput;
+	}
+	
+	
+	/**
+	 * Propagating error of normalized output backward to error of the sum of input and output of sub-layer.
+	 * This method uses values of the latest evaluation.
+	 * @param error error of normalized output.
+	 * @return error of the sum, which is also error of both input and output of sub-layer.
+	 */
+	public Matrix backward(Matrix error) {
+		if (normOutput == null || error == null) return null;
+		int rows = normOutput.rows(), columns = normOutput.columns();
+		NeuronValue zero = normOutput.get(0, 0).zero();
+		Matrix sumError = normOutput.create(rows, columns);
+		for (int i = 0; i < rows; i++) {
+			NeuronValue errorMean = zero, errorNormMean = zero;
+			for (int j = 0; j < columns; j++) {
+				NeuronValue e = error.get(i, j);
+				errorMean = errorMean.add(e);
+				errorNormMean = errorNormMean.add(e.multiply(normOutput.get(i, j)));
+			}
+			errorMean = errorMean.divide((double)columns);
+			errorNormMean = errorNormMean.divide((double)columns);
+			
+			for (int j = 0; j < columns; j++) {
+				NeuronValue e = error.get(i, j).subtract(errorMean).subtract(normOutput.get(i, j).multiply(errorNormMean));
+				sumError.set(i, j, e.divide(stds[i]));
+			}
+		}
+		
+		return sumError;
+	}
+
+
 }
@@ -8,6 +8,7 @@
 package net.ea.ann.transformer;
 
 import java.io.Serializable;
+import java.util.Random;
 
 import net.ea.ann.core.NetworkAbstract;
 import net.ea.ann.core.Util;
@@ -54,6 +55,18 @@ public class Attention implements Cloneable, Serializable {
 	protected AddNorm addNorm = null;
 	
 	
+	/**
+	 * Accumulated gradient of entire weight matrix, which is null if gradients are applied immediately.
+	 */
+	protected transient Matrix gradientWO = null;
+	
+	
+	/**
+	 * The number of accumulated gradients.
+	 */
+	protected transient int gradientCount = 0;
+	
+	
 	/**
 	 * Default constructor.
 	 */
@@ -70,6 +83,8 @@ public class Attention implements Cloneable, Serializable {
 		WO = null;
 		A = null;
 		addNorm = null;
+		gradientWO = null;
+		gradientCount = 0;
 	}
 	
 	
@@ -112,6 +127,10 @@ public class Attention implements Cloneable, Serializable {
 		WO = Matrix.create(h*dv, dm, zero);
 		A = Matrix.create(n, dm, zero);
 		
+		Random rnd = new Random();
+		for (int i = 0; i < h; i++) heads[i].randomize(rnd);
+		Attention0.randomize(WO, rnd);
+		
 		return validate();
 	}
 
@@ -246,13 +265,17 @@ public class Attention implements Cloneable, Serializable {
 
 	
 	/**
-	 * Getting attentions of heads.
-	 * @return attentions of heads.
+	 * Getting row offsets of heads in entire weight matrix.
+	 * @return row offsets of heads in entire weight matrix.
 	 */
-	private Matrix[] headsA() {
-		Matrix[] As = new Matrix[heads.length];
-		for (int i = 0; i < heads.length; i++) As[i] = heads[i].A;
-		return As;
+	private int[] headsOffsets() {
+		int[] offsets = new int[heads.length];
+		int offset = 0;
+		for (int i = 0; i < heads.length; i++) {
+			offsets[i] = offset;
+			offset += heads[i].A.columns();
+		}
+		return offsets;
 	}
 	
 	
@@ -277,15 +300,22 @@ public class Attention implements Cloneable, Serializable {
 		if (!validate()) return null;
 		enterInputs(inputY, inputX);
 		
-		Matrix[] aList = new Matrix[heads.length];
-		for (int i = 0; i < heads.length; i++) aList[i] = heads[i].evaluate();
+		Util.parallel(heads.length, (i) -> heads[i].evaluate());
 		
-		Matrix eval = Matrix.concatV(aList).multiply(WO);
-		int n = A.rows();
+		//Multiplying concatenated head attentions with entire weight matrix WO directly into the attention output buffer.
+		int[] offsets = headsOffsets();
 		int dm = A.columns();
-		for (int i = 0; i < n; i++) {
-			for (int j = 0; j < dm; j++) A.set(i, j, eval.get(i, j));
-		}
+		NeuronValue zero = A.get(0, 0).zero();
+		Util.parallel(A.rows(), (i) -> {
+			for (int j = 0; j < dm; j++) {
+				NeuronValue sum = zero;
+				for (int h = 0; h < heads.length; h++) {
+					Matrix Ah = heads[h].A;
+					for (int k = 0; k < Ah.columns(); k++) sum = sum.add(Ah.get(i, k).multiply(WO.get(offsets[h] + k, j)));
+				}
+				A.set(i, j, sum);
+			}
+		});
 		return A;
 	}
 
@@ -304,31 +334,82 @@ public class Attention implements Cloneable, Serializable {
 	 * Learning attention by error.
 	 * @param error specified error.
 	 * @param learningRate learning rate.
-	 * @param maxIteration maximum iterations.
+	 * @return error of Y input data, which is propagated through value paths of heads.
 	 */
-	private void learn(Matrix error, double learningRate) {
-		if (!validate()) return;
-		if (error == null) return;
-		if (error.rows() != A.rows() || error.columns() != A.columns()) return;
+	public Matrix learn(Matrix error, double learningRate) {
+		if (!validate()) return null;
+		if (error == null) return null;
+		if (error.rows() != A.rows() || error.columns() != A.columns()) return null;
 		
 		learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? NetworkAbstract.LEARN_RATE_DEFAULT : learningRate;
 
-		//Training entire weight matrix WO.
-		Matrix[] headsA = headsA();
-		Matrix As = Matrix.concatV(headsA);
-		As = As.transpose().multiply(error).multiply0(learningRate);
-		WO = WO.add(As);
+		//Every head trains its own rows of entire weight matrix WO and then trains itself with error propagated through these rows.
+		int[] offsets = headsOffsets();
+		int n = A.rows();
+		int dm = A.columns();
+		NeuronValue zero = A.get(0, 0).zero();
+		final double lr = learningRate;
+		Matrix[] inputErrors = new Matrix[heads.length];
+		Util.parallel(heads.length, (h) -> {
+			Attention0 head = heads[h];
+			int dv = head.A.columns();
+			for (int k = 0; k < dv; k++) {
+				for (int j = 0; j < dm; j++) {
+					NeuronValue dW = zero;
+					for (int i = 0; i < n; i++) dW = dW.add(head.A.get(i, k).multiply(error.get(i, j)));
+					if (gradientWO != null)
+						gradientWO.set(offsets[h] + k, j, gradientWO.get(offsets[h] + k, j).add(dW));
+					else
+						WO.set(offsets[h] + k, j, WO.get(offsets[h] + k, j).add(dW.multiply(lr)));
+				}
+			}
+			
+			Matrix ERRORh = head.A.create(n, dv);
+			for (int i = 0; i < n; i++) {
+				for (int k = 0; k < dv; k++) {
+					NeuronValue e = zero;
+					for (int j = 0; j < dm; j++) e = e.add(error.get(i, j).multiply(WO.get(offsets[h] + k, j)));
+					ERRORh.set(i, k, e);
+				}
+			}
+			inputErrors[h] = head.calcInputError(ERRORh);
+			head.learn(ERRORh, lr);
+		});
+		if (gradientWO != null) gradientCount++;
 		
-		//Training every attention head with error and entire weight matrix WO.
-		Matrix ERROR = error.multiply(WO.transpose());
-		int index = 0;
-		for (int i = 0; i < heads.length; i++) {
-			Attention0 head = heads[i];
-			int n = head.A.columns();
-			Matrix ERRORi = ERROR.getColumns(index, n);
-			head.learn(ERRORi, learningRate);
-			index += n;
+		Matrix inputError = null;
+		for (Matrix e : inputErrors) {
+			if (e != null) inputError = inputError != null ? inputError.add(e) : e;
 		}
+		return inputError;
+	}
+	
+	
+	/**
+	 * Starting to accumulate gradients of entire weight matrix and heads so that learning by error does not update this attention until gradients are applied.
+	 */
+	public void accumulateGradients() {
+		if (!validate()) return;
+		gradientWO = Matrix.create(WO.rows(), WO.columns(), WO.get(0, 0).zero());
+		gradientCount = 0;
+		for (Attention0 head : heads) head.accumulateGradients();
+	}
+	
+	
+	/**
+	 * Applying mean of accumulated gradients once and then stopping accumulation.
+	 * @param learningRate learning rate.
+	 */
+	public void applyGradients(double learningRate) {
+		Matrix gradientWO = this.gradientWO;
+		int gradientCount = this.gradientCount;
+		this.gradientWO = null;
+		this.gradientCount = 0;
+		if (!validate()) return;
+		learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? NetworkAbstract.LEARN_RATE_DEFAULT : learningRate;
+		
+		if (gradientWO != null && gradientCount > 0) Matrix.copy(WO.add(gradientWO.multiply0(learningRate/(double)gradientCount)), WO);
+		for (Attention0 head : heads) head.applyGradients(learningRate);
 	}
 	
 	
@@ -463,6 +544,19 @@ class Attention0 implements Cloneable, Serializable {
 	protected Matrix A = null;
 
 	
+	/**
+	 * Accumulated gradients of query weight matrix, key weight matrix, value weight matrix, the first transposition matrix, and the second transposition matrix.
+	 * It is null if gradients are applied immediately.
+	 */
+	protected transient Matrix[] gradients = null;
+	
+	
+	/**
+	 * The number of accumulated gradients.
+	 */
+	protected transient int gradientCount = 0;
+	
+	
 	/**
 	 * Default constructor.
 	 */
@@ -477,6 +571,8 @@ class Attention0 implements Cloneable, Serializable {
 	public void reset() {
 		X = T1 = Y = WQ = WK = WV = A = null;
 		M = null;
+		gradients = null;
+		gradientCount = 0;
 	}
 	
 	
@@ -530,6 +626,34 @@ class Attention0 implements Cloneable, Serializable {
 	}
 	
 	
+	/**
+	 * Randomizing weight matrices by Gaussian numbers scaled by their row numbers, which breaks symmetry of weights.
+	 * @param rnd randomizer.
+	 */
+	protected void randomize(Random rnd) {
+		randomize(WQ, rnd);
+		randomize(WK, rnd);
+		randomize(WV, rnd);
+		randomize(T1, rnd);
+		randomize(T2, rnd);
+	}
+	
+	
+	/**
+	 * Randomizing weight matrix by Gaussian numbers scaled by its row number.
+	 * @param W weight matrix.
+	 * @param rnd randomizer.
+	 */
+	static void randomize(Matrix W, Random rnd) {
+		if (W == null) return;
+		NeuronValue zero = W.get(0, 0).zero();
+		double scale = 1.0 / Math.sqrt(W.rows());
+		for (int i = 0; i < W.rows(); i++) {
+			for (int j = 0; j < W.columns(); j++) W.set(i, j, zero.valueOf(Util.randomGaussian(rnd)*scale));
+		}
+	}
+	
+	
 	/**
 	 * Assigning input matrices.
 	 * @param M masked matrix.
@@ -905,6 +1029,18 @@ class Attention0 implements Cloneable, Serializable {
 	}
 	
 	
+	/**
+	 * Calculating error of Y input data through value path, given that soft-max matrix is constant.
+	 * This method should be called before learning because it uses current value weight matrix.
+	 * @param error specified error.
+	 * @return error of Y input data.
+	 */
+	public Matrix calcInputError(Matrix error) {
+		if (error == null) return null;
+		return calcQKSoftmax().transpose().multiply(error).multiply(WV.transpose());
+	}
+	
+	
 	/**
 	 * Learning attention by error.
 	 * @param error specified error.
@@ -915,6 +1051,7 @@ class Attention0 implements Cloneable, Serializable {
 		int n = n();
 		if (error.rows() != n || error.columns() != dv()) return;
 		learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? NetworkAbstract.LEARN_RATE_DEFAULT : learningRate;
+		boolean accumulating = gradients != null;
 
 		Matrix Q = calcQ();
 		Matrix K = calcK();
@@ -932,17 +1069,28 @@ class Attention0 implements Cloneable, Serializable {
 			Matrix d = Y().getRow(i).transpose().multiply(errvi);
 			dW = dW != null ? dW.add(d) : d;
 		}
-		Matrix WQ = this.WQ.add(dW.multiply(K).multiply0(learningRate));
-		Matrix.copy(WQ, this.WQ);
-		Matrix WK = this.WK.add(dW.multiply(Q).multiply0(learningRate));
-		Matrix.copy(WK, this.WK);
+		Matrix dWQ = dW.multiply(K), dWK = dW.multiply(Q);
 		
 		//Training weight value matrix.
 		Matrix dWV = Y().transpose().multiply(softmax.transpose()).multiply(errv);
-		Matrix WV = this.WV.add(dWV.multiply0(learningRate));
-		Matrix.copy(WV, this.WV);
+		if (accumulating) {
+			accumulate(0, dWQ);
+			accumulate(1, dWK);
+			accumulate(2, dWV);
+		}
+		else {
+			Matrix WQ = this.WQ.add(dWQ.multiply0(learningRate));
+			Matrix.copy(WQ, this.WQ);
+			Matrix WK = this.WK.add(dWK.multiply0(learningRate));
+			Matrix.copy(WK, this.WK);
+			Matrix WV = this.WV.add(dWV.multiply0(learningRate));
+			Matrix.copy(WV, this.WV);
+		}
 		
-		if (T1 == null && T2 == null) return;
+		if (T1 == null && T2 == null) {
+			if (accumulating) gradientCount++;
+			return;
+		}
 		
 		Matrix QKMean = calcK().multiply(WQ.transpose());
 		QKMean = QKMean.add(calcQ().multiply(WK.transpose()));
@@ -958,10 +1106,13 @@ class Attention0 implements Cloneable, Serializable {
 					t1s[i] = t1s[i].multiply(T2.transpose()).multiply(X().transpose());
 				else
 					t1s[i] = t1s[i].multiply(X().transpose());
-				t1s[i] = t1s[i].multiply0(learningRate);
+				if (!accumulating) t1s[i] = t1s[i].multiply0(learningRate);
 			}
 			Matrix T1 = Matrix.concatH(t1s);
-			Matrix.copy(T1, this.T1);
+			if (accumulating)
+				accumulate(3, T1);
+			else
+				Matrix.copy(T1, this.T1);
 		}
 		
 		//Training the first transposition matrix T2.
@@ -973,10 +1124,54 @@ class Attention0 implements Cloneable, Serializable {
 				dT2 = dT2 != null ? dT2.add(d) : d;
 			}
 			dT2 = X().transpose().multiply(dT2).multiply(QKMean);
-			Matrix T2 = this.T2.add(dT2.multiply0(learningRate));
-			Matrix.copy(T2, this.T2);
+			if (accumulating)
+				accumulate(4, dT2);
+			else {
+				Matrix T2 = this.T2.add(dT2.multiply0(learningRate));
+				Matrix.copy(T2, this.T2);
+			}
 		}
 		
+		if (accumulating) gradientCount++;
+	}
+	
+	
+	/**
+	 * Adding gradient to accumulated gradient at specified index.
+	 * @param index index of accumulated gradient.
+	 * @param gradient gradient.
+	 */
+	private void accumulate(int index, Matrix gradient) {
+		gradients[index] = gradients[index] != null ? gradients[index].add(gradient) : gradient;
+	}
+	
+	
+	/**
+	 * Starting to accumulate gradients so that learning by error does not update this attention until gradients are applied.
+	 */
+	public void accumulateGradients() {
+		gradients = new Matrix[5];
+		gradientCount = 0;
+	}
+	
+	
+	/**
+	 * Applying mean of accumulated gradients once and then stopping accumulation. Accumulated gradient of the first transposition matrix
+	 * is added to that matrix like other gradients.
+	 * @param learningRate learning rate.
+	 */
+	public void applyGradients(double learningRate) {
+		Matrix[] gradients = this.gradients;
+		int gradientCount = this.gradientCount;
+		this.gradients = null;
+		this.gradientCount = 0;
+		if (gradients == null || gradientCount <= 0) return;
+		
+		double lr = learningRate / (double)gradientCount;
+		Matrix[] weights = new Matrix[] {WQ, WK, WV, T1, T2};
+		for (int i = 0; i < weights.length; i++) {
+			if (weights[i] != null && gradients[i] != null) Matrix.copy(weights[i].add(gradients[i].multiply0(lr)), weights[i]);
+		}
 	}
 	
 	
@@ -43,4 +43,13 @@ public interface Transformer extends Network {
 	Matrix learn(Matrix input1, Matrix input2, Matrix output) throws RemoteException;
 
 
+	/**
+	 * Learning matrix neural network by batch of sequences.
+	 * @param sample sample whose each element is an array of the first input, the second input (which can be null), and the output.
+	 * @return learned errors.
+	 * @throws RemoteException if any error raises.
+	 */
+	Matrix[] learn(Iterable<Matrix[]> sample) throws RemoteException;
+
+
 }
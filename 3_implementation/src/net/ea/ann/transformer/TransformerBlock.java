@@ -0,0 +1,227 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.ann.transformer;
+
+import java.awt.Dimension;
+import java.io.Serializable;
+
+import net.ea.ann.conv.filter.Filter2D;
+import net.ea.ann.core.Id;
+import net.ea.ann.core.Util;
+import net.ea.ann.core.function.Function;
+import net.ea.ann.core.value.Matrix;
+import net.ea.ann.core.value.NeuronValue;
+import net.ea.ann.core.value.NeuronValueCreator;
+import net.ea.ann.mane.MatrixLayerAbstract;
+import net.ea.ann.mane.MatrixNetworkImpl;
+
+/**
+ * This class represents encoder block of transformer, which is the pipeline of attention, add &amp; norm, feed forward network, and add &amp; norm.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class TransformerBlock implements Cloneable, Serializable {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Internal attention.
+	 */
+	protected Attention attention = null;
+
+
+	/**
+	 * Add &amp; norm component after attention.
+	 */
+	protected AddNorm attentionNorm = null;
+
+
+	/**
+	 * Feed forward network.
+	 */
+	protected MatrixNetworkImpl ffn = null;
+
+
+	/**
+	 * Add &amp; norm component after feed forward network.
+	 */
+	protected AddNorm ffnNorm = null;
+
+
+	/**
+	 * Default constructor.
+	 */
+	public TransformerBlock() {
+		super();
+	}
+
+
+	/**
+	 * Resetting this block.
+	 */
+	public void reset() {
+		attention = null;
+		attentionNorm = null;
+		ffn = null;
+		ffnNorm = null;
+	}
+
+
+	/**
+	 * Initializing block.
+	 * @param neuronChannel neuron channel.
+	 * @param activateRef activation function of feed forward network, which can be null.
+	 * @param idRef identifier reference, which can be null.
+	 * @param h number of heads.
+	 * @param n sample size.
+	 * @param dm model dimension.
+	 * @param dk key dimension.
+	 * @param dv value dimension.
+	 * @param m other sample size.
+	 * @param d other model dimension.
+	 * @param dff hidden dimension of feed forward network.
+	 * @return true if initialization is successful.
+	 */
+	public boolean initialize(int neuronChannel, Function activateRef, Id idRef, int h, int n, int dm, int dk, int dv, int m, int d, int dff) {
+		reset();
+		NeuronValue zero = NeuronValueCreator.newNeuronValue(neuronChannel);
+		if (zero == null) return false;
+		dff = dff <= 0 ? dm : dff;
+
+		Attention attention = new Attention();
+		if (!attention.initialize(h, n, dm, dk, dv, zero, m, d)) return false;
+
+		AddNorm attentionNorm = new AddNorm(neuronChannel, activateRef, null, idRef);
+		if (!attentionNorm.initialize(n, dm)) return false;
+
+		MatrixNetworkImpl ffn = new MatrixNetworkImpl(neuronChannel, activateRef, null, idRef);
+		if (!ffn.initialize(new Dimension(dm, n), new Dimension(dff, n), (Filter2D)null, 1, false, new Dimension(dm, n), 1)) return false;
+
+		AddNorm ffnNorm = new AddNorm(neuronChannel, activateRef, null, idRef);
+		if (!ffnNorm.initialize(n, dm)) return false;
+
+		this.attention = attention;
+		this.attentionNorm = attentionNorm;
+		this.ffn = ffn;
+		this.ffnNorm = ffnNorm;
+		return true;
+	}
+
+
+	/**
+	 * Checking whether this block is valid.
+	 * @return whether this block is valid.
+	 */
+	public boolean validate() {
+		return attention != null && attention.validate() && attentionNorm != null && ffn != null && ffnNorm != null;
+	}
+
+
+	/**
+	 * Getting internal attention.
+	 * @return internal attention.
+	 */
+	public Attention getAttention() {
+		return attention;
+	}
+
+
+	/**
+	 * Getting feed forward network.
+	 * @return feed forward network.
+	 */
+	public MatrixNetworkImpl getFFN() {
+		return ffn;
+	}
+
+
+	/**
+	 * Getting output of this block, which is output buffer of the last add &amp; norm component.
+	 * @return output of this block.
+	 */
+	public Matrix getOutput() {
+		return ffnNorm != null ? ffnNorm.getNormOutput() : null;
+	}
+
+
+	/**
+	 * Evaluating block given Y input data and X input data.
+	 * @param inputY Y input data.
+	 * @param inputX X input data, which can be null.
+	 * @return output of this block, which is output buffer of the last add &amp; norm component.
+	 */
+	public Matrix evaluate(Matrix inputY, Matrix inputX) {
+		if (!validate()) return null;
+		Matrix A = attention.evaluate(inputY, inputX);
+		if (A == null) return null;
+		Matrix Z = attentionNorm.evaluate(attention.Y(), A);
+
+		Matrix F = null;
+		try {
+			F = ffn.evaluate(Z);
+		} catch (Throwable e) {Util.trace(e);}
+		if (F == null) return null;
+
+		return ffnNorm.evaluate(Z, F);
+	}
+
+
+	/**
+	 * Starting to accumulate gradients of attention and feed forward network so that learning does not update this block until gradients are applied.
+	 */
+	public void accumulateGradients() {
+		if (attention != null) attention.accumulateGradients();
+		if (ffn != null) ffn.accumulateGradients();
+	}
+
+
+	/**
+	 * Applying mean of accumulated gradients of attention and feed forward network once and then stopping accumulation.
+	 * @param learningRate learning rate.
+	 */
+	public void applyGradients(double learningRate) {
+		if (attention != null) attention.applyGradients(learningRate);
+		if (ffn != null) ffn.applyGradients(learningRate);
+	}
+
+
+	/**
+	 * Learning block by error of output of the latest evaluation. Error is propagated backward against activations of that evaluation,
+	 * and so every sequence must be learned right after it is evaluated. If gradients are being accumulated, weights are not updated here.
+	 * @param error error of output.
+	 * @param learningRate learning rate.
+	 * @return error of Y input data.
+	 */
+	public Matrix learn(Matrix error, double learningRate) {
+		if (!validate() || error == null) return null;
+
+		//Propagating error through the last add & norm component and feed forward network.
+		MatrixLayerAbstract ffnOutputLayer = ffn.getOutputLayer();
+		Matrix ffnInput = ffnOutputLayer.getInput();
+		Matrix derivative = ffnInput != null && ffnOutputLayer.getActivateRef() != null ? ffnInput.derivativeWise(ffnOutputLayer.getActivateRef()) : null;
+		Matrix ffnNormError = ffnNorm.backward(error);
+		Matrix ffnError = derivative != null ? derivative.multiplyWise(ffnNormError) : ffnNormError;
+		Matrix[] ffnInputErrors = ffn.backward(new Matrix[] {ffnError}, learningRate);
+
+		//Propagating error through the first add & norm component and attention.
+		Matrix zError = ffnInputErrors != null && ffnInputErrors.length > 0 && ffnInputErrors[0] != null ? ffnNormError.add(ffnInputErrors[0]) : ffnNormError;
+		Matrix attentionError = attentionNorm.backward(zError);
+		Matrix yError = attention.learn(attentionError, learningRate);
+
+		return yError != null ? attentionError.add(yError) : attentionError;
+	}
+
+
+}
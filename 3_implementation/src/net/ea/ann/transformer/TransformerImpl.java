@@ -8,14 +8,18 @@
 package net.ea.ann.transformer;
 
 import java.rmi.RemoteException;
+import java.util.List;
 
 import net.ea.ann.core.Id;
 import net.ea.ann.core.NetworkAbstract;
+import net.ea.ann.core.NetworkDoEvent.Type;
+import net.ea.ann.core.NetworkDoEventImpl;
+import net.ea.ann.core.Util;
+import net.ea.ann.core.function.Function;
 import net.ea.ann.core.value.Matrix;
-import net.ea.ann.mane.MatrixNetwork;
 
 /**
- * This class implements simplest transformer.
+ * This class implements simplest transformer as a stack of encoder blocks.
  * 
  * @author Loc Nguyen
  * @version 1.0
@@ -31,29 +35,65 @@ public class TransformerImpl extends NetworkAbstract implements Transformer {
 
 	
 	/**
-	 * Internal attention.
+	 * Name of batch size field.
 	 */
-	protected Attention attention = null;
+	public final static String BATCH_SIZE_FIELD = "transformer_batch_size";
 	
 	
 	/**
-	 * Feed forward network.
+	 * Default value of batch size field. Zero means that all sequences are learned as one batch.
 	 */
-	protected MatrixNetwork ffn = null;
+	public final static int BATCH_SIZE_DEFAULT = 0;
 	
 	
 	/**
-	 * Add & norm component.
+	 * Neuron channel.
 	 */
-	protected AddNorm addNorm = null;
+	protected int neuronChannel = 1;
 	
 	
+	/**
+	 * Activation function reference of feed forward networks.
+	 */
+	protected Function activateRef = null;
+	
+	
+	/**
+	 * Stack of encoder blocks.
+	 */
+	protected TransformerBlock[] blocks = null;
+	
+	
+	/**
+	 * Constructor with neuron channel, activation function, and ID reference.
+	 * @param neuronChannel neuron channel.
+	 * @param activateRef activation function of feed forward networks, which can be null.
+	 * @param idRef ID reference.
+	 */
+	public TransformerImpl(int neuronChannel, Function activateRef, Id idRef) {
+		super(idRef);
+		this.config.put(LEARN_MAX_ITERATION_FIELD, 1);
+		this.config.put(BATCH_SIZE_FIELD, BATCH_SIZE_DEFAULT);
+		this.neuronChannel = neuronChannel < 1 ? 1 : neuronChannel;
+		this.activateRef = activateRef;
+	}
+
+	
+	/**
+	 * Constructor with neuron channel.
+	 * @param neuronChannel neuron channel.
+	 */
+	public TransformerImpl(int neuronChannel) {
+		this(neuronChannel, null, null);
+	}
+
+	
 	/**
 	 * Constructor with ID reference.
 	 * @param idRef ID reference.
 	 */
 	protected TransformerImpl(Id idRef) {
-		super(idRef);
+		this(1, null, idRef);
 	}
 
 	
@@ -65,15 +105,240 @@ public class TransformerImpl extends NetworkAbstract implements Transformer {
 	}
 
 	
+	/**
+	 * Resetting transformer.
+	 */
+	public void reset() {
+		blocks = null;
+	}
+
+	
+	/**
+	 * Initializing transformer.
+	 * @param N number of encoder blocks.
+	 * @param h number of heads.
+	 * @param n sample size which is the length of sequence.
+	 * @param dm model dimension.
+	 * @param dk key dimension.
+	 * @param dv value dimension.
+	 * @param m other sample size.
+	 * @param d other model dimension.
+	 * @param dff hidden dimension of feed forward networks.
+	 * @return true if initialization is successful.
+	 */
+	public boolean initialize(int N, int h, int n, int dm, int dk, int dv, int m, int d, int dff) {
+		reset();
+		if (N <= 0) return false;
+
+		TransformerBlock[] blocks = new TransformerBlock[N];
+		for (int i = 0; i < N; i++) {
+			blocks[i] = new TransformerBlock();
+			if (!blocks[i].initialize(neuronChannel, activateRef, idRef, h, n, dm, dk, dv, m, d, dff)) return false;
+		}
+		this.blocks = blocks;
+		return true;
+	}
+
+	
+	/**
+	 * Initializing transformer with self-attentions.
+	 * @param N number of encoder blocks.
+	 * @param h number of heads.
+	 * @param n sample size which is the length of sequence.
+	 * @param dm model dimension.
+	 * @return true if initialization is successful.
+	 */
+	public boolean initialize(int N, int h, int n, int dm) {
+		int dk = Math.max(1, dm / Math.max(1, h));
+		return initialize(N, h, n, dm, dk, dk, 0, 0, dm);
+	}
+
+	
+	/**
+	 * Checking whether this transformer is valid.
+	 * @return whether this transformer is valid.
+	 */
+	public boolean validate() {
+		if (blocks == null || blocks.length == 0) return false;
+		for (TransformerBlock block : blocks) {
+			if (block == null || !block.validate()) return false;
+		}
+		return true;
+	}
+
+	
+	/**
+	 * Getting the number of encoder blocks.
+	 * @return the number of encoder blocks.
+	 */
+	public int size() {
+		return blocks != null ? blocks.length : 0;
+	}
+
+	
+	/**
+	 * Getting encoder block at specified index.
+	 * @param index specified index.
+	 * @return encoder block at specified index.
+	 */
+	public TransformerBlock get(int index) {
+		return blocks[index];
+	}
+
+	
 	@Override
 	public Matrix evaluate(Matrix input1, Matrix input2) throws RemoteException {
-		throw new RuntimeException("Method MatrixNetworkImpl.evaluate(Matrix) not implemented yet");
+		if (!validate()) return null;
+		Matrix output = input1;
+		for (TransformerBlock block : blocks) {
+			output = block.evaluate(output, input2);
+			if (output == null) return null;
+		}
+		return output;
+	}
+
+	
+	/**
+	 * Evaluating a batch of sequences. Activation buffers of blocks are reused and so every result is copied.
+	 * @param inputs batch whose each element is an array of the first input (the sequence) and the second input (which can be null).
+	 * @return array of outputs.
+	 * @throws RemoteException if any error raises.
+	 */
+	public Matrix[] evaluate(Iterable<Matrix[]> inputs) throws RemoteException {
+		List<Matrix> outputs = Util.newList(0);
+		for (Matrix[] input : inputs) {
+			Matrix output = evaluate(input[0], input.length > 1 ? input[1] : null);
+			Matrix result = output != null ? output.create(output.rows(), output.columns()) : null;
+			Matrix.copy(output, result);
+			outputs.add(result);
+		}
+		return outputs.toArray(new Matrix[] {});
 	}
 
 	
 	@Override
 	public Matrix learn(Matrix input1, Matrix input2, Matrix output) throws RemoteException {
-		throw new RuntimeException("Method MatrixNetworkImpl.learn(Matrix, Matrix) not implemented yet");
+		List<Matrix[]> sample = Util.newList(1);
+		sample.add(new Matrix[] {input1, input2, output});
+		Matrix[] errors = learn(sample);
+		return errors != null && errors.length > 0 ? errors[errors.length-1] : null;
+	}
+
+	
+	@Override
+	public Matrix[] learn(Iterable<Matrix[]> sample) throws RemoteException {
+		int maxIteration = config.getAsInt(LEARN_MAX_ITERATION_FIELD);
+		double terminatedThreshold = config.getAsReal(LEARN_TERMINATED_THRESHOLD_FIELD);
+		double learningRate = config.getAsReal(LEARN_RATE_FIELD);
+		int batchSize = config.getAsInt(BATCH_SIZE_FIELD);
+		return learn(sample, learningRate, terminatedThreshold, maxIteration, batchSize);
+	}
+
+	
+	/**
+	 * Learning transformer by mini-batches.
+	 * @param sample sample whose each element is an array of the first input (the sequence), the second input (which can be null), and the output.
+	 * @param learningRate learning rate.
+	 * @param terminatedThreshold terminated threshold.
+	 * @param maxIteration maximum iteration.
+	 * @param batchSize batch size. Zero means that all sequences are learned as one batch.
+	 * @return errors of the last batch.
+	 */
+	private Matrix[] learn(Iterable<Matrix[]> sample, double learningRate, double terminatedThreshold, int maxIteration, int batchSize) {
+		try {
+			if (isDoStarted() || !validate()) return null;
+		} catch (Throwable e) {Util.trace(e);}
+
+		maxIteration = maxIteration >= 0 ? maxIteration :  LEARN_MAX_ITERATION_DEFAULT;
+		terminatedThreshold = Double.isNaN(terminatedThreshold) || terminatedThreshold < 0 ? LEARN_TERMINATED_THRESHOLD_DEFAULT : terminatedThreshold;
+		learningRate = Double.isNaN(learningRate) || learningRate <= 0 || learningRate > 1 ? LEARN_RATE_DEFAULT : learningRate;
+		batchSize = batchSize < 0 ? 0 : batchSize;
+
+		Matrix[] outputErrors = null;
+		int iteration = 0;
+		doStarted = true;
+		while (doStarted && (maxIteration <= 0 || iteration < maxIteration)) {
+			sample = resample(sample, iteration); //Re-sampling.
+			double lr = calcLearningRate(learningRate, iteration);
+
+			List<Matrix[]> batch = Util.newList(batchSize > 0 ? batchSize : 0);
+			for (Matrix[] inout : sample) {
+				batch.add(inout);
+				if (batchSize > 0 && batch.size() >= batchSize) {
+					outputErrors = learnBatch(batch, lr);
+					batch.clear();
+				}
+			}
+			if (batch.size() > 0) outputErrors = learnBatch(batch, lr);
+
+			iteration ++;
+
+			fireDoEvent(new NetworkDoEventImpl(this, Type.doing, "transformer_backpropogate",
+				"At final iteration " + iteration + "\nThe learned result is:\n" + this, iteration, maxIteration));
+
+			if (outputErrors == null || outputErrors.length == 0 || (iteration >= maxIteration && maxIteration == 1))
+				doStarted = false;
+			else if (terminatedThreshold > 0 && config.isBooleanValue(LEARN_TERMINATE_ERROR_FIELD)) {
+				double errorMean = Matrix.normMean(outputErrors);
+				if (errorMean < terminatedThreshold) doStarted = false;
+			}
+
+			synchronized (this) {
+				while (doPaused) {
+					notifyAll();
+					try {
+						wait();
+					} catch (Exception e) {Util.trace(e);}
+				}
+			}
+
+		}//End while
+
+		synchronized (this) {
+			doStarted = false;
+			doPaused = false;
+
+			fireDoEvent(new NetworkDoEventImpl(this, Type.done, "transformer_backpropogate",
+				"At final iteration " + iteration + "\nThe learned result is:\n" + this, iteration, maxIteration));
+
+			notifyAll();
+		}
+
+		return outputErrors;
+	}
+
+	
+	/**
+	 * Learning one mini-batch. Every sequence is evaluated through stacked blocks and its error is propagated backward right after, against its own activations,
+	 * but gradients of sequences are only accumulated. Blocks are updated once by mean of accumulated gradients at the end of the mini-batch.
+	 * @param batch mini-batch whose each element is an array of the first input (the sequence), the second input (which can be null), and the output.
+	 * @param learningRate learning rate.
+	 * @return output errors of the mini-batch.
+	 */
+	private Matrix[] learnBatch(List<Matrix[]> batch, double learningRate) {
+		List<Matrix> errorList = Util.newList(batch.size());
+		for (TransformerBlock block : blocks) block.accumulateGradients();
+		try {
+			for (Matrix[] inout : batch) {
+				if (inout == null || inout.length < 3 || inout[0] == null || inout[2] == null) continue;
+				try {
+					Matrix output = evaluate(inout[0], inout[1]);
+					if (output == null) continue;
+					Matrix outputError = inout[2].subtract(output);
+					errorList.add(outputError);
+
+					Matrix error = outputError;
+					for (int i = blocks.length-1; i >= 0; i--) {
+						error = blocks[i].learn(error, learningRate);
+						if (error == null) break;
+					}
+				} catch (Throwable e) {Util.trace(e);}
+			}
+		}
+		finally {
+			for (TransformerBlock block : blocks) block.applyGradients(learningRate);
+		}
+		return errorList.size() > 0 ? errorList.toArray(new Matrix[] {}) : null;
 	}
 
 	
@@ -39,6 +39,40 @@ public class ExprFunction extends FunctionReal {
 	protected String expr = "";
 	
 	
+	/**
+	 * This class represents expression template, which is the expression split by variables so that values of variables are inserted
+	 * without replacing text by regular expression at every evaluation.
+	 * 
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	private static class Template {
+		
+		/**
+		 * Expression from which this template is made.
+		 */
+		protected String expr = null;
+		
+		/**
+		 * Text parts where variable k is inserted between part k and part k+1.
+		 */
+		protected String[] parts = null;
+		
+		/**
+		 * Indices of inserted variables.
+		 */
+		protected int[] vars = null;
+		
+	}
+	
+	
+	/**
+	 * Expression template.
+	 */
+	private transient volatile Template template = null;
+	
+	
 	/**
 	 * Default constructor.
 	 * @param varNames variable names.
@@ -87,6 +121,69 @@ public class ExprFunction extends FunctionReal {
 	}
 
 	
+	@Override
+	protected double eval(double[] block, int offset, Vector<Double> buffer) {
+		Template template = getTemplate();
+		StringBuilder text = new StringBuilder(expr.length() + 16*template.vars.length);
+		for (int k = 0; k < template.vars.length; k++) {
+			double value = block[offset + template.vars[k]];
+			if (Double.isNaN(value)) return Double.NaN;
+			text.append(template.parts[k]).append(Double.toString(value));
+		}
+		text.append(template.parts[template.vars.length]);
+		
+		try {
+			Parser parser = new Parser();
+			return parser.parse2(text.toString());
+		}
+		catch (Throwable e) {
+			Util.trace(e);
+		}
+		
+		return Double.NaN;
+	}
+
+	
+	/**
+	 * Getting expression template. Variables are substituted in the same order as {@link #eval(Vector)} does.
+	 * @return expression template.
+	 */
+	private Template getTemplate() {
+		Template template = this.template;
+		if (template != null && template.expr == expr) return template;
+		
+		String marked = expr;
+		int n = vars.size();
+		for (int i = 0; i < n; i++) {
+			String attName = vars.get(i).getName();
+			String replacedText = expr.contains(VAR_INDEX_SPECIAL_CHAR) ? VAR_INDEX_SPECIAL_CHAR + attName : attName;
+			if (!marked.contains(replacedText)) continue;
+			marked = marked.replace(replacedText, "\u0001" + i + "\u0002");
+		}
+		
+		List<String> parts = Util.newList(0);
+		List<Integer> indices = Util.newList(0);
+		int from = 0;
+		while (true) {
+			int start = marked.indexOf('\u0001', from);
+			if (start < 0) break;
+			int end = marked.indexOf('\u0002', start);
+			parts.add(marked.substring(from, start));
+			indices.add(Integer.parseInt(marked.substring(start + 1, end)));
+			from = end + 1;
+		}
+		parts.add(marked.substring(from));
+		
+		template = new Template();
+		template.expr = expr;
+		template.parts = parts.toArray(new String[] {});
+		template.vars = new int[indices.size()];
+		for (int k = 0; k < template.vars.length; k++) template.vars[k] = indices.get(k);
+		this.template = template;
+		return template;
+	}
+	
+	
 	@Override
 	public int getVarNum() {
 		return vars.size();
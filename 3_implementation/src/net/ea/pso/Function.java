@@ -27,6 +27,44 @@ public interface Function<T> extends Serializable, Cloneable {
 	 * @return evaluated value.
 	 */
 	T eval(Vector<T> arg);
+
+	
+	/**
+	 * Evaluating this function at many points stored in a flat strided block, in which point i occupies elements from offset + i*stride
+	 * to offset + i*stride + getVarNum() - 1. Invalid values are NaN.
+	 * The default implementation adapts to {@link #eval(Vector)} by reusing one argument vector.
+	 * @param block flat block of points.
+	 * @param offset offset of the first point.
+	 * @param stride stride between points, which is not less than number of variables.
+	 * @param count number of points.
+	 * @param values array of evaluated values, which receives value of point i at index i.
+	 */
+	default void evalBatch(double[] block, int offset, int stride, int count, double[] values) {
+		int dim = getVarNum();
+		Vector<T> arg = createVector(null);
+		for (int i = 0; i < count; i++) {
+			int start = offset + i*stride;
+			for (int d = 0; d < dim; d++) arg.setValue(d, block[start + d]);
+			T value = eval(arg);
+			values[i] = value != null ? Profile.toDouble(value) : Double.NaN;
+		}
+	}
+
+	
+	/**
+	 * Evaluating this function at many points. Invalid values are NaN.
+	 * @param points points, each of which is an array of variable values.
+	 * @return array of evaluated values.
+	 */
+	default double[] evalBatch(double[][] points) {
+		int dim = getVarNum();
+		int count = points != null ? points.length : 0;
+		double[] block = new double[count*dim];
+		for (int i = 0; i < count; i++) System.arraycopy(points[i], 0, block, i*dim, dim);
+		double[] values = new double[count];
+		evalBatch(block, 0, dim, count, values);
+		return values;
+	}
 	
 	
 	/**
@@ -60,6 +60,29 @@ public abstract class FunctionReal extends FunctionAbstract<Double> {
 	}
 
 
+	@Override
+	public void evalBatch(double[] block, int offset, int stride, int count, double[] values) {
+		Vector<Double> buffer = createVector(0.0);
+		for (int i = 0; i < count; i++) values[i] = eval(block, offset + i*stride, buffer);
+	}
+
+
+	/**
+	 * Evaluating this function at point stored in array. The default implementation copies the point into argument buffer and calls {@link #eval(Vector)}.
+	 * Analytic functions can override this method so that batch evaluation does not box variable values.
+	 * @param block array containing the point.
+	 * @param offset offset of the point.
+	 * @param buffer argument buffer created by {@link #createVector(Double)}, which can be reused over points.
+	 * @return evaluated value, which is NaN if the value is invalid.
+	 */
+	protected double eval(double[] block, int offset, Vector<Double> buffer) {
+		int dim = getVarNum();
+		for (int d = 0; d < dim; d++) buffer.setValue(d, block[offset + d]);
+		Double value = eval(buffer);
+		return value != null ? value : Double.NaN;
+	}
+
+
 	@Override
 	public Vector<Double> createVector(Double initialValue) {
 		RealVector vector = new RealVector(vars);
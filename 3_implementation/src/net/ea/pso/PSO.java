@@ -188,6 +188,23 @@ public interface PSO<T> extends Remote, Serializable, Cloneable, AutoCloseable {
 	 */
 	boolean isDoRunning() throws RemoteException;
 
+
+	/**
+	 * Setting migration targets of island model, to which best particles of this PSO are sent periodically during learning.
+	 * Targets can be local PSO instances or stubs of remote PSO instances.
+	 * @param targets migration targets. Empty or null list means that this PSO does not emigrate particles.
+	 * @throws RemoteException if any error raises.
+	 */
+	void setMigrationTargets(List<PSO<T>> targets) throws RemoteException;
+
+
+	/**
+	 * Receiving immigrant particles from other island, which will replace worst particles of swarm at the next iteration.
+	 * @param particles immigrant particles.
+	 * @throws RemoteException if any error raises.
+	 */
+	void immigrate(List<Particle<T>> particles) throws RemoteException;
+
 	
 	/**
      * Exporting this network.
@@ -12,6 +12,11 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.ea.pso.PSODoEvent.Type;
 
@@ -68,6 +73,107 @@ public abstract class PSOAbstract<T> implements PSO<T> {
 	public final static boolean TERMINATED_RATIO_MODE_DEFAULT = false;
 
 	
+	/**
+	 * Evaluation mode which is one of sequential, synchronous, and asynchronous.
+	 * In synchronous mode, all particles of an iteration are evaluated concurrently and then the best of swarm is reduced.
+	 * In asynchronous mode, parts of swarm are moved and evaluated concurrently against the latest known optimizer without barriers.
+	 * Asynchronous mode falls back to synchronous mode if it is not allowed, for example, when neighbors of a particle are defined from other particles or migration of island model is enabled.
+	 * Target function must be thread-safe in concurrent modes.
+	 */
+	public final static String EVAL_MODE_FIELD = "pso_eval_mode";
+
+	
+	/**
+	 * Sequential evaluation mode.
+	 */
+	public final static String EVAL_MODE_SEQUENTIAL = "sequential";
+
+	
+	/**
+	 * Synchronous evaluation mode.
+	 */
+	public final static String EVAL_MODE_SYNCHRONOUS = "synchronous";
+
+	
+	/**
+	 * Asynchronous evaluation mode.
+	 */
+	public final static String EVAL_MODE_ASYNCHRONOUS = "asynchronous";
+
+	
+	/**
+	 * Default value for evaluation mode.
+	 */
+	public final static String EVAL_MODE_DEFAULT = EVAL_MODE_SEQUENTIAL;
+
+	
+	/**
+	 * Number of evaluation threads. Non-positive number means the number of available processors.
+	 */
+	public final static String EVAL_THREADS_FIELD = "pso_eval_threads";
+
+	
+	/**
+	 * Default value for number of evaluation threads.
+	 */
+	public final static int EVAL_THREADS_DEFAULT = 0;
+
+	
+	/**
+	 * Migration interval of island model in iterations.
+	 */
+	public final static String MIGRATION_INTERVAL_FIELD = "pso_migration_interval";
+
+	
+	/**
+	 * Default value for migration interval.
+	 */
+	public final static int MIGRATION_INTERVAL_DEFAULT = 10;
+
+	
+	/**
+	 * Migration size of island model, which is the number of best particles sent to every migration target.
+	 */
+	public final static String MIGRATION_SIZE_FIELD = "pso_migration_size";
+
+	
+	/**
+	 * Default value for migration size.
+	 */
+	public final static int MIGRATION_SIZE_DEFAULT = 1;
+
+	
+	/**
+	 * This class represents the best of swarm, which is shared among evaluating threads.
+	 * 
+	 * @param <T> type of evaluated object.
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	private static class SwarmBest<T> {
+		
+		/**
+		 * Current optimizer.
+		 */
+		protected volatile Optimizer<T> optimizer = null;
+		
+		/**
+		 * Previous optimizer.
+		 */
+		protected volatile Optimizer<T> preOptimizer = null;
+		
+		/**
+		 * Constructor with initial optimizer.
+		 * @param optimizer initial optimizer.
+		 */
+		public SwarmBest(Optimizer<T> optimizer) {
+			this.optimizer = optimizer;
+		}
+		
+	}
+	
+	
 	/**
 	 * Target function or cost function.
 	 */
@@ -98,6 +204,18 @@ public abstract class PSOAbstract<T> implements PSO<T> {
     protected volatile boolean doPaused = false;
 
     
+	/**
+	 * Migration targets of island model.
+	 */
+	protected transient volatile List<PSO<T>> migrationTargets = Util.newList(0);
+	
+	
+	/**
+	 * Immigrant particles received from other islands.
+	 */
+	protected transient List<Particle<T>> immigrants = Util.newList(0);
+	
+	
 	/**
 	 * Internal configuration.
 	 */
@@ -119,6 +237,10 @@ public abstract class PSOAbstract<T> implements PSO<T> {
 		config.put(FUNC_VARNAMES_FIELD, FUNC_VARNAMES_DEFAULT);
 		config.put(MAX_ITERATION_FIELD, MAX_ITERATION_DEFAULT);
 		config.put(PSOSetting.PARTICLE_NUMBER_FIELD, PSOSetting.PARTICLE_NUMBER_DEFAULT);
+		config.put(EVAL_MODE_FIELD, EVAL_MODE_DEFAULT);
+		config.put(EVAL_THREADS_FIELD, EVAL_THREADS_DEFAULT);
+		config.put(MIGRATION_INTERVAL_FIELD, MIGRATION_INTERVAL_DEFAULT);
+		config.put(MIGRATION_SIZE_FIELD, MIGRATION_SIZE_DEFAULT);
 	}
 
 	
@@ -127,15 +249,9 @@ public abstract class PSOAbstract<T> implements PSO<T> {
 		if (isDoStarted()) return null;
 		
 		swarm.clear();
+		clearImmigrants();
 		
-		String expr = funcExpr != null ? funcExpr.trim() : null;
-		expr = expr != null ? expr : config.getAsString(FUNC_EXPR_FIELD);
-		expr = expr != null ? expr.trim() : null;
-		if (expr != null) {
-			List<String> varNames = extractVarNames();
-			func = defineExprFunction(varNames, expr);
-		}
-		if (func == null) return func;
+		if (defineFunction(funcExpr) == null) return func;
 		
 		if (setting == null) setting = getPSOSetting();
 
@@ -164,86 +280,64 @@ public abstract class PSOAbstract<T> implements PSO<T> {
 
 		int maxIteration = config.getAsInt(MAX_ITERATION_FIELD);
 		maxIteration = maxIteration < 0 ? 0 : maxIteration;  
-		T cognitiveWeight = setting.cognitiveWeight;
-		T socialWeightGlobal = setting.socialWeightGlobal;
-		T socialWeightLocal = setting.socialWeightLocal;
-		Vector<T> inertialWeight = setting.inertialWeight;
-		Vector<T> constrictWeight = setting.constrictWeight;
-		
 		T elementZero = func.zero().elementZero();
+		String evalMode = config.getAsString(EVAL_MODE_FIELD);
+		evalMode = evalMode != null ? evalMode.trim().toLowerCase() : EVAL_MODE_DEFAULT;
+		int threads = config.getAsInt(EVAL_THREADS_FIELD);
+		threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		threads = Math.min(threads, swarm.size());
+		ExecutorService pool = threads > 1 && !evalMode.equals(EVAL_MODE_SEQUENTIAL) ? Executors.newFixedThreadPool(threads) : null;
+		
+		SwarmBest<T> best = new SwarmBest<T>(optimizer);
 		int iteration = 0;
-		Optimizer<T> preOptimizer = null;
 		doStarted = true;
-		while (doStarted && (maxIteration <= 0 || iteration < maxIteration)) {
-			for (Particle<T> x : swarm) {
-				Vector<T> inertialWeightCustom = customizeInertialWeight(x, optimizer);
-				if (inertialWeightCustom != null && inertialWeightCustom.getAttCount() > 0)
-					x.velocity.multiplyWise(inertialWeightCustom);
-				else
-					x.velocity.multiplyWise(inertialWeight);
-				
-				Vector<T> cognitiveForce = func.createRandomVector(elementZero, cognitiveWeight).multiplyWise(
-					x.bestPosition.duplicate().subtract(x.position));
-				x.velocity.add(cognitiveForce);
-				
-				Vector<T> socialForceGlobal = func.createRandomVector(elementZero, socialWeightGlobal).multiplyWise(
-					optimizer.bestPosition.duplicate().subtract(x.position));
-				x.velocity.add(socialForceGlobal);
-
-				List<Particle<T>> neighbors = defineNeighbors(x);
-				if (neighbors != null && neighbors.size() > 0) {
-					Vector<T> socialForceLocal = func.createVector(elementZero);
-					List<Vector<T>> neighborForces = Util.newList(neighbors.size());
-					for (Particle<T> neighbor : neighbors) {
-						Vector<T> neighborForce = func.createRandomVector(elementZero, socialWeightLocal).multiplyWise(
-							neighbor.bestPosition.duplicate().subtract(x.position));
-						neighborForces.add(neighborForce);
+		try {
+			boolean asynchronous = pool != null && evalMode.equals(EVAL_MODE_ASYNCHRONOUS);
+			if (asynchronous && isAsynchronousAllowed())
+				iteration = learnAsynchronously(pool, threads, setting, best, maxIteration, elementZero);
+			else {
+				boolean synchronous = pool != null && (asynchronous || evalMode.equals(EVAL_MODE_SYNCHRONOUS));
+				while (doStarted && (maxIteration <= 0 || iteration < maxIteration)) {
+					migrate(iteration, best);
+					prepareIteration(iteration);
+					if (synchronous) {
+						for (Particle<T> x : swarm) move(x, best.optimizer, setting, elementZero);
+						evaluate(pool, threads, swarm);
+						for (Particle<T> x : swarm) update(x, best);
+					}
+					else {
+						for (Particle<T> x : swarm) {
+							move(x, best.optimizer, setting, elementZero);
+							x.value = func.eval(x.position);
+							update(x, best);
+						}
 					}
-					socialForceLocal.mean(neighborForces);
 					
-					x.velocity.add(socialForceLocal);
-				}
-				
-				Vector<T> constrictWeightCustom = customizeConstrictWeight(x, optimizer);
-				if (constrictWeightCustom != null && constrictWeightCustom.getAttCount() > 0)
-					x.velocity.multiplyWise(constrictWeightCustom);
-				else
-					x.velocity.multiplyWise(constrictWeight);
-				x.position.add(x.velocity);
-				
-				x.value = func.eval(x.position);
-				if (!x.position.isValid(x.value))
-					continue;
-				else if (checkABetterThanB(x.value, x.bestValue)) {
-					x.bestPosition = x.position.duplicate();
-					x.bestValue = x.value;
+					iteration ++;
 					
-					if (checkABetterThanB(x.bestValue, optimizer.bestValue)) {
-						preOptimizer = optimizer;
-						optimizer = Optimizer.extract(x);
+					fireDoEvent(new PSODoEventImpl(this, Type.doing, "pso",
+							"At iteration " + iteration + ": optimizer is " + best.optimizer.toString(),
+							iteration, maxIteration));
+					
+					if (terminatedCondition(best.optimizer, best.preOptimizer))
+						doStarted = false;
+					
+					synchronized (this) {
+						while (doPaused) {
+							notifyAll();
+							try {
+								wait();
+							} catch (Exception e) {Util.trace(e);}
+						}
 					}
+		
 				}
 			}
-			
-			iteration ++;
-			
-			fireDoEvent(new PSODoEventImpl(this, Type.doing, "pso",
-					"At iteration " + iteration + ": optimizer is " + optimizer.toString(),
-					iteration, maxIteration));
-			
-			if (terminatedCondition(optimizer, preOptimizer))
-				doStarted = false;
-			
-			synchronized (this) {
-				while (doPaused) {
-					notifyAll();
-					try {
-						wait();
-					} catch (Exception e) {Util.trace(e);}
-				}
-			}
-
 		}
+		finally {
+			if (pool != null) pool.shutdown();
+		}
+		optimizer = best.optimizer;
 		
 		func.setOptimizer(optimizer);
 		
@@ -262,6 +356,180 @@ public abstract class PSOAbstract<T> implements PSO<T> {
 	}
 	
 	
+	/**
+	 * Moving particle, which means that velocity and position of particle are updated without evaluating the particle.
+	 * @param x particle.
+	 * @param optimizer current optimizer.
+	 * @param setting PSO setting.
+	 * @param elementZero zero element.
+	 */
+	private void move(Particle<T> x, Optimizer<T> optimizer, PSOSetting<T> setting, T elementZero) {
+		Vector<T> inertialWeightCustom = customizeInertialWeight(x, optimizer);
+		if (inertialWeightCustom != null && inertialWeightCustom.getAttCount() > 0)
+			x.velocity.multiplyWise(inertialWeightCustom);
+		else
+			x.velocity.multiplyWise(setting.inertialWeight);
+		
+		Vector<T> cognitiveForce = func.createRandomVector(elementZero, setting.cognitiveWeight).multiplyWise(
+			x.bestPosition.duplicate().subtract(x.position));
+		x.velocity.add(cognitiveForce);
+		
+		Vector<T> socialForceGlobal = func.createRandomVector(elementZero, setting.socialWeightGlobal).multiplyWise(
+			optimizer.bestPosition.duplicate().subtract(x.position));
+		x.velocity.add(socialForceGlobal);
+
+		List<Particle<T>> neighbors = defineNeighbors(x);
+		if (neighbors != null && neighbors.size() > 0) {
+			Vector<T> socialForceLocal = func.createVector(elementZero);
+			List<Vector<T>> neighborForces = Util.newList(neighbors.size());
+			for (Particle<T> neighbor : neighbors) {
+				Vector<T> neighborForce = func.createRandomVector(elementZero, setting.socialWeightLocal).multiplyWise(
+					neighbor.bestPosition.duplicate().subtract(x.position));
+				neighborForces.add(neighborForce);
+			}
+			socialForceLocal.mean(neighborForces);
+			
+			x.velocity.add(socialForceLocal);
+		}
+		
+		Vector<T> constrictWeightCustom = customizeConstrictWeight(x, optimizer);
+		if (constrictWeightCustom != null && constrictWeightCustom.getAttCount() > 0)
+			x.velocity.multiplyWise(constrictWeightCustom);
+		else
+			x.velocity.multiplyWise(setting.constrictWeight);
+		x.position.add(x.velocity);
+	}
+	
+	
+	/**
+	 * Updating best position of evaluated particle and the best of swarm.
+	 * @param x evaluated particle.
+	 * @param best best of swarm.
+	 */
+	private void update(Particle<T> x, SwarmBest<T> best) {
+		if (!x.position.isValid(x.value) || !checkABetterThanB(x.value, x.bestValue)) return;
+		
+		x.bestPosition = x.position.duplicate();
+		x.bestValue = x.value;
+		synchronized (best) {
+			if (checkABetterThanB(x.bestValue, best.optimizer.bestValue)) {
+				best.preOptimizer = best.optimizer;
+				best.optimizer = Optimizer.extract(x);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Evaluating particles concurrently.
+	 * @param pool thread pool.
+	 * @param threads number of threads.
+	 * @param particles particles.
+	 */
+	private void evaluate(ExecutorService pool, int threads, List<Particle<T>> particles) {
+		int chunk = (particles.size() + threads - 1) / threads;
+		List<Callable<Void>> tasks = Util.newList(threads);
+		for (int from = 0; from < particles.size(); from += chunk) {
+			List<Particle<T>> part = particles.subList(from, Math.min(particles.size(), from + chunk));
+			tasks.add(() -> {
+				for (Particle<T> x : part) x.value = func.eval(x.position);
+				return null;
+			});
+		}
+		
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks)) future.get();
+		} catch (Throwable e) {Util.trace(e);}
+	}
+	
+	
+	/**
+	 * Learning asynchronously, in which every thread moves and evaluates its own part of swarm against the latest known optimizer without waiting for other threads.
+	 * An iteration is counted whenever all parts are processed once more.
+	 * This method is only called if {@link #isAsynchronousAllowed()} is true, so that a thread never reads particles moved by other threads.
+	 * @param pool thread pool.
+	 * @param threads number of threads.
+	 * @param setting PSO setting.
+	 * @param best best of swarm.
+	 * @param maxIteration maximum iteration.
+	 * @param elementZero zero element.
+	 * @return number of iterations.
+	 */
+	private int learnAsynchronously(ExecutorService pool, int threads, PSOSetting<T> setting, SwarmBest<T> best, int maxIteration, T elementZero) {
+		int chunk = (swarm.size() + threads - 1) / threads;
+		List<List<Particle<T>>> parts = Util.newList(threads);
+		for (int from = 0; from < swarm.size(); from += chunk)
+			parts.add(swarm.subList(from, Math.min(swarm.size(), from + chunk)));
+		AtomicInteger rounds = new AtomicInteger(0);
+		
+		prepareIteration(0);
+		List<Callable<Void>> tasks = Util.newList(parts.size());
+		for (List<Particle<T>> part : parts) {
+			tasks.add(() -> {
+				for (int i = 0; doStarted && (maxIteration <= 0 || i < maxIteration); i++) {
+					for (Particle<T> x : part) {
+						Optimizer<T> optimizer;
+						synchronized (best) {
+							optimizer = best.optimizer;
+						}
+						move(x, optimizer, setting, elementZero);
+						x.value = func.eval(x.position);
+						update(x, best);
+					}
+					
+					int round = rounds.incrementAndGet();
+					if (round % parts.size() == 0) {
+						Optimizer<T> optimizer, preOptimizer;
+						synchronized (best) {
+							optimizer = best.optimizer;
+							preOptimizer = best.preOptimizer;
+						}
+						int iteration = round / parts.size();
+						fireDoEvent(new PSODoEventImpl(this, Type.doing, "pso",
+							"At iteration " + iteration + ": optimizer is " + optimizer.toString(),
+							iteration, maxIteration));
+						if (terminatedCondition(optimizer, preOptimizer))
+							doStarted = false;
+					}
+					
+					synchronized (this) {
+						while (doPaused) {
+							notifyAll();
+							try {
+								wait();
+							} catch (Exception e) {Util.trace(e);}
+						}
+					}
+				}
+				return null;
+			});
+		}
+		
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks)) future.get();
+		} catch (Throwable e) {Util.trace(e);}
+		
+		return rounds.get() / parts.size();
+	}
+	
+	
+	/**
+	 * Defining target function from mathematical expression or configured expression. The current target function is kept if there is no expression.
+	 * @param funcExpr mathematical expression, which can be null.
+	 * @return target function.
+	 */
+	protected Function<T> defineFunction(String funcExpr) {
+		String expr = funcExpr != null ? funcExpr.trim() : null;
+		expr = expr != null ? expr : config.getAsString(FUNC_EXPR_FIELD);
+		expr = expr != null ? expr.trim() : null;
+		if (expr != null && !expr.isEmpty()) {
+			List<String> varNames = extractVarNames();
+			func = defineExprFunction(varNames, expr);
+		}
+		return func;
+	}
+	
+	
 	/**
 	 * Checking whether the terminated condition is satisfied.
 	 * @param curOptimizer current optimizer.
@@ -280,6 +548,156 @@ public abstract class PSOAbstract<T> implements PSO<T> {
 	protected abstract boolean checkABetterThanB(T a, T b);
 
 	
+	/**
+	 * Migrating particles of island model, in which received immigrants replace worst particles of swarm
+	 * and best particles are sent to migration targets every migration interval.
+	 * @param iteration number of iterations done so far.
+	 * @param best best of swarm.
+	 */
+	private void migrate(int iteration, SwarmBest<T> best) {
+		List<Particle<T>> received = null;
+		synchronized (this) {
+			if (immigrants != null && immigrants.size() > 0) {
+				received = Util.newList(immigrants.size());
+				received.addAll(immigrants);
+				immigrants.clear();
+			}
+		}
+		if (received != null) settle(received, best);
+		
+		List<PSO<T>> targets = migrationTargets;
+		int interval = config.getAsInt(MIGRATION_INTERVAL_FIELD);
+		interval = interval > 0 ? interval : MIGRATION_INTERVAL_DEFAULT;
+		if (targets == null || targets.size() == 0 || iteration == 0 || iteration % interval != 0) return;
+		
+		int size = config.getAsInt(MIGRATION_SIZE_FIELD);
+		size = size > 0 ? size : MIGRATION_SIZE_DEFAULT;
+		List<Particle<T>> emigrants = emigrants(size);
+		if (emigrants.size() == 0) return;
+		for (PSO<T> target : targets) {
+			try {
+				if (target != null && target != this) target.immigrate(emigrants);
+			} catch (Throwable e) {Util.trace(e);}
+		}
+	}
+	
+	
+	/**
+	 * Settling immigrants into swarm by replacing worst particles. Immigrants are evaluated again by target function of this island.
+	 * @param received immigrants.
+	 * @param best best of swarm.
+	 */
+	private void settle(List<Particle<T>> received, SwarmBest<T> best) {
+		List<Particle<T>> worsts = Util.newList(swarm.size());
+		worsts.addAll(swarm);
+		worsts.sort((a, b) -> checkABetterThanB(a.bestValue, b.bestValue) ? 1 : (checkABetterThanB(b.bestValue, a.bestValue) ? -1 : 0));
+		
+		int k = 0;
+		for (Particle<T> immigrant : received) {
+			if (k >= worsts.size()) break;
+			if (immigrant == null || immigrant.position == null || immigrant.velocity == null) continue;
+			T value = func.eval(immigrant.position);
+			if (!immigrant.position.isValid(value)) continue;
+			
+			Particle<T> x = worsts.get(k++);
+			x.position = immigrant.position.duplicate();
+			x.velocity = immigrant.velocity.duplicate();
+			x.value = value;
+			if (!checkABetterThanB(value, x.bestValue)) continue;
+			
+			x.bestPosition = x.position.duplicate();
+			x.bestValue = value;
+			synchronized (best) {
+				if (checkABetterThanB(x.bestValue, best.optimizer.bestValue)) {
+					best.preOptimizer = best.optimizer;
+					best.optimizer = Optimizer.extract(x);
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Getting copies of best particles of swarm as emigrants, whose positions are their best positions.
+	 * @param size number of emigrants.
+	 * @return copies of best particles.
+	 */
+	private List<Particle<T>> emigrants(int size) {
+		List<Particle<T>> bests = Util.newList(swarm.size());
+		for (Particle<T> x : swarm) {
+			if (x.bestPosition != null && x.velocity != null && x.bestPosition.isValid(x.bestValue)) bests.add(x);
+		}
+		bests.sort((a, b) -> checkABetterThanB(a.bestValue, b.bestValue) ? -1 : (checkABetterThanB(b.bestValue, a.bestValue) ? 1 : 0));
+		
+		int n = Math.min(size, bests.size());
+		List<Particle<T>> emigrants = Util.newList(n);
+		for (int i = 0; i < n; i++) {
+			Particle<T> x = bests.get(i);
+			Particle<T> emigrant = new Particle<T>(null, null, func);
+			emigrant.position = x.bestPosition.duplicate();
+			emigrant.velocity = x.velocity.duplicate();
+			emigrant.bestPosition = x.bestPosition.duplicate();
+			emigrant.value = emigrant.bestValue = x.bestValue;
+			emigrants.add(emigrant);
+		}
+		return emigrants;
+	}
+	
+	
+	/**
+	 * Clearing received immigrants.
+	 */
+	private synchronized void clearImmigrants() {
+		if (immigrants != null) immigrants.clear();
+	}
+	
+	
+	@Override
+	public void setMigrationTargets(List<PSO<T>> targets) throws RemoteException {
+		List<PSO<T>> newTargets = Util.newList(targets != null ? targets.size() : 0);
+		if (targets != null) newTargets.addAll(targets);
+		this.migrationTargets = newTargets;
+	}
+	
+	
+	@Override
+	public synchronized void immigrate(List<Particle<T>> particles) throws RemoteException {
+		if (particles == null || particles.size() == 0) return;
+		if (immigrants == null) immigrants = Util.newList(particles.size());
+		immigrants.addAll(particles);
+	}
+	
+	
+	/**
+	 * Checking whether this PSO has migration targets of island model.
+	 * @return whether this PSO has migration targets of island model.
+	 */
+	protected boolean hasMigrationTargets() {
+		List<PSO<T>> targets = migrationTargets;
+		return targets != null && targets.size() > 0;
+	}
+	
+	
+	/**
+	 * Checking whether asynchronous evaluation mode is allowed. It is not allowed if migration of island model is enabled because migration replaces particles of swarm.
+	 * Derived classes whose neighbors of a particle are defined from other particles should not allow asynchronous evaluation mode either.
+	 * @return whether asynchronous evaluation mode is allowed.
+	 */
+	protected boolean isAsynchronousAllowed() {
+		return !hasMigrationTargets();
+	}
+	
+	
+	/**
+	 * Preparing an iteration before particles are moved, which is useful to rebuild structures over swarm such as spatial index.
+	 * In asynchronous evaluation mode, this method is called once before threads start moving particles.
+	 * @param iteration number of iterations done so far.
+	 */
+	protected void prepareIteration(int iteration) {
+		
+	}
+	
+	
 	/**
 	 * Defining neighbors of a given particle.
 	 * @param targetParticle given particle.
@@ -9,9 +9,13 @@ package net.ea.pso;
 
 import java.rmi.RemoteException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.math3.random.RandomDataGenerator;
 
+import net.ea.pso.PSODoEvent.Type;
+
 /**
  * This class is the default implementation of particle swarm optimization (PSO) algorithm.
  * 
@@ -28,6 +32,38 @@ public class PSOImpl extends PSOAbstract<Double> {
 	private static final long serialVersionUID = 1L;
 
 	
+	/**
+	 * Name of flat swarm field. If it is true, particles are stored in flat arrays and moved in place by {@link RealSwarm}
+	 * when neither neighbors nor probabilistic constriction weight are used.
+	 */
+	public final static String FLAT_SWARM_FIELD = "pso_flat_swarm";
+	
+	
+	/**
+	 * Default value of flat swarm field.
+	 */
+	public final static boolean FLAT_SWARM_DEFAULT = false;
+
+	
+	/**
+	 * Name of FDR neighbors index field. If it is true, fitness-distance-ratio neighbors are searched in {@link SwarmIndex}
+	 * which is rebuilt over positions and cached values of particles at every iteration instead of scanning the whole swarm.
+	 */
+	public final static String NEIGHBORS_FDR_INDEX_FIELD = "pso_neighbors_fdr_index";
+	
+	
+	/**
+	 * Default value of FDR neighbors index field.
+	 */
+	public final static boolean NEIGHBORS_FDR_INDEX_DEFAULT = false;
+	
+	
+	/**
+	 * Spatial index of swarm at current iteration.
+	 */
+	private transient volatile SwarmIndex swarmIndex = null;
+
+	
 	/**
 	 * Default constructor.
 	 */
@@ -47,6 +83,135 @@ public class PSOImpl extends PSOAbstract<Double> {
 		config.put(PSOSetting.CONSTRICT_WEIGHT_PROB_ACC_FIELD, PSOSetting.CONSTRICT_WEIGHT_PROB_ACC_DEFAULT);
 		config.put(PSOSetting.NEIGHBORS_FDR_MODE_FIELD, PSOSetting.NEIGHBORS_FDR_MODE_DEFAULT);
 		config.put(PSOSetting.NEIGHBORS_FDR_THRESHOLD_FIELD, PSOSetting.NEIGHBORS_FDR_THRESHOLD_DEFAULT);
+		config.put(FLAT_SWARM_FIELD, FLAT_SWARM_DEFAULT);
+		config.put(NEIGHBORS_FDR_INDEX_FIELD, NEIGHBORS_FDR_INDEX_DEFAULT);
+	}
+
+	
+	@Override
+	public Object learn(PSOSetting<Double> setting, String funcExpr) throws RemoteException {
+		if (config.getAsBoolean(FLAT_SWARM_FIELD) && !config.getAsBoolean(PSOSetting.NEIGHBORS_FDR_MODE_FIELD) &&
+				!config.getAsBoolean(PSOSetting.CONSTRICT_WEIGHT_PROB_MODE_FIELD) && !hasMigrationTargets())
+			return learnFlat(setting, funcExpr);
+		
+		try {
+			return super.learn(setting, funcExpr);
+		}
+		finally {
+			swarmIndex = null;
+		}
+	}
+	
+	
+	/**
+	 * Learning by flat swarm whose particles are stored in arrays and moved in place.
+	 * Particles are moved synchronously, which means that the global best position is updated after all particles are evaluated in each iteration.
+	 * @param setting PSO setting.
+	 * @param funcExpr mathematical expression of target function.
+	 * @return target function whose optimizer is found.
+	 * @throws RemoteException if any error raises.
+	 */
+	private Object learnFlat(PSOSetting<Double> setting, String funcExpr) throws RemoteException {
+		if (isDoStarted()) return null;
+		
+		swarm.clear();
+		
+		if (defineFunction(funcExpr) == null) return func;
+		
+		if (setting == null) setting = getPSOSetting();
+
+		func.setOptimizer(null);
+		
+		int N = config.getAsInt(PSOSetting.PARTICLE_NUMBER_FIELD);
+		N = N > 0 ? N : PSOSetting.PARTICLE_NUMBER_DEFAULT;
+		int dim = func.getVarNum();
+		RealSwarm flat = new RealSwarm(N, dim, config.getAsBoolean(MINIMIZE_MODE_FIELD));
+		if (!flat.initialize(func, RealSwarm.toArray(setting.lower, dim, 0), RealSwarm.toArray(setting.upper, dim, 1)))
+			return (func = null);
+		Optimizer<Double> optimizer = flat.getOptimizer(func);
+
+		int maxIteration = config.getAsInt(MAX_ITERATION_FIELD);
+		maxIteration = maxIteration < 0 ? 0 : maxIteration;  
+		double cognitiveWeight = setting.cognitiveWeight;
+		double socialWeightGlobal = setting.socialWeightGlobal;
+		double[] inertialWeight = toArray(setting.inertialWeight, dim, PSOSetting.INERTIAL_WEIGHT_DEFAULT);
+		double[] constrictWeight = toArray(setting.constrictWeight, dim, PSOSetting.CONSTRICT_WEIGHT_DEFAULT);
+		
+		String evalMode = config.getAsString(EVAL_MODE_FIELD);
+		int threads = config.getAsInt(EVAL_THREADS_FIELD);
+		threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		threads = Math.min(threads, flat.size());
+		ExecutorService pool = threads > 1 && evalMode != null && !evalMode.trim().equalsIgnoreCase(EVAL_MODE_SEQUENTIAL) ?
+			Executors.newFixedThreadPool(threads) : null;
+		
+		int iteration = 0;
+		Optimizer<Double> preOptimizer = null;
+		doStarted = true;
+		try {
+			while (doStarted && (maxIteration <= 0 || iteration < maxIteration)) {
+				flat.move(inertialWeight, constrictWeight, cognitiveWeight, socialWeightGlobal);
+				if (flat.evaluate(func, pool, threads)) {
+					preOptimizer = optimizer;
+					optimizer = flat.getOptimizer(func);
+				}
+			
+				iteration ++;
+			
+				if (getPSOListeners().length > 0) {
+					fireDoEvent(new PSODoEventImpl(this, Type.doing, "pso",
+						"At iteration " + iteration + ": optimizer is " + optimizer.toString(),
+						iteration, maxIteration));
+				}
+			
+				if (terminatedCondition(optimizer, preOptimizer))
+					doStarted = false;
+			
+				synchronized (this) {
+					while (doPaused) {
+						notifyAll();
+						try {
+							wait();
+						} catch (Exception e) {Util.trace(e);}
+					}
+				}
+			}
+		}
+		finally {
+			if (pool != null) pool.shutdown();
+		}
+		
+		swarm.addAll(flat.toParticles(func));
+		func.setOptimizer(optimizer);
+		
+		synchronized (this) {
+			doStarted = false;
+			doPaused = false;
+			
+			fireDoEvent(new PSODoEventImpl(this, Type.done, "pso",
+				"At final iteration " + iteration + ": final optimizer is " + optimizer.toString(),
+				iteration, iteration));
+
+			notifyAll();
+		}
+
+		return func;
+	}
+	
+	
+	/**
+	 * Converting weight vector into array of dimension.
+	 * @param weight weight vector.
+	 * @param dim dimension.
+	 * @param defaultValue default value of missing elements.
+	 * @return array of dimension.
+	 */
+	private static double[] toArray(Vector<Double> weight, int dim, double defaultValue) {
+		double[] array = new double[dim];
+		for (int i = 0; i < dim; i++) {
+			double w = weight != null && i < weight.getAttCount() ? weight.getValueAsReal(i) : Double.NaN;
+			array[i] = Double.isNaN(w) ? defaultValue : w;
+		}
+		return array;
 	}
 
 	
@@ -76,6 +241,23 @@ public class PSOImpl extends PSOAbstract<Double> {
 	}
 
 
+	@Override
+	protected boolean isAsynchronousAllowed() {
+		return super.isAsynchronousAllowed() && !config.getAsBoolean(PSOSetting.NEIGHBORS_FDR_MODE_FIELD);
+	}
+
+
+	@Override
+	protected void prepareIteration(int iteration) {
+		boolean fdrMode = config.getAsBoolean(PSOSetting.NEIGHBORS_FDR_MODE_FIELD);
+		double fdrThreshold = config.getAsReal(PSOSetting.NEIGHBORS_FDR_THRESHOLD_FIELD);
+		if (func != null && fdrMode && !Double.isNaN(fdrThreshold) && config.getAsBoolean(NEIGHBORS_FDR_INDEX_FIELD))
+			swarmIndex = new SwarmIndex(swarm, func);
+		else
+			swarmIndex = null;
+	}
+
+
 	@Override
 	protected List<Particle<Double>> defineNeighbors(Particle<Double> targetParticle) {
 		if (func == null || targetParticle == null || targetParticle.position == null)
@@ -88,6 +270,8 @@ public class PSOImpl extends PSOAbstract<Double> {
 			targetParticle.value = func.eval(targetParticle.position);
 		if (!targetParticle.position.isValid(targetParticle.value))
 			return Util.newList(0);
+		SwarmIndex index = swarmIndex;
+		if (index != null) return index.neighbors(targetParticle, fdrThreshold);
 
 		List<Particle<Double>> neighbors = Util.newList(0);
 		for (Particle<Double> particle : swarm) {
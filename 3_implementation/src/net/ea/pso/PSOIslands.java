@@ -0,0 +1,161 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.pso;
+
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class represents island model of particle swarm optimization, in which every island is a PSO instance running its own sub-swarm
+ * and islands exchange their best particles periodically through a migration topology.
+ * Islands can be local PSO instances or stubs of remote PSO instances exported by {@link PSO#export(int)}, so that large searches scale horizontally.
+ * Migration interval and migration size are taken from configuration of every island.
+ *
+ * @param <T> data type.
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class PSOIslands<T> {
+
+
+	/**
+	 * Ring topology, in which island i sends its best particles to island i+1 and the last island sends to the first island.
+	 */
+	public final static String TOPOLOGY_RING = "ring";
+
+
+	/**
+	 * Star topology, in which the first island is the hub exchanging best particles with all other islands.
+	 */
+	public final static String TOPOLOGY_STAR = "star";
+
+
+	/**
+	 * Default topology.
+	 */
+	public final static String TOPOLOGY_DEFAULT = TOPOLOGY_RING;
+
+
+	/**
+	 * Islands.
+	 */
+	protected List<PSO<T>> islands = Util.newList(0);
+
+
+	/**
+	 * Constructor with islands.
+	 * @param islands islands.
+	 */
+	public PSOIslands(List<PSO<T>> islands) {
+		if (islands != null) {
+			for (PSO<T> island : islands) {
+				if (island != null) this.islands.add(island);
+			}
+		}
+	}
+
+
+	/**
+	 * Getting islands.
+	 * @return islands.
+	 */
+	public List<PSO<T>> getIslands() {
+		return islands;
+	}
+
+
+	/**
+	 * Connecting islands by migration topology.
+	 * @param topology migration topology which is ring or star.
+	 * @throws RemoteException if any error raises.
+	 */
+	public void connect(String topology) throws RemoteException {
+		topology = topology != null ? topology.trim().toLowerCase() : TOPOLOGY_DEFAULT;
+		int n = islands.size();
+		for (int i = 0; i < n; i++) {
+			List<PSO<T>> targets = Util.newList(0);
+			if (n > 1 && topology.equals(TOPOLOGY_STAR)) {
+				if (i == 0)
+					targets.addAll(islands.subList(1, n));
+				else
+					targets.add(islands.get(0));
+			}
+			else if (n > 1)
+				targets.add(islands.get((i + 1) % n));
+			islands.get(i).setMigrationTargets(targets);
+		}
+	}
+
+
+	/**
+	 * Disconnecting islands so that they do not migrate particles.
+	 * @throws RemoteException if any error raises.
+	 */
+	public void disconnect() throws RemoteException {
+		for (PSO<T> island : islands) island.setMigrationTargets(null);
+	}
+
+
+	/**
+	 * Learning all islands concurrently. Islands should be connected by {@link #connect(String)} before learning, otherwise they optimize independently.
+	 * @param setting PSO setting, which can be null so that every island uses its own setting.
+	 * @param funcExpr mathematical expression of target function, which can be null so that every island uses its own target function.
+	 * @return the best optimizer among islands, which is null if no island finds optimizer.
+	 * @throws RemoteException if any error raises.
+	 */
+	public Optimizer<T> learn(PSOSetting<T> setting, String funcExpr) throws RemoteException {
+		if (islands.size() == 0) return null;
+
+		ExecutorService pool = Executors.newFixedThreadPool(islands.size());
+		try {
+			List<Future<Object>> futures = Util.newList(islands.size());
+			for (PSO<T> island : islands) futures.add(pool.submit(() -> island.learn(setting, funcExpr)));
+			for (Future<Object> future : futures) {
+				try {
+					future.get();
+				} catch (Throwable e) {Util.trace(e);}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		return getOptimizer();
+	}
+
+
+	/**
+	 * Getting the best optimizer among islands, which is compared by minimization mode of the first island.
+	 * @return the best optimizer among islands, which is null if no island has optimizer.
+	 * @throws RemoteException if any error raises.
+	 */
+	public Optimizer<T> getOptimizer() throws RemoteException {
+		if (islands.size() == 0) return null;
+		boolean minimize = islands.get(0).getConfig().getAsBoolean(PSO.MINIMIZE_MODE_FIELD);
+
+		Optimizer<T> best = null;
+		double bestValue = Double.NaN;
+		for (PSO<T> island : islands) {
+			Function<T> func = island.getFunction();
+			Optimizer<T> optimizer = func != null ? func.getOptimizer() : null;
+			double value = optimizer != null ? Profile.toDouble(optimizer.bestValue) : Double.NaN;
+			if (Double.isNaN(value)) continue;
+			if (best == null || (minimize ? value < bestValue : value > bestValue)) {
+				best = optimizer;
+				bestValue = value;
+			}
+		}
+		return best;
+	}
+
+
+}
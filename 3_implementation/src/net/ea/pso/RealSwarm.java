@@ -0,0 +1,426 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.pso;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * This class represents real-valued swarm in structure of arrays. Positions, velocities, and best positions of all particles are stored in flat arrays
+ * of size N*dim and they are updated in place, which avoids allocating vectors per particle per iteration.
+ * Particles are divided into fixed chunks, each chunk has its own random stream, and chunks are moved in parallel when swarm is large,
+ * so that moving is deterministic given seed regardless of threads.
+ * Moving is synchronous, which means that all particles in an iteration are attracted by the global best position found in previous iterations.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class RealSwarm implements Serializable, Cloneable {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Minimum number of scalar updates per iteration so that particles are moved in parallel.
+	 */
+	public final static int PARALLEL_THRESHOLD = 1 << 14;
+
+
+	/**
+	 * Number of particles.
+	 */
+	protected int N = 0;
+
+
+	/**
+	 * Dimension.
+	 */
+	protected int dim = 0;
+
+
+	/**
+	 * Positions where position of particle i is from i*dim to (i+1)*dim-1.
+	 */
+	protected double[] positions = null;
+
+
+	/**
+	 * Velocities.
+	 */
+	protected double[] velocities = null;
+
+
+	/**
+	 * Best positions of particles.
+	 */
+	protected double[] bestPositions = null;
+
+
+	/**
+	 * Values of particles.
+	 */
+	protected double[] values = null;
+
+
+	/**
+	 * Best values of particles.
+	 */
+	protected double[] bestValues = null;
+
+
+	/**
+	 * Global best position.
+	 */
+	protected double[] globalBestPosition = null;
+
+
+	/**
+	 * Global best value.
+	 */
+	protected double globalBestValue = Double.NaN;
+
+
+	/**
+	 * Minimization mode.
+	 */
+	protected boolean minimize = true;
+
+
+	/**
+	 * Random streams of chunks.
+	 */
+	protected SplittableRandom[] rnds = null;
+
+
+	/**
+	 * Number of particles per chunk.
+	 */
+	protected int chunkSize = 1;
+
+
+	/**
+	 * Constructor with number of particles, dimension, minimization mode, and seed.
+	 * @param N number of particles.
+	 * @param dim dimension.
+	 * @param minimize minimization mode.
+	 * @param seed seed of random streams.
+	 */
+	public RealSwarm(int N, int dim, boolean minimize, long seed) {
+		this.N = N < 1 ? 1 : N;
+		this.dim = dim < 1 ? 1 : dim;
+		this.minimize = minimize;
+		this.positions = new double[this.N*this.dim];
+		this.velocities = new double[this.N*this.dim];
+		this.bestPositions = new double[this.N*this.dim];
+		this.values = new double[this.N];
+		this.bestValues = new double[this.N];
+		this.globalBestPosition = new double[this.dim];
+
+		int chunks = Math.max(1, Math.min(this.N, Runtime.getRuntime().availableProcessors()));
+		this.chunkSize = (this.N + chunks - 1) / chunks;
+		chunks = (this.N + chunkSize - 1) / chunkSize;
+		SplittableRandom rnd = new SplittableRandom(seed);
+		this.rnds = new SplittableRandom[chunks];
+		for (int k = 0; k < chunks; k++) this.rnds[k] = rnd.split();
+	}
+
+
+	/**
+	 * Constructor with number of particles, dimension, and minimization mode.
+	 * @param N number of particles.
+	 * @param dim dimension.
+	 * @param minimize minimization mode.
+	 */
+	public RealSwarm(int N, int dim, boolean minimize) {
+		this(N, dim, minimize, System.nanoTime());
+	}
+
+
+	/**
+	 * Getting number of particles.
+	 * @return number of particles.
+	 */
+	public int size() {
+		return N;
+	}
+
+
+	/**
+	 * Getting dimension.
+	 * @return dimension.
+	 */
+	public int dim() {
+		return dim;
+	}
+
+
+	/**
+	 * Initializing particles randomly in bounds and evaluating them. Particles whose values are invalid are randomized again,
+	 * and at most 2N randomizations are tried in total. The swarm shrinks if some particles are still invalid.
+	 * @param func target function.
+	 * @param lower lower bound.
+	 * @param upper upper bound.
+	 * @return true if there is at least one valid particle.
+	 */
+	public boolean initialize(Function<Double> func, double[] lower, double[] upper) {
+		double[] min = new double[dim], distances = new double[dim];
+		for (int d = 0; d < dim; d++) {
+			double l = lower != null && d < lower.length ? lower[d] : 0;
+			double u = upper != null && d < upper.length ? upper[d] : 1;
+			min[d] = Math.min(l, u);
+			distances[d] = Math.abs(u - l);
+		}
+
+		SplittableRandom rnd = rnds[0];
+		Vector<Double> arg = func.createVector(0.0);
+		globalBestValue = Double.NaN;
+		int count = 0;
+		for (int attempt = 0; attempt < 2*N && count < N; attempt++) {
+			int offset = count*dim;
+			for (int d = 0; d < dim; d++) {
+				positions[offset + d] = distances[d]*rnd.nextDouble() + min[d];
+				velocities[offset + d] = distances[d]*(2*rnd.nextDouble() - 1);
+			}
+			double value = eval(func, arg, count);
+			if (Double.isNaN(value)) continue;
+
+			values[count] = bestValues[count] = value;
+			System.arraycopy(positions, offset, bestPositions, offset, dim);
+			if (Double.isNaN(globalBestValue) || better(value, globalBestValue)) {
+				globalBestValue = value;
+				System.arraycopy(positions, offset, globalBestPosition, 0, dim);
+			}
+			count++;
+		}
+		if (count == 0) return false;
+		if (count < N) shrink(count);
+		return true;
+	}
+
+
+	/**
+	 * Shrinking swarm.
+	 * @param count new number of particles.
+	 */
+	private void shrink(int count) {
+		N = count;
+		positions = java.util.Arrays.copyOf(positions, N*dim);
+		velocities = java.util.Arrays.copyOf(velocities, N*dim);
+		bestPositions = java.util.Arrays.copyOf(bestPositions, N*dim);
+		values = java.util.Arrays.copyOf(values, N);
+		bestValues = java.util.Arrays.copyOf(bestValues, N);
+	}
+
+
+	/**
+	 * Moving all particles in place. Velocity is multiplied by inertial weight, attracted by best position of particle and global best position
+	 * with random coefficients in [0, cognitive weight) and [0, social weight), and then multiplied by constriction weight.
+	 * @param inertialWeight inertial weight per dimension.
+	 * @param constrictWeight constriction weight per dimension.
+	 * @param cognitiveWeight cognitive weight.
+	 * @param socialWeight global social weight.
+	 */
+	public void move(double[] inertialWeight, double[] constrictWeight, double cognitiveWeight, double socialWeight) {
+		int chunks = (N + chunkSize - 1) / chunkSize;
+		if (chunks > 1 && (long)N*dim >= PARALLEL_THRESHOLD)
+			IntStream.range(0, chunks).parallel().forEach((k) -> move(k, inertialWeight, constrictWeight, cognitiveWeight, socialWeight));
+		else {
+			for (int k = 0; k < chunks; k++) move(k, inertialWeight, constrictWeight, cognitiveWeight, socialWeight);
+		}
+	}
+
+
+	/**
+	 * Moving particles of a chunk in place.
+	 * @param chunk chunk index.
+	 * @param inertialWeight inertial weight per dimension.
+	 * @param constrictWeight constriction weight per dimension.
+	 * @param cognitiveWeight cognitive weight.
+	 * @param socialWeight global social weight.
+	 */
+	private void move(int chunk, double[] inertialWeight, double[] constrictWeight, double cognitiveWeight, double socialWeight) {
+		SplittableRandom rnd = rnds[chunk];
+		int from = chunk*chunkSize, to = Math.min(N, from + chunkSize);
+		for (int i = from; i < to; i++) {
+			int offset = i*dim;
+			for (int d = 0; d < dim; d++) {
+				int j = offset + d;
+				double x = positions[j];
+				double v = velocities[j]*inertialWeight[d];
+				v += cognitiveWeight*rnd.nextDouble()*(bestPositions[j] - x);
+				v += socialWeight*rnd.nextDouble()*(globalBestPosition[d] - x);
+				v *= constrictWeight[d];
+				velocities[j] = v;
+				positions[j] = x + v;
+			}
+		}
+	}
+
+
+	/**
+	 * Evaluating all particles in one batch call and updating best positions.
+	 * @param func target function.
+	 * @return true if global best position is improved.
+	 */
+	public boolean evaluate(Function<Double> func) {
+		return evaluate(func, null, 1);
+	}
+
+
+	/**
+	 * Evaluating all particles concurrently and then updating best positions. Target function must be thread-safe.
+	 * @param func target function.
+	 * @param pool thread pool, which can be null for sequential evaluation.
+	 * @param threads number of threads.
+	 * @return true if global best position is improved.
+	 */
+	public boolean evaluate(Function<Double> func, ExecutorService pool, int threads) {
+		if (pool == null || threads <= 1)
+			func.evalBatch(positions, 0, dim, N, values);
+		else {
+			int chunk = (N + threads - 1) / threads;
+			List<Callable<Void>> tasks = Util.newList(threads);
+			for (int from = 0; from < N; from += chunk) {
+				int start = from, end = Math.min(N, from + chunk);
+				tasks.add(() -> {
+					double[] part = new double[end - start];
+					func.evalBatch(positions, start*dim, dim, part.length, part);
+					System.arraycopy(part, 0, values, start, part.length);
+					return null;
+				});
+			}
+			try {
+				for (Future<Void> future : pool.invokeAll(tasks)) future.get();
+			} catch (Throwable e) {Util.trace(e);}
+		}
+		
+		boolean improved = false;
+		for (int i = 0; i < N; i++) {
+			double value = values[i];
+			if (Double.isNaN(value) || !better(value, bestValues[i])) continue;
+
+			bestValues[i] = value;
+			System.arraycopy(positions, i*dim, bestPositions, i*dim, dim);
+			if (better(value, globalBestValue)) {
+				globalBestValue = value;
+				System.arraycopy(positions, i*dim, globalBestPosition, 0, dim);
+				improved = true;
+			}
+		}
+		return improved;
+	}
+
+
+	/**
+	 * Evaluating particle.
+	 * @param func target function.
+	 * @param arg reused argument vector.
+	 * @param i particle index.
+	 * @return value of particle, which is NaN if the value is invalid.
+	 */
+	private double eval(Function<Double> func, Vector<Double> arg, int i) {
+		int offset = i*dim;
+		for (int d = 0; d < dim; d++) arg.setValue(d, positions[offset + d]);
+		Double value = func.eval(arg);
+		return value != null ? value : Double.NaN;
+	}
+
+
+	/**
+	 * Checking if value a is better than value b.
+	 * @param a value a.
+	 * @param b value b.
+	 * @return true if value a is better than value b.
+	 */
+	private boolean better(double a, double b) {
+		return minimize ? a < b : a > b;
+	}
+
+
+	/**
+	 * Getting global best value.
+	 * @return global best value.
+	 */
+	public double getBestValue() {
+		return globalBestValue;
+	}
+
+
+	/**
+	 * Getting optimizer of global best position.
+	 * @param func target function.
+	 * @return optimizer of global best position.
+	 */
+	public Optimizer<Double> getOptimizer(Function<Double> func) {
+		return new Optimizer<Double>(toVector(func, globalBestPosition, 0), globalBestValue);
+	}
+
+
+	/**
+	 * Converting flat arrays into particles without evaluating them again.
+	 * @param func target function.
+	 * @return list of particles.
+	 */
+	public List<Particle<Double>> toParticles(Function<Double> func) {
+		List<Particle<Double>> particles = Util.newList(N);
+		for (int i = 0; i < N; i++) {
+			Particle<Double> particle = new Particle<Double>(null, null, func);
+			particle.position = toVector(func, positions, i*dim);
+			particle.velocity = toVector(func, velocities, i*dim);
+			particle.bestPosition = toVector(func, bestPositions, i*dim);
+			particle.bestValue = bestValues[i];
+			particle.value = values[i];
+			particles.add(particle);
+		}
+		return particles;
+	}
+
+
+	/**
+	 * Converting a slice of flat array into vector.
+	 * @param func target function.
+	 * @param array flat array.
+	 * @param offset offset of slice.
+	 * @return vector.
+	 */
+	private Vector<Double> toVector(Function<Double> func, double[] array, int offset) {
+		Vector<Double> vector = func.createVector(0.0);
+		for (int d = 0; d < dim; d++) vector.setValue(d, array[offset + d]);
+		return vector;
+	}
+
+
+	/**
+	 * Converting vector or bound into array of dimension, where missing elements take the last element.
+	 * @param values vector or bound.
+	 * @param dim dimension.
+	 * @param defaultValue default value if values are empty.
+	 * @return array of dimension.
+	 */
+	public static double[] toArray(Double[] values, int dim, double defaultValue) {
+		double[] array = new double[dim];
+		double last = defaultValue;
+		for (int d = 0; d < dim; d++) {
+			if (values != null && d < values.length && values[d] != null) last = values[d];
+			array[d] = last;
+		}
+		return array;
+	}
+
+
+}
@@ -0,0 +1,251 @@
+/**
+ * AI: Artificial Intelligent Project
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: ai.locnguyen.net
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.ea.pso;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * This class represents spatial index of real-valued swarm, which is a k-d tree built over snapshot of particle positions and cached fitness values.
+ * It answers fitness-distance-ratio (FDR) neighbor queries: a particle is neighbor of target particle if the absolute difference of their values
+ * is not less than threshold multiplied by their Euclidean distance. Because such difference is bounded by the range of values in the swarm,
+ * candidate neighbors lie in a ball around target position and only that ball is searched in k-d tree.
+ * The index is immutable after being built so that it can be shared by concurrent threads.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class SwarmIndex implements Serializable, Cloneable {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Maximum number of points which are scanned directly instead of being split further.
+	 */
+	protected final static int LEAF_SIZE = 8;
+
+
+	/**
+	 * Indexed particles whose values are valid.
+	 */
+	protected Particle<Double>[] particles = null;
+
+
+	/**
+	 * Flat positions where position of particle i is from i*dim to (i+1)*dim-1.
+	 */
+	protected double[] positions = null;
+
+
+	/**
+	 * Cached values of particles.
+	 */
+	protected double[] values = null;
+
+
+	/**
+	 * Permutation of particle indices in k-d tree order.
+	 */
+	protected int[] order = null;
+
+
+	/**
+	 * Dimension.
+	 */
+	protected int dim = 0;
+
+
+	/**
+	 * Minimum value.
+	 */
+	protected double minValue = Double.NaN;
+
+
+	/**
+	 * Maximum value.
+	 */
+	protected double maxValue = Double.NaN;
+
+
+	/**
+	 * Constructor with swarm and target function. Particles whose values are invalid are evaluated again once, and particles which are still invalid are not indexed.
+	 * @param swarm swarm.
+	 * @param func target function.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public SwarmIndex(List<Particle<Double>> swarm, Function<Double> func) {
+		this.dim = func.getVarNum();
+		List<Particle<Double>> valids = Util.newList(swarm.size());
+		for (Particle<Double> particle : swarm) {
+			if (particle == null || particle.position == null) continue;
+			if (!particle.position.isValid(particle.value))
+				particle.value = func.eval(particle.position);
+			if (particle.position.isValid(particle.value)) valids.add(particle);
+		}
+
+		int n = valids.size();
+		this.particles = valids.toArray(new Particle[n]);
+		this.positions = new double[n*dim];
+		this.values = new double[n];
+		this.order = new int[n];
+		for (int i = 0; i < n; i++) {
+			Particle<Double> particle = particles[i];
+			for (int d = 0; d < dim; d++) positions[i*dim + d] = particle.position.getValueAsReal(d);
+			values[i] = particle.value;
+			order[i] = i;
+			minValue = Double.isNaN(minValue) ? values[i] : Math.min(minValue, values[i]);
+			maxValue = Double.isNaN(maxValue) ? values[i] : Math.max(maxValue, values[i]);
+		}
+		build(0, n, 0);
+	}
+
+
+	/**
+	 * Building k-d tree over range of permutation, in which the median point of the range is the node splitting along the dimension of depth.
+	 * @param from starting index, inclusive.
+	 * @param to ending index, exclusive.
+	 * @param depth depth.
+	 */
+	private void build(int from, int to, int depth) {
+		if (to - from <= LEAF_SIZE) return;
+		int axis = depth % dim, mid = (from + to) >>> 1;
+		select(from, to - 1, mid, axis);
+		build(from, mid, depth + 1);
+		build(mid + 1, to, depth + 1);
+	}
+
+
+	/**
+	 * Selecting k-th point along axis so that points before it are not greater and points after it are not less.
+	 * @param left left index, inclusive.
+	 * @param right right index, inclusive.
+	 * @param k selected index.
+	 * @param axis axis.
+	 */
+	private void select(int left, int right, int k, int axis) {
+		while (left < right) {
+			double pivot = coord(order[(left + right) >>> 1], axis);
+			int i = left, j = right;
+			while (i <= j) {
+				while (coord(order[i], axis) < pivot) i++;
+				while (coord(order[j], axis) > pivot) j--;
+				if (i <= j) {
+					int temp = order[i];
+					order[i] = order[j];
+					order[j] = temp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+
+	/**
+	 * Getting coordinate of particle.
+	 * @param i particle index.
+	 * @param axis axis.
+	 * @return coordinate of particle.
+	 */
+	private double coord(int i, int axis) {
+		return positions[i*dim + axis];
+	}
+
+
+	/**
+	 * Getting number of indexed particles.
+	 * @return number of indexed particles.
+	 */
+	public int size() {
+		return particles.length;
+	}
+
+
+	/**
+	 * Finding FDR neighbors of target particle.
+	 * @param target target particle whose value is valid.
+	 * @param threshold FDR threshold.
+	 * @return list of neighbors of target particle.
+	 */
+	public List<Particle<Double>> neighbors(Particle<Double> target, double threshold) {
+		List<Particle<Double>> neighbors = Util.newList(0);
+		if (target == null || target.position == null || target.value == null || particles.length == 0) return neighbors;
+
+		double[] query = new double[dim];
+		for (int d = 0; d < dim; d++) query[d] = target.position.getValueAsReal(d);
+		double value = target.value;
+		double radius = threshold > 0 ? Math.max(maxValue - value, value - minValue) / threshold : Double.POSITIVE_INFINITY;
+		if (Double.isNaN(radius) || radius < 0) return neighbors;
+
+		search(0, particles.length, 0, query, value, threshold, radius, target, neighbors);
+		return neighbors;
+	}
+
+
+	/**
+	 * Searching FDR neighbors in ball over range of permutation.
+	 * @param from starting index, inclusive.
+	 * @param to ending index, exclusive.
+	 * @param depth depth.
+	 * @param query query position.
+	 * @param value value of query position.
+	 * @param threshold FDR threshold.
+	 * @param radius radius of ball.
+	 * @param target target particle which is excluded.
+	 * @param neighbors list of found neighbors.
+	 */
+	private void search(int from, int to, int depth, double[] query, double value, double threshold, double radius, Particle<Double> target, List<Particle<Double>> neighbors) {
+		if (from >= to) return;
+		if (to - from <= LEAF_SIZE) {
+			for (int k = from; k < to; k++) check(order[k], query, value, threshold, target, neighbors);
+			return;
+		}
+
+		int axis = depth % dim, mid = (from + to) >>> 1;
+		check(order[mid], query, value, threshold, target, neighbors);
+		double diff = query[axis] - coord(order[mid], axis);
+		if (diff <= radius) search(from, mid, depth + 1, query, value, threshold, radius, target, neighbors);
+		if (-diff <= radius) search(mid + 1, to, depth + 1, query, value, threshold, radius, target, neighbors);
+	}
+
+
+	/**
+	 * Checking whether indexed particle is FDR neighbor of query position.
+	 * @param i particle index.
+	 * @param query query position.
+	 * @param value value of query position.
+	 * @param threshold FDR threshold.
+	 * @param target target particle which is excluded.
+	 * @param neighbors list of found neighbors.
+	 */
+	private void check(int i, double[] query, double value, double threshold, Particle<Double> target, List<Particle<Double>> neighbors) {
+		if (particles[i] == target) return;
+		double dis = 0;
+		int offset = i*dim;
+		for (int d = 0; d < dim; d++) {
+			double deviate = query[d] - positions[offset + d];
+			dis += deviate * deviate;
+		}
+		double fdis = Math.abs(value - values[i]);
+		if (!Double.isNaN(fdis) && fdis >= threshold*Math.sqrt(dis)) neighbors.add(particles[i]);
+	}
+
+
+}